@@ -50,6 +50,15 @@ public class JhipsterApp {
             log.error("You have misconfigured your application! It should not" +
                 "run with both the 'dev' and 'cloud' profiles at the same time.");
         }
+        if (activeProfiles.contains(Constants.SPRING_PROFILE_EMBEDDED_SEARCH) && activeProfiles.contains(Constants.SPRING_PROFILE_CLOUD)) {
+            log.error("You have misconfigured your application! It should not run " +
+                "with both the 'embedded-search' and 'cloud' profiles at the same time: " +
+                "each instance would search its own index.");
+        }
+        if (activeProfiles.contains(Constants.SPRING_PROFILE_EMBEDDED_SEARCH) && activeProfiles.contains(Constants.SPRING_PROFILE_DEVELOPMENT)) {
+            log.warn("The 'embedded-search' profile is meant for 'prod': " +
+                "the 'dev' profile already runs an embedded Elasticsearch node.");
+        }
     }
 
     /**
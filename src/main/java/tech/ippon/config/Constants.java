@@ -18,6 +18,8 @@ public final class Constants {
     public static final String SPRING_PROFILE_SWAGGER = "swagger";
     // Spring profile used to disable running liquibase
     public static final String SPRING_PROFILE_NO_LIQUIBASE = "no-liquibase";
+    // Spring profile used to run the search indexes in an embedded Elasticsearch node
+    public static final String SPRING_PROFILE_EMBEDDED_SEARCH = "embedded-search";
 
     public static final String SYSTEM_ACCOUNT = "system";
 
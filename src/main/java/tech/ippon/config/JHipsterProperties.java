@@ -32,6 +32,18 @@ public class JHipsterProperties {
 
     private final Ribbon ribbon = new Ribbon();
 
+    private final SearchOutbox searchOutbox = new SearchOutbox();
+
+    private final SearchCache searchCache = new SearchCache();
+
+    private final Reindex reindex = new Reindex();
+
+    private final Count count = new Count();
+
+    private final ReferenceData referenceData = new ReferenceData();
+
+    private final Snapshot snapshot = new Snapshot();
+
     public Async getAsync() {
         return async;
     }
@@ -68,6 +80,30 @@ public class JHipsterProperties {
         return ribbon;
     }
 
+    public SearchOutbox getSearchOutbox() {
+        return searchOutbox;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public Count getCount() {
+        return count;
+    }
+
+    public ReferenceData getReferenceData() {
+        return referenceData;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
     public static class Async {
 
         private int corePoolSize = 2;
@@ -172,15 +208,27 @@ public class JHipsterProperties {
 
         private final RememberMe rememberMe = new RememberMe();
 
+        private final UserDetailsCache userDetailsCache = new UserDetailsCache();
+
         public RememberMe getRememberMe() {
             return rememberMe;
         }
 
+        public UserDetailsCache getUserDetailsCache() {
+            return userDetailsCache;
+        }
+
         public static class RememberMe {
 
             @NotNull
             private String key;
 
+            private int gracePeriodSeconds = 5;
+
+            private long flushDelay = 5000;
+
+            private int batchSize = 500;
+
             public String getKey() {
                 return key;
             }
@@ -188,6 +236,53 @@ public class JHipsterProperties {
             public void setKey(String key) {
                 this.key = key;
             }
+
+            public int getGracePeriodSeconds() {
+                return gracePeriodSeconds;
+            }
+
+            public void setGracePeriodSeconds(int gracePeriodSeconds) {
+                this.gracePeriodSeconds = gracePeriodSeconds;
+            }
+
+            public long getFlushDelay() {
+                return flushDelay;
+            }
+
+            public void setFlushDelay(long flushDelay) {
+                this.flushDelay = flushDelay;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+        }
+
+        public static class UserDetailsCache {
+
+            private int maxEntries = 10000;
+
+            private int timeToLiveSeconds = 5;
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public int getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
         }
     }
 
@@ -473,4 +568,162 @@ public class JHipsterProperties {
             this.displayOnActiveProfiles = displayOnActiveProfiles;
         }
     }
+
+    public static class SearchOutbox {
+
+        private long delay = 1000;
+
+        private int batchSize = 1000;
+
+        private long initialBackoff = 1000;
+
+        private long maxBackoff = 300000;
+
+        public long getDelay() {
+            return delay;
+        }
+
+        public void setDelay(long delay) {
+            this.delay = delay;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    public static class SearchCache {
+
+        private int maxEntries = 1000;
+
+        private int timeToLiveSeconds = 300;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    public static class Reindex {
+
+        private int threads = 4;
+
+        private int batchSize = 1000;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Count {
+
+        private long approximateThreshold = 1000000;
+
+        private int timeToLiveSeconds = 300;
+
+        private int maxEntries = 1000;
+
+        public long getApproximateThreshold() {
+            return approximateThreshold;
+        }
+
+        public void setApproximateThreshold(long approximateThreshold) {
+            this.approximateThreshold = approximateThreshold;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        /**
+         * @return the maximum number of counts cached for each entity type
+         */
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class ReferenceData {
+
+        private String file;
+
+        /**
+         * @return the file the reference data snapshot is saved to and loaded from on startup, none if empty
+         */
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+    }
+
+    public static class Snapshot {
+
+        private int timeToLiveSeconds = 60;
+
+        /**
+         * @return the time after which the snapshots of the reference data, the listings and the rollup are built
+         * again, as they are only invalidated on the node making a change
+         */
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
 }
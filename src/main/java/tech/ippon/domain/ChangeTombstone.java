@@ -0,0 +1,112 @@
+package tech.ippon.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * The trace of a deleted entity, read by the delta-sync endpoints.
+ * <p>
+ * Tombstones are written in the same transaction as the deletion, with a change sequence taken from the same
+ * sequence as the changes of the entities of their type, so that deletions and updates can be read in commit order.
+ * </p>
+ */
+@Entity
+@Table(name = "change_tombstone")
+public class ChangeTombstone implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "entity_type", length = 100, nullable = false)
+    private String entityType;
+
+    @NotNull
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @NotNull
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @NotNull
+    @Column(name = "deleted_date", nullable = false)
+    private ZonedDateTime deletedDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public ZonedDateTime getDeletedDate() {
+        return deletedDate;
+    }
+
+    public void setDeletedDate(ZonedDateTime deletedDate) {
+        this.deletedDate = deletedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ChangeTombstone changeTombstone = (ChangeTombstone) o;
+        if(changeTombstone.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, changeTombstone.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeTombstone{" +
+            "id=" + id +
+            ", entityType='" + entityType + "'" +
+            ", entityId='" + entityId + "'" +
+            ", changeSeq='" + changeSeq + "'" +
+            ", deletedDate='" + deletedDate + "'" +
+            '}';
+    }
+}
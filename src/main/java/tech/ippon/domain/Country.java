@@ -23,6 +23,10 @@ public class Country implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
     @Column(name = "country_id")
     private Long countryId;
 
@@ -41,6 +45,14 @@ public class Country implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public Long getCountryId() {
         return countryId;
     }
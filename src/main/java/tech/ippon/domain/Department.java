@@ -1,6 +1,8 @@
 package tech.ippon.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import tech.ippon.service.util.ReferenceDataSerializer;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.elasticsearch.annotations.Document;
@@ -27,6 +29,13 @@ public class Department implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @Column(name = "department_id")
     private Long departmentId;
 
@@ -34,8 +43,9 @@ public class Department implements Serializable {
     @Column(name = "department_name", nullable = false)
     private String departmentName;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(unique = true)
+    @JsonSerialize(using = ReferenceDataSerializer.LocationSerializer.class)
     private Location location;
 
     @OneToMany(mappedBy = "department")
@@ -51,6 +61,22 @@ public class Department implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public Long getDepartmentId() {
         return departmentId;
     }
@@ -32,6 +32,13 @@ public class Employee implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @Column(name = "employee_id")
     private Long employeeId;
 
@@ -75,6 +82,22 @@ public class Employee implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public Long getEmployeeId() {
         return employeeId;
     }
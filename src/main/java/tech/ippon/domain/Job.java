@@ -25,6 +25,13 @@ public class Job implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @Column(name = "job_id")
     private Long jobId;
 
@@ -55,6 +62,22 @@ public class Job implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public Long getJobId() {
         return jobId;
     }
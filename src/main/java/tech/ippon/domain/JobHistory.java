@@ -24,6 +24,13 @@ public class JobHistory implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     @Column(name = "start_date")
     private ZonedDateTime startDate;
 
@@ -50,6 +57,22 @@ public class JobHistory implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public ZonedDateTime getStartDate() {
         return startDate;
     }
@@ -1,5 +1,7 @@
 package tech.ippon.domain;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import tech.ippon.service.util.ReferenceDataSerializer;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.elasticsearch.annotations.Document;
@@ -23,6 +25,10 @@ public class Location implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
     @Column(name = "location_id")
     private Long locationId;
 
@@ -38,8 +44,9 @@ public class Location implements Serializable {
     @Column(name = "state_province")
     private String stateProvince;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(unique = true)
+    @JsonSerialize(using = ReferenceDataSerializer.CountrySerializer.class)
     private Country country;
 
     public Long getId() {
@@ -50,6 +57,14 @@ public class Location implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public Long getLocationId() {
         return locationId;
     }
@@ -22,7 +22,7 @@ public class PersistentToken implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private static final int MAX_USER_AGENT_LEN = 255;
+    public static final int MAX_USER_AGENT_LEN = 255;
 
     @Id
     private String series;
@@ -23,6 +23,10 @@ public class Region implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
     @Column(name = "region_id")
     private Long regionId;
 
@@ -37,6 +41,14 @@ public class Region implements Serializable {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public Long getRegionId() {
         return regionId;
     }
@@ -0,0 +1,124 @@
+package tech.ippon.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * An entity whose Elasticsearch document must be refreshed.
+ * <p>
+ * Entries are written in the same transaction as the change of the entity, and are removed by the search indexer
+ * once the document has been indexed, or deleted if the entity does not exist anymore.
+ * </p>
+ */
+@Entity
+@Table(name = "search_outbox")
+public class SearchOutboxEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "entity_type", length = 100, nullable = false)
+    private String entityType;
+
+    @NotNull
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private ZonedDateTime createdDate;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private ZonedDateTime nextAttemptDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(ZonedDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public ZonedDateTime getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(ZonedDateTime nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchOutboxEntry searchOutboxEntry = (SearchOutboxEntry) o;
+        if(searchOutboxEntry.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, searchOutboxEntry.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOutboxEntry{" +
+            "id=" + id +
+            ", entityType='" + entityType + "'" +
+            ", entityId='" + entityId + "'" +
+            ", createdDate='" + createdDate + "'" +
+            ", attempts='" + attempts + "'" +
+            ", nextAttemptDate='" + nextAttemptDate + "'" +
+            '}';
+    }
+}
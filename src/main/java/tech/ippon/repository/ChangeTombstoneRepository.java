@@ -0,0 +1,18 @@
+package tech.ippon.repository;
+
+import tech.ippon.domain.ChangeTombstone;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the ChangeTombstone entity.
+ */
+public interface ChangeTombstoneRepository extends JpaRepository<ChangeTombstone, Long> {
+
+    List<ChangeTombstone> findByEntityTypeAndChangeSeqGreaterThanAndChangeSeqLessThanOrderByChangeSeqAsc(
+        String entityType, Long since, Long until, Pageable pageable);
+
+}
@@ -2,8 +2,11 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Country;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +15,18 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface CountryRepository extends JpaRepository<Country,Long> {
 
+    @Query("select country from Country country left join fetch country.region")
+    List<Country> findAllWithoutCount(Pageable pageable);
+
+    @Query("select country.id, country.version, country.countryId, country.countryName, region.id " +
+        "from Country country left join country.region region order by country.id")
+    List<Object[]> findAllReferenceData();
+
+    @Query("select count(country), max(country.id), sum(country.version) from Country country")
+    List<Object[]> findReferenceDataVersion();
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select country from Country country where country.id = :id")
+    Country findCurrent(@Param("id") Long id);
+
 }
@@ -2,6 +2,8 @@ package tech.ippon.repository;
 
 import tech.ippon.config.audit.AuditEventConverter;
 import tech.ippon.domain.PersistentAuditEvent;
+import tech.ippon.service.CountService;
+import tech.ippon.service.util.TransactionUtil;
 
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
@@ -32,6 +34,9 @@ public class CustomAuditEventRepository implements AuditEventRepository {
     @Inject
     private AuditEventConverter auditEventConverter;
 
+    @Inject
+    private CountService countService;
+
     @Override
     public List<AuditEvent> find(Date after) {
         Iterable<PersistentAuditEvent> persistentAuditEvents =
@@ -73,6 +78,7 @@ public class CustomAuditEventRepository implements AuditEventRepository {
             persistentAuditEvent.setAuditEventDate(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
             persistentAuditEvent.setData(auditEventConverter.convertDataToStrings(event.getData()));
             persistenceAuditEventRepository.save(persistentAuditEvent);
+            TransactionUtil.afterCommit(() -> countService.update(PersistentAuditEvent.class, 1));
         }
     }
 }
@@ -2,8 +2,11 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Department;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +15,11 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface DepartmentRepository extends JpaRepository<Department,Long> {
 
+    @Query("select department from Department department left join fetch department.location location left join fetch location.country country left join fetch country.region")
+    List<Department> findAllWithoutCount(Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select department from Department department where department.id = :id")
+    Department findCurrent(@Param("id") Long id);
+
 }
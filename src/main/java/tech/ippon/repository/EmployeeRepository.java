@@ -1,9 +1,14 @@
 package tech.ippon.repository;
 
 import tech.ippon.domain.Employee;
+import tech.ippon.service.dto.AutocompleteDTO;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -12,4 +17,41 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface EmployeeRepository extends JpaRepository<Employee,Long> {
 
+    @Query("select employee from Employee employee")
+    List<Employee> findAllWithoutCount(Pageable pageable);
+
+    @Query("select employee.id, employee.version from Employee employee")
+    List<Object[]> findAllVersions(Pageable pageable);
+
+    Slice<Employee> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("select employee.id, employee.version from Employee employee where employee.id in :ids")
+    List<Object[]> findVersionsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select employee.id, manager.id from Employee employee left join employee.manager manager")
+    List<Object[]> findAllManagerLinks();
+
+    @Query("select new tech.ippon.service.dto.AutocompleteDTO(employee.id, employee.firstName, employee.lastName, " +
+        "employee.email) from Employee employee")
+    List<AutocompleteDTO> findAllAutocompleteEntries();
+
+    @Query("select department.id, count(employee), count(employee.salary), sum(employee.salary), min(employee.salary), " +
+        "max(employee.salary), sum(employee.salary * employee.commissionPct) " +
+        "from Employee employee join employee.department department group by department.id")
+    List<Object[]> findDepartmentAggregates();
+
+    @Query("select min(employee.salary), max(employee.salary) from Employee employee where employee.department.id = :departmentId")
+    List<Object[]> findSalaryRangeByDepartmentId(@Param("departmentId") Long departmentId);
+
+    @Query("select employee.id, employee.salary from Employee employee where employee.salary is not null " +
+        "order by employee.salary, employee.id")
+    List<Object[]> findAllSalaries();
+
+    @Query("select region.id, region.regionName, country.id, country.countryName, location.id, location.city, " +
+        "count(distinct department.id), count(employee), sum(employee.salary) " +
+        "from Employee employee left join employee.department department left join department.location location " +
+        "left join location.country country left join country.region region " +
+        "group by region.id, region.regionName, country.id, country.countryName, location.id, location.city")
+    List<Object[]> findGeographicAggregates();
+
 }
@@ -2,8 +2,12 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.JobHistory;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +16,17 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface JobHistoryRepository extends JpaRepository<JobHistory,Long> {
 
+    Slice<JobHistory> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("select jobHistory from JobHistory jobHistory")
+    List<JobHistory> findAllWithoutCount(Pageable pageable);
+
+    @Query("select jobHistory.id, employee.id, department.id, jobHistory.startDate, jobHistory.endDate " +
+        "from JobHistory jobHistory left join jobHistory.employee employee left join jobHistory.department department")
+    List<Object[]> findAllPeriods();
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select jobHistory from JobHistory jobHistory where jobHistory.id = :id")
+    JobHistory findCurrent(@Param("id") Long id);
+
 }
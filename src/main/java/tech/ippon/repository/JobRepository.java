@@ -2,9 +2,13 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Job;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,10 +17,26 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface JobRepository extends JpaRepository<Job,Long> {
 
-    @Query("select distinct job from Job job left join fetch job.tasks")
-    List<Job> findAllWithEagerRelationships();
+    @Query("select job.id from Job job")
+    List<Long> findAllIds(Pageable pageable);
 
-    @Query("select job from Job job left join fetch job.tasks where job.id =:id")
-    Job findOneWithEagerRelationships(@Param("id") Long id);
+    @Query("select job.id, job.version from Job job")
+    List<Object[]> findAllVersions(Pageable pageable);
+
+    @Query("select distinct job from Job job left join fetch job.tasks where job.id in :ids")
+    List<Job> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
+
+    Slice<Job> findAllByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("select job.id, task.id from Job job join job.tasks task")
+    List<Object[]> findAllTaskLinks();
+
+    @Query("select job.id, job.minSalary, job.maxSalary from Job job " +
+        "where job.minSalary is not null or job.maxSalary is not null")
+    List<Object[]> findAllSalaryBands();
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select job from Job job where job.id = :id")
+    Job findCurrent(@Param("id") Long id);
 
 }
@@ -2,8 +2,11 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Location;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +15,19 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface LocationRepository extends JpaRepository<Location,Long> {
 
+    @Query("select location from Location location left join fetch location.country country left join fetch country.region")
+    List<Location> findAllWithoutCount(Pageable pageable);
+
+    @Query("select location.id, location.version, location.locationId, location.streetAddress, location.postalCode, " +
+        "location.city, location.stateProvince, country.id from Location location left join location.country country " +
+        "order by location.id")
+    List<Object[]> findAllReferenceData();
+
+    @Query("select count(location), max(location.id), sum(location.version) from Location location")
+    List<Object[]> findReferenceDataVersion();
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select location from Location location where location.id = :id")
+    Location findCurrent(@Param("id") Long id);
+
 }
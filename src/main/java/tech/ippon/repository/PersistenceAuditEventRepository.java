@@ -4,8 +4,9 @@ import tech.ippon.domain.PersistentAuditEvent;
 
 import java.time.LocalDateTime;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
@@ -22,5 +23,12 @@ public interface PersistenceAuditEventRepository extends JpaRepository<Persisten
 
     List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfterAndAuditEventType(String principle, LocalDateTime after, String type);
 
-    Page<PersistentAuditEvent> findAllByAuditEventDateBetween(LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable);
+    List<PersistentAuditEvent> findAllByAuditEventDateBetween(LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable);
+
+    long countByAuditEventDateBetween(LocalDateTime fromDate, LocalDateTime toDate);
+
+    @Query("select event from PersistentAuditEvent event")
+    List<PersistentAuditEvent> findAllWithoutCount(Pageable pageable);
+
+    Slice<PersistentAuditEvent> findAllByIdGreaterThan(Long id, Pageable pageable);
 }
@@ -4,6 +4,9 @@ import tech.ippon.domain.PersistentToken;
 import tech.ippon.domain.User;
 import java.time.LocalDate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -16,4 +19,10 @@ public interface PersistentTokenRepository extends JpaRepository<PersistentToken
 
     List<PersistentToken> findByTokenDateBefore(LocalDate localDate);
 
+    @Modifying
+    @Query("update PersistentToken token set token.tokenDate = :tokenDate, token.ipAddress = :ipAddress, " +
+        "token.userAgent = :userAgent where token.series = :series")
+    int updateMetadata(@Param("series") String series, @Param("tokenDate") LocalDate tokenDate,
+        @Param("ipAddress") String ipAddress, @Param("userAgent") String userAgent);
+
 }
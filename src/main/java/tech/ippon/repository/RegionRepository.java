@@ -2,8 +2,11 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Region;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +15,17 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface RegionRepository extends JpaRepository<Region,Long> {
 
+    @Query("select region from Region region")
+    List<Region> findAllWithoutCount(Pageable pageable);
+
+    @Query("select region.id, region.version, region.regionId, region.regionName from Region region order by region.id")
+    List<Object[]> findAllReferenceData();
+
+    @Query("select count(region), max(region.id), sum(region.version) from Region region")
+    List<Object[]> findReferenceDataVersion();
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select region from Region region where region.id = :id")
+    Region findCurrent(@Param("id") Long id);
+
 }
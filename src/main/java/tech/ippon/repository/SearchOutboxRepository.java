@@ -0,0 +1,27 @@
+package tech.ippon.repository;
+
+import tech.ippon.domain.SearchOutboxEntry;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the SearchOutboxEntry entity.
+ */
+public interface SearchOutboxRepository extends JpaRepository<SearchOutboxEntry, Long> {
+
+    List<SearchOutboxEntry> findByNextAttemptDateLessThanEqualOrderByIdAsc(ZonedDateTime date, Pageable pageable);
+
+    @Query("select min(entry.createdDate) from SearchOutboxEntry entry")
+    ZonedDateTime findOldestCreatedDate();
+
+    @Modifying
+    @Query("delete from SearchOutboxEntry entry where entry.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+}
@@ -2,8 +2,11 @@ package tech.ippon.repository;
 
 import tech.ippon.domain.Task;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -12,4 +15,11 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface TaskRepository extends JpaRepository<Task,Long> {
 
+    @Query("select task from Task task")
+    List<Task> findAllWithoutCount(Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "javax.persistence.cache.retrieveMode", value = "BYPASS"))
+    @Query("select task from Task task where task.id = :id")
+    Task findCurrent(@Param("id") Long id);
+
 }
@@ -1,13 +1,15 @@
 package tech.ippon.repository;
 
 import tech.ippon.domain.User;
+import tech.ippon.service.dto.AutocompleteDTO;
 
 import java.time.ZonedDateTime;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,11 +28,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findOneByLogin(String login);
 
+    @Query("select distinct user from User user left join fetch user.authorities where user.login = :login")
+    Optional<User> findOneWithAuthoritiesByLogin(@Param("login") String login);
+
     Optional<User> findOneById(Long userId);
 
-    @Query(value = "select distinct user from User user left join fetch user.authorities",
-        countQuery = "select count(user) from User user")
-    Page<User> findAllWithAuthorities(Pageable pageable);
+    @Query("select user.id from User user")
+    List<Long> findAllIds(Pageable pageable);
+
+    @Query("select distinct user from User user left join fetch user.authorities where user.id in :ids")
+    List<User> findAllWithAuthoritiesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new tech.ippon.service.dto.AutocompleteDTO(user.id, user.login, user.firstName, user.lastName, " +
+        "user.email) from User user")
+    List<AutocompleteDTO> findAllAutocompleteEntries();
 
     @Override
     void delete(User t);
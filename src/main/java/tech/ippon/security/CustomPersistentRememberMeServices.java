@@ -4,6 +4,8 @@ import tech.ippon.domain.PersistentToken;
 import tech.ippon.repository.PersistentTokenRepository;
 import tech.ippon.repository.UserRepository;
 import tech.ippon.config.JHipsterProperties;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
@@ -15,6 +17,7 @@ import org.springframework.security.web.authentication.rememberme.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -44,6 +47,12 @@ import java.util.Arrays;
  * <p>
  * The main algorithm comes from Spring Security's PersistentTokenBasedRememberMeServices, but this class
  * couldn't be cleanly extended.
+ * <p>
+ * An autologin rotates the token value, and saves it with the new date, IP address and user agent before the
+ * cookie is sent. The requests presenting the replaced value within a short grace period, as the concurrent
+ * requests of a same browser do, are answered from the {@link PersistentTokenCache} instead: they neither rotate
+ * the token nor read it again, and their metadata is left to the {@link PersistentTokenWriter}, which writes it in
+ * the background.
  */
 @Service
 public class CustomPersistentRememberMeServices extends
@@ -68,6 +77,17 @@ public class CustomPersistentRememberMeServices extends
     @Inject
     private UserRepository userRepository;
 
+    @Inject
+    private PersistentTokenCache persistentTokenCache;
+
+    @Inject
+    private PersistentTokenWriter persistentTokenWriter;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Timer autologinTimer;
+
     @Inject
     public CustomPersistentRememberMeServices(JHipsterProperties jHipsterProperties, org.springframework.security.core.userdetails
         .UserDetailsService userDetailsService) {
@@ -76,27 +96,70 @@ public class CustomPersistentRememberMeServices extends
         random = new SecureRandom();
     }
 
+    @PostConstruct
+    public void init() {
+        autologinTimer = metricRegistry.timer("remember-me.autologin");
+    }
+
     @Override
     protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request,
         HttpServletResponse response) {
 
+        Timer.Context autologin = autologinTimer.time();
+        try {
+            String login = refreshPersistentToken(cookieTokens, request, response);
+            return getUserDetailsService().loadUserByUsername(login);
+        } finally {
+            autologin.stop();
+        }
+    }
+
+    /**
+     * Validate and rotate the token, or take its rotation from the cache, and set the cookie.
+     *
+     * @return the login of the user of the token
+     */
+    private String refreshPersistentToken(String[] cookieTokens, HttpServletRequest request,
+        HttpServletResponse response) {
+
+        checkCookieTokens(cookieTokens);
+        String series = cookieTokens[0];
+        PersistentTokenWriter.Metadata metadata = new PersistentTokenWriter.Metadata(LocalDate.now(),
+            request.getRemoteAddr(), request.getHeader("User-Agent"));
+
+        PersistentTokenCache.Rotation rotation = persistentTokenCache.get(series, cookieTokens[1]);
+        if (rotation != null) {
+            // The token was just rotated by a concurrent request: send the same value again.
+            log.debug("Reusing persistent login token for user '{}', series '{}'", rotation.getLogin(), series);
+            persistentTokenWriter.markSaved();
+            if (!rotation.hasMetadata(metadata)) {
+                persistentTokenWriter.submit(series, metadata);
+            }
+            setCookie(new String[]{series, rotation.getValue()}, TOKEN_VALIDITY_SECONDS, request, response);
+            return rotation.getLogin();
+        }
+
         PersistentToken token = getPersistentToken(cookieTokens);
         String login = token.getUser().getLogin();
+        String previousValue = token.getTokenValue();
 
         // Token also matches, so login is valid. Update the token value, keeping the *same* series number.
         log.debug("Refreshing persistent login token for user '{}', series '{}'", login, token.getSeries());
-        token.setTokenDate(LocalDate.now());
+        token.setTokenDate(metadata.getTokenDate());
         token.setTokenValue(generateTokenData());
-        token.setIpAddress(request.getRemoteAddr());
-        token.setUserAgent(request.getHeader("User-Agent"));
+        token.setIpAddress(metadata.getIpAddress());
+        token.setUserAgent(metadata.getUserAgent());
         try {
             persistentTokenRepository.saveAndFlush(token);
+            // the metadata is written along with the value, and replaces any older one waiting to be written
+            persistentTokenWriter.markWritten(series);
+            persistentTokenCache.put(previousValue, token);
             addCookie(token, request, response);
         } catch (DataAccessException e) {
             log.error("Failed to update token: ", e);
             throw new RememberMeAuthenticationException("Autologin failed due to data access problem", e);
         }
-        return getUserDetailsService().loadUserByUsername(login);
+        return login;
     }
 
     @Override
@@ -138,6 +201,7 @@ public class CustomPersistentRememberMeServices extends
             try {
                 String[] cookieTokens = decodeCookie(rememberMeCookie);
                 PersistentToken token = getPersistentToken(cookieTokens);
+                persistentTokenCache.remove(token.getSeries());
                 persistentTokenRepository.delete(token);
             } catch (InvalidCookieException ice) {
                 log.info("Invalid cookie, no persistent token could be deleted");
@@ -152,10 +216,7 @@ public class CustomPersistentRememberMeServices extends
      * Validate the token and return it.
      */
     private PersistentToken getPersistentToken(String[] cookieTokens) {
-        if (cookieTokens.length != 2) {
-            throw new InvalidCookieException("Cookie token did not contain " + 2 +
-                " tokens, but contained '" + Arrays.asList(cookieTokens) + "'");
-        }
+        checkCookieTokens(cookieTokens);
         String presentedSeries = cookieTokens[0];
         String presentedToken = cookieTokens[1];
         PersistentToken token = persistentTokenRepository.findOne(presentedSeries);
@@ -169,18 +230,27 @@ public class CustomPersistentRememberMeServices extends
         log.info("presentedToken={} / tokenValue={}", presentedToken, token.getTokenValue());
         if (!presentedToken.equals(token.getTokenValue())) {
             // Token doesn't match series value. Delete this session and throw an exception.
+            persistentTokenCache.remove(presentedSeries);
             persistentTokenRepository.delete(token);
             throw new CookieTheftException("Invalid remember-me token (Series/token) mismatch. Implies previous " +
                 "cookie theft attack.");
         }
 
         if (token.getTokenDate().plusDays(TOKEN_VALIDITY_DAYS).isBefore(LocalDate.now())) {
+            persistentTokenCache.remove(presentedSeries);
             persistentTokenRepository.delete(token);
             throw new RememberMeAuthenticationException("Remember-me login has expired");
         }
         return token;
     }
 
+    private void checkCookieTokens(String[] cookieTokens) {
+        if (cookieTokens.length != 2) {
+            throw new InvalidCookieException("Cookie token did not contain " + 2 +
+                " tokens, but contained '" + Arrays.asList(cookieTokens) + "'");
+        }
+    }
+
     private String generateSeriesData() {
         byte[] newSeries = new byte[DEFAULT_SERIES_LENGTH];
         random.nextBytes(newSeries);
@@ -0,0 +1,124 @@
+package tech.ippon.security;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.PersistentToken;
+
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of the remember-me tokens rotated by an autologin.
+ * <p>
+ * A browser coming back without a session often sends several requests at once, all with the same remember-me
+ * cookie: the first one rotates the token value, and the others then present the value it replaced. For a
+ * configured grace period after a rotation, such a request is answered from this cache with the rotated value,
+ * without reading or writing the token again, instead of being taken for a stolen cookie. Once the grace period is
+ * over, the replaced value is rejected as before.
+ * </p>
+ * <p>
+ * {@link #remove(String)} must be called when a token is deleted, so that its series cannot be used any more.
+ * </p>
+ */
+@Component
+public class PersistentTokenCache {
+
+    private final Map<String, Rotation> rotations = new ConcurrentHashMap<>();
+
+    private volatile long nextPurge;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    /**
+     * Get the rotation of a series, if the presented value is the one it replaced, within the grace period.
+     *
+     * @param series the series of the cookie
+     * @param presentedValue the token value of the cookie
+     * @return the rotation, or null if the value must be checked against the database
+     */
+    public Rotation get(String series, String presentedValue) {
+        Rotation rotation = rotations.get(series);
+        if (rotation == null || rotation.expiry <= System.currentTimeMillis() ||
+            !rotation.previousValue.equals(presentedValue)) {
+            return null;
+        }
+        return rotation;
+    }
+
+    /**
+     * Record that a token was rotated and saved.
+     *
+     * @param previousValue the token value it replaced
+     * @param token the token, holding its new value
+     */
+    public void put(String previousValue, PersistentToken token) {
+        long now = System.currentTimeMillis();
+        long gracePeriod = jHipsterProperties.getSecurity().getRememberMe().getGracePeriodSeconds() * 1000L;
+        if (now >= nextPurge) {
+            nextPurge = now + gracePeriod;
+            rotations.values().removeIf(rotation -> rotation.expiry <= now);
+        }
+        rotations.put(token.getSeries(), new Rotation(previousValue, token, now + gracePeriod));
+    }
+
+    /**
+     * Forget the rotation of a series, because its token was deleted.
+     *
+     * @param series the series
+     */
+    public void remove(String series) {
+        rotations.remove(series);
+    }
+
+    /**
+     * The rotation of a token: its new value, with the metadata saved along with it.
+     */
+    public static final class Rotation {
+
+        private final String previousValue;
+
+        private final String value;
+
+        private final String login;
+
+        private final LocalDate tokenDate;
+
+        private final String ipAddress;
+
+        private final String userAgent;
+
+        private final long expiry;
+
+        private Rotation(String previousValue, PersistentToken token, long expiry) {
+            this.previousValue = previousValue;
+            this.value = token.getTokenValue();
+            this.login = token.getUser().getLogin();
+            this.tokenDate = token.getTokenDate();
+            this.ipAddress = token.getIpAddress();
+            this.userAgent = token.getUserAgent();
+            this.expiry = expiry;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getLogin() {
+            return login;
+        }
+
+        /**
+         * @param metadata the metadata of an autologin
+         * @return whether the token was saved with the same metadata
+         */
+        public boolean hasMetadata(PersistentTokenWriter.Metadata metadata) {
+            return Objects.equals(tokenDate, metadata.getTokenDate()) &&
+                Objects.equals(ipAddress, metadata.getIpAddress()) && Objects.equals(userAgent, metadata.getUserAgent());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package tech.ippon.security;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.PersistentToken;
+import tech.ippon.repository.PersistentTokenRepository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Background writer of the metadata of the remember-me tokens: their date, IP address and user agent.
+ * <p>
+ * The metadata of an autologin that did not rotate its token is not needed to authenticate, so it is not written
+ * on the request: it is kept by series, the last one submitted replacing the previous ones, and written in batches,
+ * one transaction per batch, after a configured delay. A token deleted in the meantime is not found, and stays
+ * deleted. Metadata that could not be written is dropped, as it is only used to display the sessions of a user.
+ * </p>
+ * <p>
+ * Only the metadata columns are updated, never the token value: an autologin rotating the token while its metadata
+ * is being written keeps the value it saved.
+ * </p>
+ */
+@Component
+public class PersistentTokenWriter {
+
+    private final Logger log = LoggerFactory.getLogger(PersistentTokenWriter.class);
+
+    private final Map<String, Metadata> pending = new ConcurrentHashMap<>();
+
+    @Inject
+    private PersistentTokenRepository persistentTokenRepository;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter writeMeter;
+
+    private Meter savedWriteMeter;
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register("remember-me.writes.pending", (Gauge<Integer>) pending::size);
+        writeMeter = metricRegistry.meter("remember-me.writes");
+        savedWriteMeter = metricRegistry.meter("remember-me.writes.saved");
+    }
+
+    /**
+     * Submit the metadata of a token, to be written later.
+     *
+     * @param series the series of the token
+     * @param metadata the metadata to write
+     */
+    public void submit(String series, Metadata metadata) {
+        if (pending.put(series, metadata) != null) {
+            // the metadata it replaces will never be written
+            savedWriteMeter.mark();
+        }
+    }
+
+    /**
+     * Record that a token was written on the request, with newer metadata: the metadata submitted for it is dropped.
+     *
+     * @param series the series of the token
+     */
+    public void markWritten(String series) {
+        writeMeter.mark();
+        if (pending.remove(series) != null) {
+            savedWriteMeter.mark();
+        }
+    }
+
+    /**
+     * Record that an autologin did not write its token, as it was just rotated by a concurrent request.
+     */
+    public void markSaved() {
+        savedWriteMeter.mark();
+    }
+
+    /**
+     * Write the submitted metadata, one batch per transaction, until none is pending.
+     * <p>
+     * This is scheduled to get fired every 5 seconds by default, after the end of the previous run.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${jhipster.security.rememberMe.flushDelay:5000}")
+    public void flush() {
+        int batchSize = jHipsterProperties.getSecurity().getRememberMe().getBatchSize();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            while (!pending.isEmpty()) {
+                Map<String, Metadata> batch = new HashMap<>();
+                Iterator<String> series = pending.keySet().iterator();
+                while (series.hasNext() && batch.size() < batchSize) {
+                    String next = series.next();
+                    Metadata metadata = pending.remove(next);
+                    if (metadata != null) {
+                        batch.put(next, metadata);
+                    }
+                }
+                int written = transactionTemplate.execute(status -> write(batch));
+                writeMeter.mark(written);
+                log.debug("Wrote the metadata of {} remember-me tokens", written);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not write the metadata of the remember-me tokens: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    private int write(Map<String, Metadata> batch) {
+        int written = 0;
+        for (Map.Entry<String, Metadata> entry : batch.entrySet()) {
+            Metadata metadata = entry.getValue();
+            written += persistentTokenRepository.updateMetadata(entry.getKey(), metadata.getTokenDate(),
+                metadata.getIpAddress(), metadata.getUserAgent());
+        }
+        return written;
+    }
+
+    /**
+     * The metadata of a token: its date, IP address and user agent.
+     */
+    public static final class Metadata {
+
+        private final LocalDate tokenDate;
+
+        private final String ipAddress;
+
+        private final String userAgent;
+
+        public Metadata(LocalDate tokenDate, String ipAddress, String userAgent) {
+            this.tokenDate = tokenDate;
+            this.ipAddress = ipAddress;
+            // truncated as the token does
+            if (userAgent != null && userAgent.length() >= PersistentToken.MAX_USER_AGENT_LEN) {
+                this.userAgent = userAgent.substring(0, PersistentToken.MAX_USER_AGENT_LEN - 1);
+            } else {
+                this.userAgent = userAgent;
+            }
+        }
+
+        public LocalDate getTokenDate() {
+            return tokenDate;
+        }
+
+        public String getIpAddress() {
+            return ipAddress;
+        }
+
+        public String getUserAgent() {
+            return userAgent;
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package tech.ippon.security;
 
+import tech.ippon.config.JHipsterProperties;
 import tech.ippon.domain.User;
 import tech.ippon.repository.UserRepository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
@@ -11,38 +16,145 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Authenticate a user from the database.
+ * <p>
+ * The user is looked up by its login with a query, along with its authorities, so that its password and activation
+ * are always read from the database and never from the second-level cache, which every node keeps for an hour
+ * whatever the changes made on the others. What authentication needs of a user is then kept in a cache of immutable
+ * snapshots, by login: the cache keeps at most a configured number of users, the least recently used one being
+ * evicted first, and a snapshot expires after a configured time. {@link #invalidate(String)} must be called once
+ * a user is changed or deleted, which the user service does after commit; a lookup started before it does not cache
+ * its result. Unknown logins are not cached.
+ * </p>
+ * <p>
+ * The cache is local to each node, and only the node changing a user invalidates it: the other nodes keep
+ * authenticating with the previous password, or a deactivated or deleted user, until the snapshot expires. The time
+ * to live is therefore kept to a few seconds, enough to absorb the bursts of authentications of a same user.
+ * </p>
+ * <p>
+ * Each lookup returns new user details, built from the snapshot, as the authentication erases their password once
+ * it succeeded.
+ * </p>
  */
 @Component("userDetailsService")
 public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService {
 
     private final Logger log = LoggerFactory.getLogger(UserDetailsService.class);
 
+    /**
+     * The authorities of all the snapshots, shared between them, as there are only a few.
+     */
+    private static final Map<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
     @Inject
     private UserRepository userRepository;
 
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > jHipsterProperties.getSecurity().getUserDetailsCache().getMaxEntries();
+        }
+    };
+
+    private long generation;
+
+    private Meter hitMeter;
+
+    private Meter missMeter;
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register("user.details.cache.size", (Gauge<Integer>) () -> {
+            synchronized (snapshots) {
+                return snapshots.size();
+            }
+        });
+        hitMeter = metricRegistry.meter("user.details.cache.hits");
+        missMeter = metricRegistry.meter("user.details.cache.misses");
+    }
+
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(final String login) {
         log.debug("Authenticating {}", login);
         String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
-        Optional<User> userFromDatabase = userRepository.findOneByLogin(lowercaseLogin);
-        return userFromDatabase.map(user -> {
-            if (!user.getActivated()) {
-                throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
+        long now = System.currentTimeMillis();
+        long expectedGeneration;
+        Snapshot snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(lowercaseLogin);
+            expectedGeneration = generation;
+        }
+        if (snapshot != null && snapshot.expiry > now) {
+            hitMeter.mark();
+        } else {
+            missMeter.mark();
+            User user = userRepository.findOneWithAuthoritiesByLogin(lowercaseLogin)
+                .orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the " +
+                    "database"));
+            snapshot = new Snapshot(user,
+                now + jHipsterProperties.getSecurity().getUserDetailsCache().getTimeToLiveSeconds() * 1000L);
+            synchronized (snapshots) {
+                // a user changed during the lookup may have made the snapshot stale
+                if (generation == expectedGeneration) {
+                    snapshots.put(lowercaseLogin, snapshot);
+                }
             }
-            List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
-                    .map(authority -> new SimpleGrantedAuthority(authority.getName()))
-                .collect(Collectors.toList());
-            return new org.springframework.security.core.userdetails.User(lowercaseLogin,
-                user.getPassword(),
-                grantedAuthorities);
-        }).orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the " +
-        "database"));
+        }
+        if (!snapshot.activated) {
+            throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
+        }
+        return new org.springframework.security.core.userdetails.User(lowercaseLogin, snapshot.password,
+            snapshot.authorities);
+    }
+
+    /**
+     * Drop the cached snapshot of a user, because the user was changed or deleted.
+     *
+     * @param login the login of the user
+     */
+    public void invalidate(String login) {
+        log.debug("Invalidating the cached user details of {}", login);
+        synchronized (snapshots) {
+            generation++;
+            snapshots.remove(login.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * What authentication needs of a user.
+     */
+    private static final class Snapshot {
+
+        private final String password;
+
+        private final boolean activated;
+
+        private final List<GrantedAuthority> authorities;
+
+        private final long expiry;
+
+        private Snapshot(User user, long expiry) {
+            this.password = user.getPassword();
+            this.activated = user.getActivated();
+            GrantedAuthority[] authorities = user.getAuthorities().stream()
+                .map(authority -> AUTHORITIES.computeIfAbsent(authority.getName(), SimpleGrantedAuthority::new))
+                .toArray(GrantedAuthority[]::new);
+            this.authorities = Collections.unmodifiableList(Arrays.asList(authorities));
+            this.expiry = expiry;
+        }
     }
 }
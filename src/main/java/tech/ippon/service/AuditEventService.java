@@ -1,11 +1,15 @@
 package tech.ippon.service;
 
 import tech.ippon.config.audit.AuditEventConverter;
+import tech.ippon.domain.PersistentAuditEvent;
 import tech.ippon.repository.PersistenceAuditEventRepository;
 import java.time.LocalDateTime;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,25 +30,50 @@ public class AuditEventService {
 
     private AuditEventConverter auditEventConverter;
 
+    private CountService countService;
+
     @Inject
     public AuditEventService(
         PersistenceAuditEventRepository persistenceAuditEventRepository,
-        AuditEventConverter auditEventConverter) {
+        AuditEventConverter auditEventConverter,
+        CountService countService) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.countService = countService;
     }
 
     public Page<AuditEvent> findAll(Pageable pageable) {
-        return persistenceAuditEventRepository.findAll(pageable)
+        return countService.page(PersistentAuditEvent.class,
+            persistenceAuditEventRepository.findAllWithoutCount(pageable), pageable,
+            persistenceAuditEventRepository::count)
             .map(persistentAuditEvents -> auditEventConverter.convertToAuditEvent(persistentAuditEvents));
     }
 
     public Page<AuditEvent> findByDates(LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
-        return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
+        return countService.page(PersistentAuditEvent.class, "auditEventDate:" + fromDate + ".." + toDate,
+            persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable), pageable,
+            () -> persistenceAuditEventRepository.countByAuditEventDateBetween(fromDate, toDate))
             .map(persistentAuditEvents -> auditEventConverter.convertToAuditEvent(persistentAuditEvents));
     }
 
+    /**
+     * Get the persistent audit events whose id is greater than the given one, ordered by id.
+     * <p>
+     * The events are not converted, so that the caller can build the next cursor from their id.
+     *
+     * @param after the id of the last event of the previous slice
+     * @param size the maximum number of events to return
+     * @return the slice of persistent audit events
+     */
+    public Slice<PersistentAuditEvent> findAllAfter(Long after, int size) {
+        return persistenceAuditEventRepository.findAllByIdGreaterThan(after, new PageRequest(0, size, Sort.Direction.ASC, "id"));
+    }
+
+    public AuditEvent convertToAuditEvent(PersistentAuditEvent persistentAuditEvent) {
+        return auditEventConverter.convertToAuditEvent(persistentAuditEvent);
+    }
+
     public Optional<AuditEvent> find(Long id) {
         return Optional.ofNullable(persistenceAuditEventRepository.findOne(id)).map
             (auditEventConverter::convertToAuditEvent);
@@ -0,0 +1,233 @@
+package tech.ippon.service;
+
+import tech.ippon.domain.ChangeTombstone;
+import tech.ippon.repository.ChangeTombstoneRepository;
+import tech.ippon.service.dto.ChangeDTO;
+import tech.ippon.service.dto.ChangeSetDTO;
+import tech.ippon.service.util.TransactionUtil;
+
+import org.hibernate.SQLQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service recording the changes of the entities, for the delta-sync endpoints.
+ * <p>
+ * Each tracked entity type has its own change sequence. Write paths stamp the entities they save with
+ * {@link #next(Class)}, and record the entities they delete with {@link #tombstone(Class, Long)}. Values are taken
+ * in a transaction of their own, so the row of the sequence is only locked for the time of the increment, and the
+ * writes of a type are not serialized.
+ * </p>
+ * <p>
+ * Values can therefore be committed out of order. Each range of values taken is leased: the lease is committed with
+ * the range, and deleted by the transaction that took it, so it goes away when that transaction ends. Readers only
+ * return the changes below the lowest lease, so they can never see a change while a change with a lower value is
+ * still to be committed. A lease left by a transaction that could not release it expires after
+ * {@link #LEASE_TIMEOUT_SECONDS}, and is then deleted by a scheduled job. Both the change_seq column of the entities
+ * and the tombstones are indexed, so reading the changes since a watermark costs work in proportion to the number of
+ * changes.
+ * </p>
+ */
+@Service
+@Transactional
+public class ChangeTrackingService {
+
+    /**
+     * The maximum number of changes returned at once.
+     */
+    public static final int MAX_CHANGES = 10000;
+
+    /**
+     * The time after which the lease of a range of values no longer holds the readers back, longer than any write
+     * transaction.
+     */
+    public static final int LEASE_TIMEOUT_SECONDS = 300;
+
+    private final Logger log = LoggerFactory.getLogger(ChangeTrackingService.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private ChangeTombstoneRepository changeTombstoneRepository;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Take the next value of the change sequence of an entity type.
+     *
+     * @param entityClass the class of the entity
+     * @return the change sequence to stamp the entity with
+     */
+    public long next(Class<?> entityClass) {
+        return allocate(entityClass, 1);
+    }
+
+    /**
+     * Take a range of values of the change sequence of an entity type.
+     *
+     * @param entityClass the class of the entities
+     * @param count the number of values to take
+     * @return the first value of the range
+     */
+    public long allocate(Class<?> entityClass, int count) {
+        String entityType = entityManager.getMetamodel().entity(entityClass).getName();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        long first = transactionTemplate.execute(status -> lease(entityType, count));
+        // the lease is released when the changes stamped with the range are committed, and not before
+        release(entityType, first);
+        TransactionUtil.afterRollback(() -> {
+            try {
+                transactionTemplate.execute(status -> release(entityType, first));
+            } catch (RuntimeException e) {
+                log.warn("Could not release the lease of {} {}, it will expire: {}", entityType, first, e.toString());
+            }
+        });
+        return first;
+    }
+
+    private long lease(String entityType, int count) {
+        // the query space keeps Hibernate from evicting the whole second-level cache on this native update
+        int updated = entityManager
+            .createNativeQuery("update change_sequence set current_value = current_value + :count where name = :name")
+            .setParameter("count", count)
+            .setParameter("name", entityType)
+            .unwrap(SQLQuery.class)
+            .addSynchronizedQuerySpace("change_sequence")
+            .executeUpdate();
+        if (updated == 0) {
+            throw new IllegalStateException("No change sequence is defined for " + entityType);
+        }
+        Number last = (Number) entityManager
+            .createNativeQuery("select current_value from change_sequence where name = :name")
+            .setParameter("name", entityType)
+            .getSingleResult();
+        long first = last.longValue() - count + 1;
+        entityManager
+            .createNativeQuery("insert into change_lease (entity_type, change_seq, allocated_date) values (:name, :seq, :date)")
+            .setParameter("name", entityType)
+            .setParameter("seq", first)
+            .setParameter("date", new Timestamp(System.currentTimeMillis()))
+            .unwrap(SQLQuery.class)
+            .addSynchronizedQuerySpace("change_lease")
+            .executeUpdate();
+        return first;
+    }
+
+    private int release(String entityType, long seq) {
+        return entityManager.createNativeQuery("delete from change_lease where entity_type = :name and change_seq = :seq")
+            .setParameter("name", entityType)
+            .setParameter("seq", seq)
+            .unwrap(SQLQuery.class)
+            .addSynchronizedQuerySpace("change_lease")
+            .executeUpdate();
+    }
+
+    /**
+     * Delete the leases that expired, left by the transactions that could not release them.
+     * <p>
+     * This is scheduled to get fired every 5 minutes, after the end of the previous run. It runs in a transaction of
+     * its own, so it never holds the row of a change sequence while it deletes the leases.
+     * </p>
+     */
+    @Scheduled(fixedDelay = LEASE_TIMEOUT_SECONDS * 1000L)
+    public void removeExpiredLeases() {
+        int removed = entityManager.createNativeQuery("delete from change_lease where allocated_date < :expiry")
+            .setParameter("expiry", new Timestamp(System.currentTimeMillis() - LEASE_TIMEOUT_SECONDS * 1000L))
+            .unwrap(SQLQuery.class)
+            .addSynchronizedQuerySpace("change_lease")
+            .executeUpdate();
+        log.debug("Deleted {} expired change leases", removed);
+    }
+
+    /**
+     * Record that an entity was deleted.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     */
+    public void tombstone(Class<?> entityClass, Long id) {
+        log.debug("Request to record the deletion of {} {}", entityClass.getSimpleName(), id);
+        ChangeTombstone tombstone = new ChangeTombstone();
+        tombstone.setEntityType(entityManager.getMetamodel().entity(entityClass).getName());
+        tombstone.setEntityId(id);
+        tombstone.setChangeSeq(next(entityClass));
+        tombstone.setDeletedDate(ZonedDateTime.now());
+        changeTombstoneRepository.save(tombstone);
+    }
+
+    /**
+     * Get the changes of the entities of a type since a watermark: the current state of the created and updated
+     * entities, and the ids of the deleted ones, in commit order.
+     * <p>
+     * Only the changes below the lowest lease of the type are returned: the changes that would follow a change still
+     * to be committed are returned once it is.
+     * </p>
+     *
+     * @param entityClass the class of the entities
+     * @param since the watermark, 0 to get all the entities
+     * @param size the maximum number of changes to return
+     * @param <T> the type of the entities
+     * @return the changes, with the watermark to send to get the next ones
+     */
+    @Transactional(readOnly = true)
+    public <T> ChangeSetDTO<T> findChanges(Class<T> entityClass, long since, int size) {
+        String entityType = entityManager.getMetamodel().entity(entityClass).getName();
+        log.debug("Request to get the changes of {} since {}", entityType, since);
+        Number lowestLease = (Number) entityManager
+            .createNativeQuery("select min(change_seq) from change_lease where entity_type = :name and allocated_date >= :expiry")
+            .setParameter("name", entityType)
+            .setParameter("expiry", new Timestamp(System.currentTimeMillis() - LEASE_TIMEOUT_SECONDS * 1000L))
+            .getSingleResult();
+        long until = lowestLease == null ? Long.MAX_VALUE : lowestLease.longValue();
+        // one more than requested on each side, to know whether more changes are available
+        List<Object[]> upserts = entityManager
+            .createQuery("select entity.changeSeq, entity from " + entityType + " entity " +
+                "where entity.changeSeq > :since and entity.changeSeq < :until order by entity.changeSeq asc",
+                Object[].class)
+            .setParameter("since", since)
+            .setParameter("until", until)
+            .setMaxResults(size + 1)
+            .getResultList();
+        List<ChangeTombstone> tombstones = changeTombstoneRepository
+            .findByEntityTypeAndChangeSeqGreaterThanAndChangeSeqLessThanOrderByChangeSeqAsc(entityType, since, until,
+                new PageRequest(0, size + 1));
+
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        List<ChangeDTO<T>> changes = new ArrayList<>(Math.min(size, upserts.size() + tombstones.size()));
+        int upsert = 0;
+        int tombstone = 0;
+        while (changes.size() < size && (upsert < upserts.size() || tombstone < tombstones.size())) {
+            if (tombstone == tombstones.size() ||
+                (upsert < upserts.size() && (Long) upserts.get(upsert)[0] < tombstones.get(tombstone).getChangeSeq())) {
+                Object[] row = upserts.get(upsert++);
+                T entity = entityClass.cast(row[1]);
+                changes.add(new ChangeDTO<>((Long) row[0], (Long) persistenceUnitUtil.getIdentifier(entity), false, entity));
+            } else {
+                ChangeTombstone deleted = tombstones.get(tombstone++);
+                changes.add(new ChangeDTO<>(deleted.getChangeSeq(), deleted.getEntityId(), true, null));
+            }
+        }
+        long watermark = changes.isEmpty() ? since : changes.get(changes.size() - 1).getChangeSeq();
+        boolean hasMore = upsert < upserts.size() || tombstone < tombstones.size();
+        return new ChangeSetDTO<>(changes, watermark, hasMore);
+    }
+}
@@ -0,0 +1,266 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.service.util.CountedPage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Service providing the total number of elements of the paged listings, without a count query on every call.
+ * <p>
+ * Counts are cached by entity type and filter, for a configured time; each type keeps at most a configured number
+ * of counts, the least recently used one being evicted first, and expired counts are dropped. Write paths report the
+ * entities they create and delete with {@link #update(Class, long)}, once the change is committed: the unfiltered
+ * count of the type is adjusted, and its filtered counts are dropped. Above a configured number of rows, the
+ * unfiltered count is not computed at all, but read from the table statistics of the database, and reported as
+ * approximate; the statistics are not read while the last exact count of the type is below that number.
+ * </p>
+ * <p>
+ * A page that is not full needs no count: its total follows from its offset and its size.
+ * </p>
+ */
+@Service
+public class CountService {
+
+    private static final String UNFILTERED = "";
+
+    private final Logger log = LoggerFactory.getLogger(CountService.class);
+
+    private final Map<String, Counts> counts = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    private volatile String statisticsQuery;
+
+    /**
+     * Build a page of all the entities of a type.
+     *
+     * @param entityClass the class of the entities
+     * @param content the entities of the page, read without a count query
+     * @param pageable the pagination information
+     * @param count the function counting all the entities, called when the count is not known
+     * @param <T> the type of the elements of the page
+     * @return the page
+     */
+    public <T> Page<T> page(Class<?> entityClass, List<T> content, Pageable pageable, Supplier<Long> count) {
+        return page(entityClass, UNFILTERED, content, pageable, count);
+    }
+
+    /**
+     * Build a page of the entities of a type matching a filter.
+     *
+     * @param entityClass the class of the entities
+     * @param filter a key identifying the filter, built from its parameters
+     * @param content the entities of the page, read without a count query
+     * @param pageable the pagination information
+     * @param count the function counting the entities matching the filter, called when the count is not known
+     * @param <T> the type of the elements of the page
+     * @return the page
+     */
+    public <T> Page<T> page(Class<?> entityClass, String filter, List<T> content, Pageable pageable, Supplier<Long> count) {
+        if ((pageable.getOffset() == 0 || !content.isEmpty()) && content.size() < pageable.getPageSize()) {
+            return new CountedPage<>(content, pageable, pageable.getOffset() + content.size(), false);
+        }
+        Count total = count(entityClass, filter, count);
+        return new CountedPage<>(content, pageable, total.value, total.approximate);
+    }
+
+    /**
+     * Record that entities of a type were created or deleted.
+     *
+     * @param entityClass the class of the entities
+     * @param delta the number of created entities, minus the number of deleted ones
+     */
+    public void update(Class<?> entityClass, long delta) {
+        Counts typeCounts = counts.get(entityClass.getName());
+        if (typeCounts == null) {
+            return;
+        }
+        synchronized (typeCounts) {
+            typeCounts.generation++;
+            Count unfiltered = typeCounts.entries.get(UNFILTERED);
+            typeCounts.entries.clear();
+            if (unfiltered != null) {
+                typeCounts.entries.put(UNFILTERED,
+                    new Count(Math.max(0, unfiltered.value + delta), unfiltered.approximate, unfiltered.expiry));
+            }
+        }
+    }
+
+    /**
+     * Drop the cached counts of an entity type.
+     *
+     * @param entityClass the class of the entities
+     */
+    public void invalidate(Class<?> entityClass) {
+        Counts typeCounts = counts.get(entityClass.getName());
+        if (typeCounts != null) {
+            synchronized (typeCounts) {
+                typeCounts.generation++;
+                typeCounts.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop the cached counts of all the entity types.
+     */
+    public void invalidateAll() {
+        counts.clear();
+    }
+
+    private Count count(Class<?> entityClass, String filter, Supplier<Long> count) {
+        Counts typeCounts = counts.computeIfAbsent(entityClass.getName(),
+            name -> new Counts(jHipsterProperties.getCount().getMaxEntries()));
+        long now = System.currentTimeMillis();
+        long generation;
+        long lastExact;
+        synchronized (typeCounts) {
+            Count cached = typeCounts.entries.get(filter);
+            if (cached != null) {
+                if (cached.expiry > now) {
+                    return cached;
+                }
+                typeCounts.entries.remove(filter);
+            }
+            generation = typeCounts.generation;
+            lastExact = typeCounts.lastExact;
+        }
+        long threshold = jHipsterProperties.getCount().getApproximateThreshold();
+        long expiry = now + jHipsterProperties.getCount().getTimeToLiveSeconds() * 1000L;
+        Count computed = null;
+        if (UNFILTERED.equals(filter) && (lastExact < 0 || lastExact >= threshold)) {
+            Long estimate = estimate(entityClass);
+            if (estimate != null && estimate >= threshold) {
+                computed = new Count(estimate, true, expiry);
+            }
+        }
+        if (computed == null) {
+            computed = new Count(count.get(), false, expiry);
+        }
+        synchronized (typeCounts) {
+            if (UNFILTERED.equals(filter) && !computed.approximate) {
+                typeCounts.lastExact = computed.value;
+            }
+            // a write during the count may have made it stale
+            if (typeCounts.generation == generation) {
+                if (now >= typeCounts.nextPurge) {
+                    typeCounts.nextPurge = expiry;
+                    typeCounts.entries.values().removeIf(entry -> entry.expiry <= now);
+                }
+                typeCounts.entries.put(filter, computed);
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * Read the number of rows of the table of an entity from the statistics of the database.
+     *
+     * @return the estimated number of rows, or null if the database keeps no such statistics
+     */
+    private Long estimate(Class<?> entityClass) {
+        Table table = entityClass.getAnnotation(Table.class);
+        String query = getStatisticsQuery();
+        if (table == null || query.isEmpty()) {
+            return null;
+        }
+        List<?> rows = entityManager.createNativeQuery(query).setParameter(1, table.name()).getResultList();
+        return rows.isEmpty() || rows.get(0) == null ? null : ((Number) rows.get(0)).longValue();
+    }
+
+    private String getStatisticsQuery() {
+        if (statisticsQuery == null) {
+            String product;
+            try (Connection connection = dataSource.getConnection()) {
+                product = connection.getMetaData().getDatabaseProductName();
+            } catch (SQLException e) {
+                log.warn("Could not read the database product name: {}", e.toString());
+                product = "";
+            }
+            switch (product) {
+                case "MySQL":
+                    statisticsQuery = "select table_rows from information_schema.tables " +
+                        "where table_schema = database() and table_name = ?1";
+                    break;
+                case "PostgreSQL":
+                    statisticsQuery = "select cast(reltuples as bigint) from pg_class where relkind = 'r' and relname = ?1";
+                    break;
+                case "H2":
+                    statisticsQuery = "select row_count_estimate from information_schema.tables " +
+                        "where table_schema = schema() and table_name = upper(?1)";
+                    break;
+                default:
+                    log.info("No table statistics are read from {}: counts are always exact", product);
+                    statisticsQuery = "";
+            }
+        }
+        return statisticsQuery;
+    }
+
+    /**
+     * The cached counts of an entity type, by filter, the least recently used first.
+     */
+    private static final class Counts {
+
+        private final Map<String, Count> entries;
+
+        private long generation;
+
+        /**
+         * The last exact unfiltered count, kept once it expired, or -1 if there is none.
+         */
+        private long lastExact = -1;
+
+        private long nextPurge;
+
+        private Counts(int maxEntries) {
+            entries = new LinkedHashMap<String, Count>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Count> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+
+    private static final class Count {
+
+        private final long value;
+
+        private final boolean approximate;
+
+        private final long expiry;
+
+        private Count(long value, boolean approximate, long expiry) {
+            this.value = value;
+            this.approximate = approximate;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -3,18 +3,53 @@ package tech.ippon.service;
 import tech.ippon.domain.Employee;
 import tech.ippon.repository.EmployeeRepository;
 import tech.ippon.repository.search.EmployeeSearchRepository;
+import tech.ippon.service.dto.AutocompleteDTO;
+import tech.ippon.service.dto.BulkItemResultDTO;
+import tech.ippon.service.dto.ChangeSetDTO;
 import tech.ippon.service.dto.EmployeeDTO;
+import tech.ippon.service.dto.EmployeeHierarchyStatsDTO;
+import tech.ippon.service.dto.EmployeeSalaryBandDTO;
+import tech.ippon.service.index.AutocompleteIndex;
+import tech.ippon.service.index.DepartmentStatsIndex;
+import tech.ippon.service.index.EmployeeHierarchyIndex;
+import tech.ippon.service.index.SalaryBandIndex;
 import tech.ippon.service.mapper.EmployeeMapper;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -28,6 +63,13 @@ import static org.elasticsearch.index.query.QueryBuilders.*;
 public class EmployeeService {
 
     private final Logger log = LoggerFactory.getLogger(EmployeeService.class);
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     @Inject
     private EmployeeRepository employeeRepository;
@@ -38,21 +80,196 @@ public class EmployeeService {
     @Inject
     private EmployeeSearchRepository employeeSearchRepository;
 
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private MultiGetService multiGetService;
+
+    @Inject
+    private EmployeeHierarchyIndex employeeHierarchyIndex;
+
+    @Inject
+    private DepartmentStatsIndex departmentStatsIndex;
+
+    @Inject
+    private AutocompleteIndex autocompleteIndex;
+
+    @Inject
+    private SalaryBandIndex salaryBandIndex;
+
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
     /**
      * Save a employee.
+     * <p>
+     * An update must carry the version of the employee it replaces: the state it replaces is then exactly the one
+     * the department statistics are corrected from.
      *
      * @param employeeDTO the entity to save
      * @return the persisted entity
+     * @throws ObjectOptimisticLockingFailureException if the employee was changed since the version was read
      */
     public EmployeeDTO save(EmployeeDTO employeeDTO) {
+        return save(employeeDTO, version -> version == employeeDTO.getVersion());
+    }
+
+    /**
+     * Save a employee, checking its current version in the same transaction.
+     * <p>
+     * The update replaces the version checked: a concurrent change made after the check makes it fail as well.
+     *
+     * @param employeeDTO the entity to save, its version being ignored
+     * @param versionCheck the check of the current version of the employee, when it is updated
+     * @return the persisted entity
+     * @throws ObjectOptimisticLockingFailureException if the current version does not pass the check, or was
+     * changed since
+     */
+    public EmployeeDTO save(EmployeeDTO employeeDTO, IntPredicate versionCheck) {
         log.debug("Request to save Employee : {}", employeeDTO);
+        Employee existing = employeeDTO.getId() == null ? null : findCurrent(employeeDTO.getId());
+        if (existing != null) {
+            if (!versionCheck.test(existing.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Employee.class, employeeDTO.getId());
+            }
+            employeeDTO.setVersion(existing.getVersion());
+        }
+        DepartmentStatsIndex.Contribution previous = DepartmentStatsIndex.Contribution.of(existing);
         Employee employee = employeeMapper.employeeDTOToEmployee(employeeDTO);
-        employee = employeeRepository.save(employee);
+        employee.setChangeSeq(changeTrackingService.next(Employee.class));
+        employee = employeeRepository.saveAndFlush(employee);
         EmployeeDTO result = employeeMapper.employeeToEmployeeDTO(employee);
-        employeeSearchRepository.save(employee);
+        searchOutboxService.index(Employee.class, employee.getId());
+        Long id = result.getId();
+        Long managerId = result.getManagerId();
+        DepartmentStatsIndex.Contribution current = DepartmentStatsIndex.Contribution.of(employee);
+        AutocompleteDTO suggestion = autocompleteEntry(employee);
+        boolean created = employeeDTO.getId() == null;
+        TransactionUtil.afterCommit(() -> {
+            employeeHierarchyIndex.update(id, managerId);
+            departmentStatsIndex.update(previous, current);
+            rollupService.invalidate();
+            autocompleteIndex.putEmployees(Collections.singletonList(suggestion));
+            if (created) {
+                countService.update(Employee.class, 1);
+            }
+        });
         return result;
     }
 
+    /**
+     * Save a list of employees, creating the ones without id and updating the others.
+     * <p>
+     * The employees are saved by chunks, each chunk in its own transaction, and the rows are sent with JDBC
+     * batching. When a chunk fails, its employees are saved one by one, so that only the faulty ones are reported
+     * as failed.
+     *
+     * @param employeeDTOs the entities to save
+     * @return the outcome for each entity, in the same order
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BulkItemResultDTO> saveAll(List<EmployeeDTO> employeeDTOs) {
+        log.debug("Request to save {} Employees", employeeDTOs.size());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<BulkItemResultDTO> results = new ArrayList<>(employeeDTOs.size());
+        for (int offset = 0; offset < employeeDTOs.size(); offset += BULK_CHUNK_SIZE) {
+            List<EmployeeDTO> chunk = employeeDTOs.subList(offset, Math.min(offset + BULK_CHUNK_SIZE, employeeDTOs.size()));
+            int chunkOffset = offset;
+            try {
+                results.addAll(transactionTemplate.execute(status -> saveChunk(chunk, chunkOffset)));
+            } catch (RuntimeException e) {
+                log.warn("Could not save the chunk of Employees starting at {}, saving them one by one: {}", offset, e.toString());
+                for (int i = 0; i < chunk.size(); i++) {
+                    List<EmployeeDTO> single = Collections.singletonList(chunk.get(i));
+                    int index = chunkOffset + i;
+                    try {
+                        results.addAll(transactionTemplate.execute(status -> saveChunk(single, index)));
+                    } catch (RuntimeException itemException) {
+                        results.add(new BulkItemResultDTO(index, single.get(0).getId(), BulkItemResultDTO.Status.FAILED,
+                            itemException.getMessage()));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<BulkItemResultDTO> saveChunk(List<EmployeeDTO> chunk, int offset) {
+        Set<Long> ids = new HashSet<>();
+        chunk.stream().filter(employeeDTO -> employeeDTO.getId() != null).forEach(employeeDTO -> ids.add(employeeDTO.getId()));
+        Map<Long, Integer> versions = new HashMap<>();
+        if (!ids.isEmpty()) {
+            employeeRepository.findVersionsByIdIn(ids).forEach(row -> versions.put((Long) row[0], (Integer) row[1]));
+        }
+
+        BulkItemResultDTO[] results = new BulkItemResultDTO[chunk.size()];
+        List<Employee> employees = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            EmployeeDTO employeeDTO = chunk.get(i);
+            if (employeeDTO.getId() != null && !versions.containsKey(employeeDTO.getId())) {
+                results[i] = new BulkItemResultDTO(offset + i, employeeDTO.getId(), BulkItemResultDTO.Status.FAILED,
+                    "Employee not found");
+            } else {
+                Employee employee = employeeMapper.employeeDTOToEmployee(employeeDTO);
+                if (employeeDTO.getId() != null) {
+                    // bulk updates are not conditional: the last write wins
+                    employee.setVersion(versions.get(employeeDTO.getId()));
+                }
+                employees.add(employee);
+                positions.add(i);
+            }
+        }
+        if (!employees.isEmpty()) {
+            long changeSeq = changeTrackingService.allocate(Employee.class, employees.size());
+            for (Employee employee : employees) {
+                employee.setChangeSeq(changeSeq++);
+            }
+            List<Employee> saved = employeeRepository.save(employees);
+            employeeRepository.flush();
+            searchOutboxService.index(Employee.class, saved.stream().map(Employee::getId).collect(Collectors.toList()));
+            for (int j = 0; j < saved.size(); j++) {
+                int i = positions.get(j);
+                BulkItemResultDTO.Status status = chunk.get(i).getId() == null ?
+                    BulkItemResultDTO.Status.CREATED : BulkItemResultDTO.Status.UPDATED;
+                results[i] = new BulkItemResultDTO(offset + i, saved.get(j).getId(), status, null);
+            }
+            Map<Long, Long> managerIds = new LinkedHashMap<>();
+            saved.forEach(employee -> managerIds.put(employee.getId(),
+                employee.getManager() == null ? null : employee.getManager().getId()));
+            List<AutocompleteDTO> suggestions = saved.stream().map(this::autocompleteEntry).collect(Collectors.toList());
+            long created = positions.stream().filter(i -> chunk.get(i).getId() == null).count();
+            TransactionUtil.afterCommit(() -> {
+                managerIds.forEach(employeeHierarchyIndex::update);
+                autocompleteIndex.putEmployees(suggestions);
+                countService.update(Employee.class, created);
+                // cheaper to aggregate again with one query than to read the previous state of every employee
+                departmentStatsIndex.invalidate();
+                rollupService.invalidate();
+            });
+            entityManager.clear();
+        }
+        List<BulkItemResultDTO> chunkResults = new ArrayList<>(chunk.size());
+        Collections.addAll(chunkResults, results);
+        return chunkResults;
+    }
+
     /**
      *  Get all the employees.
      *  
@@ -62,10 +279,116 @@ public class EmployeeService {
     @Transactional(readOnly = true) 
     public Page<EmployeeDTO> findAll(Pageable pageable) {
         log.debug("Request to get all Employees");
-        Page<Employee> result = employeeRepository.findAll(pageable);
+        List<Employee> result = employeeRepository.findAllWithoutCount(pageable);
+        return countService.page(Employee.class, employeeMapper.employeesToEmployeeDTOs(result), pageable,
+            employeeRepository::count);
+    }
+
+    /**
+     *  Get the ids and versions of a page of the employees, enough to tag it without loading the employees.
+     *
+     *  @param pageable the pagination information
+     *  @return the page of ids and versions
+     */
+    @Transactional(readOnly = true)
+    public Page<Object[]> findAllVersions(Pageable pageable) {
+        log.debug("Request to get the versions of a page of Employees");
+        return countService.page(Employee.class, employeeRepository.findAllVersions(pageable), pageable,
+            employeeRepository::count);
+    }
+
+    /**
+     *  Get all the employees, reduced to some of their fields.
+     *
+     *  @param fields the fields to read, named as in the EmployeeDTO
+     *  @param pageable the pagination information
+     *  @return the page of employees, each one as a map of its fields
+     */
+    @Transactional(readOnly = true)
+    public Page<Map<String, Object>> findAll(List<String> fields, Pageable pageable) {
+        log.debug("Request to get the fields {} of all Employees", fields);
+        return projectionService.findAll(Employee.class, fields, pageable);
+    }
+
+    /**
+     *  Get the employees whose id is greater than the given one, ordered by id.
+     *  <p>
+     *  This is a seek on the primary key index: it costs the same for every slice and never runs a count query.
+     *
+     *  @param after the id of the last employee of the previous slice
+     *  @param size the maximum number of employees to return
+     *  @return the slice of employees
+     */
+    @Transactional(readOnly = true)
+    public Slice<EmployeeDTO> findAllAfter(Long after, int size) {
+        log.debug("Request to get a slice of Employees after id {}", after);
+        Slice<Employee> result = employeeRepository.findAllByIdGreaterThan(after, new PageRequest(0, size, Sort.Direction.ASC, "id"));
         return result.map(employee -> employeeMapper.employeeToEmployeeDTO(employee));
     }
 
+    /**
+     *  Get the employees created, updated or deleted since a watermark, in commit order.
+     *
+     *  @param since the watermark, 0 to get all the employees
+     *  @param size the maximum number of changes to return
+     *  @return the changes, with the watermark to send to get the next ones
+     */
+    @Transactional(readOnly = true)
+    public ChangeSetDTO<EmployeeDTO> findChanges(long since, int size) {
+        log.debug("Request to get the changes of Employees since {}", since);
+        return changeTrackingService.findChanges(Employee.class, since, size).map(employeeMapper::employeeToEmployeeDTO);
+    }
+
+    /**
+     *  Stream all the employees, ordered by id, to the given consumer.
+     *  <p>
+     *  Rows are read through a forward-only server-side cursor, one fetch at a time, and are handed to the
+     *  consumer as soon as they are read: memory use does not depend on the number of employees.
+     *  The department and manager are read as foreign keys, so that their eager associations are never loaded.
+     *
+     *  @param consumer the consumer of the employees, called once per row
+     *  @return the number of exported employees
+     */
+    @Transactional(readOnly = true)
+    public long exportAll(Consumer<EmployeeDTO> consumer) {
+        log.debug("Request to export all Employees");
+        Session session = entityManager.unwrap(Session.class);
+        ScrollableResults results = session.createQuery("select employee.id, employee.employeeId, employee.firstName, " +
+            "employee.lastName, employee.email, employee.phoneNumber, employee.hireDate, employee.salary, " +
+            "employee.commissionPct, department.id, manager.id from Employee employee " +
+            "left join employee.department department left join employee.manager manager order by employee.id")
+            .setReadOnly(true)
+            .setFetchSize(EXPORT_FETCH_SIZE)
+            .setCacheMode(CacheMode.IGNORE)
+            .scroll(ScrollMode.FORWARD_ONLY);
+        long count = 0;
+        try {
+            while (results.next()) {
+                Object[] row = results.get();
+                Employee employee = new Employee()
+                    .employeeId((Long) row[1])
+                    .firstName((String) row[2])
+                    .lastName((String) row[3])
+                    .email((String) row[4])
+                    .phoneNumber((String) row[5])
+                    .hireDate((ZonedDateTime) row[6])
+                    .salary((Long) row[7])
+                    .commissionPct((Long) row[8])
+                    .department(employeeMapper.departmentFromId((Long) row[9]))
+                    .manager(employeeMapper.employeeFromId((Long) row[10]));
+                employee.setId((Long) row[0]);
+                consumer.accept(employeeMapper.employeeToEmployeeDTO(employee));
+                if (++count % EXPORT_FETCH_SIZE == 0) {
+                    // keep the first-level cache flat, whatever the number of rows
+                    session.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
     /**
      *  Get one employee by id.
      *
@@ -80,15 +403,117 @@ public class EmployeeService {
         return employeeDTO;
     }
 
+    /**
+     *  Get the employees with the given ids.
+     *
+     *  @param ids the ids of the entities
+     *  @return the entities by id, in the order of the ids, without the ids that do not exist
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, EmployeeDTO> findAll(List<Long> ids) {
+        log.debug("Request to get Employees : {}", ids);
+        Map<Long, EmployeeDTO> employeeDTOs = new LinkedHashMap<>();
+        multiGetService.findAll(Employee.class, ids)
+            .forEach((id, employee) -> employeeDTOs.put(id, employeeMapper.employeeToEmployeeDTO(employee)));
+        return employeeDTOs;
+    }
+
     /**
      *  Delete the  employee by id.
      *
      *  @param id the id of the entity
      */
     public void delete(Long id) {
+        delete(id, version -> true);
+    }
+
+    /**
+     *  Delete the  employee by id, checking its current version in the same transaction.
+     *
+     *  @param id the id of the entity
+     *  @param versionCheck the check of the current version of the employee
+     *  @throws ObjectOptimisticLockingFailureException if the current version does not pass the check, or was
+     *  changed since
+     */
+    public void delete(Long id, IntPredicate versionCheck) {
         log.debug("Request to delete Employee : {}", id);
+        Employee existing = findCurrent(id);
+        if (existing != null && !versionCheck.test(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Employee.class, id);
+        }
+        DepartmentStatsIndex.Contribution previous = DepartmentStatsIndex.Contribution.of(existing);
         employeeRepository.delete(id);
-        employeeSearchRepository.delete(id);
+        changeTrackingService.tombstone(Employee.class, id);
+        searchOutboxService.delete(Employee.class, id);
+        TransactionUtil.afterCommit(() -> {
+            employeeHierarchyIndex.remove(id);
+            departmentStatsIndex.update(previous, null);
+            rollupService.invalidate();
+            autocompleteIndex.removeEmployees(Collections.singletonList(id));
+            countService.update(Employee.class, -1);
+        });
+    }
+
+    /**
+     *  Get the employees managed by an employee, directly or not.
+     *
+     *  @param id the id of the employee
+     *  @param depth the number of management levels to return, 1 for the direct reports only
+     *  @return the ids of the employees, level by level, or null if the employee does not exist
+     */
+    @Transactional(readOnly = true)
+    public long[] findReports(Long id, int depth) {
+        log.debug("Request to get the reports of Employee : {}, depth {}", id, depth);
+        return employeeHierarchyIndex.getReports(id, depth);
+    }
+
+    /**
+     *  Get the chain of command of an employee.
+     *
+     *  @param id the id of the employee
+     *  @return the ids of its managers, from its direct manager up, or null if the employee does not exist
+     */
+    @Transactional(readOnly = true)
+    public long[] findChain(Long id) {
+        log.debug("Request to get the chain of command of Employee : {}", id);
+        return employeeHierarchyIndex.getChain(id);
+    }
+
+    /**
+     *  Get the position of an employee in the management hierarchy.
+     *
+     *  @param id the id of the employee
+     *  @return the statistics, or null if the employee does not exist
+     */
+    @Transactional(readOnly = true)
+    public EmployeeHierarchyStatsDTO findHierarchyStats(Long id) {
+        log.debug("Request to get the hierarchy statistics of Employee : {}", id);
+        return employeeHierarchyIndex.getStats(id);
+    }
+
+    /**
+     *  Get the jobs whose salary band contains the salary of each employee.
+     *  <p>
+     *  The salaries are read sorted, with a single projection query, and matched against the bands in a single sweep,
+     *  instead of one lookup per employee.
+     *  </p>
+     *
+     *  @return the bands of the employees having a salary, ordered by salary
+     */
+    @Transactional(readOnly = true)
+    public List<EmployeeSalaryBandDTO> findSalaryBands() {
+        log.debug("Request to get the salary bands of all Employees");
+        List<Object[]> rows = employeeRepository.findAllSalaries();
+        long[] salaries = new long[rows.size()];
+        for (int i = 0; i < salaries.length; i++) {
+            salaries[i] = (Long) rows.get(i)[1];
+        }
+        List<long[]> jobIds = salaryBandIndex.findContaining(salaries);
+        List<EmployeeSalaryBandDTO> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < salaries.length; i++) {
+            result.add(new EmployeeSalaryBandDTO((Long) rows.get(i)[0], salaries[i], jobIds.get(i)));
+        }
+        return result;
     }
 
     /**
@@ -100,7 +525,38 @@ public class EmployeeService {
     @Transactional(readOnly = true)
     public Page<EmployeeDTO> search(String query, Pageable pageable) {
         log.debug("Request to search for a page of Employees for query {}", query);
-        Page<Employee> result = employeeSearchRepository.search(queryStringQuery(query), pageable);
+        return searchCacheService.get(Employee.class, query, pageable, () -> {
+            Page<Employee> result = employeeSearchRepository.search(queryStringQuery(query), pageable);
+            return result.map(employee -> employeeMapper.employeeToEmployeeDTO(employee));
+        });
+    }
+
+    /**
+     *  Search for a slice of the employees corresponding to the query, using keyset pagination on their id.
+     *
+     *  @param query the query of the search
+     *  @param after the id of the last employee of the previous slice
+     *  @param size the maximum number of employees to return
+     *  @return the slice of employees
+     */
+    @Transactional(readOnly = true)
+    public Slice<EmployeeDTO> searchAfter(String query, Long after, int size) {
+        log.debug("Request to search for a slice of Employees for query {} after id {}", query, after);
+        Slice<Employee> result = SearchUtil.searchAfter(employeeSearchRepository, query, after, size);
         return result.map(employee -> employeeMapper.employeeToEmployeeDTO(employee));
     }
+
+    /**
+     * Read the current state of an employee into this transaction, from the database rather than from the
+     * second-level cache, which may lag behind. The employee stays managed, so the update or deletion that follows
+     * is checked against the version read: a concurrent change makes it fail instead of replacing another state.
+     */
+    private Employee findCurrent(Long id) {
+        return entityManager.find(Employee.class, id,
+            Collections.<String, Object>singletonMap("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS));
+    }
+
+    private AutocompleteDTO autocompleteEntry(Employee employee) {
+        return new AutocompleteDTO(employee.getId(), employee.getFirstName(), employee.getLastName(), employee.getEmail());
+    }
 }
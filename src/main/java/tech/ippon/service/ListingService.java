@@ -0,0 +1,262 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.Country;
+import tech.ippon.domain.Department;
+import tech.ippon.domain.Location;
+import tech.ippon.domain.Region;
+import tech.ippon.domain.Task;
+import tech.ippon.web.rest.util.ETagUtil;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for listing all the entities of the small reference types: departments, locations, countries, regions
+ * and tasks.
+ * <p>
+ * Each type is read with a single query: the eager region of a country is fetched with a join instead of one select
+ * per entity, and the lazy location of a department and country of a location are resolved from the
+ * {@link ReferenceDataService} snapshot when serialized. The full list of a type, as used by the drop-downs,
+ * is kept as a snapshot, already serialized to JSON, with an ETag derived from that JSON: it is only built again once
+ * {@link #invalidate(Class)} was called, which the write paths do after commit. As the JSON of an entity embeds its
+ * associations, invalidating a type also invalidates the types embedding it.
+ * </p>
+ * <p>
+ * The snapshots are local to each node, and only the node making a change invalidates them: they also expire after
+ * a configured time, so that the changes made on the other nodes are listed then.
+ * </p>
+ * <p>
+ * The lists that are too big for a snapshot can be exported instead, streamed from a database cursor.
+ * </p>
+ */
+@Service
+@Transactional(readOnly = true)
+public class ListingService {
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final Map<Class<?>, Listing<?>> LISTINGS = new HashMap<>();
+
+    private static final Map<Class<?>, List<Class<?>>> EMBEDDED_BY = new HashMap<>();
+
+    static {
+        // the location of a department and the country of a location are serialized from the reference data snapshot
+        listing(Department.class, "select department from Department department order by department.id");
+        listing(Location.class, "select location from Location location order by location.id");
+        listing(Country.class,
+            "select country from Country country left join fetch country.region order by country.id");
+        listing(Region.class, "select region from Region region order by region.id");
+        listing(Task.class, "select task from Task task order by task.id");
+        EMBEDDED_BY.put(Location.class, Collections.singletonList(Department.class));
+        EMBEDDED_BY.put(Country.class, Arrays.asList(Location.class, Department.class));
+        EMBEDDED_BY.put(Region.class, Arrays.asList(Country.class, Location.class, Department.class));
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ListingService.class);
+
+    private final Map<Class<?>, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Long> generations = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter buildMeter;
+
+    @PostConstruct
+    public void init() {
+        buildMeter = metricRegistry.meter("listing.snapshot.builds");
+    }
+
+    /**
+     * Get the snapshot of all the entities of a type, building it if the entities changed since it was last built, or
+     * if it expired.
+     *
+     * @param entityClass the class of the entities
+     * @return the snapshot
+     * @throws IllegalArgumentException if the type has no listing
+     */
+    public Snapshot getSnapshot(Class<?> entityClass) {
+        Snapshot snapshot = snapshots.get(entityClass);
+        if (snapshot != null && System.currentTimeMillis() < snapshot.expiry) {
+            return snapshot;
+        }
+        long generation = generations.getOrDefault(entityClass, 0L);
+        snapshot = build(getListing(entityClass));
+        synchronized (this) {
+            // an entity written while the snapshot was built may be missing from it
+            if (generations.getOrDefault(entityClass, 0L) == generation) {
+                snapshots.put(entityClass, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop the snapshot of an entity type, and the snapshots of the types embedding it.
+     *
+     * @param entityClass the class of the entities that changed
+     */
+    public synchronized void invalidate(Class<?> entityClass) {
+        List<Class<?>> invalidated = new ArrayList<>();
+        invalidated.add(entityClass);
+        invalidated.addAll(EMBEDDED_BY.getOrDefault(entityClass, Collections.emptyList()));
+        for (Class<?> type : invalidated) {
+            generations.merge(type, 1L, Long::sum);
+            snapshots.remove(type);
+        }
+    }
+
+    /**
+     * Stream all the entities of a type to the given output, ordered by id, as newline-delimited JSON.
+     * <p>
+     * Rows are read through a forward-only server-side cursor and written as soon as they are read:
+     * memory use does not depend on the number of entities.
+     * </p>
+     *
+     * @param entityClass the class of the entities
+     * @param out the output, which is not closed
+     * @return the number of exported entities
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if the type has no listing
+     */
+    public long export(Class<?> entityClass, OutputStream out) throws IOException {
+        log.debug("Request to export all {}", entityClass.getSimpleName());
+        Listing<?> listing = getListing(entityClass);
+        ObjectWriter writer = objectMapper.writerFor(entityClass)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        Session session = entityManager.unwrap(Session.class);
+        ScrollableResults results = session.createQuery(listing.query)
+            .setReadOnly(true)
+            .setFetchSize(EXPORT_FETCH_SIZE)
+            .setCacheMode(CacheMode.IGNORE)
+            .scroll(ScrollMode.FORWARD_ONLY);
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            while (results.next()) {
+                writer.writeValue(generator, results.get(0));
+                generator.writeRaw('\n');
+                if (++count % EXPORT_FETCH_SIZE == 0) {
+                    generator.flush();
+                    // keep the first-level cache flat, whatever the number of rows
+                    session.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
+
+    private <T> Snapshot build(Listing<T> listing) {
+        log.debug("Building the snapshot of all {}", listing.entityClass.getSimpleName());
+        List<T> entities = entityManager.createQuery(listing.query, listing.entityClass).getResultList();
+        String json;
+        try {
+            json = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, listing.entityClass))
+                .without(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsString(entities);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize the " + listing.entityClass.getSimpleName() + " listing", e);
+        }
+        buildMeter.mark();
+        // the JSON embeds the associations, whose changes the versions of the entities do not reflect
+        return new Snapshot(new RawValue(json), ETagUtil.contentTag(json), entities.size(),
+            System.currentTimeMillis() + jHipsterProperties.getSnapshot().getTimeToLiveSeconds() * 1000L);
+    }
+
+    private static Listing<?> getListing(Class<?> entityClass) {
+        Listing<?> listing = LISTINGS.get(entityClass);
+        if (listing == null) {
+            throw new IllegalArgumentException("No listing is defined for " + entityClass.getName());
+        }
+        return listing;
+    }
+
+    private static <T> void listing(Class<T> entityClass, String query) {
+        LISTINGS.put(entityClass, new Listing<>(entityClass, query));
+    }
+
+    /**
+     * All the entities of a type, serialized to a JSON array.
+     */
+    public static final class Snapshot {
+
+        private final RawValue json;
+
+        private final String eTag;
+
+        private final int size;
+
+        private final long expiry;
+
+        private Snapshot(RawValue json, String eTag, int size, long expiry) {
+            this.json = json;
+            this.eTag = eTag;
+            this.size = size;
+            this.expiry = expiry;
+        }
+
+        /**
+         * @return the JSON array, written as is when it is serialized
+         */
+        public RawValue getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private static final class Listing<T> {
+
+        private final Class<T> entityClass;
+
+        private final String query;
+
+        private Listing(Class<T> entityClass, String query) {
+            this.entityClass = entityClass;
+            this.query = query;
+        }
+    }
+}
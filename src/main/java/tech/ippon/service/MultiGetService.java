@@ -0,0 +1,79 @@
+package tech.ippon.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+
+/**
+ * Service for loading several entities of the same type by id at once.
+ * <p>
+ * The ids found in the Hibernate second-level cache are resolved from it, without touching the database,
+ * and all the other ids are loaded with a single "in" query.
+ * </p>
+ */
+@Service
+@Transactional(readOnly = true)
+public class MultiGetService {
+
+    /**
+     * The maximum number of ids that can be requested at once.
+     */
+    public static final int MAX_IDS = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(MultiGetService.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Get the entities with the given ids.
+     *
+     * @param entityClass the class of the entities
+     * @param ids the ids of the entities, duplicates are ignored
+     * @param <T> the type of the entities
+     * @return the entities by id, in the order of the given ids, without the ids that do not exist
+     */
+    public <T> Map<Long, T> findAll(Class<T> entityClass, Collection<Long> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        Map<Long, T> entities = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            if (cache.contains(entityClass, id)) {
+                T entity = entityManager.find(entityClass, id);
+                if (entity != null) {
+                    entities.put(id, entity);
+                }
+            } else {
+                misses.add(id);
+            }
+        }
+        log.debug("Request to get {} {} by id, {} from the second-level cache", uniqueIds.size(),
+            entityClass.getSimpleName(), uniqueIds.size() - misses.size());
+        if (!misses.isEmpty()) {
+            String entityName = entityManager.getMetamodel().entity(entityClass).getName();
+            List<T> loaded = entityManager
+                .createQuery("select entity from " + entityName + " entity where entity.id in :ids", entityClass)
+                .setParameter("ids", misses)
+                .getResultList();
+            for (T entity : loaded) {
+                entities.put((Long) entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity),
+                    entity);
+            }
+        }
+        Map<Long, T> result = new LinkedHashMap<>();
+        for (Long id : uniqueIds) {
+            T entity = entities.get(id);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        }
+        return result;
+    }
+}
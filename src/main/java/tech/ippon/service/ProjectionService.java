@@ -0,0 +1,166 @@
+package tech.ippon.service;
+
+import tech.ippon.domain.Department;
+import tech.ippon.domain.Employee;
+import tech.ippon.domain.Job;
+import tech.ippon.domain.Location;
+import tech.ippon.web.rest.errors.CustomParameterizedException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.*;
+
+/**
+ * Service for reading only some fields of entities, also known as sparse fieldsets.
+ * <p>
+ * The requested fields are selected with a JPQL tuple query: no entity is loaded in the persistence context,
+ * no association is fetched, and each row is returned as a map holding only the requested fields, in the
+ * requested order. Only the fields declared for each entity type can be requested, associations being exposed
+ * by their id, with the same names as in the DTOs.
+ * </p>
+ */
+@Service
+@Transactional(readOnly = true)
+public class ProjectionService {
+
+    private final Logger log = LoggerFactory.getLogger(ProjectionService.class);
+
+    private static final Map<Class<?>, Map<String, String>> FIELD_PATHS = new HashMap<>();
+
+    static {
+        FIELD_PATHS.put(Employee.class, paths(
+            "id", "id",
+            "employeeId", "employeeId",
+            "firstName", "firstName",
+            "lastName", "lastName",
+            "email", "email",
+            "phoneNumber", "phoneNumber",
+            "hireDate", "hireDate",
+            "salary", "salary",
+            "commissionPct", "commissionPct",
+            "departmentId", "department.id",
+            "managerId", "manager.id"));
+        FIELD_PATHS.put(Department.class, paths(
+            "id", "id",
+            "departmentId", "departmentId",
+            "departmentName", "departmentName",
+            "locationId", "location.id"));
+        FIELD_PATHS.put(Job.class, paths(
+            "id", "id",
+            "jobId", "jobId",
+            "jobTitle", "jobTitle",
+            "minSalary", "minSalary",
+            "maxSalary", "maxSalary",
+            "employeeId", "employee.id"));
+        FIELD_PATHS.put(Location.class, paths(
+            "id", "id",
+            "locationId", "locationId",
+            "streetAddress", "streetAddress",
+            "postalCode", "postalCode",
+            "city", "city",
+            "stateProvince", "stateProvince",
+            "countryId", "country.id"));
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private CountService countService;
+
+    /**
+     * Get a page of entities, reduced to some of their fields.
+     *
+     * @param entityClass the class of the entities
+     * @param fields the fields to read
+     * @param pageable the pagination information, which can only sort on the fields of the entity
+     * @return the page of entities, each one as a map of its fields
+     * @throws CustomParameterizedException if a field or a sort property is unknown
+     */
+    public Page<Map<String, Object>> findAll(Class<?> entityClass, Collection<String> fields, Pageable pageable) {
+        String entityName = entityManager.getMetamodel().entity(entityClass).getName();
+        List<Map<String, Object>> content = find(entityClass, fields, pageable.getSort(), pageable);
+        return countService.page(entityClass, content, pageable,
+            () -> (Long) entityManager.createQuery("select count(entity) from " + entityName + " entity").getSingleResult());
+    }
+
+    /**
+     * Get all the entities, reduced to some of their fields.
+     *
+     * @param entityClass the class of the entities
+     * @param fields the fields to read
+     * @param sort the order of the entities, which can only use the fields of the entity, or null
+     * @return the entities, each one as a map of its fields
+     * @throws CustomParameterizedException if a field or a sort property is unknown
+     */
+    public List<Map<String, Object>> findAll(Class<?> entityClass, Collection<String> fields, Sort sort) {
+        return find(entityClass, fields, sort, null);
+    }
+
+    private List<Map<String, Object>> find(Class<?> entityClass, Collection<String> fields, Sort sort, Pageable pageable) {
+        Map<String, String> fieldPaths = FIELD_PATHS.get(entityClass);
+        if (fieldPaths == null) {
+            throw new IllegalArgumentException("No projection is defined for " + entityClass.getName());
+        }
+        List<String> selectedFields = new ArrayList<>(new LinkedHashSet<>(fields));
+        if (selectedFields.isEmpty()) {
+            throw new CustomParameterizedException("error.unknownField", "");
+        }
+        StringBuilder jpql = new StringBuilder("select ");
+        for (int i = 0; i < selectedFields.size(); i++) {
+            jpql.append(i == 0 ? "" : ", ").append(path(fieldPaths, selectedFields.get(i)));
+        }
+        jpql.append(" from ").append(entityManager.getMetamodel().entity(entityClass).getName()).append(" entity");
+        if (sort != null) {
+            String separator = " order by ";
+            for (Sort.Order order : sort) {
+                jpql.append(separator).append(path(fieldPaths, order.getProperty()))
+                    .append(order.isAscending() ? " asc" : " desc");
+                separator = ", ";
+            }
+        }
+        log.debug("Request to get the fields {} of {}: {}", selectedFields, entityClass.getSimpleName(), jpql);
+
+        Query query = entityManager.createQuery(jpql.toString());
+        if (pageable != null) {
+            query.setFirstResult(pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+        List<?> rows = query.getResultList();
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            Object[] values = selectedFields.size() == 1 ? new Object[]{row} : (Object[]) row;
+            Map<String, Object> entity = new LinkedHashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                entity.put(selectedFields.get(i), values[i]);
+            }
+            result.add(entity);
+        }
+        return result;
+    }
+
+    private static String path(Map<String, String> fieldPaths, String field) {
+        String path = fieldPaths.get(field);
+        if (path == null) {
+            throw new CustomParameterizedException("error.unknownField", field);
+        }
+        return "entity." + path;
+    }
+
+    private static Map<String, String> paths(String... fieldsAndPaths) {
+        Map<String, String> paths = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsAndPaths.length; i += 2) {
+            paths.put(fieldsAndPaths[i], fieldsAndPaths[i + 1]);
+        }
+        return Collections.unmodifiableMap(paths);
+    }
+}
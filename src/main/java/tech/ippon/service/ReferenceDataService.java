@@ -0,0 +1,190 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.repository.CountryRepository;
+import tech.ippon.repository.LocationRepository;
+import tech.ippon.repository.RegionRepository;
+import tech.ippon.service.index.ReferenceDataSnapshot;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Service holding the snapshot of the reference data: the regions, countries and locations.
+ * <p>
+ * The snapshot is read with one projection query per type, and replaced as a whole: it is only built again once
+ * {@link #invalidate()} was called, which the write paths of the three types do after commit.
+ * </p>
+ * <p>
+ * The snapshot is local to each node, and only the node changing the reference data invalidates it. It therefore
+ * expires after a configured time, once it is checked against the database with one aggregate query per type: it is
+ * kept for another period if the reference data did not change on another node, and built again otherwise.
+ * </p>
+ * <p>
+ * When {@code jhipster.reference-data.file} is set, each snapshot is saved to that file, from which the first
+ * snapshot is loaded on startup, so that the reference data is not read from the database again. The loaded
+ * snapshot is only used if it still holds the current reference data, which is checked with one aggregate query per
+ * type; otherwise it is dropped, and built from the database when first read. The file must not be shared by
+ * applications using different databases.
+ * </p>
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReferenceDataService {
+
+    private final Logger log = LoggerFactory.getLogger(ReferenceDataService.class);
+
+    private volatile ReferenceDataSnapshot snapshot;
+
+    private volatile long expiry;
+
+    private long generation;
+
+    @Inject
+    private RegionRepository regionRepository;
+
+    @Inject
+    private CountryRepository countryRepository;
+
+    @Inject
+    private LocationRepository locationRepository;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter buildMeter;
+
+    @PostConstruct
+    public void init() {
+        buildMeter = metricRegistry.meter("reference.snapshot.builds");
+        Path file = getFile();
+        if (file == null || !Files.isRegularFile(file)) {
+            return;
+        }
+        ReferenceDataSnapshot loaded;
+        try (InputStream in = Files.newInputStream(file)) {
+            loaded = ReferenceDataSnapshot.readFrom(in);
+        } catch (IOException e) {
+            log.warn("Could not load the reference data snapshot from {}: {}", file, e.getMessage());
+            return;
+        }
+        if (isCurrent(loaded)) {
+            expiry = System.currentTimeMillis() + getTimeToLive();
+            snapshot = loaded;
+            log.info("Loaded the reference data snapshot of {} entities from {}", loaded.getSize(), file);
+        } else {
+            log.info("The reference data changed since the snapshot of {} was saved, ignoring it", file);
+        }
+    }
+
+    /**
+     * Check that a snapshot holds the current reference data.
+     *
+     * @param checked the snapshot
+     * @return whether the reference data did not change since the snapshot was built
+     */
+    public boolean isCurrent(ReferenceDataSnapshot checked) {
+        return checked.isCurrent(regionRepository.findReferenceDataVersion().get(0),
+            countryRepository.findReferenceDataVersion().get(0), locationRepository.findReferenceDataVersion().get(0));
+    }
+
+    /**
+     * Get the snapshot of the reference data, building it if the reference data changed since it was last built, or
+     * if it expired and the reference data changed on another node.
+     *
+     * @return the snapshot
+     */
+    public ReferenceDataSnapshot getSnapshot() {
+        ReferenceDataSnapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && now < expiry) {
+            return current;
+        }
+        long expectedGeneration;
+        synchronized (this) {
+            expectedGeneration = generation;
+        }
+        if (current != null && isCurrent(current)) {
+            // the reference data did not change on another node since the snapshot was built
+            synchronized (this) {
+                if (generation == expectedGeneration) {
+                    expiry = now + getTimeToLive();
+                }
+            }
+            return current;
+        }
+        log.debug("Building the reference data snapshot");
+        current = ReferenceDataSnapshot.of(regionRepository.findAllReferenceData(),
+            countryRepository.findAllReferenceData(), locationRepository.findAllReferenceData());
+        buildMeter.mark();
+        synchronized (this) {
+            // reference data written while the snapshot was built may be missing from it
+            if (generation != expectedGeneration) {
+                return current;
+            }
+            expiry = now + getTimeToLive();
+            snapshot = current;
+            save(current);
+        }
+        return current;
+    }
+
+    /**
+     * Drop the snapshot, so that it is built again from the database the next time it is read.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    private long getTimeToLive() {
+        return jHipsterProperties.getSnapshot().getTimeToLiveSeconds() * 1000L;
+    }
+
+    /**
+     * Save a snapshot to the file, replacing the previous one atomically.
+     */
+    private void save(ReferenceDataSnapshot saved) {
+        Path file = getFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temporary)) {
+                    saved.writeTo(out);
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            log.warn("Could not save the reference data snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path getFile() {
+        String file = jHipsterProperties.getReferenceData().getFile();
+        return file == null || file.isEmpty() ? null : Paths.get(file);
+    }
+}
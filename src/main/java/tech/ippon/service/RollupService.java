@@ -0,0 +1,198 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.repository.EmployeeRepository;
+import tech.ippon.service.dto.RollupDTO;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service for the geographic rollup of the employees: their headcount and salary total by region, country and
+ * location.
+ * <p>
+ * The totals of every location are read with a single aggregation query, grouped by region, country and location,
+ * and each region subtree is then assembled from its rows in parallel. The employees without a department, and the
+ * departments without a location, country or region, are counted under a node without id at the level they stop.
+ * The trees of the three levels are kept as a snapshot: they are only built again once {@link #invalidate()} was
+ * called, which the write paths of the employees, departments, locations, countries and regions do after commit.
+ * </p>
+ * <p>
+ * The snapshot is local to each node, and only the node making a change invalidates it: it also expires after a
+ * configured time, so that the changes made on the other nodes are rolled up then.
+ * </p>
+ */
+@Service
+@Transactional(readOnly = true)
+public class RollupService {
+
+    /**
+     * The level of the nodes of the rollup, the root holding all the employees.
+     */
+    public enum Level {
+        REGION, COUNTRY, LOCATION;
+
+        /**
+         * @param name the name of the level, in any case
+         * @return the level, or empty if there is none of that name
+         */
+        public static Optional<Level> of(String name) {
+            return Arrays.stream(values()).filter(level -> level.name().equalsIgnoreCase(name)).findFirst();
+        }
+
+        private String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final String ROOT_LEVEL = "all";
+
+    private static final Comparator<RollupDTO> BY_ID =
+        Comparator.comparing(RollupDTO::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final Logger log = LoggerFactory.getLogger(RollupService.class);
+
+    private volatile Map<Level, RollupDTO> trees;
+
+    private volatile long expiry;
+
+    private long generation;
+
+    @Inject
+    private EmployeeRepository employeeRepository;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter buildMeter;
+
+    @PostConstruct
+    public void init() {
+        buildMeter = metricRegistry.meter("rollup.tree.builds");
+    }
+
+    /**
+     * Get the rollup of all the employees down to a level, building it if the employees or their locations changed
+     * since it was last built, or if it expired.
+     *
+     * @param level the deepest level of the rollup
+     * @return the root of the rollup, holding the totals of all the employees
+     */
+    public RollupDTO getRollup(Level level) {
+        Map<Level, RollupDTO> current = trees;
+        long now = System.currentTimeMillis();
+        if (current != null && now < expiry) {
+            return current.get(level);
+        }
+        long expectedGeneration;
+        synchronized (this) {
+            expectedGeneration = generation;
+        }
+        current = build();
+        synchronized (this) {
+            // an employee written while the trees were built may be missing from them
+            if (generation == expectedGeneration) {
+                expiry = now + jHipsterProperties.getSnapshot().getTimeToLiveSeconds() * 1000L;
+                trees = current;
+            }
+        }
+        return current.get(level);
+    }
+
+    /**
+     * Drop the rollup, so that it is built again from the database the next time it is read.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        trees = null;
+    }
+
+    private Map<Level, RollupDTO> build() {
+        long start = System.nanoTime();
+        List<Object[]> rows = employeeRepository.findGeographicAggregates();
+        List<RollupDTO> regions = group(rows, Level.REGION).parallelStream()
+            .map(regionRows -> node(Level.REGION, regionRows))
+            .sorted(BY_ID)
+            .collect(Collectors.toList());
+        RollupDTO root = parent(ROOT_LEVEL, null, null, regions);
+        Map<Level, RollupDTO> result = new EnumMap<>(Level.class);
+        for (Level level : Level.values()) {
+            result.put(level, prune(root, level.ordinal() + 1));
+        }
+        buildMeter.mark();
+        log.debug("Built the rollup of {} locations in {} ms", rows.size(), (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Split aggregation rows by their id at a level, keeping the rows without id together.
+     */
+    private static Collection<List<Object[]>> group(List<Object[]> rows, Level level) {
+        Map<Long, List<Object[]>> rowsById = new HashMap<>();
+        for (Object[] row : rows) {
+            rowsById.computeIfAbsent((Long) row[level.ordinal() * 2], id -> new ArrayList<>()).add(row);
+        }
+        return rowsById.values();
+    }
+
+    /**
+     * Build the node of a level from the aggregation rows sharing its id.
+     */
+    private static RollupDTO node(Level level, List<Object[]> rows) {
+        Object[] first = rows.get(0);
+        Long id = (Long) first[level.ordinal() * 2];
+        String name = (String) first[level.ordinal() * 2 + 1];
+        if (level == Level.LOCATION) {
+            long departments = 0;
+            long headcount = 0;
+            long salaryTotal = 0;
+            for (Object[] row : rows) {
+                departments += (Long) row[6];
+                headcount += (Long) row[7];
+                salaryTotal += row[8] == null ? 0 : (Long) row[8];
+            }
+            return new RollupDTO(level.getName(), id, name, departments, headcount, salaryTotal, new ArrayList<>());
+        }
+        Level childLevel = Level.values()[level.ordinal() + 1];
+        List<RollupDTO> children = group(rows, childLevel).stream()
+            .map(childRows -> node(childLevel, childRows))
+            .sorted(BY_ID)
+            .collect(Collectors.toList());
+        return parent(level.getName(), id, name, children);
+    }
+
+    private static RollupDTO parent(String level, Long id, String name, List<RollupDTO> children) {
+        long departments = 0;
+        long headcount = 0;
+        long salaryTotal = 0;
+        for (RollupDTO child : children) {
+            departments += child.getDepartments();
+            headcount += child.getHeadcount();
+            salaryTotal += child.getSalaryTotal();
+        }
+        return new RollupDTO(level, id, name, departments, headcount, salaryTotal, children);
+    }
+
+    /**
+     * Copy a tree down to a depth, the nodes at that depth having no children.
+     */
+    private static RollupDTO prune(RollupDTO node, int depth) {
+        List<RollupDTO> children = depth == 0 ? new ArrayList<>() : node.getChildren().stream()
+            .map(child -> prune(child, depth - 1))
+            .collect(Collectors.toList());
+        return new RollupDTO(node.getLevel(), node.getId(), node.getName(), node.getDepartments(),
+            node.getHeadcount(), node.getSalaryTotal(), children);
+    }
+}
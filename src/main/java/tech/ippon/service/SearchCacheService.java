@@ -0,0 +1,183 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Service caching the results of the search endpoints, by entity type.
+ * <p>
+ * Results are keyed by the query, with its whitespace normalized, and by the page number, page size and sort.
+ * Each entity type keeps at most a configured number of results, the least recently used one being evicted first,
+ * and a result expires after a configured time. {@link #invalidate(Class)} must be called once the index of an
+ * entity type is written to: it drops the results of the type, and keeps a search started before it from caching
+ * its result.
+ * </p>
+ * <p>
+ * Cached results are shared between the callers, and must not be modified.
+ * </p>
+ */
+@Service
+public class SearchCacheService {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Logger log = LoggerFactory.getLogger(SearchCacheService.class);
+
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Meter hitMeter;
+
+    private Meter missMeter;
+
+    private Meter evictionMeter;
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register("search.cache.size",
+            (Gauge<Integer>) () -> regions.values().stream().mapToInt(Region::size).sum());
+        hitMeter = metricRegistry.meter("search.cache.hits");
+        missMeter = metricRegistry.meter("search.cache.misses");
+        evictionMeter = metricRegistry.meter("search.cache.evictions");
+    }
+
+    /**
+     * Get the result of a search, from the cache if possible.
+     *
+     * @param entityClass the class of the searched entities
+     * @param query the query
+     * @param pageable the pagination information, null if the search is not paged
+     * @param search the function running the search, called on a cache miss
+     * @param <R> the type of the result
+     * @return the result
+     */
+    public <R> R get(Class<?> entityClass, String query, Pageable pageable, Supplier<R> search) {
+        Region region = regions.computeIfAbsent(entityClass.getSimpleName(), entityType -> new Region(entityType));
+        List<Object> key = pageable == null ?
+            Collections.singletonList(normalize(query)) :
+            Arrays.asList(normalize(query), pageable.getPageNumber(), pageable.getPageSize(), String.valueOf(pageable.getSort()));
+        long now = System.currentTimeMillis();
+        long generation;
+        synchronized (region) {
+            Entry entry = region.entries.get(key);
+            if (entry != null && entry.expiry > now) {
+                hitMeter.mark();
+                region.hitMeter.mark();
+                @SuppressWarnings("unchecked")
+                R result = (R) entry.result;
+                return result;
+            }
+            generation = region.generation;
+        }
+        missMeter.mark();
+        region.missMeter.mark();
+        R result = search.get();
+        synchronized (region) {
+            // an invalidation during the search may have made its result stale
+            if (region.generation == generation) {
+                region.entries.put(key,
+                    new Entry(result, now + jHipsterProperties.getSearchCache().getTimeToLiveSeconds() * 1000L));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop the cached results of an entity type, because its index was written to.
+     *
+     * @param entityClass the class of the entities
+     */
+    public void invalidate(Class<?> entityClass) {
+        Region region = regions.get(entityClass.getSimpleName());
+        if (region != null) {
+            log.debug("Invalidating the cached searches of {}", region.entityType);
+            synchronized (region) {
+                region.generation++;
+                region.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop all the cached results.
+     */
+    public void invalidateAll() {
+        regions.values().forEach(region -> {
+            synchronized (region) {
+                region.generation++;
+                region.entries.clear();
+            }
+        });
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : WHITESPACE.matcher(query.trim()).replaceAll(" ");
+    }
+
+    /**
+     * The cached results of an entity type.
+     */
+    private final class Region {
+
+        private final String entityType;
+
+        private final Meter hitMeter;
+
+        private final Meter missMeter;
+
+        private final LinkedHashMap<List<Object>, Entry> entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+                boolean evict = size() > jHipsterProperties.getSearchCache().getMaxEntries();
+                if (evict) {
+                    evictionMeter.mark();
+                }
+                return evict;
+            }
+        };
+
+        private long generation;
+
+        private Region(String entityType) {
+            this.entityType = entityType;
+            this.hitMeter = metricRegistry.meter("search.cache." + entityType + ".hits");
+            this.missMeter = metricRegistry.meter("search.cache." + entityType + ".misses");
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object result;
+
+        private final long expiry;
+
+        private Entry(Object result, long expiry) {
+            this.result = result;
+            this.expiry = expiry;
+        }
+    }
+}
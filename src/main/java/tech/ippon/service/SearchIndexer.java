@@ -0,0 +1,48 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+
+/**
+ * Background indexer, draining the search outbox into Elasticsearch.
+ * <p>
+ * The entries written between two runs are processed together, so repeated changes to a same entity within
+ * that window cost a single document update.
+ * </p>
+ */
+@Service
+public class SearchIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(SearchIndexer.class);
+
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    /**
+     * Drain the search outbox, one batch per transaction, until no full batch is pending.
+     * <p>
+     * This is scheduled to get fired every second by default, after the end of the previous run.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${jhipster.searchOutbox.delay:1000}")
+    public void drainOutbox() {
+        int batchSize = jHipsterProperties.getSearchOutbox().getBatchSize();
+        try {
+            int processed;
+            do {
+                processed = searchOutboxService.drain();
+            } while (processed >= batchSize);
+        } catch (RuntimeException e) {
+            log.error("Could not drain the search outbox: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.SearchOutboxEntry;
+import tech.ippon.repository.SearchOutboxRepository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.annotation.Timed;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.EntityType;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service keeping the Elasticsearch indexes in sync with the database, through the search outbox.
+ * <p>
+ * Write paths record the entities they change with {@link #index(Class, Long)} or {@link #delete(Class, Long)},
+ * in their own transaction, so that an entity change can never be committed without its outbox entry.
+ * {@link #drain()} then reads the pending entries, collapses the ones of a same entity, and sends the current
+ * state of each entity to Elasticsearch with one bulk request per entity type: a document is indexed if the
+ * entity exists, and deleted otherwise. Failed entries are retried later, with an exponential backoff.
+ * </p>
+ * <p>
+ * Once an index is written to, it is refreshed, so that the changes are visible to the searches, and the cached
+ * search results of its entity type are dropped.
+ * </p>
+ * <p>
+ * While an index is rebuilt, the ids of the entities synchronized into it can be tracked, with
+ * {@link #startTracking(Class)} and {@link #stopTracking(Class)}, so that they can be synchronized again once the
+ * new index is in place.
+ * </p>
+ */
+@Service
+@Transactional
+public class SearchOutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(SearchOutboxService.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private SearchOutboxRepository searchOutboxRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    private volatile long depth;
+
+    private volatile long lag;
+
+    private Meter indexedMeter;
+
+    private Meter deletedMeter;
+
+    private Meter failedMeter;
+
+    private final Map<String, Set<Long>> trackedIds = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register("search.outbox.depth", (Gauge<Long>) () -> depth);
+        metricRegistry.register("search.outbox.lag", (Gauge<Long>) () -> lag);
+        indexedMeter = metricRegistry.meter("search.outbox.indexed");
+        deletedMeter = metricRegistry.meter("search.outbox.deleted");
+        failedMeter = metricRegistry.meter("search.outbox.failed");
+    }
+
+    /**
+     * Record that an entity was created or updated, and must be indexed.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     */
+    public void index(Class<?> entityClass, Long id) {
+        index(entityClass, Collections.singletonList(id));
+    }
+
+    /**
+     * Record that entities of a same type were created or updated, and must be indexed.
+     *
+     * @param entityClass the class of the entities
+     * @param ids the ids of the entities
+     */
+    public void index(Class<?> entityClass, Collection<Long> ids) {
+        log.debug("Request to index {} {}", entityClass.getSimpleName(), ids);
+        String entityType = entityManager.getMetamodel().entity(entityClass).getName();
+        ZonedDateTime now = ZonedDateTime.now();
+        List<SearchOutboxEntry> entries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            SearchOutboxEntry entry = new SearchOutboxEntry();
+            entry.setEntityType(entityType);
+            entry.setEntityId(id);
+            entry.setCreatedDate(now);
+            entry.setNextAttemptDate(now);
+            entries.add(entry);
+        }
+        searchOutboxRepository.save(entries);
+    }
+
+    /**
+     * Record that an entity was deleted, and must be removed from its index.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     */
+    public void delete(Class<?> entityClass, Long id) {
+        // the document is deleted because the entity does not exist anymore when the entry is processed
+        index(entityClass, Collections.singletonList(id));
+    }
+
+    /**
+     * Process a batch of the pending outbox entries.
+     *
+     * @return the number of processed entries: a full batch means that more entries may be pending
+     */
+    @Timed
+    public int drain() {
+        ZonedDateTime now = ZonedDateTime.now();
+        List<SearchOutboxEntry> entries = searchOutboxRepository.findByNextAttemptDateLessThanEqualOrderByIdAsc(now,
+            new PageRequest(0, jHipsterProperties.getSearchOutbox().getBatchSize()));
+        if (!entries.isEmpty()) {
+            Map<String, Map<Long, List<SearchOutboxEntry>>> entriesByType = new LinkedHashMap<>();
+            for (SearchOutboxEntry entry : entries) {
+                entriesByType.computeIfAbsent(entry.getEntityType(), entityType -> new LinkedHashMap<>())
+                    .computeIfAbsent(entry.getEntityId(), entityId -> new ArrayList<>())
+                    .add(entry);
+            }
+            List<Long> processedIds = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Map<Long, List<SearchOutboxEntry>>> typeEntries : entriesByType.entrySet()) {
+                Map<Long, List<SearchOutboxEntry>> entriesById = typeEntries.getValue();
+                Set<Long> failedIds = synchronize(typeEntries.getKey(), entriesById.keySet());
+                entriesById.forEach((entityId, entityEntries) -> {
+                    if (failedIds.contains(entityId)) {
+                        entityEntries.forEach(entry -> scheduleRetry(entry, now));
+                    } else {
+                        entityEntries.forEach(entry -> processedIds.add(entry.getId()));
+                    }
+                });
+            }
+            if (!processedIds.isEmpty()) {
+                searchOutboxRepository.deleteByIdIn(processedIds);
+            }
+            log.debug("Processed {} search outbox entries, {} done", entries.size(), processedIds.size());
+        }
+        ZonedDateTime oldest = searchOutboxRepository.findOldestCreatedDate();
+        depth = searchOutboxRepository.count();
+        lag = oldest == null ? 0 : Math.max(0, Duration.between(oldest, now).toMillis());
+        return entries.size();
+    }
+
+    /**
+     * Start recording the ids of the entities of a type sent to their index.
+     *
+     * @param entityClass the class of the entities
+     */
+    public void startTracking(Class<?> entityClass) {
+        trackedIds.put(entityManager.getMetamodel().entity(entityClass).getName(), ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Stop recording the ids of the entities of a type sent to their index.
+     *
+     * @param entityClass the class of the entities
+     * @return the ids recorded since {@link #startTracking(Class)}
+     */
+    public Set<Long> stopTracking(Class<?> entityClass) {
+        Set<Long> ids = trackedIds.remove(entityManager.getMetamodel().entity(entityClass).getName());
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    /**
+     * Send the current state of entities to their index.
+     *
+     * @return the ids of the entities that could not be synchronized
+     */
+    private Set<Long> synchronize(String entityType, Set<Long> ids) {
+        Set<Long> tracked = trackedIds.get(entityType);
+        if (tracked != null) {
+            tracked.addAll(ids);
+        }
+        Set<Long> failedIds = new HashSet<>();
+        Class<?> entityClass = entityManager.getMetamodel().getEntities().stream()
+            .filter(type -> type.getName().equals(entityType))
+            .<Class<?>>map(EntityType::getJavaType)
+            .findFirst()
+            .orElse(null);
+        if (entityClass == null) {
+            log.error("Unknown entity type {} in the search outbox", entityType);
+            failedIds.addAll(ids);
+            return failedIds;
+        }
+
+        // bypass the second-level cache: it may still hold the state from before the commit of the change
+        List<?> entities = entityManager
+            .createQuery("select entity from " + entityType + " entity where entity.id in :ids", entityClass)
+            .setParameter("ids", ids)
+            .setHint("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS)
+            .getResultList();
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Set<Long> missingIds = new LinkedHashSet<>(ids);
+        List<IndexQuery> indexQueries = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            Long id = (Long) persistenceUnitUtil.getIdentifier(entity);
+            missingIds.remove(id);
+            indexQueries.add(new IndexQueryBuilder().withId(id.toString()).withObject(entity).build());
+        }
+
+        if (!indexQueries.isEmpty()) {
+            try {
+                elasticsearchTemplate.bulkIndex(indexQueries);
+            } catch (RuntimeException e) {
+                Map<String, String> failedDocuments = e instanceof ElasticsearchException ?
+                    ((ElasticsearchException) e).getFailedDocuments() : null;
+                if (failedDocuments != null) {
+                    failedDocuments.keySet().forEach(id -> failedIds.add(Long.valueOf(id)));
+                } else {
+                    indexQueries.forEach(query -> failedIds.add(Long.valueOf(query.getId())));
+                }
+                log.warn("Could not index {} {}: {}", entityType, failedIds, e.toString());
+            }
+            indexedMeter.mark(indexQueries.size() - failedIds.size());
+        }
+
+        if (!missingIds.isEmpty()) {
+            ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entityClass);
+            Client client = elasticsearchTemplate.getClient();
+            BulkRequestBuilder bulkRequest = client.prepareBulk();
+            missingIds.forEach(id -> bulkRequest.add(
+                client.prepareDelete(persistentEntity.getIndexName(), persistentEntity.getIndexType(), id.toString())));
+            int failedDeletes = 0;
+            try {
+                for (BulkItemResponse item : bulkRequest.execute().actionGet().getItems()) {
+                    if (item.isFailed()) {
+                        log.warn("Could not delete {} {} from its index: {}", entityType, item.getId(), item.getFailureMessage());
+                        failedIds.add(Long.valueOf(item.getId()));
+                        failedDeletes++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not delete {} {} from their index: {}", entityType, missingIds, e.toString());
+                failedIds.addAll(missingIds);
+                failedDeletes = missingIds.size();
+            }
+            deletedMeter.mark(missingIds.size() - failedDeletes);
+        }
+
+        if (failedIds.size() < ids.size()) {
+            try {
+                elasticsearchTemplate.refresh(entityClass);
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh the index of {}: {}", entityType, e.toString());
+            }
+            searchCacheService.invalidate(entityClass);
+        }
+        return failedIds;
+    }
+
+    private void scheduleRetry(SearchOutboxEntry entry, ZonedDateTime now) {
+        JHipsterProperties.SearchOutbox properties = jHipsterProperties.getSearchOutbox();
+        int attempts = entry.getAttempts() + 1;
+        long backoff = Math.min(properties.getMaxBackoff(),
+            properties.getInitialBackoff() * (1L << Math.min(attempts - 1, 30)));
+        entry.setAttempts(attempts);
+        entry.setNextAttemptDate(now.plus(Duration.ofMillis(backoff)));
+        failedMeter.mark();
+    }
+}
@@ -0,0 +1,401 @@
+package tech.ippon.service;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.service.dto.ReindexStatusDTO;
+
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.EntityType;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service rebuilding the Elasticsearch indexes from the database, without interrupting the searches.
+ * <p>
+ * Each index is rebuilt into a new index, named after its alias and the time of the rebuild, which replaces the
+ * current one in a single alias update once it is complete: searches and writes keep using the current index
+ * until then. The id range of the entities is split into partitions, indexed in parallel by worker threads, each
+ * reading its partition in batches in its own short transaction, so that memory use does not depend on the size
+ * of the table.
+ * </p>
+ * <p>
+ * The entities synchronized by the search outbox during the rebuild may have been read by a worker before they
+ * changed: they are tracked, and sent to the search outbox again once the new index is in place.
+ * </p>
+ * <p>
+ * The first rebuild of an index created by Spring Data, whose name is the one of the alias, has to delete it
+ * before adding the alias: the index is missing for the time of that operation.
+ * </p>
+ */
+@Service
+public class SearchReindexService {
+
+    /**
+     * The number of partitions per worker thread, so that partitions of unevenly distributed ids even out.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final Logger log = LoggerFactory.getLogger(SearchReindexService.class);
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    private final Map<String, Progress> progresses = new LinkedHashMap<>();
+
+    private boolean running;
+
+    @PreDestroy
+    public void destroy() {
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * Get the names of the indexed entity types.
+     *
+     * @return the entity types, by name
+     */
+    public Map<String, Class<?>> getEntityTypes() {
+        Map<String, Class<?>> entityTypes = new TreeMap<>();
+        for (EntityType<?> entityType : entityManager.getMetamodel().getEntities()) {
+            if (entityType.getJavaType().isAnnotationPresent(Document.class)) {
+                entityTypes.put(entityType.getName(), entityType.getJavaType());
+            }
+        }
+        return entityTypes;
+    }
+
+    /**
+     * Start rebuilding indexes, in the background.
+     *
+     * @param entityClasses the classes of the entities whose indexes to rebuild
+     * @return false if a rebuild is already running
+     */
+    public synchronized boolean start(Collection<Class<?>> entityClasses) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        progresses.clear();
+        List<Map.Entry<Class<?>, Progress>> runs = new ArrayList<>();
+        for (Class<?> entityClass : entityClasses) {
+            Progress progress = new Progress(entityManager.getMetamodel().entity(entityClass).getName(),
+                elasticsearchTemplate.getPersistentEntityFor(entityClass).getIndexName());
+            progresses.put(progress.entityType, progress);
+            runs.add(new AbstractMap.SimpleImmutableEntry<>(entityClass, progress));
+        }
+        coordinator.execute(() -> {
+            try {
+                runs.forEach(run -> reindex(run.getKey(), run.getValue()));
+            } finally {
+                synchronized (this) {
+                    running = false;
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Get the progress of the current or last rebuild.
+     *
+     * @return the progress of the rebuild of each index
+     */
+    public synchronized List<ReindexStatusDTO> getStatus() {
+        List<ReindexStatusDTO> statuses = new ArrayList<>(progresses.size());
+        progresses.values().forEach(progress -> statuses.add(progress.toDTO()));
+        return statuses;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void reindex(Class<?> entityClass, Progress progress) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entityClass);
+        String alias = persistentEntity.getIndexName();
+        String indexType = persistentEntity.getIndexType();
+        String indexName = alias + "-" + System.currentTimeMillis();
+        progress.start(indexName);
+        log.info("Rebuilding the {} index into {}", alias, indexName);
+
+        boolean created = false;
+        searchOutboxService.startTracking(entityClass);
+        try {
+            if (!elasticsearchTemplate.indexExists(alias)) {
+                elasticsearchTemplate.createIndex(entityClass);
+                elasticsearchTemplate.putMapping(entityClass);
+            }
+            // the new index is neither replicated nor refreshed while it is built
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("index.number_of_shards", persistentEntity.getShards());
+            settings.put("index.number_of_replicas", 0);
+            settings.put("index.refresh_interval", "-1");
+            elasticsearchTemplate.createIndex(indexName, settings);
+            created = true;
+            elasticsearchTemplate.putMapping(indexName, indexType, elasticsearchTemplate.getMapping(entityClass));
+
+            indexPartitions(entityClass, indexName, indexType, progress);
+
+            IndicesAdminClient indices = elasticsearchTemplate.getClient().admin().indices();
+            settings = new HashMap<>();
+            settings.put("index.number_of_replicas", persistentEntity.getReplicas());
+            settings.put("index.refresh_interval", persistentEntity.getRefreshInterval());
+            indices.prepareUpdateSettings(indexName).setSettings(settings).get();
+            elasticsearchTemplate.refresh(indexName);
+            swapAlias(indices, alias, indexName);
+        } catch (RuntimeException e) {
+            log.error("Could not rebuild the {} index: {}", alias, e.toString());
+            if (created) {
+                try {
+                    elasticsearchTemplate.deleteIndex(indexName);
+                } catch (RuntimeException deleteException) {
+                    log.warn("Could not delete the {} index: {}", indexName, deleteException.toString());
+                }
+            }
+            progress.fail(e.toString());
+            return;
+        } finally {
+            requeue(entityClass, searchOutboxService.stopTracking(entityClass));
+        }
+        searchCacheService.invalidate(entityClass);
+        progress.done();
+        log.info("Rebuilt the {} index into {}: {} documents", alias, indexName, progress.indexed.get());
+    }
+
+    /**
+     * Index the entities, splitting their id range into partitions indexed in parallel.
+     */
+    private void indexPartitions(Class<?> entityClass, String indexName, String indexType, Progress progress) {
+        String entityType = progress.entityType;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        Object[] range = transactionTemplate.execute(status -> entityManager
+            .createQuery("select min(entity.id), max(entity.id), count(entity) from " + entityType + " entity", Object[].class)
+            .getSingleResult());
+        progress.total = (Long) range[2];
+        if (range[0] == null) {
+            return;
+        }
+        long min = (Long) range[0];
+        long max = (Long) range[1];
+
+        int threads = Math.max(1, jHipsterProperties.getReindex().getThreads());
+        int batchSize = jHipsterProperties.getReindex().getBatchSize();
+        long span = Math.max(1, (max - min) / (threads * PARTITIONS_PER_THREAD) + 1);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "search-reindex-" + entityType);
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            List<Future<?>> partitions = new ArrayList<>();
+            for (long from = min - 1; from < max; from += span) {
+                long after = from;
+                long last = Math.min(max, from + span);
+                partitions.add(workers.submit(() -> {
+                    try {
+                        indexPartition(transactionTemplate, entityClass, indexName, indexType, after, last, batchSize,
+                            progress, failure);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Future<?> partition : partitions) {
+                partition.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("The rebuild was interrupted"));
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, new IllegalStateException(e.getCause()));
+        } finally {
+            workers.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Index the entities having an id in a range, one batch per transaction.
+     */
+    private void indexPartition(TransactionTemplate transactionTemplate, Class<?> entityClass, String indexName,
+                                String indexType, long after, long last, int batchSize, Progress progress,
+                                AtomicReference<RuntimeException> failure) {
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Long next = after;
+        while (next != null && failure.get() == null && !Thread.currentThread().isInterrupted()) {
+            long from = next;
+            next = transactionTemplate.execute(status -> {
+                // bypass the second-level cache, which must not be filled with the whole table
+                List<?> entities = entityManager
+                    .createQuery("select entity from " + progress.entityType + " entity " +
+                        "where entity.id > :after and entity.id <= :last order by entity.id asc", entityClass)
+                    .setParameter("after", from)
+                    .setParameter("last", last)
+                    .setHint("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS)
+                    .setHint("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS)
+                    .setMaxResults(batchSize)
+                    .getResultList();
+                if (entities.isEmpty()) {
+                    return null;
+                }
+                List<IndexQuery> indexQueries = new ArrayList<>(entities.size());
+                Long id = null;
+                for (Object entity : entities) {
+                    id = (Long) persistenceUnitUtil.getIdentifier(entity);
+                    indexQueries.add(new IndexQueryBuilder().withIndexName(indexName).withType(indexType)
+                        .withId(id.toString()).withObject(entity).build());
+                }
+                elasticsearchTemplate.bulkIndex(indexQueries);
+                progress.indexed.addAndGet(entities.size());
+                return entities.size() < batchSize ? null : id;
+            });
+        }
+    }
+
+    /**
+     * Point the alias to the new index, and delete the indexes it pointed to.
+     */
+    private void swapAlias(IndicesAdminClient indices, String alias, String indexName) {
+        if (indices.prepareAliasesExist(alias).get().exists()) {
+            GetAliasesResponse response = indices.prepareGetAliases(alias).get();
+            List<String> previousIndexNames = new ArrayList<>();
+            response.getAliases().keysIt().forEachRemaining(name -> {
+                if (!response.getAliases().get(name).isEmpty()) {
+                    previousIndexNames.add(name);
+                }
+            });
+            IndicesAliasesRequestBuilder request = indices.prepareAliases().addAlias(indexName, alias);
+            previousIndexNames.forEach(name -> request.removeAlias(name, alias));
+            request.get();
+            previousIndexNames.forEach(elasticsearchTemplate::deleteIndex);
+        } else {
+            log.warn("Replacing the {} index by an alias: the index is missing until the alias is added", alias);
+            if (elasticsearchTemplate.indexExists(alias)) {
+                elasticsearchTemplate.deleteIndex(alias);
+            }
+            indices.prepareAliases().addAlias(indexName, alias).get();
+        }
+    }
+
+    /**
+     * Send entities to the search outbox again, in batches.
+     */
+    private void requeue(Class<?> entityClass, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        log.debug("Synchronizing again the {} {} changed during the rebuild", ids.size(), entityClass.getSimpleName());
+        List<Long> remaining = new ArrayList<>(ids);
+        int batchSize = jHipsterProperties.getReindex().getBatchSize();
+        for (int offset = 0; offset < remaining.size(); offset += batchSize) {
+            searchOutboxService.index(entityClass, remaining.subList(offset, Math.min(offset + batchSize, remaining.size())));
+        }
+    }
+
+    /**
+     * The progress of the rebuild of an index.
+     */
+    private static final class Progress {
+
+        private final String entityType;
+
+        private final String alias;
+
+        private final AtomicLong indexed = new AtomicLong();
+
+        private volatile String indexName;
+
+        private volatile ReindexStatusDTO.Status status = ReindexStatusDTO.Status.PENDING;
+
+        private volatile long total;
+
+        private volatile ZonedDateTime startDate;
+
+        private volatile ZonedDateTime endDate;
+
+        private volatile String error;
+
+        private Progress(String entityType, String alias) {
+            this.entityType = entityType;
+            this.alias = alias;
+        }
+
+        private void start(String indexName) {
+            this.indexName = indexName;
+            this.startDate = ZonedDateTime.now();
+            this.status = ReindexStatusDTO.Status.RUNNING;
+        }
+
+        private void done() {
+            this.endDate = ZonedDateTime.now();
+            this.status = ReindexStatusDTO.Status.DONE;
+        }
+
+        private void fail(String error) {
+            this.error = error;
+            this.endDate = ZonedDateTime.now();
+            this.status = ReindexStatusDTO.Status.FAILED;
+        }
+
+        private ReindexStatusDTO toDTO() {
+            ReindexStatusDTO dto = new ReindexStatusDTO();
+            dto.setEntityType(entityType);
+            dto.setAlias(alias);
+            dto.setIndexName(indexName);
+            dto.setStatus(status);
+            dto.setTotal(total);
+            dto.setIndexed(indexed.get());
+            dto.setStartDate(startDate);
+            dto.setEndDate(endDate);
+            dto.setError(error);
+            return dto;
+        }
+    }
+}
@@ -5,9 +5,12 @@ import tech.ippon.domain.User;
 import tech.ippon.repository.AuthorityRepository;
 import tech.ippon.repository.PersistentTokenRepository;
 import tech.ippon.repository.UserRepository;
-import tech.ippon.repository.search.UserSearchRepository;
 import tech.ippon.security.AuthoritiesConstants;
 import tech.ippon.security.SecurityUtils;
+import tech.ippon.security.UserDetailsService;
+import tech.ippon.service.dto.AutocompleteDTO;
+import tech.ippon.service.index.AutocompleteIndex;
+import tech.ippon.service.util.TransactionUtil;
 import tech.ippon.service.util.RandomUtil;
 import tech.ippon.web.rest.vm.ManagedUserVM;
 import org.slf4j.Logger;
@@ -38,7 +41,10 @@ public class UserService {
     private UserRepository userRepository;
 
     @Inject
-    private UserSearchRepository userSearchRepository;
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private AutocompleteIndex autocompleteIndex;
 
     @Inject
     private PersistentTokenRepository persistentTokenRepository;
@@ -46,6 +52,12 @@ public class UserService {
     @Inject
     private AuthorityRepository authorityRepository;
 
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private UserDetailsService userDetailsService;
+
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
         return userRepository.findOneByActivationKey(key)
@@ -54,7 +66,8 @@ public class UserService {
                 user.setActivated(true);
                 user.setActivationKey(null);
                 userRepository.save(user);
-                userSearchRepository.save(user);
+                searchOutboxService.index(User.class, user.getId());
+                invalidateUserDetails(user.getLogin());
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -73,6 +86,7 @@ public class UserService {
                 user.setResetKey(null);
                 user.setResetDate(null);
                 userRepository.save(user);
+                invalidateUserDetails(user.getLogin());
                 return user;
            });
     }
@@ -109,7 +123,9 @@ public class UserService {
         authorities.add(authority);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        searchOutboxService.index(User.class, newUser.getId());
+        putAutocompleteEntry(newUser);
+        TransactionUtil.afterCommit(() -> countService.update(User.class, 1));
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -138,7 +154,9 @@ public class UserService {
         user.setResetDate(ZonedDateTime.now());
         user.setActivated(true);
         userRepository.save(user);
-        userSearchRepository.save(user);
+        searchOutboxService.index(User.class, user.getId());
+        putAutocompleteEntry(user);
+        TransactionUtil.afterCommit(() -> countService.update(User.class, 1));
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -150,7 +168,8 @@ public class UserService {
             u.setEmail(email);
             u.setLangKey(langKey);
             userRepository.save(u);
-            userSearchRepository.save(u);
+            searchOutboxService.index(User.class, u.getId());
+            putAutocompleteEntry(u);
             log.debug("Changed Information for User: {}", u);
         });
     }
@@ -161,6 +180,8 @@ public class UserService {
         userRepository
             .findOneById(id)
             .ifPresent(u -> {
+                // the user details are cached by login, which may change
+                invalidateUserDetails(u.getLogin());
                 u.setLogin(login);
                 u.setFirstName(firstName);
                 u.setLastName(lastName);
@@ -172,6 +193,8 @@ public class UserService {
                 authorities.stream().forEach(
                     authority -> managedAuthorities.add(authorityRepository.findOne(authority))
                 );
+                searchOutboxService.index(User.class, u.getId());
+                putAutocompleteEntry(u);
                 log.debug("Changed Information for User: {}", u);
             });
     }
@@ -179,7 +202,10 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(u -> {
             userRepository.delete(u);
-            userSearchRepository.delete(u);
+            searchOutboxService.delete(User.class, u.getId());
+            removeAutocompleteEntry(u);
+            invalidateUserDetails(u.getLogin());
+            TransactionUtil.afterCommit(() -> countService.update(User.class, -1));
             log.debug("Deleted User: {}", u);
         });
     }
@@ -189,6 +215,7 @@ public class UserService {
             String encryptedPassword = passwordEncoder.encode(password);
             u.setPassword(encryptedPassword);
             userRepository.save(u);
+            invalidateUserDetails(u.getLogin());
             log.debug("Changed password for User: {}", u);
         });
     }
@@ -246,7 +273,27 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
-            userSearchRepository.delete(user);
+            searchOutboxService.delete(User.class, user.getId());
+            removeAutocompleteEntry(user);
+            invalidateUserDetails(user.getLogin());
+        }
+        if (!users.isEmpty()) {
+            TransactionUtil.afterCommit(() -> countService.update(User.class, -users.size()));
         }
     }
+
+    private void putAutocompleteEntry(User user) {
+        AutocompleteDTO entry = new AutocompleteDTO(user.getId(), user.getLogin(), user.getFirstName(), user.getLastName(),
+            user.getEmail());
+        TransactionUtil.afterCommit(() -> autocompleteIndex.putUsers(Collections.singletonList(entry)));
+    }
+
+    private void invalidateUserDetails(String login) {
+        TransactionUtil.afterCommit(() -> userDetailsService.invalidate(login));
+    }
+
+    private void removeAutocompleteEntry(User user) {
+        Long id = user.getId();
+        TransactionUtil.afterCommit(() -> autocompleteIndex.removeUsers(Collections.singletonList(id)));
+    }
 }
@@ -0,0 +1,89 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for a suggestion of the autocomplete endpoints: an employee or a user, reduced to the fields shown and
+ * matched while typing.
+ */
+public class AutocompleteDTO implements Serializable {
+
+    private Long id;
+
+    private String login;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    public AutocompleteDTO() {
+    }
+
+    public AutocompleteDTO(Long id, String firstName, String lastName, String email) {
+        this(id, null, firstName, lastName, email);
+    }
+
+    public AutocompleteDTO(Long id, String login, String firstName, String lastName, String email) {
+        this.id = id;
+        this.login = login;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the login of the user, null for an employee
+     */
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    @Override
+    public String toString() {
+        return "AutocompleteDTO{" +
+            "id=" + id +
+            ", login='" + login + "'" +
+            ", firstName='" + firstName + "'" +
+            ", lastName='" + lastName + "'" +
+            ", email='" + email + "'" +
+            '}';
+    }
+}
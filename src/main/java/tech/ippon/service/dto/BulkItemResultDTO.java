@@ -0,0 +1,73 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO reporting the outcome of one item of a bulk request.
+ */
+public class BulkItemResultDTO implements Serializable {
+
+    public enum Status {
+        CREATED, UPDATED, FAILED
+    }
+
+    private int index;
+
+    private Long id;
+
+    private Status status;
+
+    private String message;
+
+    public BulkItemResultDTO() {
+    }
+
+    public BulkItemResultDTO(int index, Long id, Status status, String message) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkItemResultDTO{" +
+            "index=" + index +
+            ", id=" + id +
+            ", status=" + status +
+            ", message='" + message + "'" +
+            '}';
+    }
+}
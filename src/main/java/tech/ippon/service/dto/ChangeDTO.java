@@ -0,0 +1,79 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for one change of an entity, returned by the delta-sync endpoints.
+ *
+ * @param <T> the type of the entity
+ */
+public class ChangeDTO<T> implements Serializable {
+
+    private long changeSeq;
+
+    private Long id;
+
+    private boolean deleted;
+
+    private T entity;
+
+    public ChangeDTO() {
+    }
+
+    public ChangeDTO(long changeSeq, Long id, boolean deleted, T entity) {
+        this.changeSeq = changeSeq;
+        this.id = id;
+        this.deleted = deleted;
+        this.entity = entity;
+    }
+
+    /**
+     * @return the change sequence of the change, changes of a same entity type being read in this order
+     */
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return true if the entity was deleted, false if it was created or updated
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return the current state of the entity, null if it was deleted
+     */
+    public T getEntity() {
+        return entity;
+    }
+
+    public void setEntity(T entity) {
+        this.entity = entity;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeDTO{" +
+            "changeSeq=" + changeSeq +
+            ", id=" + id +
+            ", deleted=" + deleted +
+            '}';
+    }
+}
@@ -0,0 +1,87 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A DTO for the changes of entities since a watermark, returned by the delta-sync endpoints.
+ *
+ * @param <T> the type of the entities
+ */
+public class ChangeSetDTO<T> implements Serializable {
+
+    private List<ChangeDTO<T>> changes;
+
+    private long watermark;
+
+    private boolean hasMore;
+
+    public ChangeSetDTO() {
+    }
+
+    public ChangeSetDTO(List<ChangeDTO<T>> changes, long watermark, boolean hasMore) {
+        this.changes = changes;
+        this.watermark = watermark;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return the changes, in commit order
+     */
+    public List<ChangeDTO<T>> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<ChangeDTO<T>> changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * @return the watermark to send to get the next changes
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(long watermark) {
+        this.watermark = watermark;
+    }
+
+    /**
+     * @return true if more changes are available right away after the watermark
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Convert the entities of the changes, for example to DTOs.
+     *
+     * @param converter the function converting an entity
+     * @param <R> the type of the converted entities
+     * @return a new change set, with the converted entities
+     */
+    public <R> ChangeSetDTO<R> map(Function<? super T, ? extends R> converter) {
+        List<ChangeDTO<R>> converted = new ArrayList<>(changes.size());
+        for (ChangeDTO<T> change : changes) {
+            R entity = change.getEntity() == null ? null : converter.apply(change.getEntity());
+            converted.add(new ChangeDTO<>(change.getChangeSeq(), change.getId(), change.isDeleted(), entity));
+        }
+        return new ChangeSetDTO<>(converted, watermark, hasMore);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSetDTO{" +
+            "changes=" + changes.size() +
+            ", watermark=" + watermark +
+            ", hasMore=" + hasMore +
+            '}';
+    }
+}
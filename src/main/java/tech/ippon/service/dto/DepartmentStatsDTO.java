@@ -0,0 +1,125 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO holding the headcount and salary aggregates of a department.
+ */
+public class DepartmentStatsDTO implements Serializable {
+
+    private Long departmentId;
+
+    private long headcount;
+
+    private long salarySum;
+
+    private Long salaryMin;
+
+    private Long salaryMax;
+
+    private Double salaryAvg;
+
+    private long commissionSum;
+
+    public DepartmentStatsDTO() {
+    }
+
+    public DepartmentStatsDTO(Long departmentId, long headcount, long salarySum, Long salaryMin, Long salaryMax,
+                              Double salaryAvg, long commissionSum) {
+        this.departmentId = departmentId;
+        this.headcount = headcount;
+        this.salarySum = salarySum;
+        this.salaryMin = salaryMin;
+        this.salaryMax = salaryMax;
+        this.salaryAvg = salaryAvg;
+        this.commissionSum = commissionSum;
+    }
+
+    public Long getDepartmentId() {
+        return departmentId;
+    }
+
+    public void setDepartmentId(Long departmentId) {
+        this.departmentId = departmentId;
+    }
+
+    /**
+     * @return the number of employees of the department
+     */
+    public long getHeadcount() {
+        return headcount;
+    }
+
+    public void setHeadcount(long headcount) {
+        this.headcount = headcount;
+    }
+
+    /**
+     * @return the sum of the salaries of the employees, 0 when no salary is known
+     */
+    public long getSalarySum() {
+        return salarySum;
+    }
+
+    public void setSalarySum(long salarySum) {
+        this.salarySum = salarySum;
+    }
+
+    /**
+     * @return the lowest salary, null when no salary is known
+     */
+    public Long getSalaryMin() {
+        return salaryMin;
+    }
+
+    public void setSalaryMin(Long salaryMin) {
+        this.salaryMin = salaryMin;
+    }
+
+    /**
+     * @return the highest salary, null when no salary is known
+     */
+    public Long getSalaryMax() {
+        return salaryMax;
+    }
+
+    public void setSalaryMax(Long salaryMax) {
+        this.salaryMax = salaryMax;
+    }
+
+    /**
+     * @return the average salary of the employees having one, null when no salary is known
+     */
+    public Double getSalaryAvg() {
+        return salaryAvg;
+    }
+
+    public void setSalaryAvg(Double salaryAvg) {
+        this.salaryAvg = salaryAvg;
+    }
+
+    /**
+     * @return the sum of the commissions of the employees, a commission being the salary times the commission
+     * percentage, rounded down
+     */
+    public long getCommissionSum() {
+        return commissionSum;
+    }
+
+    public void setCommissionSum(long commissionSum) {
+        this.commissionSum = commissionSum;
+    }
+
+    @Override
+    public String toString() {
+        return "DepartmentStatsDTO{" +
+            "departmentId=" + departmentId +
+            ", headcount=" + headcount +
+            ", salarySum=" + salarySum +
+            ", salaryMin=" + salaryMin +
+            ", salaryMax=" + salaryMax +
+            ", salaryAvg=" + salaryAvg +
+            ", commissionSum=" + commissionSum +
+            '}';
+    }
+}
@@ -14,6 +14,8 @@ public class EmployeeDTO implements Serializable {
 
     private Long id;
 
+    private int version;
+
     private Long employeeId;
 
     private String firstName;
@@ -42,6 +44,13 @@ public class EmployeeDTO implements Serializable {
     public void setId(Long id) {
         this.id = id;
     }
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
     public Long getEmployeeId() {
         return employeeId;
     }
@@ -0,0 +1,93 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO describing the position of an employee in the management hierarchy.
+ */
+public class EmployeeHierarchyStatsDTO implements Serializable {
+
+    private Long employeeId;
+
+    private int level;
+
+    private int directReports;
+
+    private int totalReports;
+
+    private int depth;
+
+    public EmployeeHierarchyStatsDTO() {
+    }
+
+    public EmployeeHierarchyStatsDTO(Long employeeId, int level, int directReports, int totalReports, int depth) {
+        this.employeeId = employeeId;
+        this.level = level;
+        this.directReports = directReports;
+        this.totalReports = totalReports;
+        this.depth = depth;
+    }
+
+    public Long getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(Long employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    /**
+     * @return the number of managers above the employee, 0 for the top of the hierarchy
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @return the number of employees directly managed by the employee, i.e. the span of control
+     */
+    public int getDirectReports() {
+        return directReports;
+    }
+
+    public void setDirectReports(int directReports) {
+        this.directReports = directReports;
+    }
+
+    /**
+     * @return the number of employees under the employee, at any level
+     */
+    public int getTotalReports() {
+        return totalReports;
+    }
+
+    public void setTotalReports(int totalReports) {
+        this.totalReports = totalReports;
+    }
+
+    /**
+     * @return the number of levels under the employee, 0 when the employee manages nobody
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeeHierarchyStatsDTO{" +
+            "employeeId=" + employeeId +
+            ", level=" + level +
+            ", directReports=" + directReports +
+            ", totalReports=" + totalReports +
+            ", depth=" + depth +
+            '}';
+    }
+}
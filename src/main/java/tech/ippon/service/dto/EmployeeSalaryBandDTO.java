@@ -0,0 +1,61 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A DTO giving the jobs whose salary band contains the salary of an employee.
+ */
+public class EmployeeSalaryBandDTO implements Serializable {
+
+    private Long employeeId;
+
+    private Long salary;
+
+    private long[] jobIds;
+
+    public EmployeeSalaryBandDTO() {
+    }
+
+    public EmployeeSalaryBandDTO(Long employeeId, Long salary, long[] jobIds) {
+        this.employeeId = employeeId;
+        this.salary = salary;
+        this.jobIds = jobIds;
+    }
+
+    public Long getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(Long employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public Long getSalary() {
+        return salary;
+    }
+
+    public void setSalary(Long salary) {
+        this.salary = salary;
+    }
+
+    /**
+     * @return the ids of the jobs whose band contains the salary, in ascending order, empty if there is none
+     */
+    public long[] getJobIds() {
+        return jobIds;
+    }
+
+    public void setJobIds(long[] jobIds) {
+        this.jobIds = jobIds;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeeSalaryBandDTO{" +
+            "employeeId=" + employeeId +
+            ", salary=" + salary +
+            ", jobIds=" + Arrays.toString(jobIds) +
+            '}';
+    }
+}
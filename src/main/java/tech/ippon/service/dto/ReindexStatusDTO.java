@@ -0,0 +1,131 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * A DTO holding the progress of the rebuild of an Elasticsearch index.
+ */
+public class ReindexStatusDTO implements Serializable {
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    private String entityType;
+
+    private String alias;
+
+    private String indexName;
+
+    private Status status;
+
+    private long total;
+
+    private long indexed;
+
+    private ZonedDateTime startDate;
+
+    private ZonedDateTime endDate;
+
+    private String error;
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * @return the name the index is searched by, which is swapped to the new index once it is built
+     */
+    public String getAlias() {
+        return alias;
+    }
+
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    /**
+     * @return the name of the index being built, null until it is created
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the number of entities to index, as counted when the rebuild started
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(long indexed) {
+        this.indexed = indexed;
+    }
+
+    public ZonedDateTime getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(ZonedDateTime startDate) {
+        this.startDate = startDate;
+    }
+
+    public ZonedDateTime getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(ZonedDateTime endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * @return the reason of the failure, when the rebuild failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexStatusDTO{" +
+            "entityType='" + entityType + "'" +
+            ", alias='" + alias + "'" +
+            ", indexName='" + indexName + "'" +
+            ", status=" + status +
+            ", total=" + total +
+            ", indexed=" + indexed +
+            ", startDate=" + startDate +
+            ", endDate=" + endDate +
+            ", error='" + error + "'" +
+            '}';
+    }
+}
@@ -0,0 +1,131 @@
+package tech.ippon.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO holding the headcount and salary totals of a node of the geographic rollup: all the employees, a region,
+ * a country or a location, with the totals of its children.
+ */
+public class RollupDTO implements Serializable {
+
+    private String level;
+
+    private Long id;
+
+    private String name;
+
+    private long departments;
+
+    private long headcount;
+
+    private long salaryTotal;
+
+    private List<RollupDTO> children = new ArrayList<>();
+
+    public RollupDTO() {
+    }
+
+    public RollupDTO(String level, Long id, String name, long departments, long headcount, long salaryTotal,
+                     List<RollupDTO> children) {
+        this.level = level;
+        this.id = id;
+        this.name = name;
+        this.departments = departments;
+        this.headcount = headcount;
+        this.salaryTotal = salaryTotal;
+        this.children = children;
+    }
+
+    /**
+     * @return the level of the node: "all", "region", "country" or "location"
+     */
+    public String getLevel() {
+        return level;
+    }
+
+    public void setLevel(String level) {
+        this.level = level;
+    }
+
+    /**
+     * @return the id of the region, country or location, null for the root and for the employees it does not place
+     */
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the name of the region or country, or the city of the location
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the number of departments having employees
+     */
+    public long getDepartments() {
+        return departments;
+    }
+
+    public void setDepartments(long departments) {
+        this.departments = departments;
+    }
+
+    /**
+     * @return the number of employees
+     */
+    public long getHeadcount() {
+        return headcount;
+    }
+
+    public void setHeadcount(long headcount) {
+        this.headcount = headcount;
+    }
+
+    /**
+     * @return the sum of the salaries of the employees, 0 when no salary is known
+     */
+    public long getSalaryTotal() {
+        return salaryTotal;
+    }
+
+    public void setSalaryTotal(long salaryTotal) {
+        this.salaryTotal = salaryTotal;
+    }
+
+    /**
+     * @return the nodes of the next level, ordered by id, the employees it does not place last; empty at the
+     * requested level
+     */
+    public List<RollupDTO> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<RollupDTO> children) {
+        this.children = children;
+    }
+
+    @Override
+    public String toString() {
+        return "RollupDTO{" +
+            "level='" + level + "'" +
+            ", id=" + id +
+            ", name='" + name + "'" +
+            ", departments=" + departments +
+            ", headcount=" + headcount +
+            ", salaryTotal=" + salaryTotal +
+            ", children=" + children.size() +
+            '}';
+    }
+}
@@ -0,0 +1,132 @@
+package tech.ippon.service.index;
+
+import tech.ippon.repository.EmployeeRepository;
+import tech.ippon.repository.UserRepository;
+import tech.ippon.service.dto.AutocompleteDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory prefix indexes of the employees and the users, serving the autocomplete endpoints without a query to
+ * the database or to Elasticsearch.
+ * <p>
+ * Employees are matched on their first name, last name and email, users on their login too. Each index is loaded
+ * lazily, from a single projection query, the first time it is read, and is then kept up to date by the put and
+ * remove methods, which must be called once the change is committed.
+ * </p>
+ */
+@Component
+public class AutocompleteIndex {
+
+    /**
+     * The maximum number of suggestions returned at once.
+     */
+    public static final int MAX_SUGGESTIONS = 50;
+
+    private final Logger log = LoggerFactory.getLogger(AutocompleteIndex.class);
+
+    private final PrefixIndex<AutocompleteDTO> employees;
+
+    private final PrefixIndex<AutocompleteDTO> users;
+
+    @Inject
+    private EmployeeRepository employeeRepository;
+
+    @Inject
+    private UserRepository userRepository;
+
+    public AutocompleteIndex() {
+        employees = new PrefixIndex<>(AutocompleteDTO::getId,
+            employee -> new String[]{employee.getFirstName(), employee.getLastName(), employee.getEmail()},
+            this::loadEmployees);
+        users = new PrefixIndex<>(AutocompleteDTO::getId,
+            user -> new String[]{user.getLogin(), user.getFirstName(), user.getLastName(), user.getEmail()},
+            this::loadUsers);
+    }
+
+    /**
+     * Find the employees having a first name, last name or email word starting with each word of a prefix.
+     *
+     * @param prefix the prefix typed so far
+     * @param limit the maximum number of employees to return
+     * @return the employees
+     */
+    public List<AutocompleteDTO> suggestEmployees(String prefix, int limit) {
+        return employees.search(prefix, limit);
+    }
+
+    /**
+     * Find the users having a login, first name, last name or email word starting with each word of a prefix.
+     *
+     * @param prefix the prefix typed so far
+     * @param limit the maximum number of users to return
+     * @return the users
+     */
+    public List<AutocompleteDTO> suggestUsers(String prefix, int limit) {
+        return users.search(prefix, limit);
+    }
+
+    /**
+     * Record that employees were created or updated.
+     *
+     * @param employees the employees, in their new state
+     */
+    public void putEmployees(Collection<AutocompleteDTO> employees) {
+        this.employees.put(employees);
+    }
+
+    /**
+     * Record that employees were deleted.
+     *
+     * @param ids the ids of the employees
+     */
+    public void removeEmployees(Collection<Long> ids) {
+        employees.remove(ids);
+    }
+
+    /**
+     * Record that users were created or updated.
+     *
+     * @param users the users, in their new state
+     */
+    public void putUsers(Collection<AutocompleteDTO> users) {
+        this.users.put(users);
+    }
+
+    /**
+     * Record that users were deleted.
+     *
+     * @param ids the ids of the users
+     */
+    public void removeUsers(Collection<Long> ids) {
+        users.remove(ids);
+    }
+
+    /**
+     * Drop the content of the indexes, so that they are reloaded from the database the next time they are read.
+     */
+    public void invalidate() {
+        employees.invalidate();
+        users.invalidate();
+    }
+
+    private List<AutocompleteDTO> loadEmployees() {
+        long start = System.nanoTime();
+        List<AutocompleteDTO> entries = employeeRepository.findAllAutocompleteEntries();
+        log.debug("Loaded {} employees for autocompletion in {} ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+        return entries;
+    }
+
+    private List<AutocompleteDTO> loadUsers() {
+        long start = System.nanoTime();
+        List<AutocompleteDTO> entries = userRepository.findAllAutocompleteEntries();
+        log.debug("Loaded {} users for autocompletion in {} ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+        return entries;
+    }
+}
@@ -0,0 +1,278 @@
+package tech.ippon.service.index;
+
+import tech.ippon.domain.Employee;
+import tech.ippon.repository.EmployeeRepository;
+import tech.ippon.service.dto.DepartmentStatsDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the headcount and salary aggregates of the departments.
+ * <p>
+ * The aggregates are loaded lazily, from a single GROUP BY query, the first time they are read, and are then kept
+ * up to date by {@link #update(Contribution, Contribution)}, which must be called once the change is committed.
+ * Sums and counts are adjusted in place; the salary range of a department is only read again from the database
+ * when an employee having its lowest or highest salary leaves it.
+ * </p>
+ */
+@Component
+public class DepartmentStatsIndex {
+
+    private final Logger log = LoggerFactory.getLogger(DepartmentStatsIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Inject
+    private EmployeeRepository employeeRepository;
+
+    private volatile boolean built;
+
+    private Map<Long, Aggregate> aggregates = new HashMap<>();
+
+    /**
+     * Get the aggregates of a department.
+     *
+     * @param departmentId the id of the department
+     * @return the aggregates, empty if the department has no employee
+     */
+    public DepartmentStatsDTO getStats(long departmentId) {
+        ensureBuilt();
+        refreshSalaryRanges(Collections.singleton(departmentId));
+        lock.readLock().lock();
+        try {
+            return toStats(departmentId, aggregates.get(departmentId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the aggregates of all the departments having employees.
+     *
+     * @return the aggregates, ordered by department id
+     */
+    public List<DepartmentStatsDTO> getAllStats() {
+        ensureBuilt();
+        Set<Long> departmentIds;
+        lock.readLock().lock();
+        try {
+            departmentIds = new TreeSet<>(aggregates.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        refreshSalaryRanges(departmentIds);
+        lock.readLock().lock();
+        try {
+            List<DepartmentStatsDTO> stats = new ArrayList<>(aggregates.size());
+            new TreeMap<>(aggregates).forEach((departmentId, aggregate) -> stats.add(toStats(departmentId, aggregate)));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that an employee was created, updated or deleted.
+     *
+     * @param previous the contribution of the employee before the change, null if it was created
+     * @param current the contribution of the employee after the change, null if it was deleted
+     */
+    public void update(Contribution previous, Contribution current) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the employee will be read with all the others when the index is built
+                return;
+            }
+            if (previous != null && previous.departmentId != null) {
+                subtract(previous);
+            }
+            if (current != null && current.departmentId != null) {
+                add(current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded from the database the next time it is read.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        Map<Long, Aggregate> aggregates = new HashMap<>();
+        for (Object[] row : employeeRepository.findDepartmentAggregates()) {
+            Aggregate aggregate = new Aggregate();
+            aggregate.headcount = (Long) row[1];
+            aggregate.salaryCount = (Long) row[2];
+            aggregate.salarySum = row[3] == null ? 0 : (Long) row[3];
+            aggregate.salaryMin = (Long) row[4];
+            aggregate.salaryMax = (Long) row[5];
+            aggregate.commissionSum = row[6] == null ? 0 : (Long) row[6];
+            aggregates.put((Long) row[0], aggregate);
+        }
+        this.aggregates = aggregates;
+        log.debug("Built the department statistics index of {} departments in {} ms", aggregates.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void refreshSalaryRanges(Collection<Long> departmentIds) {
+        lock.readLock().lock();
+        try {
+            if (departmentIds.stream().map(aggregates::get).noneMatch(aggregate -> aggregate != null && aggregate.rangeStale)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long departmentId : departmentIds) {
+                Aggregate aggregate = aggregates.get(departmentId);
+                if (aggregate != null && aggregate.rangeStale) {
+                    Object[] range = employeeRepository.findSalaryRangeByDepartmentId(departmentId).get(0);
+                    aggregate.salaryMin = (Long) range[0];
+                    aggregate.salaryMax = (Long) range[1];
+                    aggregate.rangeStale = false;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Contribution contribution) {
+        Aggregate aggregate = aggregates.computeIfAbsent(contribution.departmentId, departmentId -> new Aggregate());
+        aggregate.headcount++;
+        Long salary = contribution.salary;
+        if (salary != null) {
+            aggregate.salaryCount++;
+            aggregate.salarySum += salary;
+            if (!aggregate.rangeStale) {
+                aggregate.salaryMin = aggregate.salaryMin == null ? salary : Math.min(aggregate.salaryMin, salary);
+                aggregate.salaryMax = aggregate.salaryMax == null ? salary : Math.max(aggregate.salaryMax, salary);
+            }
+        }
+        aggregate.commissionSum += contribution.commission();
+    }
+
+    private void subtract(Contribution contribution) {
+        Aggregate aggregate = aggregates.get(contribution.departmentId);
+        if (aggregate == null) {
+            return;
+        }
+        if (--aggregate.headcount <= 0) {
+            aggregates.remove(contribution.departmentId);
+            return;
+        }
+        Long salary = contribution.salary;
+        if (salary != null) {
+            aggregate.salaryCount--;
+            aggregate.salarySum -= salary;
+            if (aggregate.salaryCount == 0) {
+                aggregate.salaryMin = null;
+                aggregate.salaryMax = null;
+                aggregate.rangeStale = false;
+            } else if (salary.equals(aggregate.salaryMin) || salary.equals(aggregate.salaryMax)) {
+                // another employee may have the same salary: only the database knows the new range
+                aggregate.rangeStale = true;
+            }
+        }
+        aggregate.commissionSum -= contribution.commission();
+    }
+
+    private static DepartmentStatsDTO toStats(long departmentId, Aggregate aggregate) {
+        if (aggregate == null) {
+            return new DepartmentStatsDTO(departmentId, 0, 0, null, null, null, 0);
+        }
+        Double salaryAvg = aggregate.salaryCount == 0 ? null : (double) aggregate.salarySum / aggregate.salaryCount;
+        return new DepartmentStatsDTO(departmentId, aggregate.headcount, aggregate.salarySum, aggregate.salaryMin,
+            aggregate.salaryMax, salaryAvg, aggregate.commissionSum / 100);
+    }
+
+    /**
+     * The part of the aggregates coming from one employee, captured when the employee is read or saved.
+     */
+    public static final class Contribution {
+
+        private final Long departmentId;
+
+        private final Long salary;
+
+        private final Long commissionPct;
+
+        private Contribution(Long departmentId, Long salary, Long commissionPct) {
+            this.departmentId = departmentId;
+            this.salary = salary;
+            this.commissionPct = commissionPct;
+        }
+
+        /**
+         * Capture the contribution of an employee, in its current state.
+         *
+         * @param employee the employee, may be null
+         * @return the contribution, or null if the employee is null
+         */
+        public static Contribution of(Employee employee) {
+            if (employee == null) {
+                return null;
+            }
+            return new Contribution(employee.getDepartment() == null ? null : employee.getDepartment().getId(),
+                employee.getSalary(), employee.getCommissionPct());
+        }
+
+        private long commission() {
+            return salary == null || commissionPct == null ? 0 : salary * commissionPct;
+        }
+    }
+
+    /**
+     * The aggregates of a department, commissions being kept in hundredths.
+     */
+    private static final class Aggregate {
+
+        private long headcount;
+
+        private long salaryCount;
+
+        private long salarySum;
+
+        private Long salaryMin;
+
+        private Long salaryMax;
+
+        private boolean rangeStale;
+
+        private long commissionSum;
+    }
+}
@@ -0,0 +1,358 @@
+package tech.ippon.service.index;
+
+import tech.ippon.repository.EmployeeRepository;
+import tech.ippon.service.dto.EmployeeHierarchyStatsDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the management hierarchy of the employees.
+ * <p>
+ * Each employee gets a slot in a set of parallel primitive arrays, linking it to its manager, its first report
+ * and its siblings: walking a subtree or a chain of command reads a few int arrays and never touches the database.
+ * The index is loaded lazily, from a single projection query, the first time it is read, and is then kept up to
+ * date by {@link #update(long, Long)} and {@link #remove(long)}, which must be called once the change is committed.
+ * </p>
+ */
+@Component
+public class EmployeeHierarchyIndex {
+
+    private static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(EmployeeHierarchyIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Inject
+    private EmployeeRepository employeeRepository;
+
+    private volatile boolean built;
+
+    private LongIntHashMap slotsById = new LongIntHashMap(INITIAL_CAPACITY);
+
+    private long[] ids = new long[0];
+
+    private int[] parent = new int[0];
+
+    private int[] firstChild = new int[0];
+
+    private int[] nextSibling = new int[0];
+
+    private int[] prevSibling = new int[0];
+
+    private int[] childCount = new int[0];
+
+    private int slotCount;
+
+    private int freeSlot = NONE;
+
+    /**
+     * Get the employees under an employee, level by level.
+     *
+     * @param id the id of the employee
+     * @param depth the number of levels to return, 1 for the direct reports only
+     * @return the ids of the employees, or null if the employee does not exist
+     */
+    public long[] getReports(long id, int depth) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == NONE) {
+                return null;
+            }
+            Traversal traversal = traverse(slot, depth);
+            long[] reports = new long[traversal.count];
+            for (int i = 0; i < traversal.count; i++) {
+                reports[i] = ids[traversal.slots[i]];
+            }
+            return reports;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the chain of command of an employee.
+     *
+     * @param id the id of the employee
+     * @return the ids of the managers of the employee, from its direct manager to the top of the hierarchy,
+     * or null if the employee does not exist
+     */
+    public long[] getChain(long id) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == NONE) {
+                return null;
+            }
+            long[] chain = new long[levelOf(slot)];
+            for (int i = 0, manager = parent[slot]; i < chain.length; i++, manager = parent[manager]) {
+                chain[i] = ids[manager];
+            }
+            return chain;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the position of an employee in the hierarchy.
+     *
+     * @param id the id of the employee
+     * @return the statistics of the employee, or null if the employee does not exist
+     */
+    public EmployeeHierarchyStatsDTO getStats(long id) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == NONE) {
+                return null;
+            }
+            Traversal traversal = traverse(slot, Integer.MAX_VALUE);
+            return new EmployeeHierarchyStatsDTO(id, levelOf(slot), childCount[slot], traversal.count, traversal.levels);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that an employee was created, or that its manager changed.
+     *
+     * @param id the id of the employee
+     * @param managerId the id of its manager, null if it has none
+     */
+    public void update(long id, Long managerId) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the employee will be read with all the others when the index is built
+                return;
+            }
+            int slot = slotOf(id);
+            int manager = managerId == null ? NONE : slotOf(managerId);
+            if (parent[slot] != manager) {
+                detach(slot);
+                if (manager != NONE) {
+                    attach(slot, manager);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record that an employee was deleted. Its reports, if any, are left without manager.
+     *
+     * @param id the id of the employee
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = built ? slotsById.get(id) : NONE;
+            if (slot == NONE) {
+                return;
+            }
+            detach(slot);
+            for (int child = firstChild[slot]; child != NONE; ) {
+                int next = nextSibling[child];
+                parent[child] = NONE;
+                prevSibling[child] = NONE;
+                nextSibling[child] = NONE;
+                child = next;
+            }
+            firstChild[slot] = NONE;
+            childCount[slot] = 0;
+            slotsById.remove(id);
+            nextSibling[slot] = freeSlot;
+            freeSlot = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded from the database the next time it is read.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        List<Object[]> links = employeeRepository.findAllManagerLinks();
+        int capacity = Math.max(INITIAL_CAPACITY, links.size());
+        slotsById = new LongIntHashMap(capacity);
+        ids = new long[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        prevSibling = new int[capacity];
+        childCount = new int[capacity];
+        slotCount = 0;
+        freeSlot = NONE;
+        for (Object[] link : links) {
+            slotOf((Long) link[0]);
+        }
+        for (Object[] link : links) {
+            if (link[1] != null) {
+                attach(slotsById.get((Long) link[0]), slotOf((Long) link[1]));
+            }
+        }
+        log.debug("Built the employee hierarchy index of {} employees in {} ms", slotsById.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int slotOf(long id) {
+        int slot = slotsById.get(id);
+        if (slot != NONE) {
+            return slot;
+        }
+        if (freeSlot != NONE) {
+            slot = freeSlot;
+            freeSlot = nextSibling[slot];
+        } else {
+            if (slotCount == ids.length) {
+                grow(Math.max(INITIAL_CAPACITY, slotCount * 2));
+            }
+            slot = slotCount++;
+        }
+        ids[slot] = id;
+        parent[slot] = NONE;
+        firstChild[slot] = NONE;
+        nextSibling[slot] = NONE;
+        prevSibling[slot] = NONE;
+        childCount[slot] = 0;
+        slotsById.put(id, slot);
+        return slot;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        prevSibling = Arrays.copyOf(prevSibling, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+    }
+
+    private void attach(int slot, int manager) {
+        int first = firstChild[manager];
+        parent[slot] = manager;
+        prevSibling[slot] = NONE;
+        nextSibling[slot] = first;
+        if (first != NONE) {
+            prevSibling[first] = slot;
+        }
+        firstChild[manager] = slot;
+        childCount[manager]++;
+    }
+
+    private void detach(int slot) {
+        int manager = parent[slot];
+        if (manager == NONE) {
+            return;
+        }
+        int prev = prevSibling[slot];
+        int next = nextSibling[slot];
+        if (prev != NONE) {
+            nextSibling[prev] = next;
+        } else {
+            firstChild[manager] = next;
+        }
+        if (next != NONE) {
+            prevSibling[next] = prev;
+        }
+        childCount[manager]--;
+        parent[slot] = NONE;
+        prevSibling[slot] = NONE;
+        nextSibling[slot] = NONE;
+    }
+
+    private int levelOf(int slot) {
+        // bounded by the number of employees, in case the data contains a management cycle
+        int level = 0;
+        int max = slotsById.size();
+        for (int manager = parent[slot]; manager != NONE && level < max; manager = parent[manager]) {
+            level++;
+        }
+        return level;
+    }
+
+    private Traversal traverse(int root, int depth) {
+        Traversal traversal = new Traversal(Math.max(16, childCount[root]));
+        traversal.addChildren(root);
+        int levelStart = 0;
+        while (traversal.count > levelStart) {
+            traversal.levels++;
+            if (traversal.levels == depth) {
+                break;
+            }
+            int levelEnd = traversal.count;
+            for (int i = levelStart; i < levelEnd; i++) {
+                traversal.addChildren(traversal.slots[i]);
+            }
+            levelStart = levelEnd;
+        }
+        return traversal;
+    }
+
+    /**
+     * The slots found by a breadth-first walk of a subtree.
+     */
+    private final class Traversal {
+
+        private int[] slots;
+
+        private int count;
+
+        private int levels;
+
+        private Traversal(int capacity) {
+            slots = new int[capacity];
+        }
+
+        private void addChildren(int slot) {
+            // bounded by the number of employees, in case the data contains a management cycle
+            int max = slotsById.size();
+            for (int child = firstChild[slot]; child != NONE && count < max; child = nextSibling[child]) {
+                if (count == slots.length) {
+                    slots = Arrays.copyOf(slots, count * 2);
+                }
+                slots[count++] = child;
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package tech.ippon.service.index;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of ids, in the manner of a Roaring bitmap.
+ * <p>
+ * The ids are split by their high bits into chunks of 65536 consecutive ids. Each chunk holding an id is stored in a
+ * container: a sorted array of the low 16 bits of its ids while it holds at most 4096 of them, a bitmap of 65536 bits
+ * (8 KB) beyond that. Sparse sets thus take 2 bytes per id, dense ones 1 bit per id, and intersections and unions
+ * work chunk by chunk, with word-wide operations on the dense chunks.
+ * </p>
+ * <p>
+ * The ids must be between 0 and 2^47 - 1. This class is not thread-safe; {@link #and(IdBitmap, IdBitmap)} and
+ * {@link #or(IdBitmap, IdBitmap)} never modify their arguments.
+ * </p>
+ */
+public final class IdBitmap {
+
+    private static final long MAX_ID = (1L << 47) - 1;
+
+    private int[] keys = new int[0];
+
+    private Container[] containers = new Container[0];
+
+    private int size;
+
+    /**
+     * Add an id to the set.
+     *
+     * @param id the id
+     * @return true if the id was not in the set
+     * @throws IllegalArgumentException if the id is out of range
+     */
+    public boolean add(long id) {
+        if (id < 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("Id out of range: " + id);
+        }
+        int key = (int) (id >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key, new Container());
+        }
+        return containers[index].add((char) id);
+    }
+
+    /**
+     * Remove an id from the set.
+     *
+     * @param id the id
+     * @return true if the id was in the set
+     */
+    public boolean remove(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (int) (id >>> 16));
+        if (index < 0 || !containers[index].remove((char) id)) {
+            return false;
+        }
+        if (containers[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    public boolean contains(long id) {
+        if (id < 0 || id > MAX_ID) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (int) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the ids of the set, in ascending order
+     */
+    public long[] toArray() {
+        long[] ids = new long[cardinality()];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count = containers[i].copyTo(ids, count, (long) keys[i] << 16);
+        }
+        return ids;
+    }
+
+    /**
+     * Intersect two sets.
+     *
+     * @param first the first set
+     * @param second the second set
+     * @return a new set, holding the ids of both sets
+     */
+    public static IdBitmap and(IdBitmap first, IdBitmap second) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            if (first.keys[i] < second.keys[j]) {
+                i++;
+            } else if (first.keys[i] > second.keys[j]) {
+                j++;
+            } else {
+                Container container = Container.and(first.containers[i], second.containers[j]);
+                if (container.cardinality > 0) {
+                    result.insert(result.size, first.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unite two sets.
+     *
+     * @param first the first set
+     * @param second the second set
+     * @return a new set, holding the ids of either set
+     */
+    public static IdBitmap or(IdBitmap first, IdBitmap second) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < first.size || j < second.size) {
+            if (j == second.size || (i < first.size && first.keys[i] < second.keys[j])) {
+                result.insert(result.size, first.keys[i], first.containers[i].copy());
+                i++;
+            } else if (i == first.size || first.keys[i] > second.keys[j]) {
+                result.insert(result.size, second.keys[j], second.containers[j].copy());
+                j++;
+            } else {
+                result.insert(result.size, first.keys[i], Container.or(first.containers[i], second.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private void insert(int index, int key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * The low 16 bits of the ids of a chunk: a sorted array when sparse, a bitmap when dense.
+     */
+    private static final class Container {
+
+        private static final int ARRAY_MAX = 4096;
+
+        private static final int BITMAP_WORDS = 1024;
+
+        private char[] array = new char[4];
+
+        private long[] bitmap;
+
+        private int cardinality;
+
+        private boolean add(char value) {
+            if (bitmap != null) {
+                long mask = 1L << value;
+                if ((bitmap[value >>> 6] & mask) != 0) {
+                    return false;
+                }
+                bitmap[value >>> 6] |= mask;
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(value);
+            }
+            index = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = value;
+            cardinality++;
+            return true;
+        }
+
+        private boolean remove(char value) {
+            if (bitmap != null) {
+                long mask = 1L << value;
+                if ((bitmap[value >>> 6] & mask) == 0) {
+                    return false;
+                }
+                bitmap[value >>> 6] &= ~mask;
+                if (--cardinality <= ARRAY_MAX) {
+                    toArray();
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        private boolean contains(char value) {
+            if (bitmap != null) {
+                return (bitmap[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        private int copyTo(long[] ids, int offset, long high) {
+            if (bitmap != null) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                        ids[offset++] = high | (word << 6) | Long.numberOfTrailingZeros(bits);
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    ids[offset++] = high | array[i];
+                }
+            }
+            return offset;
+        }
+
+        private Container copy() {
+            Container copy = new Container();
+            copy.cardinality = cardinality;
+            if (bitmap != null) {
+                copy.array = null;
+                copy.bitmap = bitmap.clone();
+            } else {
+                copy.array = Arrays.copyOf(array, Math.max(4, cardinality));
+            }
+            return copy;
+        }
+
+        private static Container and(Container first, Container second) {
+            Container result = new Container();
+            if (first.bitmap != null && second.bitmap != null) {
+                result.array = null;
+                result.bitmap = new long[BITMAP_WORDS];
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    result.bitmap[word] = first.bitmap[word] & second.bitmap[word];
+                    result.cardinality += Long.bitCount(result.bitmap[word]);
+                }
+                if (result.cardinality <= ARRAY_MAX) {
+                    result.toArray();
+                }
+                return result;
+            }
+            // at most one is a bitmap: look the values of the smaller array up in the other container
+            Container sparse = second.bitmap != null || (first.bitmap == null && first.cardinality <= second.cardinality) ?
+                first : second;
+            Container other = sparse == first ? second : first;
+            result.array = new char[Math.max(4, Math.min(first.cardinality, second.cardinality))];
+            for (int i = 0; i < sparse.cardinality; i++) {
+                if (other.contains(sparse.array[i])) {
+                    result.array[result.cardinality++] = sparse.array[i];
+                }
+            }
+            return result;
+        }
+
+        private static Container or(Container first, Container second) {
+            if (first.bitmap != null && second.bitmap != null) {
+                Container result = new Container();
+                result.array = null;
+                result.bitmap = new long[BITMAP_WORDS];
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    result.bitmap[word] = first.bitmap[word] | second.bitmap[word];
+                    result.cardinality += Long.bitCount(result.bitmap[word]);
+                }
+                return result;
+            }
+            // at most one is a bitmap: add the values of the smaller array to a copy of the other container
+            Container base = first.bitmap != null || (second.bitmap == null && first.cardinality >= second.cardinality) ?
+                first : second;
+            Container other = base == first ? second : first;
+            Container result = base.copy();
+            for (int i = 0; i < other.cardinality; i++) {
+                result.add(other.array[i]);
+            }
+            return result;
+        }
+
+        private void toBitmap() {
+            bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int count = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                    values[count++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+                }
+            }
+            array = values;
+            bitmap = null;
+        }
+    }
+}
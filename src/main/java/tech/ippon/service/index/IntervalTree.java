@@ -0,0 +1,157 @@
+package tech.ippon.service.index;
+
+import java.util.*;
+
+/**
+ * An immutable static interval tree of closed intervals [start, end], each identified by an id.
+ * <p>
+ * The intervals are kept sorted by start in parallel primitive arrays, which form an implicit balanced binary tree:
+ * the node of a range of positions is its middle position, and each node also holds the greatest end of its
+ * subtree. The intervals overlapping a range are then found by skipping every subtree that ends before the range,
+ * and every node that starts after it.
+ * </p>
+ */
+public final class IntervalTree {
+
+    public static final IntervalTree EMPTY = new IntervalTree(new long[0], new long[0], new long[0]);
+
+    private final long[] ids;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final long[] maxEnds;
+
+    /**
+     * Build a tree from the intervals, given in any order.
+     *
+     * @param ids the ids of the intervals
+     * @param starts the starts of the intervals
+     * @param ends the ends of the intervals, included
+     */
+    public IntervalTree(long[] ids, long[] starts, long[] ends) {
+        int size = ids.length;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> starts[i]).thenComparingLong(i -> ids[i]));
+        this.ids = new long[size];
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.maxEnds = new long[size];
+        for (int i = 0; i < size; i++) {
+            this.ids[i] = ids[order[i]];
+            this.starts[i] = starts[order[i]];
+            this.ends[i] = ends[order[i]];
+        }
+        computeMaxEnds(0, size);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Get the intervals overlapping a range.
+     *
+     * @param from the start of the range
+     * @param to the end of the range, included
+     * @return the ids of the intervals, in ascending order
+     */
+    public long[] findOverlapping(long from, long to) {
+        long[] result = new long[16];
+        int count = 0;
+        // the ranges of positions left to visit, as (low, high) pairs; the depth of the tree is about log2(n)
+        int[] ranges = new int[128];
+        int pending = 0;
+        ranges[pending++] = 0;
+        ranges[pending++] = ids.length;
+        while (pending > 0) {
+            int high = ranges[--pending];
+            int low = ranges[--pending];
+            if (low >= high) {
+                continue;
+            }
+            int middle = (low + high) >>> 1;
+            if (maxEnds[middle] < from) {
+                // the whole subtree ends before the range
+                continue;
+            }
+            if (pending + 4 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[pending++] = low;
+            ranges[pending++] = middle;
+            if (starts[middle] > to) {
+                // this node, and every node after it, starts after the range
+                continue;
+            }
+            ranges[pending++] = middle + 1;
+            ranges[pending++] = high;
+            if (ends[middle] >= from) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = ids[middle];
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Get the intervals containing a point.
+     *
+     * @param point the point
+     * @return the ids of the intervals, in ascending order
+     */
+    public long[] findContaining(long point) {
+        return findOverlapping(point, point);
+    }
+
+    /**
+     * Get the intervals containing each of the given points, in a single pass over the intervals.
+     *
+     * @param points the points, in ascending order
+     * @return the ids of the intervals of each point, in ascending order, in the order of the points
+     * @throws IllegalArgumentException if the points are not sorted
+     */
+    public List<long[]> findContaining(long[] points) {
+        List<long[]> result = new ArrayList<>(points.length);
+        // the intervals started and not yet ended at the current point, the one ending first on top
+        PriorityQueue<Integer> open = new PriorityQueue<>(Comparator.comparingLong(position -> ends[position]));
+        int next = 0;
+        for (int i = 0; i < points.length; i++) {
+            long point = points[i];
+            if (i > 0 && point < points[i - 1]) {
+                throw new IllegalArgumentException("The points are not sorted");
+            }
+            while (next < starts.length && starts[next] <= point) {
+                open.add(next++);
+            }
+            while (!open.isEmpty() && ends[open.peek()] < point) {
+                open.poll();
+            }
+            long[] ids = new long[open.size()];
+            int count = 0;
+            for (int position : open) {
+                ids[count++] = this.ids[position];
+            }
+            Arrays.sort(ids);
+            result.add(ids);
+        }
+        return result;
+    }
+
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+        int middle = (low + high) >>> 1;
+        maxEnds[middle] = Math.max(ends[middle], Math.max(computeMaxEnds(low, middle), computeMaxEnds(middle + 1, high)));
+        return maxEnds[middle];
+    }
+}
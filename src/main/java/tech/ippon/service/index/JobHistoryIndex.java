@@ -0,0 +1,314 @@
+package tech.ippon.service.index;
+
+import tech.ippon.repository.JobHistoryRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory interval index of the job histories, for "as of" queries.
+ * <p>
+ * A job history covers the period from its start date, included, to its end date, excluded; a missing date leaves
+ * the period open on that side. The periods are kept in {@link IntervalTree}s, one per department and one per
+ * employee, answering "who was in this department" and "where was this employee" at a date, and all the histories
+ * are kept sorted by start date, answering "who moved" in a window. Every query is a tree walk or a sorted map
+ * lookup, logarithmic in the number of histories plus the size of the answer.
+ * </p>
+ * <p>
+ * The index is loaded lazily, from a single projection query, the first time it is read, and is then kept up to date
+ * by {@link #update(long, Long, Long, ZonedDateTime, ZonedDateTime)} and {@link #remove(long)}, which must be called
+ * once the change is committed: the histories by start date are updated in place, and the trees of the departments
+ * and employees that changed are built again on the first read following the change.
+ * </p>
+ */
+@Component
+public class JobHistoryIndex {
+
+    private final Logger log = LoggerFactory.getLogger(JobHistoryIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Inject
+    private JobHistoryRepository jobHistoryRepository;
+
+    private volatile boolean built;
+
+    private volatile boolean stale;
+
+    private Map<Long, Period> periods = new HashMap<>();
+
+    private Map<Long, Set<Long>> idsByDepartment = new HashMap<>();
+
+    private Map<Long, Set<Long>> idsByEmployee = new HashMap<>();
+
+    private Map<Long, IntervalTree> treesByDepartment = new HashMap<>();
+
+    private Map<Long, IntervalTree> treesByEmployee = new HashMap<>();
+
+    private NavigableMap<Long, NavigableSet<Long>> idsByStart = new TreeMap<>();
+
+    private final Set<Long> staleDepartments = new HashSet<>();
+
+    private final Set<Long> staleEmployees = new HashSet<>();
+
+    /**
+     * Get the job histories of a department covering a date.
+     *
+     * @param departmentId the id of the department
+     * @param date the date
+     * @return the ids of the job histories, in ascending order
+     */
+    public long[] findByDepartmentAt(long departmentId, ZonedDateTime date) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            return treesByDepartment.getOrDefault(departmentId, IntervalTree.EMPTY).findContaining(toMillis(date));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the job history of an employee covering a date.
+     *
+     * @param employeeId the id of the employee
+     * @param date the date
+     * @return the id of the job history, the one starting last if several overlap, or null if there is none
+     */
+    public Long findByEmployeeAt(long employeeId, ZonedDateTime date) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            Long result = null;
+            for (long id : treesByEmployee.getOrDefault(employeeId, IntervalTree.EMPTY).findContaining(toMillis(date))) {
+                if (result == null || periods.get(id).start >= periods.get(result).start) {
+                    result = id;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the job histories starting in a window, i.e. the moves of the employees in that window.
+     *
+     * @param from the start of the window, included
+     * @param to the end of the window, excluded
+     * @return the ids of the job histories, ordered by start date then id
+     */
+    public long[] findStartingBetween(ZonedDateTime from, ZonedDateTime to) {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        if (fromMillis >= toMillis) {
+            return new long[0];
+        }
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            long[] result = new long[16];
+            int count = 0;
+            for (NavigableSet<Long> ids : idsByStart.subMap(fromMillis, true, toMillis, false).values()) {
+                for (Long id : ids) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = id;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the period of a job history, once it was created or updated.
+     *
+     * @param id the id of the job history
+     * @param employeeId the id of its employee, null if it has none
+     * @param departmentId the id of its department, null if it has none
+     * @param startDate its start date, null if it has none
+     * @param endDate its end date, null if it has none
+     */
+    public void update(long id, Long employeeId, Long departmentId, ZonedDateTime startDate, ZonedDateTime endDate) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the job history will be read with all the others when the index is built
+                return;
+            }
+            unlink(id);
+            link(id, period(employeeId, departmentId, startDate, endDate));
+            stale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record that a job history was deleted.
+     *
+     * @param id the id of the job history
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (built && unlink(id)) {
+                stale = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded from the database the next time it is read.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long toMillis(ZonedDateTime date) {
+        return date.toInstant().toEpochMilli();
+    }
+
+    private static Period period(Long employeeId, Long departmentId, ZonedDateTime startDate, ZonedDateTime endDate) {
+        return new Period(employeeId, departmentId,
+            startDate == null ? Long.MIN_VALUE : toMillis(startDate),
+            endDate == null ? Long.MAX_VALUE : toMillis(endDate) - 1);
+    }
+
+    private void link(long id, Period period) {
+        periods.put(id, period);
+        idsByStart.computeIfAbsent(period.start, key -> new TreeSet<>()).add(id);
+        if (period.departmentId != null) {
+            idsByDepartment.computeIfAbsent(period.departmentId, key -> new HashSet<>()).add(id);
+            staleDepartments.add(period.departmentId);
+        }
+        if (period.employeeId != null) {
+            idsByEmployee.computeIfAbsent(period.employeeId, key -> new HashSet<>()).add(id);
+            staleEmployees.add(period.employeeId);
+        }
+    }
+
+    private boolean unlink(long id) {
+        Period period = periods.remove(id);
+        if (period == null) {
+            return false;
+        }
+        NavigableSet<Long> starting = idsByStart.get(period.start);
+        starting.remove(id);
+        if (starting.isEmpty()) {
+            idsByStart.remove(period.start);
+        }
+        if (period.departmentId != null) {
+            idsByDepartment.get(period.departmentId).remove(id);
+            staleDepartments.add(period.departmentId);
+        }
+        if (period.employeeId != null) {
+            idsByEmployee.get(period.employeeId).remove(id);
+            staleEmployees.add(period.employeeId);
+        }
+        return true;
+    }
+
+    private void ensureCurrent() {
+        if (built && !stale) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            } else if (stale) {
+                rebuildTrees(treesByDepartment, idsByDepartment, staleDepartments);
+                rebuildTrees(treesByEmployee, idsByEmployee, staleEmployees);
+            }
+            stale = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        List<Object[]> rows = jobHistoryRepository.findAllPeriods();
+        periods = new HashMap<>(Math.max(16, rows.size() * 2));
+        idsByDepartment = new HashMap<>();
+        idsByEmployee = new HashMap<>();
+        idsByStart = new TreeMap<>();
+        for (Object[] row : rows) {
+            link((Long) row[0], period((Long) row[1], (Long) row[2], (ZonedDateTime) row[3], (ZonedDateTime) row[4]));
+        }
+        staleDepartments.clear();
+        staleEmployees.clear();
+        treesByDepartment = new HashMap<>();
+        treesByEmployee = new HashMap<>();
+        idsByDepartment.forEach((departmentId, ids) -> treesByDepartment.put(departmentId, tree(ids)));
+        idsByEmployee.forEach((employeeId, ids) -> treesByEmployee.put(employeeId, tree(ids)));
+        log.debug("Built the job history index of {} periods in {} ms", rows.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void rebuildTrees(Map<Long, IntervalTree> trees, Map<Long, Set<Long>> idsByKey, Set<Long> staleKeys) {
+        for (Long key : staleKeys) {
+            Set<Long> ids = idsByKey.get(key);
+            if (ids == null || ids.isEmpty()) {
+                idsByKey.remove(key);
+                trees.remove(key);
+            } else {
+                trees.put(key, tree(ids));
+            }
+        }
+        staleKeys.clear();
+    }
+
+    private IntervalTree tree(Collection<Long> ids) {
+        long[] keys = new long[ids.size()];
+        long[] starts = new long[keys.length];
+        long[] ends = new long[keys.length];
+        int i = 0;
+        for (Long id : ids) {
+            Period period = periods.get(id);
+            keys[i] = id;
+            starts[i] = period.start;
+            ends[i++] = period.end;
+        }
+        return new IntervalTree(keys, starts, ends);
+    }
+
+    /**
+     * The period of a job history, with its end included.
+     */
+    private static final class Period {
+
+        private final Long employeeId;
+
+        private final Long departmentId;
+
+        private final long start;
+
+        private final long end;
+
+        private Period(Long employeeId, Long departmentId, long start, long end) {
+            this.employeeId = employeeId;
+            this.departmentId = departmentId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
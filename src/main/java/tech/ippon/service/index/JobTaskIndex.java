@@ -0,0 +1,207 @@
+package tech.ippon.service.index;
+
+import tech.ippon.repository.JobRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the tasks of the jobs.
+ * <p>
+ * The assignments are kept as two maps of compressed bitmaps, the jobs of each task and the tasks of each job, so
+ * that "the jobs requiring all these tasks" or "the tasks shared by these jobs" are answered with bitmap
+ * intersections and unions, without loading any entity. The index is loaded lazily, from a single projection
+ * query, the first time it is read, and is then kept up to date by {@link #update(long, Collection)} and
+ * {@link #removeJob(long)}, which must be called once the change is committed.
+ * </p>
+ */
+@Component
+public class JobTaskIndex {
+
+    private static final IdBitmap EMPTY = new IdBitmap();
+
+    private final Logger log = LoggerFactory.getLogger(JobTaskIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Inject
+    private JobRepository jobRepository;
+
+    private volatile boolean built;
+
+    private Map<Long, IdBitmap> jobsByTask = new HashMap<>();
+
+    private Map<Long, IdBitmap> tasksByJob = new HashMap<>();
+
+    /**
+     * Get the jobs matching a set of tasks.
+     *
+     * @param allTasks the ids of the tasks that a job must all have
+     * @param anyTasks the ids of the tasks that a job must have at least one of, ignored if empty
+     * @return the ids of the matching jobs, in ascending order
+     */
+    public long[] matchJobs(Collection<Long> allTasks, Collection<Long> anyTasks) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            IdBitmap result = intersect(jobsByTask, allTasks);
+            if (!anyTasks.isEmpty() && (result == null || !result.isEmpty())) {
+                IdBitmap any = unite(jobsByTask, anyTasks);
+                result = result == null ? any : IdBitmap.and(result, any);
+            }
+            return result == null ? new long[0] : result.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the tasks that a set of jobs have in common.
+     *
+     * @param jobIds the ids of the jobs
+     * @return the ids of the tasks of all the jobs, in ascending order
+     */
+    public long[] sharedTasks(Collection<Long> jobIds) {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            IdBitmap result = intersect(tasksByJob, jobIds);
+            return result == null ? new long[0] : result.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the tasks of a job, once it was created or updated.
+     *
+     * @param jobId the id of the job
+     * @param taskIds the ids of all its tasks
+     */
+    public void update(long jobId, Collection<Long> taskIds) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the job will be read with all the others when the index is built
+                return;
+            }
+            removeLinks(jobId);
+            for (Long taskId : taskIds) {
+                link(jobId, taskId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record that a job was deleted.
+     *
+     * @param jobId the id of the job
+     */
+    public void removeJob(long jobId) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                removeLinks(jobId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded from the database the next time it is read.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Intersect the bitmaps of the given keys, starting from the smallest one.
+     *
+     * @return the intersection, or null if there is no key
+     */
+    private static IdBitmap intersect(Map<Long, IdBitmap> bitmaps, Collection<Long> keys) {
+        List<IdBitmap> operands = new ArrayList<>(keys.size());
+        for (Long key : new LinkedHashSet<>(keys)) {
+            operands.add(bitmaps.getOrDefault(key, EMPTY));
+        }
+        if (operands.isEmpty()) {
+            return null;
+        }
+        operands.sort(Comparator.comparingInt(IdBitmap::cardinality));
+        IdBitmap result = operands.get(0);
+        for (int i = 1; i < operands.size() && !result.isEmpty(); i++) {
+            result = IdBitmap.and(result, operands.get(i));
+        }
+        return result;
+    }
+
+    private static IdBitmap unite(Map<Long, IdBitmap> bitmaps, Collection<Long> keys) {
+        IdBitmap result = EMPTY;
+        for (Long key : new LinkedHashSet<>(keys)) {
+            IdBitmap bitmap = bitmaps.get(key);
+            if (bitmap != null) {
+                result = IdBitmap.or(result, bitmap);
+            }
+        }
+        return result;
+    }
+
+    private void link(long jobId, long taskId) {
+        jobsByTask.computeIfAbsent(taskId, id -> new IdBitmap()).add(jobId);
+        tasksByJob.computeIfAbsent(jobId, id -> new IdBitmap()).add(taskId);
+    }
+
+    private void removeLinks(long jobId) {
+        IdBitmap tasks = tasksByJob.remove(jobId);
+        if (tasks == null) {
+            return;
+        }
+        for (long taskId : tasks.toArray()) {
+            IdBitmap jobs = jobsByTask.get(taskId);
+            jobs.remove(jobId);
+            if (jobs.isEmpty()) {
+                jobsByTask.remove(taskId);
+            }
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                build();
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        List<Object[]> links = jobRepository.findAllTaskLinks();
+        jobsByTask = new HashMap<>();
+        tasksByJob = new HashMap<>();
+        for (Object[] row : links) {
+            link((Long) row[0], (Long) row[1]);
+        }
+        log.debug("Built the job task index of {} assignments in {} ms", links.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,127 @@
+package tech.ippon.service.index;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive long keys to primitive int values, with open addressing and linear probing.
+ * <p>
+ * It stores neither boxed keys nor entry objects, so that indexes of hundreds of thousands of entities stay
+ * compact and cheap to look up. It is not thread-safe: the owning index is responsible for locking.
+ * </p>
+ */
+final class LongIntHashMap {
+
+    /**
+     * The value returned for a missing key: the map is meant to store array positions, which are never negative.
+     */
+    static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private boolean[] used;
+
+    private int mask;
+
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    void remove(long key) {
+        int slot = slot(key);
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (!used[slot]) {
+            return;
+        }
+        used[slot] = false;
+        size--;
+        // re-insert the rest of the probe run, so that no key becomes unreachable behind the new hole
+        slot = (slot + 1) & mask;
+        while (used[slot]) {
+            long movedKey = keys[slot];
+            int movedValue = values[slot];
+            used[slot] = false;
+            size--;
+            put(movedKey, movedValue);
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        int hash = Long.hashCode(key) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
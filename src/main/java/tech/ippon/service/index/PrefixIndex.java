@@ -0,0 +1,238 @@
+package tech.ippon.service.index;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * An index of values by the prefixes of the words of some of their fields, for autocompletion.
+ * <p>
+ * The words, lower-cased and without accents, are kept in a concurrent skip list next to the id of their value: the
+ * values matching a prefix are found by seeking to the prefix followed by a scan, in lexicographic order of the
+ * matched words. Queries of several words look up the longest one and check the others on the candidates. Reads are
+ * lock-free; writes add and remove only the words of the changed values, in logarithmic time, and are serialized.
+ * </p>
+ * <p>
+ * The index is loaded lazily, the first time it is read, and changes made before that are ignored.
+ * </p>
+ *
+ * @param <T> the type of the values
+ */
+final class PrefixIndex<T> {
+
+    /**
+     * The maximum number of words read for a query, so that a very common prefix costs no more than a rare one.
+     */
+    private static final int MAX_SCAN = 10_000;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final Function<T, Long> idExtractor;
+
+    private final Function<T, String[]> fieldsExtractor;
+
+    private final Supplier<Collection<T>> loader;
+
+    private final Map<Long, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    private volatile NavigableSet<Posting> postings = new ConcurrentSkipListSet<>();
+
+    private volatile boolean built;
+
+    /**
+     * @param idExtractor the function giving the id of a value
+     * @param fieldsExtractor the function giving the fields of a value to index, which may be null
+     * @param loader the function loading all the values
+     */
+    PrefixIndex(Function<T, Long> idExtractor, Function<T, String[]> fieldsExtractor, Supplier<Collection<T>> loader) {
+        this.idExtractor = idExtractor;
+        this.fieldsExtractor = fieldsExtractor;
+        this.loader = loader;
+    }
+
+    /**
+     * Find the values having a word starting with each word of a query.
+     *
+     * @param query the query
+     * @param limit the maximum number of values to return
+     * @return the values, in order of their matched word
+     */
+    List<T> search(String query, int limit) {
+        ensureBuilt();
+        String[] words = words(query);
+        if (words.length == 0) {
+            return Collections.emptyList();
+        }
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) {
+                longest = word;
+            }
+        }
+        Set<Long> seen = new HashSet<>();
+        List<T> results = new ArrayList<>(Math.min(limit, 16));
+        int scanned = 0;
+        for (Posting posting : postings.tailSet(new Posting(longest, Long.MIN_VALUE))) {
+            if (scanned++ >= MAX_SCAN || results.size() >= limit || !posting.word.startsWith(longest)) {
+                break;
+            }
+            if (seen.add(posting.id)) {
+                Entry<T> entry = entries.get(posting.id);
+                // the entry may be changing while it is read: check all the words against it
+                if (entry != null && entry.matches(words)) {
+                    results.add(entry.value);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Add or replace values.
+     *
+     * @param values the values
+     */
+    synchronized void put(Collection<T> values) {
+        if (!built || values.isEmpty()) {
+            return;
+        }
+        for (T value : values) {
+            Long id = idExtractor.apply(value);
+            Entry<T> entry = new Entry<>(value, words(fieldsExtractor.apply(value)));
+            for (String word : entry.words) {
+                postings.add(new Posting(word, id));
+            }
+            Entry<T> previous = entries.put(id, entry);
+            if (previous != null) {
+                Set<String> kept = new HashSet<>(Arrays.asList(entry.words));
+                for (String word : previous.words) {
+                    if (!kept.contains(word)) {
+                        postings.remove(new Posting(word, id));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove values.
+     *
+     * @param ids the ids of the values
+     */
+    synchronized void remove(Collection<Long> ids) {
+        if (!built || ids.isEmpty()) {
+            return;
+        }
+        for (Long id : ids) {
+            Entry<T> previous = entries.remove(id);
+            if (previous != null) {
+                for (String word : previous.words) {
+                    postings.remove(new Posting(word, id));
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded the next time it is read.
+     */
+    synchronized void invalidate() {
+        built = false;
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        synchronized (this) {
+            if (!built) {
+                entries.clear();
+                List<Posting> loaded = new ArrayList<>();
+                for (T value : loader.get()) {
+                    Long id = idExtractor.apply(value);
+                    Entry<T> entry = new Entry<>(value, words(fieldsExtractor.apply(value)));
+                    entries.put(id, entry);
+                    for (String word : entry.words) {
+                        loaded.add(new Posting(word, id));
+                    }
+                }
+                postings = new ConcurrentSkipListSet<>(loaded);
+                built = true;
+            }
+        }
+    }
+
+    /**
+     * Split texts into distinct normalized words.
+     */
+    static String[] words(String... texts) {
+        Set<String> words = new LinkedHashSet<>();
+        if (texts != null) {
+            for (String text : texts) {
+                if (text == null) {
+                    continue;
+                }
+                String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                    .replaceAll("").toLowerCase(Locale.ROOT);
+                for (String word : WORD_SEPARATOR.split(normalized)) {
+                    if (!word.isEmpty()) {
+                        words.add(word);
+                    }
+                }
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    private static final class Entry<T> {
+
+        private final T value;
+
+        private final String[] words;
+
+        private Entry(T value, String[] words) {
+            this.value = value;
+            this.words = words;
+        }
+
+        private boolean matches(String[] prefixes) {
+            for (String prefix : prefixes) {
+                boolean found = false;
+                for (String word : words) {
+                    if (word.startsWith(prefix)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Posting implements Comparable<Posting> {
+
+        private final String word;
+
+        private final long id;
+
+        private Posting(String word, long id) {
+            this.word = word;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Posting other) {
+            int result = word.compareTo(other.word);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package tech.ippon.service.index;
+
+import tech.ippon.domain.Country;
+import tech.ippon.domain.Location;
+import tech.ippon.domain.Region;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An immutable snapshot of the reference data: all the regions, countries and locations.
+ * <p>
+ * Each type is held column by column, in arrays sorted by id: an id is resolved to its position with a binary
+ * search, and an association to the position of its target, so that a location is resolved with its country and
+ * region without any query or session. Each lookup returns new, detached entities, which the caller may modify.
+ * </p>
+ * <p>
+ * The snapshot can be written to a stream and read back, in a compact binary format, to be loaded on startup
+ * before the database is read.
+ * </p>
+ */
+public final class ReferenceDataSnapshot {
+
+    private static final int MAGIC = 0x52454644;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final long builtAt;
+
+    private final long[] regionIds;
+    private final int[] regionVersions;
+    private final Long[] regionRegionIds;
+    private final String[] regionNames;
+
+    private final long[] countryIds;
+    private final int[] countryVersions;
+    private final Long[] countryCountryIds;
+    private final String[] countryNames;
+    private final int[] countryRegions;
+
+    private final long[] locationIds;
+    private final int[] locationVersions;
+    private final Long[] locationLocationIds;
+    private final String[] locationStreetAddresses;
+    private final String[] locationPostalCodes;
+    private final String[] locationCities;
+    private final String[] locationStateProvinces;
+    private final int[] locationCountries;
+
+    private ReferenceDataSnapshot(long builtAt, int regionCount, int countryCount, int locationCount) {
+        this.builtAt = builtAt;
+        regionIds = new long[regionCount];
+        regionVersions = new int[regionCount];
+        regionRegionIds = new Long[regionCount];
+        regionNames = new String[regionCount];
+        countryIds = new long[countryCount];
+        countryVersions = new int[countryCount];
+        countryCountryIds = new Long[countryCount];
+        countryNames = new String[countryCount];
+        countryRegions = new int[countryCount];
+        locationIds = new long[locationCount];
+        locationVersions = new int[locationCount];
+        locationLocationIds = new Long[locationCount];
+        locationStreetAddresses = new String[locationCount];
+        locationPostalCodes = new String[locationCount];
+        locationCities = new String[locationCount];
+        locationStateProvinces = new String[locationCount];
+        locationCountries = new int[locationCount];
+    }
+
+    /**
+     * Build a snapshot from the rows of the projection queries of the reference data.
+     *
+     * @param regions the rows (id, version, regionId, regionName) of the regions, ordered by id
+     * @param countries the rows (id, version, countryId, countryName, region id) of the countries, ordered by id
+     * @param locations the rows (id, version, locationId, streetAddress, postalCode, city, stateProvince, country id)
+     * of the locations, ordered by id
+     * @return the snapshot
+     */
+    public static ReferenceDataSnapshot of(List<Object[]> regions, List<Object[]> countries, List<Object[]> locations) {
+        ReferenceDataSnapshot snapshot = new ReferenceDataSnapshot(System.currentTimeMillis(),
+            regions.size(), countries.size(), locations.size());
+        for (int i = 0; i < regions.size(); i++) {
+            Object[] row = regions.get(i);
+            snapshot.regionIds[i] = (Long) row[0];
+            snapshot.regionVersions[i] = (Integer) row[1];
+            snapshot.regionRegionIds[i] = (Long) row[2];
+            snapshot.regionNames[i] = (String) row[3];
+        }
+        for (int i = 0; i < countries.size(); i++) {
+            Object[] row = countries.get(i);
+            snapshot.countryIds[i] = (Long) row[0];
+            snapshot.countryVersions[i] = (Integer) row[1];
+            snapshot.countryCountryIds[i] = (Long) row[2];
+            snapshot.countryNames[i] = (String) row[3];
+            snapshot.countryRegions[i] = indexOf(snapshot.regionIds, (Long) row[4]);
+        }
+        for (int i = 0; i < locations.size(); i++) {
+            Object[] row = locations.get(i);
+            snapshot.locationIds[i] = (Long) row[0];
+            snapshot.locationVersions[i] = (Integer) row[1];
+            snapshot.locationLocationIds[i] = (Long) row[2];
+            snapshot.locationStreetAddresses[i] = (String) row[3];
+            snapshot.locationPostalCodes[i] = (String) row[4];
+            snapshot.locationCities[i] = (String) row[5];
+            snapshot.locationStateProvinces[i] = (String) row[6];
+            snapshot.locationCountries[i] = indexOf(snapshot.countryIds, (Long) row[7]);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the time the snapshot was read from the database, in milliseconds since the epoch
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Check the snapshot against the current reference data, as summed up for each type by the number of entities,
+     * their greatest id and the sum of their versions. A creation, update or deletion since the snapshot was built
+     * changes one of them, as ids are never reused and versions only grow.
+     *
+     * @param regions the row (count, max id, version sum) of the regions
+     * @param countries the row (count, max id, version sum) of the countries
+     * @param locations the row (count, max id, version sum) of the locations
+     * @return whether the snapshot holds the current reference data
+     */
+    public boolean isCurrent(Object[] regions, Object[] countries, Object[] locations) {
+        return isCurrent(regions, regionIds, regionVersions) && isCurrent(countries, countryIds, countryVersions) &&
+            isCurrent(locations, locationIds, locationVersions);
+    }
+
+    public int getSize() {
+        return regionIds.length + countryIds.length + locationIds.length;
+    }
+
+    /**
+     * @param id the id of the region
+     * @return a new region, or null if it does not exist
+     */
+    public Region getRegion(long id) {
+        return region(indexOf(regionIds, id));
+    }
+
+    /**
+     * @param id the id of the country
+     * @return a new country, with its region, or null if it does not exist
+     */
+    public Country getCountry(long id) {
+        return country(indexOf(countryIds, id));
+    }
+
+    /**
+     * @param id the id of the location
+     * @return a new location, with its country and region, or null if it does not exist
+     */
+    public Location getLocation(long id) {
+        return location(indexOf(locationIds, id));
+    }
+
+    /**
+     * Write the snapshot to a stream.
+     *
+     * @param out the stream, which is not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(builtAt);
+        data.writeInt(regionIds.length);
+        data.writeInt(countryIds.length);
+        data.writeInt(locationIds.length);
+        for (int i = 0; i < regionIds.length; i++) {
+            data.writeLong(regionIds[i]);
+            data.writeInt(regionVersions[i]);
+            writeLong(data, regionRegionIds[i]);
+            writeString(data, regionNames[i]);
+        }
+        for (int i = 0; i < countryIds.length; i++) {
+            data.writeLong(countryIds[i]);
+            data.writeInt(countryVersions[i]);
+            writeLong(data, countryCountryIds[i]);
+            writeString(data, countryNames[i]);
+            data.writeInt(countryRegions[i]);
+        }
+        for (int i = 0; i < locationIds.length; i++) {
+            data.writeLong(locationIds[i]);
+            data.writeInt(locationVersions[i]);
+            writeLong(data, locationLocationIds[i]);
+            writeString(data, locationStreetAddresses[i]);
+            writeString(data, locationPostalCodes[i]);
+            writeString(data, locationCities[i]);
+            writeString(data, locationStateProvinces[i]);
+            data.writeInt(locationCountries[i]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a snapshot written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream, which is not closed
+     * @return the snapshot
+     * @throws IOException if the stream cannot be read, or was not written by a compatible version
+     */
+    public static ReferenceDataSnapshot readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a reference data snapshot");
+        }
+        int formatVersion = data.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported reference data snapshot format: " + formatVersion);
+        }
+        long builtAt = data.readLong();
+        int regionCount = data.readInt();
+        int countryCount = data.readInt();
+        int locationCount = data.readInt();
+        if (regionCount < 0 || countryCount < 0 || locationCount < 0) {
+            throw new IOException("Corrupted reference data snapshot");
+        }
+        ReferenceDataSnapshot snapshot = new ReferenceDataSnapshot(builtAt, regionCount, countryCount, locationCount);
+        for (int i = 0; i < snapshot.regionIds.length; i++) {
+            snapshot.regionIds[i] = data.readLong();
+            snapshot.regionVersions[i] = data.readInt();
+            snapshot.regionRegionIds[i] = readLong(data);
+            snapshot.regionNames[i] = readString(data);
+        }
+        for (int i = 0; i < snapshot.countryIds.length; i++) {
+            snapshot.countryIds[i] = data.readLong();
+            snapshot.countryVersions[i] = data.readInt();
+            snapshot.countryCountryIds[i] = readLong(data);
+            snapshot.countryNames[i] = readString(data);
+            snapshot.countryRegions[i] = readIndex(data, snapshot.regionIds.length);
+        }
+        for (int i = 0; i < snapshot.locationIds.length; i++) {
+            snapshot.locationIds[i] = data.readLong();
+            snapshot.locationVersions[i] = data.readInt();
+            snapshot.locationLocationIds[i] = readLong(data);
+            snapshot.locationStreetAddresses[i] = readString(data);
+            snapshot.locationPostalCodes[i] = readString(data);
+            snapshot.locationCities[i] = readString(data);
+            snapshot.locationStateProvinces[i] = readString(data);
+            snapshot.locationCountries[i] = readIndex(data, snapshot.countryIds.length);
+        }
+        return snapshot;
+    }
+
+    private static boolean isCurrent(Object[] row, long[] ids, int[] versions) {
+        long versionSum = 0;
+        for (int version : versions) {
+            versionSum += version;
+        }
+        long maxId = ids.length == 0 ? 0 : ids[ids.length - 1];
+        return ((Number) row[0]).longValue() == ids.length &&
+            (row[1] == null ? 0 : ((Number) row[1]).longValue()) == maxId &&
+            (row[2] == null ? 0 : ((Number) row[2]).longValue()) == versionSum;
+    }
+
+    private Region region(int index) {
+        if (index < 0) {
+            return null;
+        }
+        Region region = new Region()
+            .regionId(regionRegionIds[index])
+            .regionName(regionNames[index]);
+        region.setId(regionIds[index]);
+        region.setVersion(regionVersions[index]);
+        return region;
+    }
+
+    private Country country(int index) {
+        if (index < 0) {
+            return null;
+        }
+        Country country = new Country()
+            .countryId(countryCountryIds[index])
+            .countryName(countryNames[index])
+            .region(region(countryRegions[index]));
+        country.setId(countryIds[index]);
+        country.setVersion(countryVersions[index]);
+        return country;
+    }
+
+    private Location location(int index) {
+        if (index < 0) {
+            return null;
+        }
+        Location location = new Location()
+            .locationId(locationLocationIds[index])
+            .streetAddress(locationStreetAddresses[index])
+            .postalCode(locationPostalCodes[index])
+            .city(locationCities[index])
+            .stateProvince(locationStateProvinces[index])
+            .country(country(locationCountries[index]));
+        location.setId(locationIds[index]);
+        location.setVersion(locationVersions[index]);
+        return location;
+    }
+
+    private static int indexOf(long[] ids, Long id) {
+        if (id == null) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    private static int readIndex(DataInputStream data, int size) throws IOException {
+        int index = data.readInt();
+        if (index < -1 || index >= size) {
+            throw new IOException("Corrupted reference data snapshot");
+        }
+        return index;
+    }
+
+    private static void writeLong(DataOutputStream data, Long value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readLong() : null;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
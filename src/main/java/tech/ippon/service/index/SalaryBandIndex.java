@@ -0,0 +1,193 @@
+package tech.ippon.service.index;
+
+import tech.ippon.repository.JobRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory interval tree of the salary bands of the jobs.
+ * <p>
+ * A job without minimum salary has no lower bound, and a job without maximum salary no upper bound. The index is
+ * loaded lazily, from a single projection query, the first time it is read, and is then kept up to date by
+ * {@link #update(long, Long, Long)} and {@link #remove(long)}, which must be called once the change is committed.
+ * The {@link IntervalTree} is built again on the first read following a change.
+ * </p>
+ */
+@Component
+public class SalaryBandIndex {
+
+    private final Logger log = LoggerFactory.getLogger(SalaryBandIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Inject
+    private JobRepository jobRepository;
+
+    private volatile boolean built;
+
+    private volatile boolean sorted;
+
+    private Map<Long, long[]> bandsById = new HashMap<>();
+
+    private IntervalTree tree = IntervalTree.EMPTY;
+
+    /**
+     * Get the jobs whose band overlaps a range of salaries.
+     *
+     * @param from the lowest salary of the range
+     * @param to the highest salary of the range
+     * @return the ids of the jobs, in ascending order
+     */
+    public long[] findOverlapping(long from, long to) {
+        ensureSorted();
+        lock.readLock().lock();
+        try {
+            return tree.findOverlapping(from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the jobs whose band contains a salary.
+     *
+     * @param salary the salary
+     * @return the ids of the jobs, in ascending order
+     */
+    public long[] findContaining(long salary) {
+        return findOverlapping(salary, salary);
+    }
+
+    /**
+     * Get the jobs whose band contains each of the given salaries, in a single pass over the bands.
+     *
+     * @param salaries the salaries, in ascending order
+     * @return the ids of the jobs of each salary, in ascending order, in the order of the salaries
+     * @throws IllegalArgumentException if the salaries are not sorted
+     */
+    public List<long[]> findContaining(long[] salaries) {
+        ensureSorted();
+        lock.readLock().lock();
+        try {
+            return tree.findContaining(salaries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record the salary band of a job, once it was created or updated.
+     *
+     * @param jobId the id of the job
+     * @param minSalary its minimum salary, null if it has none
+     * @param maxSalary its maximum salary, null if it has none
+     */
+    public void update(long jobId, Long minSalary, Long maxSalary) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                // the job will be read with all the others when the index is built
+                return;
+            }
+            long[] band = band(minSalary, maxSalary);
+            if (band == null) {
+                bandsById.remove(jobId);
+            } else {
+                bandsById.put(jobId, band);
+            }
+            sorted = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record that a job was deleted.
+     *
+     * @param jobId the id of the job
+     */
+    public void remove(long jobId) {
+        lock.writeLock().lock();
+        try {
+            if (built && bandsById.remove(jobId) != null) {
+                sorted = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the content of the index, so that it is reloaded from the database the next time it is read.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+            sorted = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long[] band(Long minSalary, Long maxSalary) {
+        if (minSalary == null && maxSalary == null) {
+            return null;
+        }
+        long start = minSalary == null ? Long.MIN_VALUE : minSalary;
+        long end = maxSalary == null ? Long.MAX_VALUE : maxSalary;
+        return start <= end ? new long[]{start, end} : null;
+    }
+
+    private void ensureSorted() {
+        if (built && sorted) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                load();
+                built = true;
+            }
+            if (!sorted) {
+                sort();
+                sorted = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        List<Object[]> rows = jobRepository.findAllSalaryBands();
+        bandsById = new HashMap<>(Math.max(16, rows.size() * 2));
+        for (Object[] row : rows) {
+            long[] band = band((Long) row[1], (Long) row[2]);
+            if (band != null) {
+                bandsById.put((Long) row[0], band);
+            }
+        }
+    }
+
+    private void sort() {
+        long start = System.nanoTime();
+        int count = bandsById.size();
+        long[] jobIds = new long[count];
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        int i = 0;
+        for (Map.Entry<Long, long[]> entry : bandsById.entrySet()) {
+            jobIds[i] = entry.getKey();
+            starts[i] = entry.getValue()[0];
+            ends[i++] = entry.getValue()[1];
+        }
+        tree = new IntervalTree(jobIds, starts, ends);
+        log.debug("Built the salary band index of {} jobs in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+}
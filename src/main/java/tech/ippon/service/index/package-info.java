@@ -0,0 +1,4 @@
+/**
+ * In-memory indexes over the domain, kept up to date by the service layer.
+ */
+package tech.ippon.service.index;
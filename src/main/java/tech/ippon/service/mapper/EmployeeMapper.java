@@ -20,6 +20,7 @@ public interface EmployeeMapper {
 
     @Mapping(source = "departmentId", target = "department")
     @Mapping(target = "jobs", ignore = true)
+    @Mapping(target = "changeSeq", ignore = true)
     @Mapping(source = "managerId", target = "manager")
     Employee employeeDTOToEmployee(EmployeeDTO employeeDTO);
 
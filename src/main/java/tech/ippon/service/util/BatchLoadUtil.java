@@ -0,0 +1,65 @@
+package tech.ippon.service.util;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Utility class for loading entities with their collections, by id.
+ * <p>
+ * Fetching a collection with a join on a paged query makes Hibernate read every row and page in memory, and
+ * fetching it on an unbounded query repeats each entity once per element. Instead, the page of ids is read first,
+ * with a query selecting only the ids, and the entities of the page are then fetched with their collections by
+ * batches of ids: the rows read depend on the page size, not on the size of the table.
+ * </p>
+ */
+public final class BatchLoadUtil {
+
+    /**
+     * The maximum number of ids of an "in" query.
+     */
+    public static final int BATCH_SIZE = 500;
+
+    private BatchLoadUtil() {
+    }
+
+    /**
+     * Load the entities with the given ids.
+     *
+     * @param ids the ids of the entities, in order
+     * @param loader the function loading the entities of a batch of ids, with their collections
+     * @param idExtractor the function giving the id of an entity
+     * @param <T> the type of the entities
+     * @return the entities, in the order of the given ids, without the ids that do not exist
+     */
+    public static <T> List<T> findAll(List<Long> ids, Function<Collection<Long>, List<T>> loader,
+                                      Function<? super T, Long> idExtractor) {
+        Map<Long, T> entities = new HashMap<>();
+        for (int offset = 0; offset < ids.size(); offset += BATCH_SIZE) {
+            List<Long> batch = ids.subList(offset, Math.min(offset + BATCH_SIZE, ids.size()));
+            for (T entity : loader.apply(batch)) {
+                entities.put(idExtractor.apply(entity), entity);
+            }
+        }
+        List<T> result = new ArrayList<>(entities.size());
+        for (Long id : ids) {
+            T entity = entities.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load the entity with the given id.
+     *
+     * @param id the id of the entity
+     * @param loader the function loading the entities of a batch of ids, with their collections
+     * @param <T> the type of the entity
+     * @return the entity, or null if it does not exist
+     */
+    public static <T> T findOne(Long id, Function<Collection<Long>, List<T>> loader) {
+        List<T> entities = loader.apply(Collections.singletonList(id));
+        return entities.isEmpty() ? null : entities.get(0);
+    }
+}
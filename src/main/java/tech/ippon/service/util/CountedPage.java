@@ -0,0 +1,38 @@
+package tech.ippon.service.util;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * A page whose total number of elements may be an estimate.
+ *
+ * @param <T> the type of the elements
+ */
+public class CountedPage<T> extends PageImpl<T> {
+
+    private final boolean totalApproximate;
+
+    private final Pageable pageable;
+
+    public CountedPage(List<T> content, Pageable pageable, long total, boolean totalApproximate) {
+        super(content, pageable, total);
+        this.totalApproximate = totalApproximate;
+        this.pageable = pageable;
+    }
+
+    /**
+     * @return true if the total number of elements is an estimate from the table statistics
+     */
+    public boolean isTotalApproximate() {
+        return totalApproximate;
+    }
+
+    @Override
+    public <S> Page<S> map(Converter<? super T, ? extends S> converter) {
+        return new CountedPage<>(getConvertedContent(converter), pageable, getTotalElements(), totalApproximate);
+    }
+}
@@ -0,0 +1,71 @@
+package tech.ippon.service.util;
+
+import tech.ippon.domain.Country;
+import tech.ippon.domain.Location;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.index.ReferenceDataSnapshot;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.hibernate.proxy.HibernateProxy;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Jackson serializer of an association to a reference entity, resolving the entity from the reference data snapshot.
+ * <p>
+ * Only the id of the association is read, from the Hibernate proxy when it is lazy, so serializing it neither loads
+ * the entity nor needs a session. The serializer falls back to the entity itself when it is not in the snapshot, or
+ * when it is not created by Spring, as with an {@code ObjectMapper} built outside of the application context.
+ * </p>
+ *
+ * @param <T> the type of the reference entity
+ */
+public abstract class ReferenceDataSerializer<T> extends JsonSerializer<T> {
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    private final Function<T, Long> idExtractor;
+
+    protected ReferenceDataSerializer(Function<T, Long> idExtractor) {
+        this.idExtractor = idExtractor;
+    }
+
+    protected abstract T resolve(ReferenceDataSnapshot snapshot, long id);
+
+    @Override
+    public void serialize(T value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        Long id = value instanceof HibernateProxy ?
+            (Long) ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier() : idExtractor.apply(value);
+        T resolved = referenceDataService == null || id == null ? null : resolve(referenceDataService.getSnapshot(), id);
+        provider.defaultSerializeValue(resolved == null ? value : resolved, generator);
+    }
+
+    public static class LocationSerializer extends ReferenceDataSerializer<Location> {
+
+        public LocationSerializer() {
+            super(Location::getId);
+        }
+
+        @Override
+        protected Location resolve(ReferenceDataSnapshot snapshot, long id) {
+            return snapshot.getLocation(id);
+        }
+    }
+
+    public static class CountrySerializer extends ReferenceDataSerializer<Country> {
+
+        public CountrySerializer() {
+            super(Country::getId);
+        }
+
+        @Override
+        protected Country resolve(ReferenceDataSnapshot snapshot, long id) {
+            return snapshot.getCountry(id);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package tech.ippon.service.util;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+
+import static org.elasticsearch.index.query.QueryBuilders.*;
+
+/**
+ * Utility class for searching the Elasticsearch indexes.
+ */
+public final class SearchUtil {
+
+    private SearchUtil() {
+    }
+
+    /**
+     * Search for the entities matching a query, using keyset pagination on their id.
+     * <p>
+     * This is the equivalent of a search_after on the id, which the Elasticsearch version in use does not support:
+     * the hits are sorted by id and filtered to the ids greater than the last one of the previous slice, so every
+     * slice is read from the first hit, however deep it is in the result set, and is never limited by the result
+     * window of the index. The slices can only be sorted by id.
+     *
+     * @param repository the search repository of the entities
+     * @param query the query, in the query string syntax
+     * @param after the id of the last entity of the previous slice
+     * @param size the maximum number of entities to return
+     * @param <T> the type of the entities
+     * @return the slice of entities
+     */
+    public static <T> Slice<T> searchAfter(ElasticsearchRepository<T, Long> repository, String query, Long after, int size) {
+        PageRequest pageable = new PageRequest(0, size, Sort.Direction.ASC, "id");
+        Page<T> page = repository.search(boolQuery().must(queryStringQuery(query)).filter(rangeQuery("id").gt(after)),
+            pageable);
+        return new SliceImpl<>(page.getContent(), pageable, page.getTotalElements() > page.getNumberOfElements());
+    }
+}
@@ -0,0 +1,54 @@
+package tech.ippon.service.util;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utility class for running code at transaction boundaries.
+ */
+public final class TransactionUtil {
+
+    private TransactionUtil() {
+    }
+
+    /**
+     * Runs an action once the current transaction has committed, or right away when there is no transaction.
+     * <p>
+     * The action is never run when the transaction rolls back, which makes it the place to update in-memory
+     * state derived from the database.
+     *
+     * @param action the action to run
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs an action once the current transaction has rolled back, or never when there is no transaction.
+     * <p>
+     * The transaction is over but its resources are still bound: any database work must run in a new transaction.
+     *
+     * @param action the action to run
+     */
+    public static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -6,6 +6,7 @@ import tech.ippon.domain.PersistentToken;
 import tech.ippon.domain.User;
 import tech.ippon.repository.PersistentTokenRepository;
 import tech.ippon.repository.UserRepository;
+import tech.ippon.security.PersistentTokenCache;
 import tech.ippon.security.SecurityUtils;
 import tech.ippon.service.MailService;
 import tech.ippon.service.UserService;
@@ -48,6 +49,9 @@ public class AccountResource {
     @Inject
     private PersistentTokenRepository persistentTokenRepository;
 
+    @Inject
+    private PersistentTokenCache persistentTokenCache;
+
     @Inject
     private MailService mailService;
 
@@ -219,7 +223,10 @@ public class AccountResource {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(u -> {
             persistentTokenRepository.findByUser(u).stream()
                 .filter(persistentToken -> StringUtils.equals(persistentToken.getSeries(), decodedSeries))
-                .findAny().ifPresent(t -> persistentTokenRepository.delete(decodedSeries));
+                .findAny().ifPresent(t -> {
+                    persistentTokenCache.remove(decodedSeries);
+                    persistentTokenRepository.delete(decodedSeries);
+                });
         });
     }
 
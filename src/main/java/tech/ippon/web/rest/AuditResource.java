@@ -1,5 +1,6 @@
 package tech.ippon.web.rest;
 
+import tech.ippon.domain.PersistentAuditEvent;
 import tech.ippon.service.AuditEventService;
 
 import java.time.LocalDate;
@@ -7,6 +8,7 @@ import tech.ippon.web.rest.util.PaginationUtil;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
@@ -68,6 +70,25 @@ public class AuditResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /audits?after=:cursor : get a slice of AuditEvents, using keyset pagination.
+     *
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, only the size is used
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(method = RequestMethod.GET,
+        params = "after")
+    public ResponseEntity<List<AuditEvent>> getAllAfter(@RequestParam String after, Pageable pageable)
+        throws URISyntaxException {
+
+        Slice<PersistentAuditEvent> slice = auditEventService.findAllAfter(PaginationUtil.decodeCursor(after), pageable.getPageSize());
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, PersistentAuditEvent::getId,
+            "/management/jhipster/audits");
+        return new ResponseEntity<>(slice.map(auditEventService::convertToAuditEvent).getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * GET  /audits/:id : get an AuditEvent by id.
      *
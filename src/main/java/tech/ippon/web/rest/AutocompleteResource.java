@@ -0,0 +1,72 @@
+package tech.ippon.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import tech.ippon.service.dto.AutocompleteDTO;
+import tech.ippon.service.index.AutocompleteIndex;
+import tech.ippon.web.rest.util.HeaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * REST controller for the autocompletion of the search boxes, served from memory.
+ */
+@RestController
+@RequestMapping("/api")
+public class AutocompleteResource {
+
+    private final Logger log = LoggerFactory.getLogger(AutocompleteResource.class);
+
+    @Inject
+    private AutocompleteIndex autocompleteIndex;
+
+    /**
+     * GET  /_autocomplete/employees?prefix=:prefix : suggest the employees matching a prefix.
+     *
+     * @param prefix the text typed so far; each of its words must start a word of the first name, last name or email
+     * @param size the maximum number of employees to return
+     * @return the ResponseEntity with status 200 (OK) and the employees in body,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/_autocomplete/employees",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<AutocompleteDTO>> autocompleteEmployees(@RequestParam String prefix,
+        @RequestParam(defaultValue = "10") int size) {
+        log.debug("REST request to autocomplete Employees for prefix {}", prefix);
+        if (size < 1 || size > AutocompleteIndex.MAX_SUGGESTIONS) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("employee", "invalidsize",
+                "The size must be between 1 and " + AutocompleteIndex.MAX_SUGGESTIONS)).body(null);
+        }
+        return ResponseEntity.ok(autocompleteIndex.suggestEmployees(prefix, size));
+    }
+
+    /**
+     * GET  /_autocomplete/users?prefix=:prefix : suggest the users matching a prefix.
+     *
+     * @param prefix the text typed so far; each of its words must start a word of the login, first name, last name
+     * or email
+     * @param size the maximum number of users to return
+     * @return the ResponseEntity with status 200 (OK) and the users in body,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/_autocomplete/users",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<AutocompleteDTO>> autocompleteUsers(@RequestParam String prefix,
+        @RequestParam(defaultValue = "10") int size) {
+        log.debug("REST request to autocomplete Users for prefix {}", prefix);
+        if (size < 1 || size > AutocompleteIndex.MAX_SUGGESTIONS) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("user", "invalidsize",
+                "The size must be between 1 and " + AutocompleteIndex.MAX_SUGGESTIONS)).body(null);
+        }
+        return ResponseEntity.ok(autocompleteIndex.suggestUsers(prefix, size));
+    }
+}
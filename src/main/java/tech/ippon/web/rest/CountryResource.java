@@ -1,20 +1,36 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.util.RawValue;
 import tech.ippon.domain.Country;
 
 import tech.ippon.repository.CountryRepository;
 import tech.ippon.repository.search.CountrySearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
+import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -39,6 +55,21 @@ public class CountryResource {
     @Inject
     private CountrySearchRepository countrySearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
     /**
      * POST  /countries : Create a new country.
      *
@@ -50,13 +81,20 @@ public class CountryResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Country> createCountry(@RequestBody Country country) throws URISyntaxException {
         log.debug("REST request to save Country : {}", country);
         if (country.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("country", "idexists", "A new country cannot already have an ID")).body(null);
         }
         Country result = countryRepository.save(country);
-        countrySearchRepository.save(result);
+        searchOutboxService.index(Country.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Country.class, 1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Country.class);
+        });
         return ResponseEntity.created(new URI("/api/countries/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("country", result.getId().toString()))
             .body(result);
@@ -66,8 +104,10 @@ public class CountryResource {
      * PUT  /countries : Updates an existing country.
      *
      * @param country the country to update
+     * @param ifMatch the ETag of the country as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated country,
      * or with status 400 (Bad Request) if the country is not valid,
+     * or with status 412 (Precondition Failed) if the country does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the country couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -75,20 +115,37 @@ public class CountryResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Country> updateCountry(@RequestBody Country country) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Country> updateCountry(@RequestBody Country country,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Country : {}", country);
         if (country.getId() == null) {
             return createCountry(country);
         }
-        Country result = countryRepository.save(country);
-        countrySearchRepository.save(result);
+        Country current = countryRepository.findCurrent(country.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("country", "versionmismatch", "The country was modified since it was read")).body(null);
+            }
+            country.setVersion(current.getVersion());
+        }
+        Country result = countryRepository.saveAndFlush(country);
+        searchOutboxService.index(Country.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Country.class);
+        });
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("country", country.getId().toString()))
             .body(result);
     }
 
     /**
      * GET  /countries : get all the countries.
+     * <p>
+     * The list is served from a snapshot, which is only built again once a country changes.
      *
      * @return the ResponseEntity with status 200 (OK) and the list of countries in body
      */
@@ -96,10 +153,49 @@ public class CountryResource {
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public List<Country> getAllCountries() {
+    public ResponseEntity<RawValue> getAllCountries() {
         log.debug("REST request to get all Countries");
-        List<Country> countries = countryRepository.findAll();
-        return countries;
+        ListingService.Snapshot snapshot = listingService.getSnapshot(Country.class);
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .body(snapshot.getJson());
+    }
+
+    /**
+     * GET  /countries?page=:page : get a page of the countries.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of countries in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/countries",
+        method = RequestMethod.GET,
+        params = "page",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Country>> getAllCountriesPaged(Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Countries");
+        Page<Country> page = countService.page(Country.class, countryRepository.findAllWithoutCount(pageable), pageable,
+            countryRepository::count);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/countries");
+        headers.setETag(ETagUtil.listTag(page, Country::getId, Country::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /countries/export : export all the countries, one JSON document per line.
+     *
+     * @param response the HTTP response the countries are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/countries/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportCountries(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Countries");
+        response.setContentType("application/x-ndjson");
+        listingService.export(Country.class, response.getOutputStream());
     }
 
     /**
@@ -114,11 +210,11 @@ public class CountryResource {
     @Timed
     public ResponseEntity<Country> getCountry(@PathVariable Long id) {
         log.debug("REST request to get Country : {}", id);
-        Country country = countryRepository.findOne(id);
+        Country country = referenceDataService.getSnapshot().getCountry(id);
         return Optional.ofNullable(country)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
@@ -126,16 +222,30 @@ public class CountryResource {
      * DELETE  /countries/:id : delete the "id" country.
      *
      * @param id the id of the country to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the country as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the country does not match the If-Match header
      */
     @RequestMapping(value = "/countries/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteCountry(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteCountry(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Country : {}", id);
+        Country current = countryRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("country", "versionmismatch", "The country was modified since it was read")).build();
+        }
         countryRepository.delete(id);
-        countrySearchRepository.delete(id);
+        searchOutboxService.delete(Country.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Country.class, -1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Country.class);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("country", id.toString())).build();
     }
 
@@ -157,5 +267,52 @@ public class CountryResource {
             .collect(Collectors.toList());
     }
 
+    /**
+     * SEARCH  /_search/countries?query=:query&page=:page : search for a page of the countries corresponding
+     * to the query.
+     *
+     * @param query the query of the country search
+     * @param pageable the pagination information
+     * @return the result of the search
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/countries",
+        method = RequestMethod.GET,
+        params = {"page", "!after"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Country>> searchCountriesPaged(@RequestParam String query, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to search for a page of Countries for query {}", query);
+        Page<Country> page = countrySearchRepository.search(queryStringQuery(query), pageable);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/countries");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * SEARCH  /_search/countries?query=:query&after=:cursor : search for a slice of the countries corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the country search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/countries",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Country>> searchCountriesAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Countries for query {} after {}", query, after);
+        Slice<Country> slice = SearchUtil.searchAfter(countrySearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Country::getId,
+            "/api/_search/countries");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
 
 }
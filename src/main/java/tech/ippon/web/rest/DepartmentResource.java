@@ -1,24 +1,49 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.util.RawValue;
 import tech.ippon.domain.Department;
 
 import tech.ippon.repository.DepartmentRepository;
 import tech.ippon.repository.search.DepartmentSearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.MultiGetService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.SearchCacheService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.dto.ChangeSetDTO;
+import tech.ippon.service.dto.DepartmentStatsDTO;
+import tech.ippon.service.index.DepartmentStatsIndex;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
+import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -40,6 +65,33 @@ public class DepartmentResource {
     @Inject
     private DepartmentSearchRepository departmentSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private MultiGetService multiGetService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private DepartmentStatsIndex departmentStatsIndex;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
     /**
      * POST  /departments : Create a new department.
      *
@@ -51,13 +103,20 @@ public class DepartmentResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Department> createDepartment(@Valid @RequestBody Department department) throws URISyntaxException {
         log.debug("REST request to save Department : {}", department);
         if (department.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("department", "idexists", "A new department cannot already have an ID")).body(null);
         }
+        department.setChangeSeq(changeTrackingService.next(Department.class));
         Department result = departmentRepository.save(department);
-        departmentSearchRepository.save(result);
+        searchOutboxService.index(Department.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Department.class, 1);
+            rollupService.invalidate();
+            listingService.invalidate(Department.class);
+        });
         return ResponseEntity.created(new URI("/api/departments/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("department", result.getId().toString()))
             .body(result);
@@ -67,8 +126,10 @@ public class DepartmentResource {
      * PUT  /departments : Updates an existing department.
      *
      * @param department the department to update
+     * @param ifMatch the ETag of the department as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated department,
      * or with status 400 (Bad Request) if the department is not valid,
+     * or with status 412 (Precondition Failed) if the department does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the department couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -76,20 +137,37 @@ public class DepartmentResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Department> updateDepartment(@Valid @RequestBody Department department) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Department> updateDepartment(@Valid @RequestBody Department department,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Department : {}", department);
         if (department.getId() == null) {
             return createDepartment(department);
         }
-        Department result = departmentRepository.save(department);
-        departmentSearchRepository.save(result);
+        Department current = departmentRepository.findCurrent(department.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("department", "versionmismatch", "The department was modified since it was read")).body(null);
+            }
+            department.setVersion(current.getVersion());
+        }
+        department.setChangeSeq(changeTrackingService.next(Department.class));
+        Department result = departmentRepository.saveAndFlush(department);
+        searchOutboxService.index(Department.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            rollupService.invalidate();
+            listingService.invalidate(Department.class);
+        });
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("department", department.getId().toString()))
             .body(result);
     }
 
     /**
      * GET  /departments : get all the departments.
+     * <p>
+     * The list is served from a snapshot, which is only built again once a department changes.
      *
      * @return the ResponseEntity with status 200 (OK) and the list of departments in body
      */
@@ -97,10 +175,113 @@ public class DepartmentResource {
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public List<Department> getAllDepartments() {
+    public ResponseEntity<RawValue> getAllDepartments() {
         log.debug("REST request to get all Departments");
-        List<Department> departments = departmentRepository.findAll();
-        return departments;
+        ListingService.Snapshot snapshot = listingService.getSnapshot(Department.class);
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .body(snapshot.getJson());
+    }
+
+    /**
+     * GET  /departments?page=:page : get a page of the departments.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of departments in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/departments",
+        method = RequestMethod.GET,
+        params = {"page", "!fields", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Department>> getAllDepartmentsPaged(Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Departments");
+        Page<Department> page = countService.page(Department.class, departmentRepository.findAllWithoutCount(pageable), pageable,
+            departmentRepository::count);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/departments");
+        headers.setETag(ETagUtil.listTag(page, Department::getId, Department::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /departments/export : export all the departments, one JSON document per line.
+     *
+     * @param response the HTTP response the departments are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/departments/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportDepartments(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Departments");
+        response.setContentType("application/x-ndjson");
+        listingService.export(Department.class, response.getOutputStream());
+    }
+
+    /**
+     * GET  /departments?fields=:fields : get all the departments, reduced to the given fields.
+     * <p>
+     * The fields are ignored along with ids, which get whole departments.
+     *
+     * @param fields the fields to return
+     * @return the ResponseEntity with status 200 (OK) and the list of departments in body,
+     * or with status 400 (Bad Request) if a field is unknown
+     */
+    @RequestMapping(value = "/departments",
+        method = RequestMethod.GET,
+        params = {"fields", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public List<Map<String, Object>> getAllDepartmentsFields(@RequestParam List<String> fields) {
+        log.debug("REST request to get the fields {} of all Departments", fields);
+        return projectionService.findAll(Department.class, fields, new Sort(Sort.Direction.ASC, "id"));
+    }
+
+    /**
+     * GET  /departments?ids=:ids : get the departments with the given ids.
+     *
+     * @param ids the ids of the departments to retrieve
+     * @return the ResponseEntity with status 200 (OK) and the list of departments in body, in the order of the ids,
+     * with the ids that were not found in the "X-jhipsterApp-missing-ids" header,
+     * or with status 400 (Bad Request) if there are too many ids
+     */
+    @RequestMapping(value = "/departments",
+        method = RequestMethod.GET,
+        params = "ids",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Department>> getDepartmentsByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Departments : {}", ids);
+        if (ids.size() > MultiGetService.MAX_IDS) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("department", "toomanyids",
+                "Cannot get more than " + MultiGetService.MAX_IDS + " departments at once")).body(null);
+        }
+        Map<Long, Department> departments = multiGetService.findAll(Department.class, ids);
+        HttpHeaders headers = HeaderUtil.createMissingIdsHeader(ids, departments.keySet());
+        return new ResponseEntity<>(new ArrayList<>(departments.values()), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /departments/changes?since=:watermark : get the departments created, updated or deleted since a watermark.
+     *
+     * @param since the watermark returned by the previous call, 0 to get all the departments
+     * @param size the maximum number of changes to return
+     * @return the ResponseEntity with status 200 (OK) and with body the changes in commit order and the new watermark,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/departments/changes",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<ChangeSetDTO<Department>> getDepartmentChanges(@RequestParam long since, @RequestParam(defaultValue = "1000") int size) {
+        log.debug("REST request to get the changes of Department since {}", since);
+        if (size < 1 || size > ChangeTrackingService.MAX_CHANGES) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("department", "invalidsize",
+                "The size must be between 1 and " + ChangeTrackingService.MAX_CHANGES)).body(null);
+        }
+        return ResponseEntity.ok(changeTrackingService.findChanges(Department.class, since, size));
     }
 
     /**
@@ -117,26 +298,72 @@ public class DepartmentResource {
         log.debug("REST request to get Department : {}", id);
         Department department = departmentRepository.findOne(id);
         return Optional.ofNullable(department)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /departments/stats : get the headcount and salary aggregates of all the departments having employees.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the list of aggregates in body, ordered by department id
+     */
+    @RequestMapping(value = "/departments/stats",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public List<DepartmentStatsDTO> getAllDepartmentStats() {
+        log.debug("REST request to get the statistics of all Departments");
+        return departmentStatsIndex.getAllStats();
+    }
+
+    /**
+     * GET  /departments/:id/stats : get the headcount and salary aggregates of the "id" department.
+     *
+     * @param id the id of the department
+     * @return the ResponseEntity with status 200 (OK) and with body the aggregates, or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/departments/{id}/stats",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<DepartmentStatsDTO> getDepartmentStats(@PathVariable Long id) {
+        log.debug("REST request to get the statistics of Department : {}", id);
+        if (departmentRepository.findOne(id) == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(departmentStatsIndex.getStats(id), HttpStatus.OK);
+    }
+
     /**
      * DELETE  /departments/:id : delete the "id" department.
      *
      * @param id the id of the department to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the department as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the department does not match the If-Match header
      */
     @RequestMapping(value = "/departments/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteDepartment(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteDepartment(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Department : {}", id);
+        Department current = departmentRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("department", "versionmismatch", "The department was modified since it was read")).build();
+        }
         departmentRepository.delete(id);
-        departmentSearchRepository.delete(id);
+        changeTrackingService.tombstone(Department.class, id);
+        searchOutboxService.delete(Department.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Department.class, -1);
+            rollupService.invalidate();
+            listingService.invalidate(Department.class);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("department", id.toString())).build();
     }
 
@@ -153,9 +380,57 @@ public class DepartmentResource {
     @Timed
     public List<Department> searchDepartments(@RequestParam String query) {
         log.debug("REST request to search Departments for query {}", query);
-        return StreamSupport
+        return searchCacheService.get(Department.class, query, null, () -> StreamSupport
             .stream(departmentSearchRepository.search(queryStringQuery(query)).spliterator(), false)
-            .collect(Collectors.toList());
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * SEARCH  /_search/departments?query=:query&page=:page : search for a page of the departments corresponding
+     * to the query.
+     *
+     * @param query the query of the department search
+     * @param pageable the pagination information
+     * @return the result of the search
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/departments",
+        method = RequestMethod.GET,
+        params = {"page", "!after"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Department>> searchDepartmentsPaged(@RequestParam String query, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to search for a page of Departments for query {}", query);
+        Page<Department> page = searchCacheService.get(Department.class, query, pageable,
+            () -> departmentSearchRepository.search(queryStringQuery(query), pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/departments");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * SEARCH  /_search/departments?query=:query&after=:cursor : search for a slice of the departments corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the department search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/departments",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Department>> searchDepartmentsAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Departments for query {} after {}", query, after);
+        Slice<Department> slice = SearchUtil.searchAfter(departmentSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Department::getId,
+            "/api/_search/departments");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
     }
 
 
@@ -1,26 +1,52 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import tech.ippon.service.ChangeTrackingService;
 import tech.ippon.service.EmployeeService;
+import tech.ippon.service.MultiGetService;
+import tech.ippon.web.rest.errors.CustomParameterizedException;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
 import tech.ippon.web.rest.util.PaginationUtil;
+import tech.ippon.service.dto.BulkItemResultDTO;
+import tech.ippon.service.dto.ChangeSetDTO;
 import tech.ippon.service.dto.EmployeeDTO;
+import tech.ippon.service.dto.EmployeeHierarchyStatsDTO;
+import tech.ippon.service.dto.EmployeeSalaryBandDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -38,6 +64,16 @@ public class EmployeeResource {
     @Inject
     private EmployeeService employeeService;
 
+    @Inject
+    private ObjectMapper objectMapper;
+
+    private static final int EXPORT_FLUSH_SIZE = 1000;
+
+    private static final int BULK_MAX_SIZE = 10000;
+
+    private static final String CSV_HEADER = "id,employeeId,firstName,lastName,email,phoneNumber,hireDate,salary," +
+        "commissionPct,departmentId,managerId";
+
     /**
      * POST  /employees : Create a new employee.
      *
@@ -64,8 +100,10 @@ public class EmployeeResource {
      * PUT  /employees : Updates an existing employee.
      *
      * @param employeeDTO the employeeDTO to update
+     * @param ifMatch the ETag of the employee as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated employeeDTO,
      * or with status 400 (Bad Request) if the employeeDTO is not valid,
+     * or with status 412 (Precondition Failed) if the employee does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the employeeDTO couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -73,36 +111,270 @@ public class EmployeeResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<EmployeeDTO> updateEmployee(@RequestBody EmployeeDTO employeeDTO) throws URISyntaxException {
+    public ResponseEntity<EmployeeDTO> updateEmployee(@RequestBody EmployeeDTO employeeDTO,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Employee : {}", employeeDTO);
         if (employeeDTO.getId() == null) {
             return createEmployee(employeeDTO);
         }
-        EmployeeDTO result = employeeService.save(employeeDTO);
+        EmployeeDTO result;
+        try {
+            // checked in the saving transaction, so that a concurrent update cannot come in between
+            result = employeeService.save(employeeDTO, version -> ETagUtil.matches(ifMatch, version));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (ifMatch == null) {
+                throw e;
+            }
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("employee", "versionmismatch", "The employee was modified since it was read")).body(null);
+        }
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("employee", employeeDTO.getId().toString()))
             .body(result);
     }
 
+    /**
+     * POST  /employees/_bulk : Create or update a list of employees.
+     *
+     * @param employeeDTOs the employeeDTOs to create (without ID) or update (with an ID)
+     * @return the ResponseEntity with status 200 (OK) and with body the outcome of each employeeDTO, in the same order,
+     * or with status 400 (Bad Request) if there are too many employeeDTOs
+     */
+    @RequestMapping(value = "/employees/_bulk",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<BulkItemResultDTO>> bulkSaveEmployees(@RequestBody List<EmployeeDTO> employeeDTOs) {
+        log.debug("REST request to bulk save {} Employees", employeeDTOs.size());
+        if (employeeDTOs.size() > BULK_MAX_SIZE) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("employee", "bulktoolarge",
+                "A bulk request cannot contain more than " + BULK_MAX_SIZE + " employees")).body(null);
+        }
+        return ResponseEntity.ok(employeeService.saveAll(employeeDTOs));
+    }
+
     /**
      * GET  /employees : get all the employees.
      *
      * @param pageable the pagination information
-     * @return the ResponseEntity with status 200 (OK) and the list of employees in body
+     * @param ifNoneMatch the ETag of the page as last read, to get it only if it changed since
+     * @return the ResponseEntity with status 200 (OK) and the list of employees in body,
+     * or with status 304 (Not Modified) if the page matches the If-None-Match header
      * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
      */
     @RequestMapping(value = "/employees",
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<List<EmployeeDTO>> getAllEmployees(Pageable pageable)
-        throws URISyntaxException {
+    public ResponseEntity<List<EmployeeDTO>> getAllEmployees(Pageable pageable,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) throws URISyntaxException {
         log.debug("REST request to get a page of Employees");
+        if (ifNoneMatch != null) {
+            // a revalidation is answered from the ids and versions of the page, without loading the employees
+            String eTag = ETagUtil.listTag(employeeService.findAllVersions(pageable));
+            if (ETagUtil.notModified(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
         Page<EmployeeDTO> page = employeeService.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/employees");
+        headers.setETag(ETagUtil.listTag(page, EmployeeDTO::getId, EmployeeDTO::getVersion, page.getTotalElements()));
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /employees?fields=:fields : get all the employees, reduced to the given fields.
+     * <p>
+     * The fields are ignored along with a cursor or ids, which get whole employees.
+     *
+     * @param fields the fields to return, named as in the employee DTO
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of employees in body,
+     * or with status 400 (Bad Request) if a field is unknown
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/employees",
+        method = RequestMethod.GET,
+        params = {"fields", "!after", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Map<String, Object>>> getAllEmployeesFields(@RequestParam List<String> fields, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get the fields {} of a page of Employees", fields);
+        Page<Map<String, Object>> page = employeeService.findAll(fields, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/employees?fields=" + String.join(",", fields));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /employees?after=:cursor : get a slice of the employees, using keyset pagination.
+     *
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, only the size is used
+     * @return the ResponseEntity with status 200 (OK) and the list of employees in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/employees",
+        method = RequestMethod.GET,
+        params = {"after", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<EmployeeDTO>> getAllEmployeesAfter(@RequestParam String after, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a slice of Employees after {}", after);
+        Slice<EmployeeDTO> slice = employeeService.findAllAfter(PaginationUtil.decodeCursor(after), pageable.getPageSize());
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, EmployeeDTO::getId, "/api/employees");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /employees?ids=:ids : get the employees with the given ids.
+     *
+     * @param ids the ids of the employeeDTOs to retrieve
+     * @return the ResponseEntity with status 200 (OK) and the list of employeeDTOs in body, in the order of the ids,
+     * with the ids that were not found in the "X-jhipsterApp-missing-ids" header,
+     * or with status 400 (Bad Request) if there are too many ids
+     */
+    @RequestMapping(value = "/employees",
+        method = RequestMethod.GET,
+        params = "ids",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<EmployeeDTO>> getEmployeesByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Employees : {}", ids);
+        if (ids.size() > MultiGetService.MAX_IDS) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("employee", "toomanyids",
+                "Cannot get more than " + MultiGetService.MAX_IDS + " employees at once")).body(null);
+        }
+        Map<Long, EmployeeDTO> employeeDTOs = employeeService.findAll(ids);
+        HttpHeaders headers = HeaderUtil.createMissingIdsHeader(ids, employeeDTOs.keySet());
+        return new ResponseEntity<>(new ArrayList<>(employeeDTOs.values()), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /employees/changes?since=:watermark : get the employees created, updated or deleted since a watermark.
+     *
+     * @param since the watermark returned by the previous call, 0 to get all the employees
+     * @param size the maximum number of changes to return
+     * @return the ResponseEntity with status 200 (OK) and with body the changes in commit order and the new watermark,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/employees/changes",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<ChangeSetDTO<EmployeeDTO>> getEmployeeChanges(@RequestParam long since, @RequestParam(defaultValue = "1000") int size) {
+        log.debug("REST request to get the changes of Employee since {}", since);
+        if (size < 1 || size > ChangeTrackingService.MAX_CHANGES) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("employee", "invalidsize",
+                "The size must be between 1 and " + ChangeTrackingService.MAX_CHANGES)).body(null);
+        }
+        return ResponseEntity.ok(employeeService.findChanges(since, size));
+    }
+
+    /**
+     * GET  /employees/export : export all the employees.
+     * <p>
+     * The employees are streamed from a database cursor straight to the response, one line per employee,
+     * so that the export works the same way whatever the number of employees.
+     *
+     * @param format the export format, "ndjson" (the default) or "csv"
+     * @param response the HTTP response the employees are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/employees/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportEmployees(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response)
+        throws IOException {
+        log.debug("REST request to export Employees as {}", format);
+        if ("ndjson".equals(format)) {
+            response.setContentType("application/x-ndjson");
+            exportAsNdjson(response.getOutputStream());
+        } else if ("csv".equals(format)) {
+            response.setContentType("text/csv");
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            exportAsCsv(response.getOutputStream());
+        } else {
+            throw new CustomParameterizedException("error.unsupportedFormat", format);
+        }
+    }
+
+    private void exportAsNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(EmployeeDTO.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            employeeService.exportAll(new Consumer<EmployeeDTO>() {
+                private long count;
+
+                @Override
+                public void accept(EmployeeDTO employeeDTO) {
+                    try {
+                        writer.writeValue(generator, employeeDTO);
+                        generator.writeRaw('\n');
+                        if (count++ % EXPORT_FLUSH_SIZE == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private void exportAsCsv(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        writer.flush();
+        employeeService.exportAll(new Consumer<EmployeeDTO>() {
+            private long count;
+
+            @Override
+            public void accept(EmployeeDTO employeeDTO) {
+                try {
+                    writer.write(csvLine(employeeDTO));
+                    if (count++ % EXPORT_FLUSH_SIZE == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        writer.flush();
+    }
+
+    private static String csvLine(EmployeeDTO employeeDTO) {
+        return csvValue(employeeDTO.getId()) + ',' +
+            csvValue(employeeDTO.getEmployeeId()) + ',' +
+            csvValue(employeeDTO.getFirstName()) + ',' +
+            csvValue(employeeDTO.getLastName()) + ',' +
+            csvValue(employeeDTO.getEmail()) + ',' +
+            csvValue(employeeDTO.getPhoneNumber()) + ',' +
+            csvValue(employeeDTO.getHireDate()) + ',' +
+            csvValue(employeeDTO.getSalary()) + ',' +
+            csvValue(employeeDTO.getCommissionPct()) + ',' +
+            csvValue(employeeDTO.getDepartmentId()) + ',' +
+            csvValue(employeeDTO.getManagerId()) + '\n';
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof ZonedDateTime ?
+            DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((ZonedDateTime) value) : value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
     /**
      * GET  /employees/:id : get the "id" employee.
      *
@@ -117,25 +389,117 @@ public class EmployeeResource {
         log.debug("REST request to get Employee : {}", id);
         EmployeeDTO employeeDTO = employeeService.findOne(id);
         return Optional.ofNullable(employeeDTO)
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * GET  /employees/:id/reports : get the employees managed by the "id" employee, directly or not.
+     *
+     * @param id the id of the manager
+     * @param depth the number of management levels to return, 1 for the direct reports only, all of them if absent
+     * @return the ResponseEntity with status 200 (OK) and the ids of the employees in body, level by level,
+     * with status 400 (Bad Request) if the depth is not positive, or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/employees/{id}/reports",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<long[]> getEmployeeReports(@PathVariable Long id, @RequestParam(required = false) Integer depth) {
+        log.debug("REST request to get the reports of Employee : {}, depth {}", id, depth);
+        if (depth != null && depth < 1) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("employee", "invaliddepth",
+                "The depth must be at least 1")).body(null);
+        }
+        long[] reports = employeeService.findReports(id, depth == null ? Integer.MAX_VALUE : depth);
+        return Optional.ofNullable(reports)
+            .map(result -> new ResponseEntity<>(
+                result,
+                HttpStatus.OK))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * GET  /employees/:id/chain : get the chain of command of the "id" employee.
+     *
+     * @param id the id of the employee
+     * @return the ResponseEntity with status 200 (OK) and the ids of the managers in body, from the direct manager
+     * to the top of the hierarchy, or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/employees/{id}/chain",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<long[]> getEmployeeChain(@PathVariable Long id) {
+        log.debug("REST request to get the chain of command of Employee : {}", id);
+        long[] chain = employeeService.findChain(id);
+        return Optional.ofNullable(chain)
             .map(result -> new ResponseEntity<>(
                 result,
                 HttpStatus.OK))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /employees/:id/stats : get the position of the "id" employee in the management hierarchy.
+     *
+     * @param id the id of the employee
+     * @return the ResponseEntity with status 200 (OK) and with body the statistics, or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/employees/{id}/stats",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<EmployeeHierarchyStatsDTO> getEmployeeHierarchyStats(@PathVariable Long id) {
+        log.debug("REST request to get the hierarchy statistics of Employee : {}", id);
+        EmployeeHierarchyStatsDTO stats = employeeService.findHierarchyStats(id);
+        return Optional.ofNullable(stats)
+            .map(result -> new ResponseEntity<>(
+                result,
+                HttpStatus.OK))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * GET  /employees/salary-bands : get the jobs whose salary band contains the salary of each employee.
+     *
+     * @return the ResponseEntity with status 200 (OK) and the bands of the employees having a salary in body,
+     * ordered by salary
+     */
+    @RequestMapping(value = "/employees/salary-bands",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<EmployeeSalaryBandDTO>> getEmployeeSalaryBands() {
+        log.debug("REST request to get the salary bands of all Employees");
+        return new ResponseEntity<>(employeeService.findSalaryBands(), HttpStatus.OK);
+    }
+
     /**
      * DELETE  /employees/:id : delete the "id" employee.
      *
      * @param id the id of the employeeDTO to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the employee as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the employee does not match the If-Match header
      */
     @RequestMapping(value = "/employees/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteEmployee(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteEmployee(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Employee : {}", id);
-        employeeService.delete(id);
+        try {
+            employeeService.delete(id, version -> ETagUtil.matches(ifMatch, version));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            if (ifMatch == null) {
+                throw e;
+            }
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("employee", "versionmismatch", "The employee was modified since it was read")).build();
+        }
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("employee", id.toString())).build();
     }
 
@@ -160,5 +524,29 @@ public class EmployeeResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * SEARCH  /_search/employees?query=:query&after=:cursor : search for a slice of the employees corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the employee search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/employees",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<EmployeeDTO>> searchEmployeesAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Employees for query {} after {}", query, after);
+        Slice<EmployeeDTO> slice = employeeService.searchAfter(query, PaginationUtil.decodeCursor(after), PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, EmployeeDTO::getId,
+            "/api/_search/employees");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
 
 }
@@ -5,21 +5,38 @@ import tech.ippon.domain.JobHistory;
 
 import tech.ippon.repository.JobHistoryRepository;
 import tech.ippon.repository.search.JobHistorySearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.dto.ChangeSetDTO;
+import tech.ippon.service.index.JobHistoryIndex;
+import tech.ippon.service.util.BatchLoadUtil;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
 import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -42,6 +59,18 @@ public class JobHistoryResource {
     @Inject
     private JobHistorySearchRepository jobHistorySearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private JobHistoryIndex jobHistoryIndex;
+
     /**
      * POST  /job-histories : Create a new jobHistory.
      *
@@ -53,13 +82,20 @@ public class JobHistoryResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<JobHistory> createJobHistory(@RequestBody JobHistory jobHistory) throws URISyntaxException {
         log.debug("REST request to save JobHistory : {}", jobHistory);
         if (jobHistory.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("jobHistory", "idexists", "A new jobHistory cannot already have an ID")).body(null);
         }
+        jobHistory.setChangeSeq(changeTrackingService.next(JobHistory.class));
         JobHistory result = jobHistoryRepository.save(jobHistory);
-        jobHistorySearchRepository.save(result);
+        searchOutboxService.index(JobHistory.class, result.getId());
+        Runnable indexUpdate = indexUpdate(result);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(JobHistory.class, 1);
+            indexUpdate.run();
+        });
         return ResponseEntity.created(new URI("/api/job-histories/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("jobHistory", result.getId().toString()))
             .body(result);
@@ -69,8 +105,10 @@ public class JobHistoryResource {
      * PUT  /job-histories : Updates an existing jobHistory.
      *
      * @param jobHistory the jobHistory to update
+     * @param ifMatch the ETag of the jobHistory as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated jobHistory,
      * or with status 400 (Bad Request) if the jobHistory is not valid,
+     * or with status 412 (Precondition Failed) if the jobHistory does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the jobHistory couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -78,14 +116,26 @@ public class JobHistoryResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<JobHistory> updateJobHistory(@RequestBody JobHistory jobHistory) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<JobHistory> updateJobHistory(@RequestBody JobHistory jobHistory,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update JobHistory : {}", jobHistory);
         if (jobHistory.getId() == null) {
             return createJobHistory(jobHistory);
         }
-        JobHistory result = jobHistoryRepository.save(jobHistory);
-        jobHistorySearchRepository.save(result);
+        JobHistory current = jobHistoryRepository.findCurrent(jobHistory.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("jobHistory", "versionmismatch", "The jobHistory was modified since it was read")).body(null);
+            }
+            jobHistory.setVersion(current.getVersion());
+        }
+        jobHistory.setChangeSeq(changeTrackingService.next(JobHistory.class));
+        JobHistory result = jobHistoryRepository.saveAndFlush(jobHistory);
+        searchOutboxService.index(JobHistory.class, result.getId());
+        TransactionUtil.afterCommit(indexUpdate(result));
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("jobHistory", jobHistory.getId().toString()))
             .body(result);
     }
@@ -104,11 +154,56 @@ public class JobHistoryResource {
     public ResponseEntity<List<JobHistory>> getAllJobHistories(Pageable pageable)
         throws URISyntaxException {
         log.debug("REST request to get a page of JobHistories");
-        Page<JobHistory> page = jobHistoryRepository.findAll(pageable);
+        Page<JobHistory> page = countService.page(JobHistory.class, jobHistoryRepository.findAllWithoutCount(pageable),
+            pageable, jobHistoryRepository::count);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/job-histories");
+        headers.setETag(ETagUtil.listTag(page, JobHistory::getId, JobHistory::getVersion, page.getTotalElements()));
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /job-histories?after=:cursor : get a slice of the jobHistories, using keyset pagination.
+     *
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, only the size is used
+     * @return the ResponseEntity with status 200 (OK) and the list of jobHistories in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/job-histories",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<JobHistory>> getAllJobHistoriesAfter(@RequestParam String after, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a slice of JobHistories after {}", after);
+        Slice<JobHistory> slice = jobHistoryRepository.findAllByIdGreaterThan(PaginationUtil.decodeCursor(after),
+            new PageRequest(0, pageable.getPageSize(), Sort.Direction.ASC, "id"));
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, JobHistory::getId, "/api/job-histories");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /job-histories/changes?since=:watermark : get the jobHistories created, updated or deleted since a watermark.
+     *
+     * @param since the watermark returned by the previous call, 0 to get all the jobHistories
+     * @param size the maximum number of changes to return
+     * @return the ResponseEntity with status 200 (OK) and with body the changes in commit order and the new watermark,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/job-histories/changes",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<ChangeSetDTO<JobHistory>> getJobHistoryChanges(@RequestParam long since, @RequestParam(defaultValue = "1000") int size) {
+        log.debug("REST request to get the changes of JobHistory since {}", since);
+        if (size < 1 || size > ChangeTrackingService.MAX_CHANGES) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("jobHistory", "invalidsize",
+                "The size must be between 1 and " + ChangeTrackingService.MAX_CHANGES)).body(null);
+        }
+        return ResponseEntity.ok(changeTrackingService.findChanges(JobHistory.class, since, size));
+    }
+
     /**
      * GET  /job-histories/:id : get the "id" jobHistory.
      *
@@ -123,26 +218,113 @@ public class JobHistoryResource {
         log.debug("REST request to get JobHistory : {}", id);
         JobHistory jobHistory = jobHistoryRepository.findOne(id);
         return Optional.ofNullable(jobHistory)
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * GET  /job-histories/_asof?department=:id&date=:date : get the jobHistories of a department covering a date.
+     * <p>
+     * A request for both a department and an employee matches neither lookup, and is answered with a 400 (Bad Request).
+     *
+     * @param department the id of the department
+     * @param date the date
+     * @return the ResponseEntity with status 200 (OK) and the list of jobHistories in body, ordered by id
+     */
+    @RequestMapping(value = "/job-histories/_asof",
+        method = RequestMethod.GET,
+        params = {"department", "date", "!employee"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<JobHistory>> getDepartmentJobHistoriesAsOf(@RequestParam Long department,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime date) {
+        log.debug("REST request to get the JobHistories of Department {} as of {}", department, date);
+        return new ResponseEntity<>(findAll(jobHistoryIndex.findByDepartmentAt(department, date)), HttpStatus.OK);
+    }
+
+    /**
+     * GET  /job-histories/_asof?employee=:id&date=:date : get the jobHistory of an employee covering a date.
+     *
+     * @param employee the id of the employee
+     * @param date the date
+     * @return the ResponseEntity with status 200 (OK) and with body the jobHistory, or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/job-histories/_asof",
+        method = RequestMethod.GET,
+        params = {"employee", "date", "!department"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<JobHistory> getEmployeeJobHistoryAsOf(@RequestParam Long employee,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime date) {
+        log.debug("REST request to get the JobHistory of Employee {} as of {}", employee, date);
+        Long id = jobHistoryIndex.findByEmployeeAt(employee, date);
+        return Optional.ofNullable(id == null ? null : jobHistoryRepository.findOne(id))
             .map(result -> new ResponseEntity<>(
                 result,
                 HttpStatus.OK))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /job-histories/_moves?from=:from&to=:to : get the jobHistories starting in a window.
+     *
+     * @param from the start of the window, included
+     * @param to the end of the window, excluded
+     * @param pageable the pagination information, the sort is ignored
+     * @return the ResponseEntity with status 200 (OK) and the list of jobHistories in body, ordered by start date,
+     * or with status 400 (Bad Request) if the window ends before it starts
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/job-histories/_moves",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<JobHistory>> getJobHistoryMoves(
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime from,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime to, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of the JobHistories starting between {} and {}", from, to);
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("jobHistory", "invalidrange",
+                "The window cannot end before it starts")).body(null);
+        }
+        long[] ids = jobHistoryIndex.findStartingBetween(from, to);
+        int offset = (int) Math.min(pageable.getOffset(), ids.length);
+        long[] pageIds = Arrays.copyOfRange(ids, offset, Math.min(offset + pageable.getPageSize(), ids.length));
+        Page<JobHistory> page = new PageImpl<>(findAll(pageIds), pageable, ids.length);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/job-histories/_moves");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
     /**
      * DELETE  /job-histories/:id : delete the "id" jobHistory.
      *
      * @param id the id of the jobHistory to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the jobHistory as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the jobHistory does not match the If-Match header
      */
     @RequestMapping(value = "/job-histories/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteJobHistory(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteJobHistory(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete JobHistory : {}", id);
+        JobHistory current = jobHistoryRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("jobHistory", "versionmismatch", "The jobHistory was modified since it was read")).build();
+        }
         jobHistoryRepository.delete(id);
-        jobHistorySearchRepository.delete(id);
+        changeTrackingService.tombstone(JobHistory.class, id);
+        searchOutboxService.delete(JobHistory.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(JobHistory.class, -1);
+            jobHistoryIndex.remove(id);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("jobHistory", id.toString())).build();
     }
 
@@ -167,5 +349,45 @@ public class JobHistoryResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * SEARCH  /_search/job-histories?query=:query&after=:cursor : search for a slice of the jobHistorys corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the jobHistory search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/job-histories",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<JobHistory>> searchJobHistoriesAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of JobHistories for query {} after {}", query, after);
+        Slice<JobHistory> slice = SearchUtil.searchAfter(jobHistorySearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, JobHistory::getId,
+            "/api/_search/job-histories");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
 
+    private List<JobHistory> findAll(long[] ids) {
+        return BatchLoadUtil.findAll(Arrays.stream(ids).boxed().collect(Collectors.toList()),
+            batch -> jobHistoryRepository.findAll(batch), JobHistory::getId);
+    }
+
+    /**
+     * @return the update of the index with the period of a jobHistory, to run once it is committed
+     */
+    private Runnable indexUpdate(JobHistory jobHistory) {
+        Long id = jobHistory.getId();
+        Long employeeId = jobHistory.getEmployee() == null ? null : jobHistory.getEmployee().getId();
+        Long departmentId = jobHistory.getDepartment() == null ? null : jobHistory.getDepartment().getId();
+        ZonedDateTime startDate = jobHistory.getStartDate();
+        ZonedDateTime endDate = jobHistory.getEndDate();
+        return () -> jobHistoryIndex.update(id, employeeId, departmentId, startDate, endDate);
+    }
 }
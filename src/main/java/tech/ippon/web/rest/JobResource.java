@@ -2,25 +2,46 @@ package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
 import tech.ippon.domain.Job;
+import tech.ippon.domain.Task;
 
 import tech.ippon.repository.JobRepository;
 import tech.ippon.repository.search.JobSearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.MultiGetService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchCacheService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.dto.ChangeSetDTO;
+import tech.ippon.service.index.JobTaskIndex;
+import tech.ippon.service.index.SalaryBandIndex;
+import tech.ippon.service.util.BatchLoadUtil;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
 import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -42,6 +63,30 @@ public class JobResource {
     @Inject
     private JobSearchRepository jobSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private MultiGetService multiGetService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private JobTaskIndex jobTaskIndex;
+
+    @Inject
+    private SalaryBandIndex salaryBandIndex;
+
     /**
      * POST  /jobs : Create a new job.
      *
@@ -53,13 +98,24 @@ public class JobResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Job> createJob(@RequestBody Job job) throws URISyntaxException {
         log.debug("REST request to save Job : {}", job);
         if (job.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("job", "idexists", "A new job cannot already have an ID")).body(null);
         }
+        job.setChangeSeq(changeTrackingService.next(Job.class));
         Job result = jobRepository.save(job);
-        jobSearchRepository.save(result);
+        searchOutboxService.index(Job.class, result.getId());
+        Long id = result.getId();
+        List<Long> taskIds = taskIdsOf(result);
+        Long minSalary = result.getMinSalary();
+        Long maxSalary = result.getMaxSalary();
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Job.class, 1);
+            jobTaskIndex.update(id, taskIds);
+            salaryBandIndex.update(id, minSalary, maxSalary);
+        });
         return ResponseEntity.created(new URI("/api/jobs/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("job", result.getId().toString()))
             .body(result);
@@ -69,8 +125,10 @@ public class JobResource {
      * PUT  /jobs : Updates an existing job.
      *
      * @param job the job to update
+     * @param ifMatch the ETag of the job as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated job,
      * or with status 400 (Bad Request) if the job is not valid,
+     * or with status 412 (Precondition Failed) if the job does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the job couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -78,14 +136,33 @@ public class JobResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Job> updateJob(@RequestBody Job job) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Job> updateJob(@RequestBody Job job,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Job : {}", job);
         if (job.getId() == null) {
             return createJob(job);
         }
-        Job result = jobRepository.save(job);
-        jobSearchRepository.save(result);
+        Job current = jobRepository.findCurrent(job.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("job", "versionmismatch", "The job was modified since it was read")).body(null);
+            }
+            job.setVersion(current.getVersion());
+        }
+        job.setChangeSeq(changeTrackingService.next(Job.class));
+        Job result = jobRepository.saveAndFlush(job);
+        searchOutboxService.index(Job.class, result.getId());
+        Long id = result.getId();
+        List<Long> taskIds = taskIdsOf(result);
+        Long minSalary = result.getMinSalary();
+        Long maxSalary = result.getMaxSalary();
+        TransactionUtil.afterCommit(() -> {
+            jobTaskIndex.update(id, taskIds);
+            salaryBandIndex.update(id, minSalary, maxSalary);
+        });
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("job", job.getId().toString()))
             .body(result);
     }
@@ -94,21 +171,125 @@ public class JobResource {
      * GET  /jobs : get all the jobs.
      *
      * @param pageable the pagination information
-     * @return the ResponseEntity with status 200 (OK) and the list of jobs in body
+     * @param ifNoneMatch the ETag of the page as last read, to get it only if it changed since
+     * @return the ResponseEntity with status 200 (OK) and the list of jobs in body,
+     * or with status 304 (Not Modified) if the page matches the If-None-Match header
      * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
      */
     @RequestMapping(value = "/jobs",
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<List<Job>> getAllJobs(Pageable pageable)
-        throws URISyntaxException {
+    public ResponseEntity<List<Job>> getAllJobs(Pageable pageable,
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) throws URISyntaxException {
         log.debug("REST request to get a page of Jobs");
-        Page<Job> page = jobRepository.findAll(pageable);
+        if (ifNoneMatch != null) {
+            // a revalidation is answered from the ids and versions of the page, without loading the jobs
+            String eTag = ETagUtil.listTag(countService.page(Job.class, jobRepository.findAllVersions(pageable), pageable,
+                jobRepository::count));
+            if (ETagUtil.notModified(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        List<Job> jobs = BatchLoadUtil.findAll(jobRepository.findAllIds(pageable),
+            jobRepository::findAllWithEagerRelationshipsByIdIn, Job::getId);
+        Page<Job> page = countService.page(Job.class, jobs, pageable, jobRepository::count);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/jobs");
+        headers.setETag(ETagUtil.listTag(page, Job::getId, Job::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /jobs?fields=:fields : get all the jobs, reduced to the given fields.
+     * <p>
+     * The fields are ignored along with a cursor or ids, which get whole jobs.
+     *
+     * @param fields the fields to return
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of jobs in body,
+     * or with status 400 (Bad Request) if a field is unknown
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/jobs",
+        method = RequestMethod.GET,
+        params = {"fields", "!after", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Map<String, Object>>> getAllJobsFields(@RequestParam List<String> fields, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get the fields {} of a page of Jobs", fields);
+        Page<Map<String, Object>> page = projectionService.findAll(Job.class, fields, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/jobs?fields=" + String.join(",", fields));
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /jobs?after=:cursor : get a slice of the jobs, using keyset pagination.
+     *
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, only the size is used
+     * @return the ResponseEntity with status 200 (OK) and the list of jobs in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/jobs",
+        method = RequestMethod.GET,
+        params = {"after", "!ids"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Job>> getAllJobsAfter(@RequestParam String after, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a slice of Jobs after {}", after);
+        Slice<Job> slice = jobRepository.findAllByIdGreaterThan(PaginationUtil.decodeCursor(after),
+            new PageRequest(0, pageable.getPageSize(), Sort.Direction.ASC, "id"));
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(slice, Job::getId, "/api/jobs");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /jobs?ids=:ids : get the jobs with the given ids.
+     *
+     * @param ids the ids of the jobs to retrieve
+     * @return the ResponseEntity with status 200 (OK) and the list of jobs in body, in the order of the ids,
+     * with the ids that were not found in the "X-jhipsterApp-missing-ids" header,
+     * or with status 400 (Bad Request) if there are too many ids
+     */
+    @RequestMapping(value = "/jobs",
+        method = RequestMethod.GET,
+        params = "ids",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Job>> getJobsByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Jobs : {}", ids);
+        if (ids.size() > MultiGetService.MAX_IDS) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("job", "toomanyids",
+                "Cannot get more than " + MultiGetService.MAX_IDS + " jobs at once")).body(null);
+        }
+        Map<Long, Job> jobs = multiGetService.findAll(Job.class, ids);
+        HttpHeaders headers = HeaderUtil.createMissingIdsHeader(ids, jobs.keySet());
+        return new ResponseEntity<>(new ArrayList<>(jobs.values()), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /jobs/changes?since=:watermark : get the jobs created, updated or deleted since a watermark.
+     *
+     * @param since the watermark returned by the previous call, 0 to get all the jobs
+     * @param size the maximum number of changes to return
+     * @return the ResponseEntity with status 200 (OK) and with body the changes in commit order and the new watermark,
+     * or with status 400 (Bad Request) if the size is not valid
+     */
+    @RequestMapping(value = "/jobs/changes",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<ChangeSetDTO<Job>> getJobChanges(@RequestParam long since, @RequestParam(defaultValue = "1000") int size) {
+        log.debug("REST request to get the changes of Job since {}", since);
+        if (size < 1 || size > ChangeTrackingService.MAX_CHANGES) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("job", "invalidsize",
+                "The size must be between 1 and " + ChangeTrackingService.MAX_CHANGES)).body(null);
+        }
+        return ResponseEntity.ok(changeTrackingService.findChanges(Job.class, since, size));
+    }
+
     /**
      * GET  /jobs/:id : get the "id" job.
      *
@@ -121,28 +302,92 @@ public class JobResource {
     @Timed
     public ResponseEntity<Job> getJob(@PathVariable Long id) {
         log.debug("REST request to get Job : {}", id);
-        Job job = jobRepository.findOneWithEagerRelationships(id);
+        Job job = BatchLoadUtil.findOne(id, jobRepository::findAllWithEagerRelationshipsByIdIn);
         return Optional.ofNullable(job)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /jobs/_match : get the jobs having a set of tasks.
+     *
+     * @param allTasks the ids of the tasks that a job must all have
+     * @param anyTasks the ids of the tasks that a job must have at least one of
+     * @return the ResponseEntity with status 200 (OK) and the ids of the matching jobs in body, in ascending order,
+     * or with status 400 (Bad Request) if no task is given
+     */
+    @RequestMapping(value = "/jobs/_match",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<long[]> matchJobs(@RequestParam(required = false) List<Long> allTasks,
+        @RequestParam(required = false) List<Long> anyTasks) {
+        log.debug("REST request to get the Jobs having all of the tasks {} and any of the tasks {}", allTasks, anyTasks);
+        if ((allTasks == null || allTasks.isEmpty()) && (anyTasks == null || anyTasks.isEmpty())) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("job", "notasks",
+                "At least one task must be given")).body(null);
+        }
+        return ResponseEntity.ok(jobTaskIndex.matchJobs(
+            allTasks == null ? Collections.emptyList() : allTasks,
+            anyTasks == null ? Collections.emptyList() : anyTasks));
+    }
+
+    /**
+     * GET  /jobs/_bands : get the jobs whose salary band contains a salary, or overlaps a range of salaries.
+     *
+     * @param salary the salary
+     * @param from the lowest salary of the range, when no salary is given
+     * @param to the highest salary of the range, when no salary is given
+     * @return the ResponseEntity with status 200 (OK) and the ids of the matching jobs in body, in ascending order,
+     * or with status 400 (Bad Request) if neither a salary nor a valid range is given
+     */
+    @RequestMapping(value = "/jobs/_bands",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<long[]> getJobsBySalary(@RequestParam(required = false) Long salary,
+        @RequestParam(required = false) Long from, @RequestParam(required = false) Long to) {
+        log.debug("REST request to get the Jobs whose salary band contains {} or overlaps [{}, {}]", salary, from, to);
+        if (salary != null) {
+            return ResponseEntity.ok(salaryBandIndex.findContaining(salary));
+        }
+        if (from == null || to == null || from > to) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("job", "invalidrange",
+                "Either a salary or a range of salaries must be given")).body(null);
+        }
+        return ResponseEntity.ok(salaryBandIndex.findOverlapping(from, to));
+    }
+
     /**
      * DELETE  /jobs/:id : delete the "id" job.
      *
      * @param id the id of the job to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the job as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the job does not match the If-Match header
      */
     @RequestMapping(value = "/jobs/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteJob(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteJob(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Job : {}", id);
+        Job current = jobRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("job", "versionmismatch", "The job was modified since it was read")).build();
+        }
         jobRepository.delete(id);
-        jobSearchRepository.delete(id);
+        changeTrackingService.tombstone(Job.class, id);
+        searchOutboxService.delete(Job.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Job.class, -1);
+            jobTaskIndex.removeJob(id);
+            salaryBandIndex.remove(id);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("job", id.toString())).build();
     }
 
@@ -162,10 +407,38 @@ public class JobResource {
     public ResponseEntity<List<Job>> searchJobs(@RequestParam String query, Pageable pageable)
         throws URISyntaxException {
         log.debug("REST request to search for a page of Jobs for query {}", query);
-        Page<Job> page = jobSearchRepository.search(queryStringQuery(query), pageable);
+        Page<Job> page = searchCacheService.get(Job.class, query, pageable,
+            () -> jobSearchRepository.search(queryStringQuery(query), pageable));
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/jobs");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * SEARCH  /_search/jobs?query=:query&after=:cursor : search for a slice of the jobs corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the job search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/jobs",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Job>> searchJobsAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Jobs for query {} after {}", query, after);
+        Slice<Job> slice = SearchUtil.searchAfter(jobSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Job::getId,
+            "/api/_search/jobs");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
 
+    private static List<Long> taskIdsOf(Job job) {
+        return job.getTasks().stream().map(Task::getId).collect(Collectors.toList());
+    }
 }
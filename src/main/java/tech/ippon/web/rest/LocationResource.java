@@ -1,23 +1,42 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.util.RawValue;
 import tech.ippon.domain.Location;
 
 import tech.ippon.repository.LocationRepository;
 import tech.ippon.repository.search.LocationSearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
+import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -39,6 +58,24 @@ public class LocationResource {
     @Inject
     private LocationSearchRepository locationSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
     /**
      * POST  /locations : Create a new location.
      *
@@ -50,13 +87,20 @@ public class LocationResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Location> createLocation(@RequestBody Location location) throws URISyntaxException {
         log.debug("REST request to save Location : {}", location);
         if (location.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("location", "idexists", "A new location cannot already have an ID")).body(null);
         }
         Location result = locationRepository.save(location);
-        locationSearchRepository.save(result);
+        searchOutboxService.index(Location.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Location.class, 1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Location.class);
+        });
         return ResponseEntity.created(new URI("/api/locations/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("location", result.getId().toString()))
             .body(result);
@@ -66,8 +110,10 @@ public class LocationResource {
      * PUT  /locations : Updates an existing location.
      *
      * @param location the location to update
+     * @param ifMatch the ETag of the location as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated location,
      * or with status 400 (Bad Request) if the location is not valid,
+     * or with status 412 (Precondition Failed) if the location does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the location couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -75,20 +121,37 @@ public class LocationResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Location> updateLocation(@RequestBody Location location) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Location> updateLocation(@RequestBody Location location,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Location : {}", location);
         if (location.getId() == null) {
             return createLocation(location);
         }
-        Location result = locationRepository.save(location);
-        locationSearchRepository.save(result);
+        Location current = locationRepository.findCurrent(location.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("location", "versionmismatch", "The location was modified since it was read")).body(null);
+            }
+            location.setVersion(current.getVersion());
+        }
+        Location result = locationRepository.saveAndFlush(location);
+        searchOutboxService.index(Location.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Location.class);
+        });
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("location", location.getId().toString()))
             .body(result);
     }
 
     /**
      * GET  /locations : get all the locations.
+     * <p>
+     * The list is served from a snapshot, which is only built again once a location changes.
      *
      * @return the ResponseEntity with status 200 (OK) and the list of locations in body
      */
@@ -96,10 +159,66 @@ public class LocationResource {
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public List<Location> getAllLocations() {
+    public ResponseEntity<RawValue> getAllLocations() {
         log.debug("REST request to get all Locations");
-        List<Location> locations = locationRepository.findAll();
-        return locations;
+        ListingService.Snapshot snapshot = listingService.getSnapshot(Location.class);
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .body(snapshot.getJson());
+    }
+
+    /**
+     * GET  /locations?page=:page : get a page of the locations.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of locations in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/locations",
+        method = RequestMethod.GET,
+        params = {"page", "!fields"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Location>> getAllLocationsPaged(Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Locations");
+        Page<Location> page = countService.page(Location.class, locationRepository.findAllWithoutCount(pageable), pageable,
+            locationRepository::count);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/locations");
+        headers.setETag(ETagUtil.listTag(page, Location::getId, Location::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /locations/export : export all the locations, one JSON document per line.
+     *
+     * @param response the HTTP response the locations are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/locations/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportLocations(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Locations");
+        response.setContentType("application/x-ndjson");
+        listingService.export(Location.class, response.getOutputStream());
+    }
+
+    /**
+     * GET  /locations?fields=:fields : get all the locations, reduced to the given fields.
+     *
+     * @param fields the fields to return
+     * @return the ResponseEntity with status 200 (OK) and the list of locations in body,
+     * or with status 400 (Bad Request) if a field is unknown
+     */
+    @RequestMapping(value = "/locations",
+        method = RequestMethod.GET,
+        params = "fields",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public List<Map<String, Object>> getAllLocationsFields(@RequestParam List<String> fields) {
+        log.debug("REST request to get the fields {} of all Locations", fields);
+        return projectionService.findAll(Location.class, fields, new Sort(Sort.Direction.ASC, "id"));
     }
 
     /**
@@ -114,11 +233,11 @@ public class LocationResource {
     @Timed
     public ResponseEntity<Location> getLocation(@PathVariable Long id) {
         log.debug("REST request to get Location : {}", id);
-        Location location = locationRepository.findOne(id);
+        Location location = referenceDataService.getSnapshot().getLocation(id);
         return Optional.ofNullable(location)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
@@ -126,16 +245,30 @@ public class LocationResource {
      * DELETE  /locations/:id : delete the "id" location.
      *
      * @param id the id of the location to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the location as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the location does not match the If-Match header
      */
     @RequestMapping(value = "/locations/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteLocation(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteLocation(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Location : {}", id);
+        Location current = locationRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("location", "versionmismatch", "The location was modified since it was read")).build();
+        }
         locationRepository.delete(id);
-        locationSearchRepository.delete(id);
+        searchOutboxService.delete(Location.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Location.class, -1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Location.class);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("location", id.toString())).build();
     }
 
@@ -157,5 +290,52 @@ public class LocationResource {
             .collect(Collectors.toList());
     }
 
+    /**
+     * SEARCH  /_search/locations?query=:query&page=:page : search for a page of the locations corresponding
+     * to the query.
+     *
+     * @param query the query of the location search
+     * @param pageable the pagination information
+     * @return the result of the search
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/locations",
+        method = RequestMethod.GET,
+        params = {"page", "!after"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Location>> searchLocationsPaged(@RequestParam String query, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to search for a page of Locations for query {}", query);
+        Page<Location> page = locationSearchRepository.search(queryStringQuery(query), pageable);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/locations");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * SEARCH  /_search/locations?query=:query&after=:cursor : search for a slice of the locations corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the location search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/locations",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Location>> searchLocationsAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Locations for query {} after {}", query, after);
+        Slice<Location> slice = SearchUtil.searchAfter(locationSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Location::getId,
+            "/api/_search/locations");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
 
 }
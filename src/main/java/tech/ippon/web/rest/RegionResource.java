@@ -1,20 +1,36 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.util.RawValue;
 import tech.ippon.domain.Region;
 
 import tech.ippon.repository.RegionRepository;
 import tech.ippon.repository.search.RegionSearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
+import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -39,6 +55,21 @@ public class RegionResource {
     @Inject
     private RegionSearchRepository regionSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
     /**
      * POST  /regions : Create a new region.
      *
@@ -50,13 +81,20 @@ public class RegionResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Region> createRegion(@RequestBody Region region) throws URISyntaxException {
         log.debug("REST request to save Region : {}", region);
         if (region.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("region", "idexists", "A new region cannot already have an ID")).body(null);
         }
         Region result = regionRepository.save(region);
-        regionSearchRepository.save(result);
+        searchOutboxService.index(Region.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Region.class, 1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Region.class);
+        });
         return ResponseEntity.created(new URI("/api/regions/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("region", result.getId().toString()))
             .body(result);
@@ -66,8 +104,10 @@ public class RegionResource {
      * PUT  /regions : Updates an existing region.
      *
      * @param region the region to update
+     * @param ifMatch the ETag of the region as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated region,
      * or with status 400 (Bad Request) if the region is not valid,
+     * or with status 412 (Precondition Failed) if the region does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the region couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -75,20 +115,37 @@ public class RegionResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Region> updateRegion(@RequestBody Region region) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Region> updateRegion(@RequestBody Region region,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Region : {}", region);
         if (region.getId() == null) {
             return createRegion(region);
         }
-        Region result = regionRepository.save(region);
-        regionSearchRepository.save(result);
+        Region current = regionRepository.findCurrent(region.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("region", "versionmismatch", "The region was modified since it was read")).body(null);
+            }
+            region.setVersion(current.getVersion());
+        }
+        Region result = regionRepository.saveAndFlush(region);
+        searchOutboxService.index(Region.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Region.class);
+        });
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("region", region.getId().toString()))
             .body(result);
     }
 
     /**
      * GET  /regions : get all the regions.
+     * <p>
+     * The list is served from a snapshot, which is only built again once a region changes.
      *
      * @return the ResponseEntity with status 200 (OK) and the list of regions in body
      */
@@ -96,10 +153,49 @@ public class RegionResource {
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public List<Region> getAllRegions() {
+    public ResponseEntity<RawValue> getAllRegions() {
         log.debug("REST request to get all Regions");
-        List<Region> regions = regionRepository.findAll();
-        return regions;
+        ListingService.Snapshot snapshot = listingService.getSnapshot(Region.class);
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .body(snapshot.getJson());
+    }
+
+    /**
+     * GET  /regions?page=:page : get a page of the regions.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of regions in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/regions",
+        method = RequestMethod.GET,
+        params = "page",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Region>> getAllRegionsPaged(Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Regions");
+        Page<Region> page = countService.page(Region.class, regionRepository.findAllWithoutCount(pageable), pageable,
+            regionRepository::count);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/regions");
+        headers.setETag(ETagUtil.listTag(page, Region::getId, Region::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /regions/export : export all the regions, one JSON document per line.
+     *
+     * @param response the HTTP response the regions are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/regions/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportRegions(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Regions");
+        response.setContentType("application/x-ndjson");
+        listingService.export(Region.class, response.getOutputStream());
     }
 
     /**
@@ -114,11 +210,11 @@ public class RegionResource {
     @Timed
     public ResponseEntity<Region> getRegion(@PathVariable Long id) {
         log.debug("REST request to get Region : {}", id);
-        Region region = regionRepository.findOne(id);
+        Region region = referenceDataService.getSnapshot().getRegion(id);
         return Optional.ofNullable(region)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
@@ -126,16 +222,30 @@ public class RegionResource {
      * DELETE  /regions/:id : delete the "id" region.
      *
      * @param id the id of the region to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the region as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the region does not match the If-Match header
      */
     @RequestMapping(value = "/regions/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteRegion(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteRegion(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Region : {}", id);
+        Region current = regionRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("region", "versionmismatch", "The region was modified since it was read")).build();
+        }
         regionRepository.delete(id);
-        regionSearchRepository.delete(id);
+        searchOutboxService.delete(Region.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Region.class, -1);
+            referenceDataService.invalidate();
+            rollupService.invalidate();
+            listingService.invalidate(Region.class);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("region", id.toString())).build();
     }
 
@@ -157,5 +267,52 @@ public class RegionResource {
             .collect(Collectors.toList());
     }
 
+    /**
+     * SEARCH  /_search/regions?query=:query&page=:page : search for a page of the regions corresponding
+     * to the query.
+     *
+     * @param query the query of the region search
+     * @param pageable the pagination information
+     * @return the result of the search
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/regions",
+        method = RequestMethod.GET,
+        params = {"page", "!after"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Region>> searchRegionsPaged(@RequestParam String query, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to search for a page of Regions for query {}", query);
+        Page<Region> page = regionSearchRepository.search(queryStringQuery(query), pageable);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/regions");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * SEARCH  /_search/regions?query=:query&after=:cursor : search for a slice of the regions corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the region search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/regions",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Region>> searchRegionsAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Regions for query {} after {}", query, after);
+        Slice<Region> slice = SearchUtil.searchAfter(regionSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Region::getId,
+            "/api/_search/regions");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
 
 }
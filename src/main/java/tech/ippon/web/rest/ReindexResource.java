@@ -0,0 +1,78 @@
+package tech.ippon.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import tech.ippon.service.SearchReindexService;
+import tech.ippon.service.dto.ReindexStatusDTO;
+import tech.ippon.web.rest.util.HeaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller for rebuilding the Elasticsearch indexes from the database.
+ */
+@RestController
+@RequestMapping("/management/jhipster")
+public class ReindexResource {
+
+    private final Logger log = LoggerFactory.getLogger(ReindexResource.class);
+
+    @Inject
+    private SearchReindexService searchReindexService;
+
+    /**
+     * POST  /reindex : start rebuilding the indexes, in the background.
+     *
+     * @param types the names of the entity types whose indexes to rebuild, all the indexed types if empty
+     * @return the ResponseEntity with status 202 (Accepted) and the progress of the rebuild in body,
+     * or with status 400 (Bad Request) if an entity type is not indexed,
+     * or with status 409 (Conflict) if a rebuild is already running
+     */
+    @RequestMapping(value = "/reindex",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<ReindexStatusDTO>> reindex(@RequestParam(required = false) List<String> types) {
+        log.debug("REST request to rebuild the indexes of {}", types == null ? "all the entities" : types);
+        Map<String, Class<?>> entityTypes = searchReindexService.getEntityTypes();
+        List<Class<?>> entityClasses = new ArrayList<>();
+        if (types == null || types.isEmpty()) {
+            entityClasses.addAll(entityTypes.values());
+        } else {
+            for (String type : types) {
+                Class<?> entityClass = entityTypes.get(type);
+                if (entityClass == null) {
+                    return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("reindex", "unknowntype",
+                        "No index is defined for " + type)).body(null);
+                }
+                entityClasses.add(entityClass);
+            }
+        }
+        if (!searchReindexService.start(entityClasses)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).headers(HeaderUtil.createFailureAlert("reindex", "running",
+                "A rebuild of the indexes is already running")).body(null);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(searchReindexService.getStatus());
+    }
+
+    /**
+     * GET  /reindex : get the progress of the current or last rebuild of the indexes.
+     *
+     * @return the progress of the rebuild of each index
+     */
+    @RequestMapping(value = "/reindex",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public List<ReindexStatusDTO> getReindexStatus() {
+        return searchReindexService.getStatus();
+    }
+}
@@ -0,0 +1,48 @@
+package tech.ippon.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.dto.RollupDTO;
+import tech.ippon.web.rest.util.HeaderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.inject.Inject;
+import java.util.Optional;
+
+/**
+ * REST controller for the geographic rollup of the employees.
+ */
+@RestController
+@RequestMapping("/api")
+public class RollupResource {
+
+    private final Logger log = LoggerFactory.getLogger(RollupResource.class);
+
+    @Inject
+    private RollupService rollupService;
+
+    /**
+     * GET  /rollup?level=:level : get the headcount and salary totals of the employees by region, country or location.
+     *
+     * @param level the deepest level of the rollup: region, country or location
+     * @return the ResponseEntity with status 200 (OK) and the root of the rollup in body,
+     * or with status 400 (Bad Request) if the level is not valid
+     */
+    @RequestMapping(value = "/rollup",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<RollupDTO> getRollup(@RequestParam(defaultValue = "region") String level) {
+        log.debug("REST request to get the rollup by {}", level);
+        Optional<RollupService.Level> rollupLevel = RollupService.Level.of(level);
+        if (!rollupLevel.isPresent()) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("rollup", "invalidlevel",
+                "The level must be region, country or location")).body(null);
+        }
+        return ResponseEntity.ok(rollupService.getRollup(rollupLevel.get()));
+    }
+}
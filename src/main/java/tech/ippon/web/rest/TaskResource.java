@@ -1,20 +1,35 @@
 package tech.ippon.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.util.RawValue;
 import tech.ippon.domain.Task;
 
 import tech.ippon.repository.TaskRepository;
 import tech.ippon.repository.search.TaskSearchRepository;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.index.JobTaskIndex;
+import tech.ippon.service.util.SearchUtil;
+import tech.ippon.service.util.TransactionUtil;
+import tech.ippon.web.rest.util.ETagUtil;
 import tech.ippon.web.rest.util.HeaderUtil;
+import tech.ippon.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -39,6 +54,18 @@ public class TaskResource {
     @Inject
     private TaskSearchRepository taskSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private JobTaskIndex jobTaskIndex;
+
     /**
      * POST  /tasks : Create a new task.
      *
@@ -50,13 +77,18 @@ public class TaskResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     public ResponseEntity<Task> createTask(@RequestBody Task task) throws URISyntaxException {
         log.debug("REST request to save Task : {}", task);
         if (task.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("task", "idexists", "A new task cannot already have an ID")).body(null);
         }
         Task result = taskRepository.save(task);
-        taskSearchRepository.save(result);
+        searchOutboxService.index(Task.class, result.getId());
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Task.class, 1);
+            listingService.invalidate(Task.class);
+        });
         return ResponseEntity.created(new URI("/api/tasks/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert("task", result.getId().toString()))
             .body(result);
@@ -66,8 +98,10 @@ public class TaskResource {
      * PUT  /tasks : Updates an existing task.
      *
      * @param task the task to update
+     * @param ifMatch the ETag of the task as last read, to update it only if it did not change since
      * @return the ResponseEntity with status 200 (OK) and with body the updated task,
      * or with status 400 (Bad Request) if the task is not valid,
+     * or with status 412 (Precondition Failed) if the task does not match the If-Match header,
      * or with status 500 (Internal Server Error) if the task couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
@@ -75,20 +109,33 @@ public class TaskResource {
         method = RequestMethod.PUT,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Task> updateTask(@RequestBody Task task) throws URISyntaxException {
+    @Transactional
+    public ResponseEntity<Task> updateTask(@RequestBody Task task,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Task : {}", task);
         if (task.getId() == null) {
             return createTask(task);
         }
-        Task result = taskRepository.save(task);
-        taskSearchRepository.save(result);
+        Task current = taskRepository.findCurrent(task.getId());
+        if (current != null) {
+            if (!ETagUtil.matches(ifMatch, current.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("task", "versionmismatch", "The task was modified since it was read")).body(null);
+            }
+            task.setVersion(current.getVersion());
+        }
+        Task result = taskRepository.saveAndFlush(task);
+        searchOutboxService.index(Task.class, result.getId());
+        TransactionUtil.afterCommit(() -> listingService.invalidate(Task.class));
         return ResponseEntity.ok()
+            .eTag(ETagUtil.entityTag(result.getVersion()))
             .headers(HeaderUtil.createEntityUpdateAlert("task", task.getId().toString()))
             .body(result);
     }
 
     /**
      * GET  /tasks : get all the tasks.
+     * <p>
+     * The list is served from a snapshot, which is only built again once a task changes.
      *
      * @return the ResponseEntity with status 200 (OK) and the list of tasks in body
      */
@@ -96,10 +143,49 @@ public class TaskResource {
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public List<Task> getAllTasks() {
+    public ResponseEntity<RawValue> getAllTasks() {
         log.debug("REST request to get all Tasks");
-        List<Task> tasks = taskRepository.findAll();
-        return tasks;
+        ListingService.Snapshot snapshot = listingService.getSnapshot(Task.class);
+        return ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .body(snapshot.getJson());
+    }
+
+    /**
+     * GET  /tasks?page=:page : get a page of the tasks.
+     *
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of tasks in body
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/tasks",
+        method = RequestMethod.GET,
+        params = "page",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Task>> getAllTasksPaged(Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to get a page of Tasks");
+        Page<Task> page = countService.page(Task.class, taskRepository.findAllWithoutCount(pageable), pageable,
+            taskRepository::count);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/tasks");
+        headers.setETag(ETagUtil.listTag(page, Task::getId, Task::getVersion, page.getTotalElements()));
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /tasks/export : export all the tasks, one JSON document per line.
+     *
+     * @param response the HTTP response the tasks are written to
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(value = "/tasks/export",
+        method = RequestMethod.GET)
+    @Timed
+    public void exportTasks(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Tasks");
+        response.setContentType("application/x-ndjson");
+        listingService.export(Task.class, response.getOutputStream());
     }
 
     /**
@@ -116,26 +202,53 @@ public class TaskResource {
         log.debug("REST request to get Task : {}", id);
         Task task = taskRepository.findOne(id);
         return Optional.ofNullable(task)
-            .map(result -> new ResponseEntity<>(
-                result,
-                HttpStatus.OK))
+            .map(result -> ResponseEntity.ok()
+                .eTag(ETagUtil.entityTag(result.getVersion()))
+                .body(result))
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /tasks/_shared : get the tasks that a set of jobs have in common.
+     *
+     * @param jobs the ids of the jobs
+     * @return the ResponseEntity with status 200 (OK) and the ids of the tasks in body, in ascending order
+     */
+    @RequestMapping(value = "/tasks/_shared",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<long[]> getSharedTasks(@RequestParam List<Long> jobs) {
+        log.debug("REST request to get the Tasks shared by the Jobs {}", jobs);
+        return ResponseEntity.ok(jobTaskIndex.sharedTasks(jobs));
+    }
+
     /**
      * DELETE  /tasks/:id : delete the "id" task.
      *
      * @param id the id of the task to delete
-     * @return the ResponseEntity with status 200 (OK)
+     * @param ifMatch the ETag of the task as last read, to delete it only if it did not change since
+     * @return the ResponseEntity with status 200 (OK),
+     * or with status 412 (Precondition Failed) if the task does not match the If-Match header
      */
     @RequestMapping(value = "/tasks/{id}",
         method = RequestMethod.DELETE,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<Void> deleteTask(@PathVariable Long id) {
+    @Transactional
+    public ResponseEntity<Void> deleteTask(@PathVariable Long id,
+        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         log.debug("REST request to delete Task : {}", id);
+        Task current = taskRepository.findCurrent(id);
+        if (current != null && !ETagUtil.matches(ifMatch, current.getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).headers(HeaderUtil.createFailureAlert("task", "versionmismatch", "The task was modified since it was read")).build();
+        }
         taskRepository.delete(id);
-        taskSearchRepository.delete(id);
+        searchOutboxService.delete(Task.class, id);
+        TransactionUtil.afterCommit(() -> {
+            countService.update(Task.class, -1);
+            listingService.invalidate(Task.class);
+        });
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert("task", id.toString())).build();
     }
 
@@ -157,5 +270,52 @@ public class TaskResource {
             .collect(Collectors.toList());
     }
 
+    /**
+     * SEARCH  /_search/tasks?query=:query&page=:page : search for a page of the tasks corresponding
+     * to the query.
+     *
+     * @param query the query of the task search
+     * @param pageable the pagination information
+     * @return the result of the search
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/tasks",
+        method = RequestMethod.GET,
+        params = {"page", "!after"},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Task>> searchTasksPaged(@RequestParam String query, Pageable pageable)
+        throws URISyntaxException {
+        log.debug("REST request to search for a page of Tasks for query {}", query);
+        Page<Task> page = taskSearchRepository.search(queryStringQuery(query), pageable);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/tasks");
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * SEARCH  /_search/tasks?query=:query&after=:cursor : search for a slice of the tasks corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query of the task search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/tasks",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<Task>> searchTasksAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Tasks for query {} after {}", query, after);
+        Slice<Task> slice = SearchUtil.searchAfter(taskSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, Task::getId,
+            "/api/_search/tasks");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
+
 
 }
@@ -6,8 +6,11 @@ import tech.ippon.domain.User;
 import tech.ippon.repository.UserRepository;
 import tech.ippon.repository.search.UserSearchRepository;
 import tech.ippon.security.AuthoritiesConstants;
+import tech.ippon.service.CountService;
 import tech.ippon.service.MailService;
 import tech.ippon.service.UserService;
+import tech.ippon.service.util.BatchLoadUtil;
+import tech.ippon.service.util.SearchUtil;
 import tech.ippon.web.rest.vm.ManagedUserVM;
 import tech.ippon.web.rest.util.HeaderUtil;
 import tech.ippon.web.rest.util.PaginationUtil;
@@ -15,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -74,6 +78,9 @@ public class UserResource {
     @Inject
     private UserSearchRepository userSearchRepository;
 
+    @Inject
+    private CountService countService;
+
     /**
      * POST  /users  : Creates a new user.
      * <p>
@@ -164,7 +171,9 @@ public class UserResource {
     @Timed
     public ResponseEntity<List<ManagedUserVM>> getAllUsers(Pageable pageable)
         throws URISyntaxException {
-        Page<User> page = userRepository.findAllWithAuthorities(pageable);
+        List<User> users = BatchLoadUtil.findAll(userRepository.findAllIds(pageable),
+            userRepository::findAllWithAuthoritiesByIdIn, User::getId);
+        Page<User> page = countService.page(User.class, users, pageable, userRepository::count);
         List<ManagedUserVM> managedUserVMs = page.getContent().stream()
             .map(ManagedUserVM::new)
             .collect(Collectors.toList());
@@ -223,4 +232,29 @@ public class UserResource {
             .stream(userSearchRepository.search(queryStringQuery(query)).spliterator(), false)
             .collect(Collectors.toList());
     }
+
+    /**
+     * SEARCH  /_search/users?query=:query&after=:cursor : search for a slice of the Users corresponding
+     * to the query, using keyset pagination.
+     *
+     * @param query the query to search
+     * @param after the cursor returned in the "next" link of the previous slice, empty for the first slice
+     * @param pageable the pagination information, the results being sorted by id
+     * @return the result of the search, or status 400 (Bad Request) if another sort is requested
+     * @throws URISyntaxException if there is an error to generate the pagination HTTP headers
+     */
+    @RequestMapping(value = "/_search/users",
+        method = RequestMethod.GET,
+        params = "after",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<User>> searchAfter(@RequestParam String query, @RequestParam String after,
+        Pageable pageable) throws URISyntaxException {
+        log.debug("REST request to search for a slice of Users for query {} after {}", query, after);
+        Slice<User> slice = SearchUtil.searchAfter(userSearchRepository, query, PaginationUtil.decodeCursor(after),
+            PaginationUtil.getSearchKeysetSize(pageable));
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, slice, User::getId,
+            "/api/_search/users");
+        return new ResponseEntity<>(slice.getContent(), headers, HttpStatus.OK);
+    }
 }
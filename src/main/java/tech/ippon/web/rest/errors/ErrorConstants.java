@@ -3,6 +3,7 @@ package tech.ippon.web.rest.errors;
 public final class ErrorConstants {
 
     public static final String ERR_CONCURRENCY_FAILURE = "error.concurrencyFailure";
+    public static final String ERR_PRECONDITION_FAILED = "error.preconditionFailed";
     public static final String ERR_ACCESS_DENIED = "error.accessDenied";
     public static final String ERR_VALIDATION = "error.validation";
     public static final String ERR_METHOD_NOT_SUPPORTED = "error.methodNotSupported";
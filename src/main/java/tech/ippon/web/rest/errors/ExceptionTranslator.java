@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ResponseEntity.BodyBuilder;
@@ -14,6 +15,8 @@ import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 /**
  * Controller advice to translate the server side exceptions to client-friendly json structures.
  */
@@ -21,10 +24,14 @@ import org.springframework.web.bind.annotation.*;
 public class ExceptionTranslator {
 
     @ExceptionHandler(ConcurrencyFailureException.class)
-    @ResponseStatus(HttpStatus.CONFLICT)
     @ResponseBody
-    public ErrorVM processConcurencyError(ConcurrencyFailureException ex) {
-        return new ErrorVM(ErrorConstants.ERR_CONCURRENCY_FAILURE);
+    public ResponseEntity<ErrorVM> processConcurencyError(ConcurrencyFailureException ex, HttpServletRequest request) {
+        if (request.getHeader(HttpHeaders.IF_MATCH) != null) {
+            // the entity matched the If-Match header when it was read, but was changed before it was written
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ErrorVM(ErrorConstants.ERR_PRECONDITION_FAILED));
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorVM(ErrorConstants.ERR_CONCURRENCY_FAILURE));
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
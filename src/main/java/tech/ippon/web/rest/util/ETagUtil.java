@@ -0,0 +1,119 @@
+package tech.ippon.web.rest.util;
+
+import org.springframework.data.domain.Page;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Utility class for HTTP entity tags, derived from the version of the entities, or from the content of a response.
+ * <p>
+ * Responses carrying an ETag are answered with a 304 (Not Modified) and no body by Spring MVC itself when the
+ * request has a matching If-None-Match header, before the body is serialized.
+ * </p>
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Generates the strong ETag of an entity.
+     *
+     * @param version the version of the entity
+     * @return the ETag, quoted
+     */
+    public static String entityTag(int version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Generates the weak ETag of a list of entities, which changes whenever an entity of the list changes,
+     * or the list itself changes.
+     *
+     * @param entities the entities of the list, in order
+     * @param idExtractor the function giving the id of an entity
+     * @param versionExtractor the function giving the version of an entity
+     * @param total the total number of entities, of which the list may be a page
+     * @param <T> the type of the entities
+     * @return the ETag, quoted
+     */
+    public static <T> String listTag(Iterable<T> entities, Function<? super T, Long> idExtractor,
+                                     ToIntFunction<? super T> versionExtractor, long total) {
+        long hash = total;
+        for (T entity : entities) {
+            Long id = idExtractor.apply(entity);
+            hash = 31 * hash + (id == null ? 0 : id);
+            hash = 31 * hash + versionExtractor.applyAsInt(entity);
+        }
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * Generates the weak ETag of a response from its content, for the responses that embed other entities than the
+     * ones they list: it changes whenever the content changes, whatever entity made it change.
+     *
+     * @param content the content of the response
+     * @return the ETag, quoted
+     */
+    public static String contentTag(String content) {
+        return "W/\"" + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Generates the weak ETag of a page of entities from their ids and versions, read without the entities: it is
+     * the same as the one of the page of the entities themselves.
+     *
+     * @param versions the ids and versions of the entities of the page, in order
+     * @return the ETag, quoted
+     */
+    public static String listTag(Page<Object[]> versions) {
+        return listTag(versions, row -> (Long) row[0], row -> (Integer) row[1], versions.getTotalElements());
+    }
+
+    /**
+     * Checks an If-None-Match header against the ETag of a response, with the weak comparison.
+     *
+     * @param ifNoneMatch the value of the If-None-Match header, null if the header is absent
+     * @param eTag the ETag of the response
+     * @return true if the client already has the response
+     */
+    public static boolean notModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        String opaqueTag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ((tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks an If-Match header against the current version of an entity.
+     *
+     * @param ifMatch the value of the If-Match header, null if the header is absent
+     * @param version the current version of the entity
+     * @return true if there is no header, or if it matches the current version
+     */
+    public static boolean matches(String ifMatch, int version) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return true;
+        }
+        String entityTag = entityTag(version);
+        for (String tag : ifMatch.split(",")) {
+            if (tag.trim().equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
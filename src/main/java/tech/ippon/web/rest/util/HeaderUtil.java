@@ -4,6 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 
+import java.util.Collection;
+import java.util.stream.Collectors;
+
 /**
  * Utility class for HTTP headers creation.
  */
@@ -37,4 +40,17 @@ public class HeaderUtil {
         headers.add("X-jhipsterApp-params", entityName);
         return headers;
     }
+
+    public static HttpHeaders createMissingIdsHeader(Collection<Long> requestedIds, Collection<Long> foundIds) {
+        HttpHeaders headers = new HttpHeaders();
+        String missingIds = requestedIds.stream()
+            .filter(id -> !foundIds.contains(id))
+            .distinct()
+            .map(String::valueOf)
+            .collect(Collectors.joining(","));
+        if (!missingIds.isEmpty()) {
+            headers.add("X-jhipsterApp-missing-ids", missingIds);
+        }
+        return headers;
+    }
 }
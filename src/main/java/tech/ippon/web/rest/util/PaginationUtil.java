@@ -1,10 +1,19 @@
 package tech.ippon.web.rest.util;
 
+import tech.ippon.service.util.CountedPage;
+import tech.ippon.web.rest.errors.CustomParameterizedException;
+
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
 
 /**
  * Utility class for handling pagination.
@@ -12,6 +21,11 @@ import java.net.URISyntaxException;
  * <p>
  * Pagination uses the same principles as the <a href="https://developer.github.com/v3/#pagination">Github API</a>,
  * and follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link header)</a>.
+ *
+ * <p>
+ * Keyset (seek) pagination is also supported: the client sends an opaque {@code after} cursor instead of a page
+ * number, and only gets a "next" link back. No total count is computed in that mode. Searches support it too, so
+ * that pages deep in a result set cost no more than the first one.
  */
 public class PaginationUtil {
 
@@ -20,6 +34,9 @@ public class PaginationUtil {
 
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-Total-Count", "" + page.getTotalElements());
+        if (page instanceof CountedPage && ((CountedPage<?>) page).isTotalApproximate()) {
+            headers.add("X-Total-Count-Approximate", "true");
+        }
         String link = "";
         if ((page.getNumber() + 1) < page.getTotalPages()) {
             link = "<" + generateUri(baseUrl, page.getNumber() + 1, page.getSize()) + ">; rel=\"next\",";
@@ -66,4 +83,87 @@ public class PaginationUtil {
         headers.add(HttpHeaders.LINK, link);
         return headers;
     }
+
+    public static <T> HttpHeaders generateSearchPaginationHttpHeaders(String query, Slice<T> slice,
+        Function<? super T, Long> keyExtractor, String baseUrl) throws URISyntaxException {
+
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (slice.hasNext()) {
+            T last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            link = "<" + generateSearchKeysetUri(baseUrl, query, encodeCursor(keyExtractor.apply(last)), slice.getSize()) + ">; rel=\"next\",";
+        }
+        link += "<" + generateSearchKeysetUri(baseUrl, query, "", slice.getSize()) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateSearchKeysetUri(String baseUrl, String query, String cursor, int size) throws URISyntaxException {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("query", query).queryParam("after", cursor)
+            .queryParam("size", size).toUriString();
+    }
+
+    public static <T> HttpHeaders generateKeysetPaginationHttpHeaders(Slice<T> slice, Function<? super T, Long> keyExtractor,
+        String baseUrl) throws URISyntaxException {
+
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (slice.hasNext()) {
+            T last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            link = "<" + generateKeysetUri(baseUrl, encodeCursor(keyExtractor.apply(last)), slice.getSize()) + ">; rel=\"next\",";
+        }
+        link += "<" + generateKeysetUri(baseUrl, "", slice.getSize()) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateKeysetUri(String baseUrl, String cursor, int size) throws URISyntaxException {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("after", cursor).queryParam("size", size).toUriString();
+    }
+
+    /**
+     * Get the size of a slice of search results read with keyset pagination, which are always sorted by id.
+     *
+     * @param pageable the pagination information
+     * @return the size of the slice
+     * @throws CustomParameterizedException if a sort other than by ascending id is requested
+     */
+    public static int getSearchKeysetSize(Pageable pageable) {
+        if (pageable.getSort() != null) {
+            for (Sort.Order order : pageable.getSort()) {
+                if (!"id".equals(order.getProperty()) || !order.isAscending()) {
+                    throw new CustomParameterizedException("error.invalidCursorSort", order.getProperty());
+                }
+            }
+        }
+        return pageable.getPageSize();
+    }
+
+    /**
+     * Encode the sort key of the last row of a slice as an opaque cursor.
+     *
+     * @param key the sort key of the last row
+     * @return the cursor to send back in the "after" request parameter
+     */
+    public static String encodeCursor(Long key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encodeCursor(Long)}.
+     *
+     * @param cursor the cursor, an empty cursor meaning "from the beginning"
+     * @return the sort key to seek after, or Long.MIN_VALUE if the cursor is empty
+     * @throws CustomParameterizedException if the cursor is not valid
+     */
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new CustomParameterizedException("error.invalidCursor", cursor);
+        }
+    }
 }
@@ -0,0 +1,97 @@
+import _root_.io.gatling.core.scenario.Simulation
+import ch.qos.logback.classic.{Level, LoggerContext}
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.duration._
+
+/**
+ * Performance test comparing the bulk save of employees with saving them one by one.
+ *
+ * Compare the "Create employees one by one" and "Create employees in bulk" groups of the report: both save the
+ * same number of employees.
+ */
+class EmployeeBulkGatlingTest extends Simulation {
+
+    val context: LoggerContext = LoggerFactory.getILoggerFactory.asInstanceOf[LoggerContext]
+    // Log all HTTP requests
+    //context.getLogger("io.gatling.http").setLevel(Level.valueOf("TRACE"))
+    // Log failed HTTP requests
+    //context.getLogger("io.gatling.http").setLevel(Level.valueOf("DEBUG"))
+
+    val baseURL = Option(System.getProperty("baseURL")) getOrElse """http://127.0.0.1:8080"""
+
+    val batchSize = Integer.getInteger("batchSize", 1000).intValue
+
+    val httpConf = http
+        .baseURL(baseURL)
+        .inferHtmlResources()
+        .acceptHeader("*/*")
+        .acceptEncodingHeader("gzip, deflate")
+        .acceptLanguageHeader("fr,fr-fr;q=0.8,en-us;q=0.5,en;q=0.3")
+        .connection("keep-alive")
+        .userAgentHeader("Mozilla/5.0 (Macintosh; Intel Mac OS X 10.10; rv:33.0) Gecko/20100101 Firefox/33.0")
+
+    val headers_http = Map(
+        "Accept" -> """application/json"""
+    )
+
+    val headers_http_authenticated = Map(
+        "Accept" -> """application/json""",
+        "X-CSRF-TOKEN" -> "${csrf_token}"
+    )
+
+    val employee = """{"id":null, "employeeId":null, "firstName":"SAMPLE_TEXT", "lastName":"SAMPLE_TEXT", "email":"SAMPLE_TEXT", "phoneNumber":"SAMPLE_TEXT", "hireDate":"2020-01-01T00:00:00.000Z", "salary":null, "commissionPct":null}"""
+
+    val bulkBody = Seq.fill(batchSize)(employee).mkString("[", ",", "]")
+
+    val authenticate = exec(http("First unauthenticated request")
+        .get("/api/account")
+        .headers(headers_http)
+        .check(status.is(401))
+        .check(headerRegex("Set-Cookie", "CSRF-TOKEN=(.*);[\\s]?[P,p]ath=/").saveAs("csrf_token"))).exitHereIfFailed
+        .pause(1)
+        .exec(http("Authentication")
+        .post("/api/authentication")
+        .headers(headers_http_authenticated)
+        .formParam("j_username", "admin")
+        .formParam("j_password", "admin")
+        .formParam("remember-me", "true")
+        .formParam("submit", "Login")).exitHereIfFailed
+        .pause(1)
+        .exec(http("Authenticated request")
+        .get("/api/account")
+        .headers(headers_http_authenticated)
+        .check(status.is(200))
+        .check(headerRegex("Set-Cookie", "CSRF-TOKEN=(.*);[\\s]?[P,p]ath=/").saveAs("csrf_token")))
+        .pause(1)
+
+    val oneByOne = scenario("Create employees one by one")
+        .exec(authenticate)
+        .group("Create employees one by one") {
+            repeat(batchSize) {
+                exec(http("Create new employee")
+                .post("/api/employees")
+                .headers(headers_http_authenticated)
+                .body(StringBody(employee)).asJSON
+                .check(status.is(201)))
+            }
+        }
+
+    val bulk = scenario("Create employees in bulk")
+        .exec(authenticate)
+        .group("Create employees in bulk") {
+            exec(http("Bulk create employees")
+            .post("/api/employees/_bulk")
+            .headers(headers_http_authenticated)
+            .body(StringBody(bulkBody)).asJSON
+            .check(status.is(200))
+            .check(jsonPath("$[?(@.status == 'FAILED')]").notExists))
+        }
+
+    setUp(
+        oneByOne.inject(atOnceUsers(1)),
+        bulk.inject(nothingFor(5 seconds), atOnceUsers(1))
+    ).protocols(httpConf)
+}
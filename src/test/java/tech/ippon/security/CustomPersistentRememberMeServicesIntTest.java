@@ -0,0 +1,141 @@
+package tech.ippon.security;
+
+import tech.ippon.JhipsterApp;
+import tech.ippon.domain.PersistentToken;
+import tech.ippon.repository.PersistentTokenRepository;
+import tech.ippon.repository.UserRepository;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.codec.Base64;
+import org.springframework.security.web.authentication.RememberMeServices;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the CustomPersistentRememberMeServices.
+ *
+ * @see CustomPersistentRememberMeServices
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = JhipsterApp.class)
+@Transactional
+public class CustomPersistentRememberMeServicesIntTest {
+
+    private static final String SERIES = "test-series";
+
+    private static final String VALUE = "test-value";
+
+    @Inject
+    private RememberMeServices rememberMeServices;
+
+    @Inject
+    private PersistentTokenCache persistentTokenCache;
+
+    @Inject
+    private PersistentTokenRepository persistentTokenRepository;
+
+    @Inject
+    private PersistentTokenWriter persistentTokenWriter;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private EntityManager em;
+
+    @After
+    public void removeRotation() {
+        // the tests are rolled back: the cache must not keep what they saw
+        persistentTokenCache.remove(SERIES);
+    }
+
+    @Test
+    public void assertThatConcurrentAutologinReusesTheRotatedToken() {
+        createToken();
+
+        // The first autologin rotates the token value
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        Authentication authentication = rememberMeServices.autoLogin(request(VALUE), first);
+        assertThat(authentication.getName()).isEqualTo("admin");
+        String rotatedValue = persistentTokenRepository.findOne(SERIES).getTokenValue();
+        assertThat(rotatedValue).isNotEqualTo(VALUE);
+        assertThat(persistentTokenRepository.findOne(SERIES).getTokenDate()).isEqualTo(LocalDate.now());
+
+        // A concurrent request presenting the replaced value gets the same rotated value, and does not rotate again
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        authentication = rememberMeServices.autoLogin(request(VALUE), second);
+        assertThat(authentication.getName()).isEqualTo("admin");
+        assertThat(second.getCookie("remember-me").getValue()).isEqualTo(first.getCookie("remember-me").getValue());
+        assertThat(persistentTokenRepository.findOne(SERIES).getTokenValue()).isEqualTo(rotatedValue);
+
+        // Once the grace period is over, the replaced value is taken for a stolen cookie, and the token is deleted
+        persistentTokenCache.remove(SERIES);
+        assertThatThrownBy(() -> rememberMeServices.autoLogin(request(VALUE), new MockHttpServletResponse()))
+            .isInstanceOf(CookieTheftException.class);
+        assertThat(persistentTokenRepository.findOne(SERIES)).isNull();
+    }
+
+    @Test
+    public void assertThatTheWriterKeepsATokenRotatedDuringTheWrite() {
+        createToken();
+
+        // The token is read, as it was by the request submitting the metadata
+        assertThat(persistentTokenRepository.findOne(SERIES).getTokenValue()).isEqualTo(VALUE);
+        persistentTokenWriter.submit(SERIES, new PersistentTokenWriter.Metadata(LocalDate.now(), "10.0.0.1",
+            "Other agent"));
+
+        // A concurrent autologin rotates the token before the metadata is written
+        em.createNativeQuery("update jhi_persistent_token set token_value = 'rotated-value' where series = :series")
+            .setParameter("series", SERIES)
+            .executeUpdate();
+        persistentTokenWriter.flush();
+
+        // The metadata is written, and the rotated value is kept
+        em.flush();
+        em.clear();
+        PersistentToken token = persistentTokenRepository.findOne(SERIES);
+        assertThat(token.getTokenValue()).isEqualTo("rotated-value");
+        assertThat(token.getTokenDate()).isEqualTo(LocalDate.now());
+        assertThat(token.getIpAddress()).isEqualTo("10.0.0.1");
+        assertThat(token.getUserAgent()).isEqualTo("Other agent");
+    }
+
+    private void createToken() {
+        PersistentToken token = new PersistentToken();
+        token.setSeries(SERIES);
+        token.setUser(userRepository.findOneByLogin("admin").get());
+        token.setTokenValue(VALUE);
+        token.setTokenDate(LocalDate.now().minusDays(1));
+        token.setIpAddress("127.0.0.1");
+        token.setUserAgent("Test agent");
+        persistentTokenRepository.saveAndFlush(token);
+    }
+
+    private static MockHttpServletRequest request(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("User-Agent", "Test agent");
+        String cookie = new String(Base64.encode((SERIES + ":" + value).getBytes(StandardCharsets.UTF_8)),
+            StandardCharsets.UTF_8);
+        while (cookie.endsWith("=")) {
+            cookie = cookie.substring(0, cookie.length() - 1);
+        }
+        request.setCookies(new Cookie("remember-me", cookie));
+        return request;
+    }
+}
@@ -1,20 +1,30 @@
 package tech.ippon.service;
 
 import tech.ippon.JhipsterApp;
+import tech.ippon.config.JHipsterProperties;
 import tech.ippon.domain.PersistentToken;
 import tech.ippon.domain.User;
 import tech.ippon.repository.PersistentTokenRepository;
 import tech.ippon.repository.UserRepository;
+import tech.ippon.security.UserDetailsService;
+import tech.ippon.security.UserNotActivatedException;
 import java.time.ZonedDateTime;
 import tech.ippon.service.util.RandomUtil;
 import java.time.LocalDate;
+import org.hibernate.Session;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.List;
 
@@ -39,6 +49,22 @@ public class UserServiceIntTest {
     @Inject
     private UserService userService;
 
+    @Inject
+    private UserDetailsService userDetailsService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private EntityManager em;
+
+    @After
+    public void invalidateUserDetails() {
+        // the tests are rolled back: the cache must not keep what they saw
+        userDetailsService.invalidate("admin");
+        userDetailsService.invalidate("johndoe");
+    }
+
     @Test
     public void testRemoveOldPersistentTokens() {
         User admin = userRepository.findOneByLogin("admin").get();
@@ -132,6 +158,78 @@ public class UserServiceIntTest {
         assertThat(users).isEmpty();
     }
 
+    @Test
+    public void assertThatUserDetailsAreCachedUntilInvalidated() {
+        User admin = userRepository.findOneByLogin("admin").get();
+        String oldPassword = admin.getPassword();
+        UserDetails details = userDetailsService.loadUserByUsername("Admin");
+        assertThat(details.getUsername()).isEqualTo("admin");
+        assertThat(details.getPassword()).isEqualTo(oldPassword);
+        assertThat(details.getAuthorities()).extracting("authority").contains("ROLE_ADMIN", "ROLE_USER");
+
+        // The details are built again from the snapshot on each lookup, so erasing them leaves the cache intact
+        ((org.springframework.security.core.userdetails.User) details).eraseCredentials();
+        admin.setPassword(new StringBuilder(oldPassword).reverse().toString());
+        userRepository.saveAndFlush(admin);
+        assertThat(userDetailsService.loadUserByUsername("admin").getPassword()).isEqualTo(oldPassword);
+
+        // The user service invalidates the user once the transaction is committed, which never happens in this test
+        userDetailsService.invalidate("admin");
+        assertThat(userDetailsService.loadUserByUsername("admin").getPassword()).isEqualTo(admin.getPassword());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void assertThatDeactivationIsSeenOnTheNextLogin() {
+        // The changes are committed, so that the user service invalidates the cached user details
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "en-US");
+        try {
+            userService.activateRegistration(user.getActivationKey());
+            assertThat(userDetailsService.loadUserByUsername("johndoe").getUsername()).isEqualTo("johndoe");
+
+            userService.updateUser(user.getId(), "johndoe", "John", "Doe", "john.doe@localhost", false, "en-US",
+                Collections.singleton("ROLE_USER"));
+            assertThatThrownBy(() -> userDetailsService.loadUserByUsername("johndoe"))
+                .isInstanceOf(UserNotActivatedException.class);
+        } finally {
+            userService.deleteUser("johndoe");
+        }
+    }
+
+    @Test
+    public void assertThatPasswordChangedOnAnotherNodeIsSeenOnceExpired() {
+        User admin = userRepository.findOneByLogin("admin").get();
+        String oldPassword = admin.getPassword();
+        String newPassword = new StringBuilder(oldPassword).reverse().toString();
+        JHipsterProperties.Security.UserDetailsCache cache = jHipsterProperties.getSecurity().getUserDetailsCache();
+        int timeToLiveSeconds = cache.getTimeToLiveSeconds();
+        cache.setTimeToLiveSeconds(0);
+        try {
+            assertThat(userDetailsService.loadUserByUsername("admin").getPassword()).isEqualTo(oldPassword);
+
+            // The password is changed in the database, as another node would do: nothing is evicted from this
+            // node's second-level cache
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement statement =
+                         connection.prepareStatement("update jhi_user set password_hash = ? where login = ?")) {
+                    statement.setString(1, newPassword);
+                    statement.setString(2, "admin");
+                    statement.executeUpdate();
+                }
+            });
+            em.clear();
+            assertThat(userDetailsService.loadUserByUsername("admin").getPassword()).isEqualTo(newPassword);
+        } finally {
+            cache.setTimeToLiveSeconds(timeToLiveSeconds);
+        }
+    }
+
+    @Test(expected = UserNotActivatedException.class)
+    public void assertThatNotActivatedUserCannotBeLoaded() {
+        userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "en-US");
+        userDetailsService.loadUserByUsername("johndoe");
+    }
+
     private void generateUserToken(User user, String tokenSeries, LocalDate localDate) {
         PersistentToken token = new PersistentToken();
         token.setSeries(tokenSeries);
@@ -5,6 +5,9 @@ import tech.ippon.config.audit.AuditEventConverter;
 import tech.ippon.domain.PersistentAuditEvent;
 import tech.ippon.repository.PersistenceAuditEventRepository;
 import tech.ippon.service.AuditEventService;
+import tech.ippon.service.CountService;
+import tech.ippon.web.rest.util.PaginationUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,6 +49,9 @@ public class AuditResourceIntTest {
     @Inject
     private AuditEventConverter auditEventConverter;
 
+    @Inject
+    private CountService countService;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -60,13 +66,20 @@ public class AuditResourceIntTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         AuditEventService auditEventService =
-                new AuditEventService(auditEventRepository, auditEventConverter);
+                new AuditEventService(auditEventRepository, auditEventConverter, countService);
         AuditResource auditResource = new AuditResource(auditEventService);
         this.restAuditMockMvc = MockMvcBuilders.standaloneSetup(auditResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         auditEventRepository.deleteAll();
@@ -88,6 +101,19 @@ public class AuditResourceIntTest {
                 .andExpect(jsonPath("$.[*].principal").value(hasItem(SAMPLE_PRINCIPAL)));
     }
 
+    @Test
+    public void getAllAuditsAfterCursor() throws Exception {
+        // Initialize the database
+        auditEventRepository.save(auditEvent);
+
+        // Get the audits following the one before the sample audit
+        restAuditMockMvc.perform(get("/management/jhipster/audits?after=" + PaginationUtil.encodeCursor(auditEvent.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].principal").value(hasItem(SAMPLE_PRINCIPAL)));
+    }
+
     @Test
     public void getAudit() throws Exception {
         // Initialize the database
@@ -0,0 +1,120 @@
+package tech.ippon.web.rest;
+
+import tech.ippon.JhipsterApp;
+
+import tech.ippon.domain.Employee;
+import tech.ippon.service.dto.AutocompleteDTO;
+import tech.ippon.service.index.AutocompleteIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.util.Collections;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the AutocompleteResource REST controller.
+ *
+ * @see AutocompleteResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = JhipsterApp.class)
+public class AutocompleteResourceIntTest {
+
+    @Inject
+    private AutocompleteIndex autocompleteIndex;
+
+    @Inject
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Inject
+    private EntityManager em;
+
+    private MockMvc restAutocompleteMockMvc;
+
+    @PostConstruct
+    public void setup() {
+        AutocompleteResource autocompleteResource = new AutocompleteResource();
+        ReflectionTestUtils.setField(autocompleteResource, "autocompleteIndex", autocompleteIndex);
+        this.restAutocompleteMockMvc = MockMvcBuilders.standaloneSetup(autocompleteResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Before
+    @After
+    public void invalidateIndex() {
+        // the tests are rolled back: the index must not keep what they saw
+        autocompleteIndex.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void autocompleteEmployees() throws Exception {
+        Employee employee = EmployeeResourceIntTest.createEntity(em)
+            .firstName("Zoë").lastName("Quennell-Marchand").email("zoe.quennell@example.com");
+        em.persist(employee);
+        em.flush();
+
+        // Accents, case and word order do not matter
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=marc ZOE"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(employee.getId().intValue())))
+            .andExpect(jsonPath("$.[*].lastName").value(hasItem("Quennell-Marchand")))
+            .andExpect(jsonPath("$.[*].email").value(hasItem("zoe.quennell@example.com")));
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=zoe+quennelx"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(0)));
+
+        // Update and delete the employee, as the employee service does once the transaction is committed
+        employee.setLastName("Durand");
+        autocompleteIndex.putEmployees(Collections.singletonList(new AutocompleteDTO(employee.getId(),
+            employee.getFirstName(), employee.getLastName(), employee.getEmail())));
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=quennell-marchand"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(employee.getId().intValue()))));
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=zoe dur"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(employee.getId().intValue())));
+
+        autocompleteIndex.removeEmployees(Collections.singletonList(employee.getId()));
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=zoe dur"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @Transactional
+    public void autocompleteUsers() throws Exception {
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/users?prefix=adm"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].login").value(hasItem("admin")));
+    }
+
+    @Test
+    public void autocompleteWithInvalidSize() throws Exception {
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/employees?prefix=a&size=0"))
+            .andExpect(status().isBadRequest());
+        restAutocompleteMockMvc.perform(get("/api/_autocomplete/users?prefix=a&size=" + (AutocompleteIndex.MAX_SUGGESTIONS + 1)))
+            .andExpect(status().isBadRequest());
+    }
+}
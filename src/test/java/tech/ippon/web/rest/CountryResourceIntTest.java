@@ -5,13 +5,24 @@ import tech.ippon.JhipsterApp;
 import tech.ippon.domain.Country;
 import tech.ippon.repository.CountryRepository;
 import tech.ippon.repository.search.CountrySearchRepository;
-
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+import tech.ippon.service.CountService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -52,6 +63,21 @@ public class CountryResourceIntTest {
     @Inject
     private CountrySearchRepository countrySearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -70,9 +96,15 @@ public class CountryResourceIntTest {
         MockitoAnnotations.initMocks(this);
         CountryResource countryResource = new CountryResource();
         ReflectionTestUtils.setField(countryResource, "countrySearchRepository", countrySearchRepository);
+        ReflectionTestUtils.setField(countryResource, "searchOutboxService", searchOutboxService);
         ReflectionTestUtils.setField(countryResource, "countryRepository", countryRepository);
+        ReflectionTestUtils.setField(countryResource, "countService", countService);
+        ReflectionTestUtils.setField(countryResource, "rollupService", rollupService);
+        ReflectionTestUtils.setField(countryResource, "listingService", listingService);
+        ReflectionTestUtils.setField(countryResource, "referenceDataService", referenceDataService);
         this.restCountryMockMvc = MockMvcBuilders.standaloneSetup(countryResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -89,6 +121,21 @@ public class CountryResourceIntTest {
         return country;
     }
 
+    @Before
+    @After
+    public void invalidateSnapshots() {
+        // the tests are rolled back: the snapshots must not keep what they saw
+        referenceDataService.invalidate();
+        listingService.invalidate(Country.class);
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         countrySearchRepository.deleteAll();
@@ -115,6 +162,7 @@ public class CountryResourceIntTest {
         assertThat(testCountry.getCountryName()).isEqualTo(DEFAULT_COUNTRY_NAME);
 
         // Validate the Country in ElasticSearch
+        searchOutboxService.drain();
         Country countryEs = countrySearchRepository.findOne(testCountry.getId());
         assertThat(countryEs).isEqualToComparingFieldByField(testCountry);
     }
@@ -124,6 +172,7 @@ public class CountryResourceIntTest {
     public void getAllCountries() throws Exception {
         // Initialize the database
         countryRepository.saveAndFlush(country);
+        listingService.invalidate(Country.class);
 
         // Get all the countries
         restCountryMockMvc.perform(get("/api/countries?sort=id,desc"))
@@ -134,11 +183,40 @@ public class CountryResourceIntTest {
                 .andExpect(jsonPath("$.[*].countryName").value(hasItem(DEFAULT_COUNTRY_NAME.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllCountriesPaged() throws Exception {
+        // Initialize the database
+        countryRepository.saveAndFlush(country);
+
+        // Get a page of the countries
+        restCountryMockMvc.perform(get("/api/countries?page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(country.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void exportCountries() throws Exception {
+        // Initialize the database
+        countryRepository.saveAndFlush(country);
+
+        // Export all the countries, one JSON document per line
+        restCountryMockMvc.perform(get("/api/countries/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + country.getId() + ",")));
+    }
+
     @Test
     @Transactional
     public void getCountry() throws Exception {
         // Initialize the database
         countryRepository.saveAndFlush(country);
+        // The snapshot is only rebuilt on commit, which never happens in this test
+        referenceDataService.invalidate();
 
         // Get the country
         restCountryMockMvc.perform(get("/api/countries/{id}", country.getId()))
@@ -184,10 +262,59 @@ public class CountryResourceIntTest {
         assertThat(testCountry.getCountryName()).isEqualTo(UPDATED_COUNTRY_NAME);
 
         // Validate the Country in ElasticSearch
+        searchOutboxService.drain();
         Country countryEs = countrySearchRepository.findOne(testCountry.getId());
         assertThat(countryEs).isEqualToComparingFieldByField(testCountry);
     }
 
+    @Test
+    @Transactional
+    public void updateCountryWithETag() throws Exception {
+        // Initialize the database
+        countryRepository.saveAndFlush(country);
+        int version = country.getVersion();
+
+        // Update and delete the country with a stale ETag
+        restCountryMockMvc.perform(put("/api/countries")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(country)))
+            .andExpect(status().isPreconditionFailed());
+        restCountryMockMvc.perform(delete("/api/countries/{id}", country.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the country with its current ETag
+        restCountryMockMvc.perform(put("/api/countries")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(country)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateCountryChangedSinceChecked() throws Exception {
+        // Initialize the database
+        countryRepository.saveAndFlush(country);
+        int version = country.getVersion();
+
+        // The country is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update country set version = version + 1 where id = :id")
+            .setParameter("id", country.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restCountryMockMvc.perform(put("/api/countries")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(country)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteCountry() throws Exception {
@@ -202,6 +329,7 @@ public class CountryResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean countryExistsInEs = countrySearchRepository.exists(country.getId());
         assertThat(countryExistsInEs).isFalse();
 
@@ -225,4 +353,32 @@ public class CountryResourceIntTest {
             .andExpect(jsonPath("$.[*].countryId").value(hasItem(DEFAULT_COUNTRY_ID.intValue())))
             .andExpect(jsonPath("$.[*].countryName").value(hasItem(DEFAULT_COUNTRY_NAME.toString())));
     }
+
+    @Test
+    @Transactional
+    public void searchCountryAfterCursor() throws Exception {
+        // Initialize the database
+        Country other = createEntity(em);
+        countryRepository.saveAndFlush(country);
+        countryRepository.saveAndFlush(other);
+        countrySearchRepository.save(country);
+        countrySearchRepository.save(other);
+        String query = "id:(" + country.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restCountryMockMvc.perform(get("/api/_search/countries").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(country.getId().intValue()));
+
+        // Get the last slice, seeking after the country
+        restCountryMockMvc.perform(get("/api/_search/countries").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(country.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }
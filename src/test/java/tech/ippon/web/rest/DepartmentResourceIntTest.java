@@ -2,16 +2,37 @@ package tech.ippon.web.rest;
 
 import tech.ippon.JhipsterApp;
 
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.Country;
 import tech.ippon.domain.Department;
+import tech.ippon.domain.Employee;
+import tech.ippon.domain.Location;
+import tech.ippon.domain.Region;
 import tech.ippon.repository.DepartmentRepository;
 import tech.ippon.repository.search.DepartmentSearchRepository;
-
+import tech.ippon.service.CountService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchCacheService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.MultiGetService;
+import tech.ippon.service.index.DepartmentStatsIndex;
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -52,6 +73,39 @@ public class DepartmentResourceIntTest {
     @Inject
     private DepartmentSearchRepository departmentSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private MultiGetService multiGetService;
+
+    @Inject
+    private DepartmentStatsIndex departmentStatsIndex;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -70,9 +124,19 @@ public class DepartmentResourceIntTest {
         MockitoAnnotations.initMocks(this);
         DepartmentResource departmentResource = new DepartmentResource();
         ReflectionTestUtils.setField(departmentResource, "departmentSearchRepository", departmentSearchRepository);
+        ReflectionTestUtils.setField(departmentResource, "searchOutboxService", searchOutboxService);
+        ReflectionTestUtils.setField(departmentResource, "searchCacheService", searchCacheService);
+        ReflectionTestUtils.setField(departmentResource, "changeTrackingService", changeTrackingService);
+        ReflectionTestUtils.setField(departmentResource, "projectionService", projectionService);
         ReflectionTestUtils.setField(departmentResource, "departmentRepository", departmentRepository);
+        ReflectionTestUtils.setField(departmentResource, "multiGetService", multiGetService);
+        ReflectionTestUtils.setField(departmentResource, "departmentStatsIndex", departmentStatsIndex);
+        ReflectionTestUtils.setField(departmentResource, "countService", countService);
+        ReflectionTestUtils.setField(departmentResource, "rollupService", rollupService);
+        ReflectionTestUtils.setField(departmentResource, "listingService", listingService);
         this.restDepartmentMockMvc = MockMvcBuilders.standaloneSetup(departmentResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -89,6 +153,21 @@ public class DepartmentResourceIntTest {
         return department;
     }
 
+    @Before
+    @After
+    public void invalidateSnapshots() {
+        // the tests are rolled back: the snapshots must not keep what they saw
+        referenceDataService.invalidate();
+        listingService.invalidate(Department.class);
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         departmentSearchRepository.deleteAll();
@@ -115,6 +194,7 @@ public class DepartmentResourceIntTest {
         assertThat(testDepartment.getDepartmentName()).isEqualTo(DEFAULT_DEPARTMENT_NAME);
 
         // Validate the Department in ElasticSearch
+        searchOutboxService.drain();
         Department departmentEs = departmentSearchRepository.findOne(testDepartment.getId());
         assertThat(departmentEs).isEqualToComparingFieldByField(testDepartment);
     }
@@ -142,6 +222,7 @@ public class DepartmentResourceIntTest {
     public void getAllDepartments() throws Exception {
         // Initialize the database
         departmentRepository.saveAndFlush(department);
+        listingService.invalidate(Department.class);
 
         // Get all the departments
         restDepartmentMockMvc.perform(get("/api/departments?sort=id,desc"))
@@ -152,6 +233,68 @@ public class DepartmentResourceIntTest {
                 .andExpect(jsonPath("$.[*].departmentName").value(hasItem(DEFAULT_DEPARTMENT_NAME.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllDepartmentsPaged() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+
+        // Get a page of the departments
+        restDepartmentMockMvc.perform(get("/api/departments?page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(department.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void exportDepartments() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+
+        // Export all the departments, one JSON document per line
+        restDepartmentMockMvc.perform(get("/api/departments/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + department.getId() + ",")));
+    }
+
+    @Test
+    @Transactional
+    public void getAllDepartmentsFields() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+
+        // Get only some fields of all the departments
+        restDepartmentMockMvc.perform(get("/api/departments?fields=id,departmentId,departmentName"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(department.getId().intValue())))
+            .andExpect(jsonPath("$.[*].departmentId").value(hasItem(DEFAULT_DEPARTMENT_ID.intValue())))
+            .andExpect(jsonPath("$.[*].departmentName").value(hasItem(DEFAULT_DEPARTMENT_NAME.toString())))
+            .andExpect(jsonPath("$.[*].locationId").doesNotExist());
+
+        // Unknown fields are rejected
+        restDepartmentMockMvc.perform(get("/api/departments?fields=id,unknown"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getDepartmentsByIds() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+
+        // Get the departments, in the requested order, reporting the missing one
+        restDepartmentMockMvc.perform(get("/api/departments?ids=" + Long.MAX_VALUE + "," + department.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-jhipsterApp-missing-ids", String.valueOf(Long.MAX_VALUE)))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(department.getId().intValue()));
+    }
+
     @Test
     @Transactional
     public void getDepartment() throws Exception {
@@ -167,6 +310,81 @@ public class DepartmentResourceIntTest {
             .andExpect(jsonPath("$.departmentName").value(DEFAULT_DEPARTMENT_NAME.toString()));
     }
 
+    @Test
+    @Transactional
+    public void getDepartmentWithLocation() throws Exception {
+        // Initialize the database with the reference data chain of the department
+        Region region = RegionResourceIntTest.createEntity(em);
+        em.persist(region);
+        Country country = CountryResourceIntTest.createEntity(em).region(region);
+        em.persist(country);
+        Location location = LocationResourceIntTest.createEntity(em).country(country);
+        em.persist(location);
+        departmentRepository.saveAndFlush(department.location(location));
+        // The snapshot is only rebuilt on commit, which never happens in this test
+        referenceDataService.invalidate();
+
+        // Get the department, its location being resolved from the snapshot
+        restDepartmentMockMvc.perform(get("/api/departments/{id}", department.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.location.id").value(location.getId().intValue()))
+            .andExpect(jsonPath("$.location.city").value(location.getCity()))
+            .andExpect(jsonPath("$.location.country.countryName").value(country.getCountryName()))
+            .andExpect(jsonPath("$.location.country.region.regionName").value(region.getRegionName()));
+        referenceDataService.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void getAllDepartmentsAfterLocationWrite() throws Exception {
+        // Initialize the database with a department and its location
+        Location location = LocationResourceIntTest.createEntity(em).city("Paris");
+        em.persist(location);
+        departmentRepository.saveAndFlush(department.location(location));
+        String eTag = restDepartmentMockMvc.perform(get("/api/departments"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[?(@.id == %d)].location.city", department.getId()).value(hasItem("Paris")))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Rename the location, and invalidate it as its write paths do on commit: the departments embedding it are
+        // listed again, with another ETag, though no department changed
+        location.setCity("Lyon");
+        em.flush();
+        referenceDataService.invalidate();
+        listingService.invalidate(Location.class);
+        restDepartmentMockMvc.perform(get("/api/departments").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$[?(@.id == %d)].location.city", department.getId()).value(hasItem("Lyon")));
+    }
+
+    @Test
+    @Transactional
+    public void getAllDepartmentsAfterLocationWriteOnAnotherNode() throws Exception {
+        // Initialize the database with a department and its location
+        Location location = LocationResourceIntTest.createEntity(em).city("Paris");
+        em.persist(location);
+        departmentRepository.saveAndFlush(department.location(location));
+        JHipsterProperties.Snapshot snapshot = jHipsterProperties.getSnapshot();
+        int timeToLiveSeconds = snapshot.getTimeToLiveSeconds();
+        snapshot.setTimeToLiveSeconds(0);
+        try {
+            restDepartmentMockMvc.perform(get("/api/departments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == %d)].location.city", department.getId()).value(hasItem("Paris")));
+
+            // Rename the location without invalidating this node's snapshots, as another node would do: the
+            // departments are listed again once the snapshots expired
+            location.setCity("Lyon");
+            em.flush();
+            restDepartmentMockMvc.perform(get("/api/departments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == %d)].location.city", department.getId()).value(hasItem("Lyon")));
+        } finally {
+            snapshot.setTimeToLiveSeconds(timeToLiveSeconds);
+        }
+    }
+
     @Test
     @Transactional
     public void getNonExistingDepartment() throws Exception {
@@ -175,6 +393,71 @@ public class DepartmentResourceIntTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    public void getDepartmentStats() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+        Employee low = EmployeeResourceIntTest.createEntity(em).salary(100L).commissionPct(null).department(department);
+        Employee middle = EmployeeResourceIntTest.createEntity(em).salary(200L).commissionPct(null).department(department);
+        Employee high = EmployeeResourceIntTest.createEntity(em).salary(300L).commissionPct(10L).department(department);
+        em.persist(low);
+        em.persist(middle);
+        em.persist(high);
+        em.flush();
+        departmentStatsIndex.invalidate();
+
+        // Get the statistics, aggregated from the database
+        restDepartmentMockMvc.perform(get("/api/departments/{id}/stats", department.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.departmentId").value(department.getId().intValue()))
+            .andExpect(jsonPath("$.headcount").value(3))
+            .andExpect(jsonPath("$.salarySum").value(600))
+            .andExpect(jsonPath("$.salaryMin").value(100))
+            .andExpect(jsonPath("$.salaryMax").value(300))
+            .andExpect(jsonPath("$.salaryAvg").value(200.0))
+            .andExpect(jsonPath("$.commissionSum").value(30));
+        restDepartmentMockMvc.perform(get("/api/departments/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].departmentId").value(hasItem(department.getId().intValue())));
+
+        // Delete employees, as the employee service does once the transaction is committed
+        DepartmentStatsIndex.Contribution middleContribution = DepartmentStatsIndex.Contribution.of(middle);
+        em.remove(middle);
+        em.flush();
+        departmentStatsIndex.update(middleContribution, null);
+        restDepartmentMockMvc.perform(get("/api/departments/{id}/stats", department.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.headcount").value(2))
+            .andExpect(jsonPath("$.salarySum").value(400))
+            .andExpect(jsonPath("$.salaryMin").value(100))
+            .andExpect(jsonPath("$.salaryMax").value(300));
+
+        DepartmentStatsIndex.Contribution highContribution = DepartmentStatsIndex.Contribution.of(high);
+        em.remove(high);
+        em.flush();
+        departmentStatsIndex.update(highContribution, null);
+        restDepartmentMockMvc.perform(get("/api/departments/{id}/stats", department.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.headcount").value(1))
+            .andExpect(jsonPath("$.salarySum").value(100))
+            .andExpect(jsonPath("$.salaryMin").value(100))
+            .andExpect(jsonPath("$.salaryMax").value(100))
+            .andExpect(jsonPath("$.commissionSum").value(0));
+
+        // Drop the statistics of the rolled back test data
+        departmentStatsIndex.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void getNonExistingDepartmentStats() throws Exception {
+        // Get the statistics of the department
+        restDepartmentMockMvc.perform(get("/api/departments/{id}/stats", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     @Transactional
     public void updateDepartment() throws Exception {
@@ -202,10 +485,59 @@ public class DepartmentResourceIntTest {
         assertThat(testDepartment.getDepartmentName()).isEqualTo(UPDATED_DEPARTMENT_NAME);
 
         // Validate the Department in ElasticSearch
+        searchOutboxService.drain();
         Department departmentEs = departmentSearchRepository.findOne(testDepartment.getId());
         assertThat(departmentEs).isEqualToComparingFieldByField(testDepartment);
     }
 
+    @Test
+    @Transactional
+    public void updateDepartmentWithETag() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+        int version = department.getVersion();
+
+        // Update and delete the department with a stale ETag
+        restDepartmentMockMvc.perform(put("/api/departments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(department)))
+            .andExpect(status().isPreconditionFailed());
+        restDepartmentMockMvc.perform(delete("/api/departments/{id}", department.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the department with its current ETag
+        restDepartmentMockMvc.perform(put("/api/departments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(department)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateDepartmentChangedSinceChecked() throws Exception {
+        // Initialize the database
+        departmentRepository.saveAndFlush(department);
+        int version = department.getVersion();
+
+        // The department is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update department set version = version + 1 where id = :id")
+            .setParameter("id", department.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restDepartmentMockMvc.perform(put("/api/departments")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(department)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteDepartment() throws Exception {
@@ -220,6 +552,7 @@ public class DepartmentResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean departmentExistsInEs = departmentSearchRepository.exists(department.getId());
         assertThat(departmentExistsInEs).isFalse();
 
@@ -243,4 +576,32 @@ public class DepartmentResourceIntTest {
             .andExpect(jsonPath("$.[*].departmentId").value(hasItem(DEFAULT_DEPARTMENT_ID.intValue())))
             .andExpect(jsonPath("$.[*].departmentName").value(hasItem(DEFAULT_DEPARTMENT_NAME.toString())));
     }
+
+    @Test
+    @Transactional
+    public void searchDepartmentAfterCursor() throws Exception {
+        // Initialize the database
+        Department other = createEntity(em);
+        departmentRepository.saveAndFlush(department);
+        departmentRepository.saveAndFlush(other);
+        departmentSearchRepository.save(department);
+        departmentSearchRepository.save(other);
+        String query = "id:(" + department.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restDepartmentMockMvc.perform(get("/api/_search/departments").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(department.getId().intValue()));
+
+        // Get the last slice, seeking after the department
+        restDepartmentMockMvc.perform(get("/api/_search/departments").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(department.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }
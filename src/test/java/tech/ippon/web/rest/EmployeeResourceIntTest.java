@@ -3,20 +3,33 @@ package tech.ippon.web.rest;
 import tech.ippon.JhipsterApp;
 
 import tech.ippon.domain.Employee;
+import tech.ippon.domain.Job;
 import tech.ippon.repository.EmployeeRepository;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.CountService;
 import tech.ippon.service.EmployeeService;
 import tech.ippon.repository.search.EmployeeSearchRepository;
+import tech.ippon.service.SearchOutboxService;
 import tech.ippon.service.dto.EmployeeDTO;
+import tech.ippon.service.index.EmployeeHierarchyIndex;
+import tech.ippon.service.index.SalaryBandIndex;
 import tech.ippon.service.mapper.EmployeeMapper;
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -27,13 +40,16 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -79,9 +95,24 @@ public class EmployeeResourceIntTest {
     @Inject
     private EmployeeService employeeService;
 
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
     @Inject
     private EmployeeSearchRepository employeeSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private EmployeeHierarchyIndex employeeHierarchyIndex;
+
+    @Inject
+    private SalaryBandIndex salaryBandIndex;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -100,8 +131,10 @@ public class EmployeeResourceIntTest {
         MockitoAnnotations.initMocks(this);
         EmployeeResource employeeResource = new EmployeeResource();
         ReflectionTestUtils.setField(employeeResource, "employeeService", employeeService);
+        ReflectionTestUtils.setField(employeeResource, "objectMapper", jacksonMessageConverter.getObjectMapper());
         this.restEmployeeMockMvc = MockMvcBuilders.standaloneSetup(employeeResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -124,6 +157,13 @@ public class EmployeeResourceIntTest {
         return employee;
     }
 
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         employeeSearchRepository.deleteAll();
@@ -157,10 +197,40 @@ public class EmployeeResourceIntTest {
         assertThat(testEmployee.getCommissionPct()).isEqualTo(DEFAULT_COMMISSION_PCT);
 
         // Validate the Employee in ElasticSearch
+        searchOutboxService.drain();
         Employee employeeEs = employeeSearchRepository.findOne(testEmployee.getId());
         assertThat(employeeEs).isEqualToComparingFieldByField(testEmployee);
     }
 
+    @Test
+    public void bulkSaveEmployees() throws Exception {
+        int databaseSizeBeforeCreate = employeeRepository.findAll().size();
+
+        // Create two employees and update an employee that does not exist
+        EmployeeDTO employeeDTO = employeeMapper.employeeToEmployeeDTO(employee);
+        EmployeeDTO missingEmployeeDTO = employeeMapper.employeeToEmployeeDTO(createEntity(em));
+        missingEmployeeDTO.setId(Long.MAX_VALUE);
+
+        restEmployeeMockMvc.perform(post("/api/employees/_bulk")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(employeeDTO, missingEmployeeDTO, employeeDTO))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].index").value(0))
+                .andExpect(jsonPath("$.[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.[1].status").value("FAILED"))
+                .andExpect(jsonPath("$.[2].status").value("CREATED"));
+
+        // Validate the Employees in the database and in ElasticSearch, then clean up as the bulk save is committed
+        searchOutboxService.drain();
+        List<Employee> employees = employeeRepository.findAll();
+        assertThat(employees).hasSize(databaseSizeBeforeCreate + 2);
+        Employee testEmployee = employees.get(employees.size() - 1);
+        assertThat(testEmployee.getFirstName()).isEqualTo(DEFAULT_FIRST_NAME);
+        assertThat(employeeSearchRepository.exists(testEmployee.getId())).isTrue();
+        employees.subList(databaseSizeBeforeCreate, employees.size()).forEach(e -> employeeService.delete(e.getId()));
+        searchOutboxService.drain();
+    }
+
     @Test
     @Transactional
     public void getAllEmployees() throws Exception {
@@ -182,6 +252,222 @@ public class EmployeeResourceIntTest {
                 .andExpect(jsonPath("$.[*].commissionPct").value(hasItem(DEFAULT_COMMISSION_PCT.intValue())));
     }
 
+    @Test
+    @Transactional
+    public void getAllEmployeesWithETag() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // Get the page, then revalidate it with its ETag
+        String eTag = restEmployeeMockMvc.perform(get("/api/employees?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        restEmployeeMockMvc.perform(get("/api/employees?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        // Once a employee of the page changed, the page is sent again
+        employee.setFirstName(UPDATED_FIRST_NAME);
+        employeeRepository.saveAndFlush(employee);
+        restEmployeeMockMvc.perform(get("/api/employees?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(employee.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllEmployeesFields() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // Get only some fields of all the employees
+        restEmployeeMockMvc.perform(get("/api/employees?fields=id,firstName,lastName,departmentId&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Total-Count", String.valueOf(employeeRepository.count())))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(employee.getId().intValue())))
+            .andExpect(jsonPath("$.[*].firstName").value(hasItem(DEFAULT_FIRST_NAME.toString())))
+            .andExpect(jsonPath("$.[*].lastName").value(hasItem(DEFAULT_LAST_NAME.toString())))
+            .andExpect(jsonPath("$.[0].departmentId").isEmpty())
+            .andExpect(jsonPath("$.[*].email").doesNotExist());
+
+        // Unknown fields and sort properties are rejected
+        restEmployeeMockMvc.perform(get("/api/employees?fields=id,unknown"))
+            .andExpect(status().isBadRequest());
+        restEmployeeMockMvc.perform(get("/api/employees?fields=id&sort=unknown,asc"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllEmployeesAfterCursor() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+        Employee otherEmployee = createEntity(em);
+        employeeRepository.saveAndFlush(otherEmployee);
+
+        // Get the slice following the first employee
+        restEmployeeMockMvc.perform(get("/api/employees?size=1&after=" + PaginationUtil.encodeCursor(employee.getId())))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(otherEmployee.getId().intValue())))
+            .andExpect(jsonPath("$.length()").value(1));
+
+        // Get the first slice, which must point to the next one
+        restEmployeeMockMvc.perform(get("/api/employees?size=1&after="))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("rel=\"next\"")));
+    }
+
+    @Test
+    @Transactional
+    public void exportEmployeesAsNdjson() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // Export all the employees, one JSON document per line
+        restEmployeeMockMvc.perform(get("/api/employees/export?format=ndjson"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + employee.getId() + ",")))
+            .andExpect(content().string(containsString("\"firstName\":\"" + DEFAULT_FIRST_NAME + "\"")));
+    }
+
+    @Test
+    @Transactional
+    public void exportEmployeesAsCsv() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // Export all the employees, with a header line
+        restEmployeeMockMvc.perform(get("/api/employees/export?format=csv"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(startsWith("id,employeeId,firstName,lastName,")))
+            .andExpect(content().string(containsString("\n" + employee.getId() + "," + DEFAULT_EMPLOYEE_ID + "," +
+                DEFAULT_FIRST_NAME + "," + DEFAULT_LAST_NAME + ",")));
+    }
+
+    @Test
+    @Transactional
+    public void getEmployeesByIds() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // Get the employees, in the requested order, reporting the missing one
+        restEmployeeMockMvc.perform(get("/api/employees?ids=" + Long.MAX_VALUE + "," + employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-jhipsterApp-missing-ids", String.valueOf(Long.MAX_VALUE)))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(employee.getId().intValue()));
+    }
+
+
+    @Test
+    @Transactional
+    public void getAllEmployeesFieldsWithCursorOrIds() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+
+        // The cursor wins over the fields, which are ignored
+        restEmployeeMockMvc.perform(get("/api/employees?fields=id&after=" + PaginationUtil.encodeCursor(employee.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(employee.getId().intValue()))
+            .andExpect(jsonPath("$.[0].firstName").value(DEFAULT_FIRST_NAME.toString()));
+
+        // The ids win over the fields and the cursor
+        restEmployeeMockMvc.perform(get("/api/employees?fields=id&after=" + PaginationUtil.encodeCursor(employee.getId() - 1) +
+            "&ids=" + employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].firstName").value(DEFAULT_FIRST_NAME.toString()));
+    }
+    @Test
+    @Transactional
+    public void getEmployeeHierarchy() throws Exception {
+        // Initialize the database with a chain of three employees
+        employeeRepository.saveAndFlush(employee);
+        Employee middle = employeeRepository.saveAndFlush(createEntity(em).manager(employee));
+        Employee bottom = employeeRepository.saveAndFlush(createEntity(em).manager(middle));
+        // The index is only updated on commit, which never happens in this test
+        employeeHierarchyIndex.invalidate();
+
+        // Get all the reports, then the direct reports only
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/reports", employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0]").value(middle.getId().intValue()))
+            .andExpect(jsonPath("$.[1]").value(bottom.getId().intValue()));
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/reports?depth=1", employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0]").value(middle.getId().intValue()));
+
+        // Get the chain of command
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/chain", bottom.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0]").value(middle.getId().intValue()))
+            .andExpect(jsonPath("$.[1]").value(employee.getId().intValue()));
+
+        // Get the statistics
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/stats", employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.employeeId").value(employee.getId().intValue()))
+            .andExpect(jsonPath("$.level").value(0))
+            .andExpect(jsonPath("$.directReports").value(1))
+            .andExpect(jsonPath("$.totalReports").value(2))
+            .andExpect(jsonPath("$.depth").value(2));
+
+        // Move the bottom employee under the top one, as done when its update is committed
+        employeeHierarchyIndex.update(bottom.getId(), employee.getId());
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/stats", employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.directReports").value(2))
+            .andExpect(jsonPath("$.depth").value(1));
+        employeeHierarchyIndex.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void getNonExistingEmployeeHierarchy() throws Exception {
+        employeeHierarchyIndex.invalidate();
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/reports", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/chain", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+        restEmployeeMockMvc.perform(get("/api/employees/{id}/stats", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void getEmployeeSalaryBands() throws Exception {
+        // Initialize the database with a narrow band and a wide one
+        employeeRepository.saveAndFlush(employee);
+        Employee senior = employeeRepository.saveAndFlush(createEntity(em).salary(5000L));
+        Job narrow = JobResourceIntTest.createEntity(em).minSalary(DEFAULT_SALARY).maxSalary(DEFAULT_SALARY);
+        Job wide = JobResourceIntTest.createEntity(em).minSalary(DEFAULT_SALARY).maxSalary(10000L);
+        em.persist(narrow);
+        em.persist(wide);
+        em.flush();
+        // The index is only updated on commit, which never happens in this test
+        salaryBandIndex.invalidate();
+
+        restEmployeeMockMvc.perform(get("/api/employees/salary-bands"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].employeeId").value(employee.getId().intValue()))
+            .andExpect(jsonPath("$.[0].jobIds.length()").value(2))
+            .andExpect(jsonPath("$.[1].employeeId").value(senior.getId().intValue()))
+            .andExpect(jsonPath("$.[1].salary").value(5000))
+            .andExpect(jsonPath("$.[1].jobIds.length()").value(1))
+            .andExpect(jsonPath("$.[1].jobIds.[0]").value(wide.getId().intValue()));
+        salaryBandIndex.invalidate();
+    }
+
     @Test
     @Transactional
     public void getEmployee() throws Exception {
@@ -251,10 +537,60 @@ public class EmployeeResourceIntTest {
         assertThat(testEmployee.getCommissionPct()).isEqualTo(UPDATED_COMMISSION_PCT);
 
         // Validate the Employee in ElasticSearch
+        searchOutboxService.drain();
         Employee employeeEs = employeeSearchRepository.findOne(testEmployee.getId());
         assertThat(employeeEs).isEqualToComparingFieldByField(testEmployee);
     }
 
+    @Test
+    @Transactional
+    public void updateEmployeeWithETag() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+        int version = employee.getVersion();
+        EmployeeDTO employeeDTO = employeeMapper.employeeToEmployeeDTO(employee);
+        employeeDTO.setFirstName(UPDATED_FIRST_NAME);
+
+        // Get the employee, then get it again with its ETag
+        restEmployeeMockMvc.perform(get("/api/employees/{id}", employee.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + version + "\""));
+        restEmployeeMockMvc.perform(get("/api/employees/{id}", employee.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, "\"" + version + "\""))
+            .andExpect(status().isNotModified());
+
+        // Update the employee with a stale ETag
+        restEmployeeMockMvc.perform(put("/api/employees")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(employeeDTO)))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the employee with its current ETag
+        restEmployeeMockMvc.perform(put("/api/employees")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(employeeDTO)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateEmployeeWithStaleVersion() throws Exception {
+        // Initialize the database
+        employeeRepository.saveAndFlush(employee);
+        EmployeeDTO employeeDTO = employeeMapper.employeeToEmployeeDTO(employee);
+        employeeDTO.setSalary(UPDATED_SALARY);
+
+        // An update not made from the current version is rejected, so it never corrects the statistics from
+        // another state than the one it replaces
+        employeeDTO.setVersion(employee.getVersion() + 1);
+        assertThatThrownBy(() -> employeeService.save(employeeDTO))
+            .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(employeeRepository.findOne(employee.getId()).getSalary()).isEqualTo(DEFAULT_SALARY);
+    }
+
     @Test
     @Transactional
     public void deleteEmployee() throws Exception {
@@ -269,6 +605,7 @@ public class EmployeeResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean employeeExistsInEs = employeeSearchRepository.exists(employee.getId());
         assertThat(employeeExistsInEs).isFalse();
 
@@ -277,6 +614,65 @@ public class EmployeeResourceIntTest {
         assertThat(employees).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    public void getEmployeeChanges() throws Exception {
+        // Initialize the database
+        long since = changeTrackingService.next(Employee.class);
+        employeeRepository.saveAndFlush(employee);
+        Employee deletedEmployee = createEntity(em);
+        employeeRepository.saveAndFlush(deletedEmployee);
+
+        // Update the employee, then delete the other one
+        EmployeeDTO employeeDTO = employeeMapper.employeeToEmployeeDTO(employee);
+        employeeDTO.setFirstName(UPDATED_FIRST_NAME);
+        restEmployeeMockMvc.perform(put("/api/employees")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(employeeDTO)))
+            .andExpect(status().isOk());
+        restEmployeeMockMvc.perform(delete("/api/employees/{id}", deletedEmployee.getId())
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isOk());
+
+        // Get the changes since the watermark, in commit order
+        restEmployeeMockMvc.perform(get("/api/employees/changes?since={since}", since))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.changes.length()").value(2))
+            .andExpect(jsonPath("$.changes[0].id").value(employee.getId().intValue()))
+            .andExpect(jsonPath("$.changes[0].deleted").value(false))
+            .andExpect(jsonPath("$.changes[0].entity.firstName").value(UPDATED_FIRST_NAME))
+            .andExpect(jsonPath("$.changes[1].id").value(deletedEmployee.getId().intValue()))
+            .andExpect(jsonPath("$.changes[1].deleted").value(true))
+            .andExpect(jsonPath("$.watermark").value((int) since + 2))
+            .andExpect(jsonPath("$.hasMore").value(false));
+
+        // A value still leased to an uncommitted write holds back the changes that follow it
+        em.createNativeQuery("insert into change_lease (entity_type, change_seq, allocated_date) values ('Employee', :seq, :date)")
+            .setParameter("seq", since + 2)
+            .setParameter("date", new Timestamp(System.currentTimeMillis()))
+            .executeUpdate();
+        restEmployeeMockMvc.perform(get("/api/employees/changes?since={since}", since))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changes.length()").value(1))
+            .andExpect(jsonPath("$.watermark").value((int) since + 1))
+            .andExpect(jsonPath("$.hasMore").value(false));
+
+        // The expired leases are deleted, and the live ones kept
+        em.createNativeQuery("insert into change_lease (entity_type, change_seq, allocated_date) values ('Employee', :seq, :date)")
+            .setParameter("seq", since + 1)
+            .setParameter("date", new Timestamp(System.currentTimeMillis() - (ChangeTrackingService.LEASE_TIMEOUT_SECONDS + 1) * 1000L))
+            .executeUpdate();
+        changeTrackingService.removeExpiredLeases();
+        assertThat(((Number) em.createNativeQuery("select count(*) from change_lease where entity_type = 'Employee' and change_seq = :seq")
+            .setParameter("seq", since + 1).getSingleResult()).longValue()).isEqualTo(0);
+        assertThat(((Number) em.createNativeQuery("select count(*) from change_lease where entity_type = 'Employee' and change_seq = :seq")
+            .setParameter("seq", since + 2).getSingleResult()).longValue()).isEqualTo(1);
+
+        restEmployeeMockMvc.perform(get("/api/employees/changes?since={since}&size=0", since))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void searchEmployee() throws Exception {
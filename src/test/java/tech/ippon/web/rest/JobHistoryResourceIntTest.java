@@ -2,16 +2,26 @@ package tech.ippon.web.rest;
 
 import tech.ippon.JhipsterApp;
 
+import tech.ippon.domain.Department;
+import tech.ippon.domain.Employee;
 import tech.ippon.domain.JobHistory;
 import tech.ippon.repository.JobHistoryRepository;
 import tech.ippon.repository.search.JobHistorySearchRepository;
-
+import tech.ippon.service.CountService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.index.JobHistoryIndex;
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import static org.hamcrest.Matchers.hasItem;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -60,6 +70,18 @@ public class JobHistoryResourceIntTest {
     @Inject
     private JobHistorySearchRepository jobHistorySearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private JobHistoryIndex jobHistoryIndex;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -78,9 +100,14 @@ public class JobHistoryResourceIntTest {
         MockitoAnnotations.initMocks(this);
         JobHistoryResource jobHistoryResource = new JobHistoryResource();
         ReflectionTestUtils.setField(jobHistoryResource, "jobHistorySearchRepository", jobHistorySearchRepository);
+        ReflectionTestUtils.setField(jobHistoryResource, "searchOutboxService", searchOutboxService);
+        ReflectionTestUtils.setField(jobHistoryResource, "changeTrackingService", changeTrackingService);
         ReflectionTestUtils.setField(jobHistoryResource, "jobHistoryRepository", jobHistoryRepository);
+        ReflectionTestUtils.setField(jobHistoryResource, "countService", countService);
+        ReflectionTestUtils.setField(jobHistoryResource, "jobHistoryIndex", jobHistoryIndex);
         this.restJobHistoryMockMvc = MockMvcBuilders.standaloneSetup(jobHistoryResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -97,6 +124,13 @@ public class JobHistoryResourceIntTest {
         return jobHistory;
     }
 
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         jobHistorySearchRepository.deleteAll();
@@ -123,10 +157,84 @@ public class JobHistoryResourceIntTest {
         assertThat(testJobHistory.getEndDate()).isEqualTo(DEFAULT_END_DATE);
 
         // Validate the JobHistory in ElasticSearch
+        searchOutboxService.drain();
         JobHistory jobHistoryEs = jobHistorySearchRepository.findOne(testJobHistory.getId());
         assertThat(jobHistoryEs).isEqualToComparingFieldByField(testJobHistory);
     }
 
+    @Test
+    @Transactional
+    public void getJobHistoriesAsOf() throws Exception {
+        // Initialize the database with a closed period, then an open one
+        Department department = DepartmentResourceIntTest.createEntity(em);
+        Department otherDepartment = DepartmentResourceIntTest.createEntity(em);
+        Employee employee = EmployeeResourceIntTest.createEntity(em);
+        Employee otherEmployee = EmployeeResourceIntTest.createEntity(em);
+        em.persist(department);
+        em.persist(otherDepartment);
+        em.persist(employee);
+        em.persist(otherEmployee);
+        jobHistoryRepository.saveAndFlush(jobHistory.department(department).employee(employee)
+            .startDate(ZonedDateTime.parse("2015-01-01T00:00:00Z")).endDate(ZonedDateTime.parse("2016-01-01T00:00:00Z")));
+        JobHistory current = jobHistoryRepository.saveAndFlush(createEntity(em).department(otherDepartment).employee(otherEmployee)
+            .startDate(ZonedDateTime.parse("2016-01-01T00:00:00Z")).endDate(null));
+        // The index is only updated on commit, which never happens in this test
+        jobHistoryIndex.invalidate();
+
+        // Who was in the department, the end date being excluded
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?department={id}&date={date}",
+            department.getId(), "2015-06-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(jobHistory.getId().intValue()));
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?department={id}&date={date}",
+            department.getId(), "2016-01-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+
+        // Where was the employee
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?employee={id}&date={date}",
+            otherEmployee.getId(), "2030-01-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(current.getId().intValue()));
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?employee={id}&date={date}",
+            employee.getId(), "2030-01-01T00:00:00Z"))
+            .andExpect(status().isNotFound());
+
+        // A department and an employee cannot be asked at once
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?department={id}&employee={employee}&date={date}",
+            department.getId(), employee.getId(), "2015-06-01T00:00:00Z"))
+            .andExpect(status().isBadRequest());
+
+        // Who moved in a window
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_moves?from={from}&to={to}",
+            "2014-01-01T00:00:00Z", "2017-01-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[0].id").value(jobHistory.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(current.getId().intValue()));
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_moves?from={from}&to={to}",
+            "2015-12-01T00:00:00Z", "2016-02-01T00:00:00Z"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(current.getId().intValue()));
+
+        // The index follows the writes, once committed
+        jobHistoryIndex.remove(current.getId());
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_asof?employee={id}&date={date}",
+            otherEmployee.getId(), "2030-01-01T00:00:00Z"))
+            .andExpect(status().isNotFound());
+        jobHistoryIndex.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void getJobHistoryMovesWithInvalidWindow() throws Exception {
+        restJobHistoryMockMvc.perform(get("/api/job-histories/_moves?from={from}&to={to}",
+            "2016-01-01T00:00:00Z", "2015-01-01T00:00:00Z"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getAllJobHistories() throws Exception {
@@ -142,6 +250,20 @@ public class JobHistoryResourceIntTest {
                 .andExpect(jsonPath("$.[*].endDate").value(hasItem(DEFAULT_END_DATE_STR)));
     }
 
+    @Test
+    @Transactional
+    public void getAllJobHistoriesAfterCursor() throws Exception {
+        // Initialize the database
+        jobHistoryRepository.saveAndFlush(jobHistory);
+
+        // Get the slice starting right before the jobHistory
+        restJobHistoryMockMvc.perform(get("/api/job-histories?after=" + PaginationUtil.encodeCursor(jobHistory.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(jobHistory.getId().intValue()));
+    }
+
     @Test
     @Transactional
     public void getJobHistory() throws Exception {
@@ -192,10 +314,59 @@ public class JobHistoryResourceIntTest {
         assertThat(testJobHistory.getEndDate()).isEqualTo(UPDATED_END_DATE);
 
         // Validate the JobHistory in ElasticSearch
+        searchOutboxService.drain();
         JobHistory jobHistoryEs = jobHistorySearchRepository.findOne(testJobHistory.getId());
         assertThat(jobHistoryEs).isEqualToComparingFieldByField(testJobHistory);
     }
 
+    @Test
+    @Transactional
+    public void updateJobHistoryWithETag() throws Exception {
+        // Initialize the database
+        jobHistoryRepository.saveAndFlush(jobHistory);
+        int version = jobHistory.getVersion();
+
+        // Update and delete the jobHistory with a stale ETag
+        restJobHistoryMockMvc.perform(put("/api/job-histories")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(jobHistory)))
+            .andExpect(status().isPreconditionFailed());
+        restJobHistoryMockMvc.perform(delete("/api/job-histories/{id}", jobHistory.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the jobHistory with its current ETag
+        restJobHistoryMockMvc.perform(put("/api/job-histories")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(jobHistory)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateJobHistoryChangedSinceChecked() throws Exception {
+        // Initialize the database
+        jobHistoryRepository.saveAndFlush(jobHistory);
+        int version = jobHistory.getVersion();
+
+        // The jobHistory is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update job_history set version = version + 1 where id = :id")
+            .setParameter("id", jobHistory.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restJobHistoryMockMvc.perform(put("/api/job-histories")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(jobHistory)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteJobHistory() throws Exception {
@@ -210,6 +381,7 @@ public class JobHistoryResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean jobHistoryExistsInEs = jobHistorySearchRepository.exists(jobHistory.getId());
         assertThat(jobHistoryExistsInEs).isFalse();
 
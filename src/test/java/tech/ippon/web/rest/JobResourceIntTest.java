@@ -1,17 +1,34 @@
 package tech.ippon.web.rest;
 
 import tech.ippon.JhipsterApp;
+import tech.ippon.config.JHipsterProperties;
 
 import tech.ippon.domain.Job;
+import tech.ippon.domain.Task;
 import tech.ippon.repository.JobRepository;
 import tech.ippon.repository.search.JobSearchRepository;
-
+import tech.ippon.service.CountService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.ChangeTrackingService;
+import tech.ippon.service.SearchCacheService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.index.JobTaskIndex;
+import tech.ippon.service.index.SalaryBandIndex;
+import tech.ippon.service.MultiGetService;
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -58,6 +75,33 @@ public class JobResourceIntTest {
     @Inject
     private JobSearchRepository jobSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private SearchCacheService searchCacheService;
+
+    @Inject
+    private ChangeTrackingService changeTrackingService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private MultiGetService multiGetService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private JobTaskIndex jobTaskIndex;
+
+    @Inject
+    private SalaryBandIndex salaryBandIndex;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -76,9 +120,18 @@ public class JobResourceIntTest {
         MockitoAnnotations.initMocks(this);
         JobResource jobResource = new JobResource();
         ReflectionTestUtils.setField(jobResource, "jobSearchRepository", jobSearchRepository);
+        ReflectionTestUtils.setField(jobResource, "searchOutboxService", searchOutboxService);
+        ReflectionTestUtils.setField(jobResource, "searchCacheService", searchCacheService);
+        ReflectionTestUtils.setField(jobResource, "changeTrackingService", changeTrackingService);
+        ReflectionTestUtils.setField(jobResource, "projectionService", projectionService);
         ReflectionTestUtils.setField(jobResource, "jobRepository", jobRepository);
+        ReflectionTestUtils.setField(jobResource, "multiGetService", multiGetService);
+        ReflectionTestUtils.setField(jobResource, "countService", countService);
+        ReflectionTestUtils.setField(jobResource, "jobTaskIndex", jobTaskIndex);
+        ReflectionTestUtils.setField(jobResource, "salaryBandIndex", salaryBandIndex);
         this.restJobMockMvc = MockMvcBuilders.standaloneSetup(jobResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -97,6 +150,13 @@ public class JobResourceIntTest {
         return job;
     }
 
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         jobSearchRepository.deleteAll();
@@ -125,6 +185,7 @@ public class JobResourceIntTest {
         assertThat(testJob.getMaxSalary()).isEqualTo(DEFAULT_MAX_SALARY);
 
         // Validate the Job in ElasticSearch
+        searchOutboxService.drain();
         Job jobEs = jobSearchRepository.findOne(testJob.getId());
         assertThat(jobEs).isEqualToComparingFieldByField(testJob);
     }
@@ -146,6 +207,232 @@ public class JobResourceIntTest {
                 .andExpect(jsonPath("$.[*].maxSalary").value(hasItem(DEFAULT_MAX_SALARY.intValue())));
     }
 
+    @Test
+    @Transactional
+    public void getAllJobsWithTasks() throws Exception {
+        // Initialize the database
+        Task task = TaskResourceIntTest.createEntity(em);
+        Task otherTask = TaskResourceIntTest.createEntity(em);
+        em.persist(task);
+        em.persist(otherTask);
+        jobRepository.saveAndFlush(job.addTask(task).addTask(otherTask));
+        Job other = jobRepository.saveAndFlush(createEntity(em).addTask(task));
+
+        // A page holds as many jobs as requested, whatever their number of tasks
+        restJobMockMvc.perform(get("/api/jobs?page=0&size=2&sort=id,asc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)));
+        restJobMockMvc.perform(get("/api/jobs?page=0&size=1&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].id").value(other.getId().intValue()))
+            .andExpect(jsonPath("$[0].tasks[*].id").value(hasItem(task.getId().intValue())));
+
+        // A single job is read with its tasks
+        restJobMockMvc.perform(get("/api/jobs/{id}", job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.tasks", hasSize(2)));
+    }
+
+    @Test
+    @Transactional
+    public void matchJobsByTasks() throws Exception {
+        // Initialize the database
+        Task task = TaskResourceIntTest.createEntity(em);
+        Task otherTask = TaskResourceIntTest.createEntity(em);
+        em.persist(task);
+        em.persist(otherTask);
+        jobRepository.saveAndFlush(job.addTask(task).addTask(otherTask));
+        Job other = jobRepository.saveAndFlush(createEntity(em).addTask(task));
+        jobTaskIndex.invalidate();
+
+        // Jobs having all the tasks
+        restJobMockMvc.perform(get("/api/jobs/_match?allTasks={tasks}", task.getId() + "," + otherTask.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(job.getId().intValue()));
+
+        // Jobs having any of the tasks
+        restJobMockMvc.perform(get("/api/jobs/_match?anyTasks={tasks}", task.getId() + "," + otherTask.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$").value(hasItem(other.getId().intValue())));
+
+        // Both
+        restJobMockMvc.perform(get("/api/jobs/_match?allTasks={task}&anyTasks={otherTask}", task.getId(), otherTask.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(job.getId().intValue()));
+
+        // The index follows the writes, once committed
+        jobTaskIndex.removeJob(job.getId());
+        restJobMockMvc.perform(get("/api/jobs/_match?allTasks={task}", task.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(other.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void matchJobsWithoutTasks() throws Exception {
+        restJobMockMvc.perform(get("/api/jobs/_match"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getJobsBySalary() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job.minSalary(1000L).maxSalary(2000L));
+        Job other = jobRepository.saveAndFlush(createEntity(em).minSalary(1500L).maxSalary(null));
+        salaryBandIndex.invalidate();
+
+        // Jobs whose band contains a salary
+        restJobMockMvc.perform(get("/api/jobs/_bands?salary={salary}", 1200))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(job.getId().intValue()));
+        restJobMockMvc.perform(get("/api/jobs/_bands?salary={salary}", 1000000))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(other.getId().intValue()));
+
+        // Jobs whose band overlaps a range
+        restJobMockMvc.perform(get("/api/jobs/_bands?from={from}&to={to}", 1800, 2500))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)));
+        restJobMockMvc.perform(get("/api/jobs/_bands?from={from}&to={to}", 0, 999))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(0)));
+
+        // The index follows the writes, once committed
+        salaryBandIndex.update(other.getId(), 500L, 900L);
+        restJobMockMvc.perform(get("/api/jobs/_bands?from={from}&to={to}", 0, 999))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0]").value(other.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void getJobsBySalaryWithoutRange() throws Exception {
+        restJobMockMvc.perform(get("/api/jobs/_bands?from={from}", 1000))
+            .andExpect(status().isBadRequest());
+        restJobMockMvc.perform(get("/api/jobs/_bands?from={from}&to={to}", 2000, 1000))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllJobsCounted() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        jobRepository.saveAndFlush(createEntity(em));
+        countService.invalidate(Job.class);
+        long total = jobRepository.count();
+
+        // A full page needs the count
+        restJobMockMvc.perform(get("/api/jobs?page=0&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", String.valueOf(total)))
+            .andExpect(header().doesNotExist("X-Total-Count-Approximate"));
+
+        // The last page does not
+        restJobMockMvc.perform(get("/api/jobs?page=0&size=" + (total + 1)))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", String.valueOf(total)));
+    }
+
+    @Test
+    @Transactional
+    public void getAllJobsCountedApproximately() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        jobRepository.saveAndFlush(createEntity(em));
+        JHipsterProperties.Count count = jHipsterProperties.getCount();
+        long approximateThreshold = count.getApproximateThreshold();
+        count.setApproximateThreshold(0);
+        try {
+            // Above the threshold, the count is read from the table statistics
+            restJobMockMvc.perform(get("/api/jobs?page=0&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Total-Count"))
+                .andExpect(header().string("X-Total-Count-Approximate", "true"));
+        } finally {
+            count.setApproximateThreshold(approximateThreshold);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void getAllJobsFields() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+
+        // Get only some fields of all the jobs
+        restJobMockMvc.perform(get("/api/jobs?fields=id,jobId,jobTitle"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(job.getId().intValue())))
+            .andExpect(jsonPath("$.[*].jobId").value(hasItem(DEFAULT_JOB_ID.intValue())))
+            .andExpect(jsonPath("$.[*].jobTitle").value(hasItem(DEFAULT_JOB_TITLE.toString())))
+            .andExpect(jsonPath("$.[*].minSalary").doesNotExist());
+
+        // Unknown fields are rejected
+        restJobMockMvc.perform(get("/api/jobs?fields=id,unknown"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllJobsAfterCursor() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+
+        // Get the slice starting right before the job
+        restJobMockMvc.perform(get("/api/jobs?after=" + PaginationUtil.encodeCursor(job.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(job.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void getJobsByIds() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+
+        // Get the jobs, in the requested order, reporting the missing one
+        restJobMockMvc.perform(get("/api/jobs?ids=" + Long.MAX_VALUE + "," + job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-jhipsterApp-missing-ids", String.valueOf(Long.MAX_VALUE)))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(job.getId().intValue()));
+    }
+
+
+    @Test
+    @Transactional
+    public void getAllJobsFieldsWithCursorOrIds() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+
+        // The cursor wins over the fields, which are ignored
+        restJobMockMvc.perform(get("/api/jobs?fields=id&after=" + PaginationUtil.encodeCursor(job.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(job.getId().intValue()))
+            .andExpect(jsonPath("$.[0].jobTitle").value(DEFAULT_JOB_TITLE.toString()));
+
+        // The ids win over the fields and the cursor
+        restJobMockMvc.perform(get("/api/jobs?fields=id&after=" + PaginationUtil.encodeCursor(job.getId() - 1) +
+            "&ids=" + job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].jobTitle").value(DEFAULT_JOB_TITLE.toString()));
+    }
     @Test
     @Transactional
     public void getJob() throws Exception {
@@ -171,6 +458,44 @@ public class JobResourceIntTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @Transactional
+    public void getAllJobsWithETag() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+
+        // Get the page, then revalidate it with its ETag
+        String eTag = restJobMockMvc.perform(get("/api/jobs?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        restJobMockMvc.perform(get("/api/jobs?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        // Once a job of the page changed, the page is sent again
+        job.setJobTitle(UPDATED_JOB_TITLE);
+        jobRepository.saveAndFlush(job);
+        restJobMockMvc.perform(get("/api/jobs?sort=id,desc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(job.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getJobWithETag() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        String eTag = "\"" + job.getVersion() + "\"";
+
+        // Get the job, then get it again with its ETag
+        restJobMockMvc.perform(get("/api/jobs/{id}", job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        restJobMockMvc.perform(get("/api/jobs/{id}", job.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @Transactional
     public void updateJob() throws Exception {
@@ -202,10 +527,60 @@ public class JobResourceIntTest {
         assertThat(testJob.getMaxSalary()).isEqualTo(UPDATED_MAX_SALARY);
 
         // Validate the Job in ElasticSearch
+        searchOutboxService.drain();
         Job jobEs = jobSearchRepository.findOne(testJob.getId());
         assertThat(jobEs).isEqualToComparingFieldByField(testJob);
     }
 
+    @Test
+    @Transactional
+    public void updateJobWithETag() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        int version = job.getVersion();
+        job.setJobTitle(UPDATED_JOB_TITLE);
+
+        // Update the job with a stale ETag
+        restJobMockMvc.perform(put("/api/jobs")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(job)))
+            .andExpect(status().isPreconditionFailed());
+        restJobMockMvc.perform(delete("/api/jobs/{id}", job.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the job with its current ETag
+        restJobMockMvc.perform(put("/api/jobs")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(job)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateJobChangedSinceChecked() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        int version = job.getVersion();
+
+        // The job is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update job set version = version + 1 where id = :id")
+            .setParameter("id", job.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restJobMockMvc.perform(put("/api/jobs")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(job)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteJob() throws Exception {
@@ -220,6 +595,7 @@ public class JobResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean jobExistsInEs = jobSearchRepository.exists(job.getId());
         assertThat(jobExistsInEs).isFalse();
 
@@ -228,6 +604,47 @@ public class JobResourceIntTest {
         assertThat(jobs).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    public void getJobChanges() throws Exception {
+        // Initialize the database
+        long since = changeTrackingService.next(Job.class);
+        jobRepository.saveAndFlush(job);
+        Job deletedJob = createEntity(em);
+        jobRepository.saveAndFlush(deletedJob);
+
+        // Update the job, then delete the other one
+        restJobMockMvc.perform(put("/api/jobs")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(job)))
+            .andExpect(status().isOk());
+        restJobMockMvc.perform(delete("/api/jobs/{id}", deletedJob.getId())
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isOk());
+
+        // Get the changes since the watermark, in commit order
+        restJobMockMvc.perform(get("/api/jobs/changes?since={since}", since))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.changes.length()").value(2))
+            .andExpect(jsonPath("$.changes[0].id").value(job.getId().intValue()))
+            .andExpect(jsonPath("$.changes[0].deleted").value(false))
+            .andExpect(jsonPath("$.changes[0].entity.jobTitle").value(DEFAULT_JOB_TITLE))
+            .andExpect(jsonPath("$.changes[1].id").value(deletedJob.getId().intValue()))
+            .andExpect(jsonPath("$.changes[1].deleted").value(true))
+            .andExpect(jsonPath("$.watermark").value((int) since + 2))
+            .andExpect(jsonPath("$.hasMore").value(false));
+
+        // Get them one by one
+        restJobMockMvc.perform(get("/api/jobs/changes?since={since}&size=1", since))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changes.length()").value(1))
+            .andExpect(jsonPath("$.watermark").value((int) since + 1))
+            .andExpect(jsonPath("$.hasMore").value(true));
+        restJobMockMvc.perform(get("/api/jobs/changes?since={since}&size=0", since))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void searchJob() throws Exception {
@@ -245,4 +662,73 @@ public class JobResourceIntTest {
             .andExpect(jsonPath("$.[*].minSalary").value(hasItem(DEFAULT_MIN_SALARY.intValue())))
             .andExpect(jsonPath("$.[*].maxSalary").value(hasItem(DEFAULT_MAX_SALARY.intValue())));
     }
+
+    @Test
+    @Transactional
+    public void searchJobFromCache() throws Exception {
+        // Initialize the database
+        jobRepository.saveAndFlush(job);
+        searchOutboxService.index(Job.class, job.getId());
+        searchOutboxService.drain();
+
+        // Search the job, caching the result
+        restJobMockMvc.perform(get("/api/_search/jobs?query=id:" + job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].jobTitle").value(hasItem(DEFAULT_JOB_TITLE)));
+
+        // Update the document behind the back of the cache: the same query, spaced differently, still hits it
+        job.setJobTitle(UPDATED_JOB_TITLE);
+        jobRepository.saveAndFlush(job);
+        jobSearchRepository.save(job);
+        restJobMockMvc.perform(get("/api/_search/jobs?query= id:" + job.getId() + " "))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].jobTitle").value(hasItem(DEFAULT_JOB_TITLE)));
+
+        // Indexing through the outbox invalidates the cached results
+        searchOutboxService.index(Job.class, job.getId());
+        searchOutboxService.drain();
+        restJobMockMvc.perform(get("/api/_search/jobs?query=id:" + job.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].jobTitle").value(hasItem(UPDATED_JOB_TITLE)));
+    }
+
+    @Test
+    @Transactional
+    public void searchJobAfterCursor() throws Exception {
+        // Initialize the database
+        Job other = createEntity(em);
+        jobRepository.saveAndFlush(job);
+        jobRepository.saveAndFlush(other);
+        jobSearchRepository.save(job);
+        jobSearchRepository.save(other);
+        String query = "id:(" + job.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restJobMockMvc.perform(get("/api/_search/jobs").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(job.getId().intValue()));
+
+        // Get the last slice, seeking after the job
+        restJobMockMvc.perform(get("/api/_search/jobs").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(job.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void searchJobAfterCursorWithOtherSort() throws Exception {
+        // The cursor is an id: the slices cannot be sorted by another property
+        restJobMockMvc.perform(get("/api/_search/jobs").param("query", "*").param("after", "")
+            .param("sort", "jobTitle,asc"))
+            .andExpect(status().isBadRequest());
+        restJobMockMvc.perform(get("/api/_search/jobs").param("query", "*").param("after", "")
+            .param("sort", "id,desc"))
+            .andExpect(status().isBadRequest());
+    }
 }
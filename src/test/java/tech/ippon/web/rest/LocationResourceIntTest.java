@@ -5,13 +5,25 @@ import tech.ippon.JhipsterApp;
 import tech.ippon.domain.Location;
 import tech.ippon.repository.LocationRepository;
 import tech.ippon.repository.search.LocationSearchRepository;
-
+import tech.ippon.service.CountService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ProjectionService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -58,6 +70,24 @@ public class LocationResourceIntTest {
     @Inject
     private LocationSearchRepository locationSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
+    @Inject
+    private ProjectionService projectionService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -76,9 +106,16 @@ public class LocationResourceIntTest {
         MockitoAnnotations.initMocks(this);
         LocationResource locationResource = new LocationResource();
         ReflectionTestUtils.setField(locationResource, "locationSearchRepository", locationSearchRepository);
+        ReflectionTestUtils.setField(locationResource, "searchOutboxService", searchOutboxService);
+        ReflectionTestUtils.setField(locationResource, "projectionService", projectionService);
         ReflectionTestUtils.setField(locationResource, "locationRepository", locationRepository);
+        ReflectionTestUtils.setField(locationResource, "countService", countService);
+        ReflectionTestUtils.setField(locationResource, "rollupService", rollupService);
+        ReflectionTestUtils.setField(locationResource, "listingService", listingService);
+        ReflectionTestUtils.setField(locationResource, "referenceDataService", referenceDataService);
         this.restLocationMockMvc = MockMvcBuilders.standaloneSetup(locationResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -98,6 +135,21 @@ public class LocationResourceIntTest {
         return location;
     }
 
+    @Before
+    @After
+    public void invalidateSnapshots() {
+        // the tests are rolled back: the snapshots must not keep what they saw
+        referenceDataService.invalidate();
+        listingService.invalidate(Location.class);
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         locationSearchRepository.deleteAll();
@@ -127,6 +179,7 @@ public class LocationResourceIntTest {
         assertThat(testLocation.getStateProvince()).isEqualTo(DEFAULT_STATE_PROVINCE);
 
         // Validate the Location in ElasticSearch
+        searchOutboxService.drain();
         Location locationEs = locationSearchRepository.findOne(testLocation.getId());
         assertThat(locationEs).isEqualToComparingFieldByField(testLocation);
     }
@@ -136,6 +189,7 @@ public class LocationResourceIntTest {
     public void getAllLocations() throws Exception {
         // Initialize the database
         locationRepository.saveAndFlush(location);
+        listingService.invalidate(Location.class);
 
         // Get all the locations
         restLocationMockMvc.perform(get("/api/locations?sort=id,desc"))
@@ -149,11 +203,60 @@ public class LocationResourceIntTest {
                 .andExpect(jsonPath("$.[*].stateProvince").value(hasItem(DEFAULT_STATE_PROVINCE.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllLocationsPaged() throws Exception {
+        // Initialize the database
+        locationRepository.saveAndFlush(location);
+
+        // Get a page of the locations
+        restLocationMockMvc.perform(get("/api/locations?page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(location.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void exportLocations() throws Exception {
+        // Initialize the database
+        locationRepository.saveAndFlush(location);
+
+        // Export all the locations, one JSON document per line
+        restLocationMockMvc.perform(get("/api/locations/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + location.getId() + ",")));
+    }
+
+    @Test
+    @Transactional
+    public void getAllLocationsFields() throws Exception {
+        // Initialize the database
+        locationRepository.saveAndFlush(location);
+
+        // Get only some fields of all the locations
+        restLocationMockMvc.perform(get("/api/locations?fields=id,locationId,city"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(location.getId().intValue())))
+            .andExpect(jsonPath("$.[*].locationId").value(hasItem(DEFAULT_LOCATION_ID.intValue())))
+            .andExpect(jsonPath("$.[*].city").value(hasItem(DEFAULT_CITY.toString())))
+            .andExpect(jsonPath("$.[*].streetAddress").doesNotExist());
+
+        // Unknown fields are rejected
+        restLocationMockMvc.perform(get("/api/locations?fields=id,unknown"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getLocation() throws Exception {
         // Initialize the database
         locationRepository.saveAndFlush(location);
+        // The snapshot is only rebuilt on commit, which never happens in this test
+        referenceDataService.invalidate();
 
         // Get the location
         restLocationMockMvc.perform(get("/api/locations/{id}", location.getId()))
@@ -208,10 +311,59 @@ public class LocationResourceIntTest {
         assertThat(testLocation.getStateProvince()).isEqualTo(UPDATED_STATE_PROVINCE);
 
         // Validate the Location in ElasticSearch
+        searchOutboxService.drain();
         Location locationEs = locationSearchRepository.findOne(testLocation.getId());
         assertThat(locationEs).isEqualToComparingFieldByField(testLocation);
     }
 
+    @Test
+    @Transactional
+    public void updateLocationWithETag() throws Exception {
+        // Initialize the database
+        locationRepository.saveAndFlush(location);
+        int version = location.getVersion();
+
+        // Update and delete the location with a stale ETag
+        restLocationMockMvc.perform(put("/api/locations")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(location)))
+            .andExpect(status().isPreconditionFailed());
+        restLocationMockMvc.perform(delete("/api/locations/{id}", location.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the location with its current ETag
+        restLocationMockMvc.perform(put("/api/locations")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(location)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateLocationChangedSinceChecked() throws Exception {
+        // Initialize the database
+        locationRepository.saveAndFlush(location);
+        int version = location.getVersion();
+
+        // The location is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update location set version = version + 1 where id = :id")
+            .setParameter("id", location.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restLocationMockMvc.perform(put("/api/locations")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(location)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteLocation() throws Exception {
@@ -226,6 +378,7 @@ public class LocationResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean locationExistsInEs = locationSearchRepository.exists(location.getId());
         assertThat(locationExistsInEs).isFalse();
 
@@ -252,4 +405,32 @@ public class LocationResourceIntTest {
             .andExpect(jsonPath("$.[*].city").value(hasItem(DEFAULT_CITY.toString())))
             .andExpect(jsonPath("$.[*].stateProvince").value(hasItem(DEFAULT_STATE_PROVINCE.toString())));
     }
+
+    @Test
+    @Transactional
+    public void searchLocationAfterCursor() throws Exception {
+        // Initialize the database
+        Location other = createEntity(em);
+        locationRepository.saveAndFlush(location);
+        locationRepository.saveAndFlush(other);
+        locationSearchRepository.save(location);
+        locationSearchRepository.save(other);
+        String query = "id:(" + location.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restLocationMockMvc.perform(get("/api/_search/locations").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(location.getId().intValue()));
+
+        // Get the last slice, seeking after the location
+        restLocationMockMvc.perform(get("/api/_search/locations").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(location.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }
@@ -5,13 +5,25 @@ import tech.ippon.JhipsterApp;
 import tech.ippon.domain.Region;
 import tech.ippon.repository.RegionRepository;
 import tech.ippon.repository.search.RegionSearchRepository;
-
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+import tech.ippon.service.CountService;
+import tech.ippon.service.RollupService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.ReferenceDataService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.index.ReferenceDataSnapshot;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -52,6 +64,21 @@ public class RegionResourceIntTest {
     @Inject
     private RegionSearchRepository regionSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private RollupService rollupService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private ReferenceDataService referenceDataService;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -70,9 +97,15 @@ public class RegionResourceIntTest {
         MockitoAnnotations.initMocks(this);
         RegionResource regionResource = new RegionResource();
         ReflectionTestUtils.setField(regionResource, "regionSearchRepository", regionSearchRepository);
+        ReflectionTestUtils.setField(regionResource, "searchOutboxService", searchOutboxService);
         ReflectionTestUtils.setField(regionResource, "regionRepository", regionRepository);
+        ReflectionTestUtils.setField(regionResource, "countService", countService);
+        ReflectionTestUtils.setField(regionResource, "rollupService", rollupService);
+        ReflectionTestUtils.setField(regionResource, "listingService", listingService);
+        ReflectionTestUtils.setField(regionResource, "referenceDataService", referenceDataService);
         this.restRegionMockMvc = MockMvcBuilders.standaloneSetup(regionResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -89,6 +122,21 @@ public class RegionResourceIntTest {
         return region;
     }
 
+    @Before
+    @After
+    public void invalidateSnapshots() {
+        // the tests are rolled back: the snapshots must not keep what they saw
+        referenceDataService.invalidate();
+        listingService.invalidate(Region.class);
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         regionSearchRepository.deleteAll();
@@ -115,6 +163,7 @@ public class RegionResourceIntTest {
         assertThat(testRegion.getRegionName()).isEqualTo(DEFAULT_REGION_NAME);
 
         // Validate the Region in ElasticSearch
+        searchOutboxService.drain();
         Region regionEs = regionSearchRepository.findOne(testRegion.getId());
         assertThat(regionEs).isEqualToComparingFieldByField(testRegion);
     }
@@ -124,6 +173,7 @@ public class RegionResourceIntTest {
     public void getAllRegions() throws Exception {
         // Initialize the database
         regionRepository.saveAndFlush(region);
+        listingService.invalidate(Region.class);
 
         // Get all the regions
         restRegionMockMvc.perform(get("/api/regions?sort=id,desc"))
@@ -134,11 +184,64 @@ public class RegionResourceIntTest {
                 .andExpect(jsonPath("$.[*].regionName").value(hasItem(DEFAULT_REGION_NAME.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllRegionsFromSnapshot() throws Exception {
+        // Initialize the database
+        regionRepository.saveAndFlush(region);
+        listingService.invalidate(Region.class);
+        String eTag = restRegionMockMvc.perform(get("/api/regions"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+
+        // A region written without invalidating the snapshot is not listed
+        Region other = regionRepository.saveAndFlush(createEntity(em));
+        restRegionMockMvc.perform(get("/api/regions"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", eTag))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(other.getId().intValue()))));
+
+        // It is once the snapshot is invalidated
+        listingService.invalidate(Region.class);
+        restRegionMockMvc.perform(get("/api/regions"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(other.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllRegionsPaged() throws Exception {
+        // Initialize the database
+        regionRepository.saveAndFlush(region);
+
+        // Get a page of the regions
+        restRegionMockMvc.perform(get("/api/regions?page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(region.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void exportRegions() throws Exception {
+        // Initialize the database
+        regionRepository.saveAndFlush(region);
+
+        // Export all the regions, one JSON document per line
+        restRegionMockMvc.perform(get("/api/regions/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + region.getId() + ",")));
+    }
+
     @Test
     @Transactional
     public void getRegion() throws Exception {
         // Initialize the database
         regionRepository.saveAndFlush(region);
+        // The snapshot is only rebuilt on commit, which never happens in this test
+        referenceDataService.invalidate();
 
         // Get the region
         restRegionMockMvc.perform(get("/api/regions/{id}", region.getId()))
@@ -149,6 +252,25 @@ public class RegionResourceIntTest {
             .andExpect(jsonPath("$.regionName").value(DEFAULT_REGION_NAME.toString()));
     }
 
+    @Test
+    @Transactional
+    public void checkReferenceDataSnapshotIsCurrent() throws Exception {
+        ReferenceDataSnapshot snapshot = referenceDataService.getSnapshot();
+        assertThat(referenceDataService.isCurrent(snapshot)).isTrue();
+
+        // A created region makes the snapshot stale
+        regionRepository.saveAndFlush(region);
+        assertThat(referenceDataService.isCurrent(snapshot)).isFalse();
+        referenceDataService.invalidate();
+        snapshot = referenceDataService.getSnapshot();
+        assertThat(referenceDataService.isCurrent(snapshot)).isTrue();
+
+        // So does an updated region
+        region.setRegionName(UPDATED_REGION_NAME);
+        regionRepository.saveAndFlush(region);
+        assertThat(referenceDataService.isCurrent(snapshot)).isFalse();
+    }
+
     @Test
     @Transactional
     public void getNonExistingRegion() throws Exception {
@@ -184,10 +306,59 @@ public class RegionResourceIntTest {
         assertThat(testRegion.getRegionName()).isEqualTo(UPDATED_REGION_NAME);
 
         // Validate the Region in ElasticSearch
+        searchOutboxService.drain();
         Region regionEs = regionSearchRepository.findOne(testRegion.getId());
         assertThat(regionEs).isEqualToComparingFieldByField(testRegion);
     }
 
+    @Test
+    @Transactional
+    public void updateRegionWithETag() throws Exception {
+        // Initialize the database
+        regionRepository.saveAndFlush(region);
+        int version = region.getVersion();
+
+        // Update and delete the region with a stale ETag
+        restRegionMockMvc.perform(put("/api/regions")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(region)))
+            .andExpect(status().isPreconditionFailed());
+        restRegionMockMvc.perform(delete("/api/regions/{id}", region.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the region with its current ETag
+        restRegionMockMvc.perform(put("/api/regions")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(region)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateRegionChangedSinceChecked() throws Exception {
+        // Initialize the database
+        regionRepository.saveAndFlush(region);
+        int version = region.getVersion();
+
+        // The region is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update region set version = version + 1 where id = :id")
+            .setParameter("id", region.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restRegionMockMvc.perform(put("/api/regions")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(region)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteRegion() throws Exception {
@@ -202,6 +373,7 @@ public class RegionResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean regionExistsInEs = regionSearchRepository.exists(region.getId());
         assertThat(regionExistsInEs).isFalse();
 
@@ -225,4 +397,32 @@ public class RegionResourceIntTest {
             .andExpect(jsonPath("$.[*].regionId").value(hasItem(DEFAULT_REGION_ID.intValue())))
             .andExpect(jsonPath("$.[*].regionName").value(hasItem(DEFAULT_REGION_NAME.toString())));
     }
+
+    @Test
+    @Transactional
+    public void searchRegionAfterCursor() throws Exception {
+        // Initialize the database
+        Region other = createEntity(em);
+        regionRepository.saveAndFlush(region);
+        regionRepository.saveAndFlush(other);
+        regionSearchRepository.save(region);
+        regionSearchRepository.save(other);
+        String query = "id:(" + region.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restRegionMockMvc.perform(get("/api/_search/regions").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(region.getId().intValue()));
+
+        // Get the last slice, seeking after the region
+        restRegionMockMvc.perform(get("/api/_search/regions").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(region.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }
@@ -0,0 +1,90 @@
+package tech.ippon.web.rest;
+
+import tech.ippon.JhipsterApp;
+
+import tech.ippon.domain.User;
+import tech.ippon.repository.UserRepository;
+import tech.ippon.repository.search.UserSearchRepository;
+import tech.ippon.service.SearchReindexService;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ReindexResource REST controller.
+ *
+ * @see ReindexResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = JhipsterApp.class)
+public class ReindexResourceIntTest {
+
+    @Inject
+    private SearchReindexService searchReindexService;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private UserSearchRepository userSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc restReindexMockMvc;
+
+    @PostConstruct
+    public void setup() {
+        ReindexResource reindexResource = new ReindexResource();
+        ReflectionTestUtils.setField(reindexResource, "searchReindexService", searchReindexService);
+        this.restReindexMockMvc = MockMvcBuilders.standaloneSetup(reindexResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    public void reindexUsers() throws Exception {
+        // The rebuild reads the committed users, in worker threads
+        restReindexMockMvc.perform(post("/management/jhipster/reindex?types=User"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.[0].entityType").value("User"))
+            .andExpect(jsonPath("$.[0].alias").value("user"));
+        for (int i = 0; i < 600 && searchReindexService.isRunning(); i++) {
+            Thread.sleep(100);
+        }
+
+        restReindexMockMvc.perform(get("/management/jhipster/reindex"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("DONE"))
+            .andExpect(jsonPath("$.[0].indexName").value(startsWith("user-")))
+            .andExpect(jsonPath("$.[0].indexed").value((int) userRepository.count()));
+
+        // The alias now points to the new index, which has all the users
+        assertThat(elasticsearchTemplate.getClient().admin().indices().prepareAliasesExist("user").get().exists()).isTrue();
+        User admin = userRepository.findOneByLogin("admin").get();
+        assertThat(userSearchRepository.findOne(admin.getId())).isNotNull();
+    }
+
+    @Test
+    public void reindexUnknownType() throws Exception {
+        restReindexMockMvc.perform(post("/management/jhipster/reindex?types=Unknown"))
+            .andExpect(status().isBadRequest());
+    }
+}
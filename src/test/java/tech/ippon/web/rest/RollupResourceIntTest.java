@@ -0,0 +1,173 @@
+package tech.ippon.web.rest;
+
+import tech.ippon.JhipsterApp;
+
+import tech.ippon.config.JHipsterProperties;
+import tech.ippon.domain.Country;
+import tech.ippon.domain.Department;
+import tech.ippon.domain.Employee;
+import tech.ippon.domain.Location;
+import tech.ippon.domain.Region;
+import tech.ippon.service.RollupService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the RollupResource REST controller.
+ *
+ * @see RollupResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = JhipsterApp.class)
+public class RollupResourceIntTest {
+
+    @Inject
+    private RollupService rollupService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Inject
+    private EntityManager em;
+
+    private MockMvc restRollupMockMvc;
+
+    @PostConstruct
+    public void setup() {
+        RollupResource rollupResource = new RollupResource();
+        ReflectionTestUtils.setField(rollupResource, "rollupService", rollupService);
+        this.restRollupMockMvc = MockMvcBuilders.standaloneSetup(rollupResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Before
+    @After
+    public void invalidateRollup() {
+        // the tests are rolled back: the rollup must not keep what they saw
+        rollupService.invalidate();
+    }
+
+    @Test
+    @Transactional
+    public void getRollup() throws Exception {
+        // Initialize the database with a region of one country, having two locations of one department each
+        Region region = RegionResourceIntTest.createEntity(em);
+        em.persist(region);
+        Country country = CountryResourceIntTest.createEntity(em).region(region);
+        em.persist(country);
+        Location paris = LocationResourceIntTest.createEntity(em).city("Paris").country(country);
+        em.persist(paris);
+        Location lyon = LocationResourceIntTest.createEntity(em).city("Lyon").country(country);
+        em.persist(lyon);
+        Department sales = DepartmentResourceIntTest.createEntity(em).location(paris);
+        em.persist(sales);
+        Department support = DepartmentResourceIntTest.createEntity(em).location(lyon);
+        em.persist(support);
+        em.persist(EmployeeResourceIntTest.createEntity(em).salary(100L).department(sales));
+        em.persist(EmployeeResourceIntTest.createEntity(em).salary(200L).department(sales));
+        em.persist(EmployeeResourceIntTest.createEntity(em).salary(null).department(sales));
+        Employee moved = EmployeeResourceIntTest.createEntity(em).salary(300L).department(support);
+        em.persist(moved);
+        em.flush();
+
+        // Get the rollup by location
+        restRollupMockMvc.perform(get("/api/rollup?level=location"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.level").value("all"))
+            .andExpect(jsonPath("$.children[?(@.id == %d)].name", region.getId()).value(hasItem(region.getRegionName())))
+            .andExpect(jsonPath("$.children[?(@.id == %d)].departments", region.getId()).value(hasItem(2)))
+            .andExpect(jsonPath("$.children[?(@.id == %d)].headcount", region.getId()).value(hasItem(4)))
+            .andExpect(jsonPath("$.children[?(@.id == %d)].salaryTotal", region.getId()).value(hasItem(600)))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].level", country.getId()).value(hasItem("country")))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].headcount", country.getId()).value(hasItem(4)))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].name", paris.getId()).value(hasItem("Paris")))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].headcount", paris.getId()).value(hasItem(3)))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].salaryTotal", paris.getId()).value(hasItem(300)))
+            .andExpect(jsonPath("$..children[?(@.id == %d)].salaryTotal", lyon.getId()).value(hasItem(300)));
+
+        // Get the rollup by region: the countries are left out
+        restRollupMockMvc.perform(get("/api/rollup?level=region"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.children[?(@.id == %d)].headcount", region.getId()).value(hasItem(4)))
+            .andExpect(jsonPath("$..level").value(not(hasItem("country"))));
+
+        // Move an employee to a department without location, and rebuild the rollup as the write paths do on commit
+        Department unlocated = DepartmentResourceIntTest.createEntity(em);
+        em.persist(unlocated);
+        moved.setDepartment(unlocated);
+        em.flush();
+        rollupService.invalidate();
+
+        restRollupMockMvc.perform(get("/api/rollup?level=country"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.children[?(@.id == %d)].headcount", region.getId()).value(hasItem(3)))
+            .andExpect(jsonPath("$.children[?(@.id == %d)].salaryTotal", region.getId()).value(hasItem(300)))
+            .andExpect(jsonPath("$..level").value(not(hasItem("location"))));
+    }
+
+    @Test
+    @Transactional
+    public void getRollupAfterWriteOnAnotherNode() throws Exception {
+        // Initialize the database with a region of one country, having one location of one department
+        Region region = RegionResourceIntTest.createEntity(em);
+        em.persist(region);
+        Country country = CountryResourceIntTest.createEntity(em).region(region);
+        em.persist(country);
+        Location location = LocationResourceIntTest.createEntity(em).country(country);
+        em.persist(location);
+        Department department = DepartmentResourceIntTest.createEntity(em).location(location);
+        em.persist(department);
+        em.persist(EmployeeResourceIntTest.createEntity(em).salary(100L).department(department));
+        em.flush();
+        JHipsterProperties.Snapshot snapshot = jHipsterProperties.getSnapshot();
+        int timeToLiveSeconds = snapshot.getTimeToLiveSeconds();
+        snapshot.setTimeToLiveSeconds(0);
+        try {
+            restRollupMockMvc.perform(get("/api/rollup?level=region"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.children[?(@.id == %d)].headcount", region.getId()).value(hasItem(1)));
+
+            // Add an employee without invalidating this node's rollup, as another node would do: it is rolled up
+            // once the rollup expired
+            em.persist(EmployeeResourceIntTest.createEntity(em).salary(200L).department(department));
+            em.flush();
+            restRollupMockMvc.perform(get("/api/rollup?level=region"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.children[?(@.id == %d)].headcount", region.getId()).value(hasItem(2)))
+                .andExpect(jsonPath("$.children[?(@.id == %d)].salaryTotal", region.getId()).value(hasItem(300)));
+        } finally {
+            snapshot.setTimeToLiveSeconds(timeToLiveSeconds);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void getRollupWithInvalidLevel() throws Exception {
+        restRollupMockMvc.perform(get("/api/rollup?level=department"))
+            .andExpect(status().isBadRequest());
+    }
+}
@@ -5,13 +5,23 @@ import tech.ippon.JhipsterApp;
 import tech.ippon.domain.Task;
 import tech.ippon.repository.TaskRepository;
 import tech.ippon.repository.search.TaskSearchRepository;
-
+import tech.ippon.web.rest.errors.ExceptionTranslator;
+import tech.ippon.web.rest.util.PaginationUtil;
+import tech.ippon.service.CountService;
+import tech.ippon.service.ListingService;
+import tech.ippon.service.SearchOutboxService;
+import tech.ippon.service.index.JobTaskIndex;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
@@ -54,6 +64,18 @@ public class TaskResourceIntTest {
     @Inject
     private TaskSearchRepository taskSearchRepository;
 
+    @Inject
+    private SearchOutboxService searchOutboxService;
+
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private ListingService listingService;
+
+    @Inject
+    private JobTaskIndex jobTaskIndex;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -72,9 +94,14 @@ public class TaskResourceIntTest {
         MockitoAnnotations.initMocks(this);
         TaskResource taskResource = new TaskResource();
         ReflectionTestUtils.setField(taskResource, "taskSearchRepository", taskSearchRepository);
+        ReflectionTestUtils.setField(taskResource, "searchOutboxService", searchOutboxService);
         ReflectionTestUtils.setField(taskResource, "taskRepository", taskRepository);
+        ReflectionTestUtils.setField(taskResource, "countService", countService);
+        ReflectionTestUtils.setField(taskResource, "listingService", listingService);
+        ReflectionTestUtils.setField(taskResource, "jobTaskIndex", jobTaskIndex);
         this.restTaskMockMvc = MockMvcBuilders.standaloneSetup(taskResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(new ExceptionTranslator())
             .setMessageConverters(jacksonMessageConverter).build();
     }
 
@@ -92,6 +119,20 @@ public class TaskResourceIntTest {
         return task;
     }
 
+    @Before
+    @After
+    public void invalidateListing() {
+        // the tests are rolled back: the listing snapshot must not keep what they saw
+        listingService.invalidate(Task.class);
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
+    }
+
     @Before
     public void initTest() {
         taskSearchRepository.deleteAll();
@@ -119,6 +160,7 @@ public class TaskResourceIntTest {
         assertThat(testTask.getDescription()).isEqualTo(DEFAULT_DESCRIPTION);
 
         // Validate the Task in ElasticSearch
+        searchOutboxService.drain();
         Task taskEs = taskSearchRepository.findOne(testTask.getId());
         assertThat(taskEs).isEqualToComparingFieldByField(testTask);
     }
@@ -128,6 +170,7 @@ public class TaskResourceIntTest {
     public void getAllTasks() throws Exception {
         // Initialize the database
         taskRepository.saveAndFlush(task);
+        listingService.invalidate(Task.class);
 
         // Get all the tasks
         restTaskMockMvc.perform(get("/api/tasks?sort=id,desc"))
@@ -139,6 +182,33 @@ public class TaskResourceIntTest {
                 .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAllTasksPaged() throws Exception {
+        // Initialize the database
+        taskRepository.saveAndFlush(task);
+
+        // Get a page of the tasks
+        restTaskMockMvc.perform(get("/api/tasks?page=0&size=1000&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(task.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void exportTasks() throws Exception {
+        // Initialize the database
+        taskRepository.saveAndFlush(task);
+
+        // Export all the tasks, one JSON document per line
+        restTaskMockMvc.perform(get("/api/tasks/export"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":" + task.getId() + ",")));
+    }
+
     @Test
     @Transactional
     public void getTask() throws Exception {
@@ -192,10 +262,59 @@ public class TaskResourceIntTest {
         assertThat(testTask.getDescription()).isEqualTo(UPDATED_DESCRIPTION);
 
         // Validate the Task in ElasticSearch
+        searchOutboxService.drain();
         Task taskEs = taskSearchRepository.findOne(testTask.getId());
         assertThat(taskEs).isEqualToComparingFieldByField(testTask);
     }
 
+    @Test
+    @Transactional
+    public void updateTaskWithETag() throws Exception {
+        // Initialize the database
+        taskRepository.saveAndFlush(task);
+        int version = task.getVersion();
+
+        // Update and delete the task with a stale ETag
+        restTaskMockMvc.perform(put("/api/tasks")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(task)))
+            .andExpect(status().isPreconditionFailed());
+        restTaskMockMvc.perform(delete("/api/tasks/{id}", task.getId())
+            .header(HttpHeaders.IF_MATCH, "\"" + (version + 1) + "\"")
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isPreconditionFailed());
+
+        // Update the task with its current ETag
+        restTaskMockMvc.perform(put("/api/tasks")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(task)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + (version + 1) + "\""));
+    }
+
+    @Test
+    @Transactional
+    public void updateTaskChangedSinceChecked() throws Exception {
+        // Initialize the database
+        taskRepository.saveAndFlush(task);
+        int version = task.getVersion();
+
+        // The task is changed in the database after this transaction read it, as a concurrent update would do
+        em.createNativeQuery("update task set version = version + 1 where id = :id")
+            .setParameter("id", task.getId())
+            .executeUpdate();
+
+        // The ETag matches the version read, but the write fails: the precondition failed, this is not a conflict
+        restTaskMockMvc.perform(put("/api/tasks")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .header(HttpHeaders.IF_MATCH, "\"" + version + "\"")
+            .content(TestUtil.convertObjectToJsonBytes(task)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionFailed"));
+    }
+
     @Test
     @Transactional
     public void deleteTask() throws Exception {
@@ -210,6 +329,7 @@ public class TaskResourceIntTest {
                 .andExpect(status().isOk());
 
         // Validate ElasticSearch is empty
+        searchOutboxService.drain();
         boolean taskExistsInEs = taskSearchRepository.exists(task.getId());
         assertThat(taskExistsInEs).isFalse();
 
@@ -234,4 +354,32 @@ public class TaskResourceIntTest {
             .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE.toString())))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION.toString())));
     }
+
+    @Test
+    @Transactional
+    public void searchTaskAfterCursor() throws Exception {
+        // Initialize the database
+        Task other = createEntity(em);
+        taskRepository.saveAndFlush(task);
+        taskRepository.saveAndFlush(other);
+        taskSearchRepository.save(task);
+        taskSearchRepository.save(other);
+        String query = "id:(" + task.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restTaskMockMvc.perform(get("/api/_search/tasks").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(task.getId().intValue()));
+
+        // Get the last slice, seeking after the task
+        restTaskMockMvc.perform(get("/api/_search/tasks").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(task.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }
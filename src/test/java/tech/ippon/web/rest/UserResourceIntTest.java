@@ -3,18 +3,27 @@ package tech.ippon.web.rest;
 import tech.ippon.JhipsterApp;
 import tech.ippon.domain.User;
 import tech.ippon.repository.UserRepository;
+import tech.ippon.repository.search.UserSearchRepository;
+import tech.ippon.service.CountService;
 import tech.ippon.service.UserService;
+import tech.ippon.web.rest.util.PaginationUtil;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -34,9 +43,18 @@ public class UserResourceIntTest {
     @Inject
     private UserRepository userRepository;
 
+    @Inject
+    private UserSearchRepository userSearchRepository;
+
     @Inject
     private UserService userService;
 
+    @Inject
+    private CountService countService;
+
+    @Inject
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
     private MockMvc restUserMockMvc;
 
     /**
@@ -64,7 +82,17 @@ public class UserResourceIntTest {
         UserResource userResource = new UserResource();
         ReflectionTestUtils.setField(userResource, "userRepository", userRepository);
         ReflectionTestUtils.setField(userResource, "userService", userService);
-        this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource).build();
+        ReflectionTestUtils.setField(userResource, "userSearchRepository", userSearchRepository);
+        ReflectionTestUtils.setField(userResource, "countService", countService);
+        this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver).build();
+    }
+
+    @Before
+    @After
+    public void invalidateCounts() {
+        // the tests are rolled back: the counts must not keep what they saw
+        countService.invalidateAll();
     }
 
     @Test
@@ -82,4 +110,30 @@ public class UserResourceIntTest {
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @Transactional
+    public void searchUsersAfterCursor() throws Exception {
+        // Initialize the database
+        User user = userRepository.findOneByLogin("admin").get();
+        User other = userRepository.findOneByLogin("user").get();
+        userSearchRepository.save(user);
+        userSearchRepository.save(other);
+        String query = "id:(" + user.getId() + " OR " + other.getId() + ")";
+
+        // Get the first slice, linking to the next one
+        restUserMockMvc.perform(get("/api/_search/users").param("query", query).param("after", "").param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(user.getId().intValue()));
+
+        // Get the last slice, seeking after the first user
+        restUserMockMvc.perform(get("/api/_search/users").param("query", query)
+            .param("after", PaginationUtil.encodeCursor(user.getId())).param("size", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()));
+    }
 }